@@ -0,0 +1,186 @@
+package eyja.lab.tools.cell.counter.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import eyja.lab.tools.cell.counter.core.CellCountInitialiser;
+import eyja.lab.tools.cell.counter.functionality.CellCountResourceType;
+import eyja.lab.tools.cell.counter.functionality.Count;
+import eyja.lab.tools.cell.counter.functionality.CountedDilution;
+import eyja.lab.tools.cell.counter.functionality.CountingSeries;
+import eyja.lab.tools.cell.counter.functionality.Dilution;
+import eyja.lab.tools.control.centre.binaryop.BinaryFormat;
+import eyja.lab.tools.control.centre.management.Origin;
+import eyja.lab.tools.control.centre.management.Resource;
+import eyja.lab.tools.control.centre.management.ResourceReference;
+
+/**
+ * The CellCountBenchmark class measures how fast the resource types of the cell count module 
+ * are looked up and how fast an origin containing all resource types is decoded on a single 
+ * thread and in parallel. 
+ * The number of resources can be passed as first argument and defaults to one million.
+ * 
+ * @author Planters
+ *
+ */
+public final class CellCountBenchmark {
+	
+	private static final int DEFAULT_RESOURCES = 1000000;
+	private static final int ROUNDS = 5;
+	private static final Random RANDOM = new Random(42);
+	
+	/**
+	 * Run the benchmark.
+	 * 
+	 * @param args - the number of resources of the benchmarked origin
+	 * @throws IOException if the origin file could not be written or read
+	 */
+	public static void main(String[] args) throws IOException {
+		int resources = args.length > 0 ? Integer.parseInt(args[0]) : CellCountBenchmark.DEFAULT_RESOURCES;
+		File originFile = File.createTempFile("CellCountBenchmark", Origin.ORIGIN_EXTENSION);
+		try {
+			Origin origin = CellCountBenchmark.createOrigin(originFile, resources);
+			origin.write();
+			byte[] identifiers = new byte[resources];
+			int i = 0;
+			for (Resource r : origin.getResources()) {
+				identifiers[i++] = r.getTypeIdentifier();
+			}
+			System.out.printf("%s resources, %s bytes%n", resources, originFile.length());
+			for (int round = 1; round <= CellCountBenchmark.ROUNDS; round++) {
+				long start = System.nanoTime();
+				int linearSum = CellCountBenchmark.lookUpLinear(identifiers);
+				long linearTime = System.nanoTime() - start;
+				start = System.nanoTime();
+				int tableSum = CellCountBenchmark.lookUpTable(identifiers);
+				long tableTime = System.nanoTime() - start;
+				if (linearSum != tableSum) {
+					throw new IllegalStateException(String.format("The linear lookup (%s) and the table lookup "
+							+ "(%s) found different types.", linearSum, tableSum));
+				}
+				long readTime = CellCountBenchmark.read(originFile, origin, false);
+				long parallelReadTime = CellCountBenchmark.read(originFile, origin, true);
+				System.out.printf("round %s: type lookup linear %.2f ns, table %.2f ns per resource; "
+						+ "read %.1f ms, parallel read %.1f ms%n", round, (double) linearTime / resources, 
+						(double) tableTime / resources, readTime / 1e6d, parallelReadTime / 1e6d);
+			}
+		} finally {
+			Files.deleteIfExists(originFile.toPath());
+			Files.deleteIfExists(new File(originFile.getPath() + Origin.INDEX_EXTENSION).toPath());
+		}
+	}
+	
+	/**
+	 * Read the specified origin file completely.
+	 * 
+	 * @param originFile - the file to read
+	 * @param origin - the origin written to the file
+	 * @param parallel - true if the resources should be decoded in parallel
+	 * @return the time needed for reading in nanoseconds
+	 * @throws IOException if the origin file could not be read
+	 */
+	private static long read(File originFile, Origin origin, boolean parallel) throws IOException {
+		Origin readOrigin = new Origin(originFile, origin.getDeserialiser());
+		readOrigin.setParallelDecoding(parallel);
+		long start = System.nanoTime();
+		readOrigin.read();
+		long readTime = System.nanoTime() - start;
+		if (readOrigin.getResources().length != origin.getResources().length) {
+			throw new IllegalStateException(String.format("%s of %s resources have been read.", 
+					readOrigin.getResources().length, origin.getResources().length));
+		}
+		return readTime;
+	}
+	
+	/**
+	 * Create an origin containing all resource types of the cell count module in equal shares.
+	 * 
+	 * @param originFile - the file of the origin
+	 * @param resources - the number of resources
+	 * @return the origin
+	 */
+	private static Origin createOrigin(File originFile, int resources) {
+		Origin origin = new Origin(originFile, new CellCountInitialiser());
+		origin.setFormat(BinaryFormat.COMPACT);
+		String path = originFile.getPath();
+		LocalDateTime time = LocalDateTime.of(2020, 1, 1, 8, 0);
+		long countID = 0;
+		long dilutionID = 0;
+		long countedDilutionID = 0;
+		for (int i = 0; i < resources; i++) {
+			time = time.plusSeconds(CellCountBenchmark.RANDOM.nextInt(3600));
+			switch (i % 4) {
+			
+			case 0:
+				Count count = CellCountBenchmark.RANDOM.nextBoolean() 
+						? new Count(CellCountBenchmark.RANDOM.nextDouble() * 1e6d, time)
+						: new Count(CellCountBenchmark.RANDOM.nextInt(500), 4, 1e-4d, time);
+				origin.requestAdd(count);
+				countID = count.getID().getID();
+				break;
+				
+			case 1:
+				Dilution dilution = new Dilution(CellCountBenchmark.RANDOM.nextDouble(), 
+						CellCountBenchmark.RANDOM.nextDouble() * 10d, time);
+				origin.requestAdd(dilution);
+				dilutionID = dilution.getID().getID();
+				break;
+				
+			case 2:
+				CountedDilution countedDilution = new CountedDilution(new ResourceReference(path, countID), 
+						new ResourceReference(path, dilutionID));
+				origin.requestAdd(countedDilution);
+				countedDilutionID = countedDilution.getID().getID();
+				break;
+				
+			default:
+				CountingSeries series = new CountingSeries();
+				for (int j = CellCountBenchmark.RANDOM.nextInt(4); j >= 0; j--) {
+					series.add(new ResourceReference(path, countedDilutionID - j * 4));
+				}
+				origin.requestAdd(series);
+				break;
+			
+			}
+		}
+		return origin;
+	}
+	
+	/**
+	 * Look up the types of the specified identifiers by scanning all types, as done before the 
+	 * lookup table had been introduced.
+	 * 
+	 * @param identifiers - the identifiers to look up
+	 * @return the sum of the ordinals of the types found
+	 */
+	private static int lookUpLinear(byte[] identifiers) {
+		int sum = 0;
+		for (byte identifier : identifiers) {
+			for (CellCountResourceType type : CellCountResourceType.values()) {
+				if (type.getIdentifier() == identifier) {
+					sum += type.ordinal();
+					break;
+				}
+			}
+		}
+		return sum;
+	}
+	
+	/**
+	 * Look up the types of the specified identifiers with the lookup table.
+	 * 
+	 * @param identifiers - the identifiers to look up
+	 * @return the sum of the ordinals of the types found
+	 */
+	private static int lookUpTable(byte[] identifiers) {
+		int sum = 0;
+		for (byte identifier : identifiers) {
+			sum += CellCountResourceType.fromByte(identifier).ordinal();
+		}
+		return sum;
+	}
+
+}
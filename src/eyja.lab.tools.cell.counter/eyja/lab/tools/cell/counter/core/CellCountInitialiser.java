@@ -1,27 +1,27 @@
 package eyja.lab.tools.cell.counter.core;
 
-import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
 import javax.swing.JComponent;
 
-import eyja.lab.tools.cell.counter.functionality.CellCountResourceType;
 import eyja.lab.tools.cell.counter.functionality.Count;
 import eyja.lab.tools.cell.counter.functionality.CountedDilution;
+import eyja.lab.tools.cell.counter.functionality.CountingSeries;
 import eyja.lab.tools.cell.counter.functionality.Dilution;
-import eyja.lab.tools.control.centre.binaryop.BinaryConverter;
+import eyja.lab.tools.control.centre.binaryop.BinaryFormat;
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+import eyja.lab.tools.control.centre.management.CodecRegistry;
 import eyja.lab.tools.control.centre.management.Origin;
-import eyja.lab.tools.control.centre.management.OriginDeserialiser;
 import eyja.lab.tools.control.centre.management.OriginHandler;
 import eyja.lab.tools.control.centre.management.Project;
+import eyja.lab.tools.control.centre.management.RandomAccessDeserialiser;
 import eyja.lab.tools.control.centre.management.Resource;
-import eyja.lab.tools.control.centre.management.ResourceID;
 import eyja.lab.tools.control.centre.operation.Initialiser;
 import eyja.lab.tools.control.centre.operation.InitialiserDescriptor;
 
-public class CellCountInitialiser implements Initialiser, OriginDeserialiser {
+public class CellCountInitialiser implements Initialiser, RandomAccessDeserialiser {
 	
 	private static CellCountInitialiser mainInit = new CellCountInitialiser();
 	private static final File DEFAULT_ORIGIN_LOCATION = new File("CellCount" + Origin.ORIGIN_EXTENSION);	
@@ -29,6 +29,9 @@ public class CellCountInitialiser implements Initialiser, OriginDeserialiser {
 			"Cell Counter", 
 			null, 
 			"1.0.0.1");
+	// identifies origin files written by the cell count module
+	private static final int CODEC_ID = 0x43454C4C; // CELL
+	private static final CodecRegistry CODECS = CellCountInitialiser.createCodecs();
 	private static Origin countOrigin = null;
 	private static OriginHandler mainHandler = null;
 
@@ -53,74 +56,64 @@ public class CellCountInitialiser implements Initialiser, OriginDeserialiser {
 	public void initialise(Project project) {
 		if (project != null) {
 			CellCountInitialiser.mainHandler = project.getOriginHandler();
-			CellCountInitialiser.countOrigin = new Origin(project.getProjectFolder().toPath().resolve(
-					CellCountInitialiser.DEFAULT_ORIGIN_LOCATION.toPath()).toFile(), 
-					CellCountInitialiser.mainInit);
+			CellCountInitialiser.countOrigin = CellCountInitialiser.createOrigin(project.getProjectFolder()
+					.toPath().resolve(CellCountInitialiser.DEFAULT_ORIGIN_LOCATION.toPath()).toFile());
+			project.registerOriginFactory(CellCountInitialiser.CODEC_ID, CellCountInitialiser::createOrigin);
 		} else { // default initialisation
-			CellCountInitialiser.countOrigin = new Origin(CellCountInitialiser.DEFAULT_ORIGIN_LOCATION, 
-					CellCountInitialiser.mainInit);
+			CellCountInitialiser.countOrigin = CellCountInitialiser.createOrigin(
+					CellCountInitialiser.DEFAULT_ORIGIN_LOCATION);
 			CellCountInitialiser.mainHandler = new OriginHandler();
 		}
 		CellCountInitialiser.mainHandler.requestAdd(CellCountInitialiser.countOrigin);
 	}
+	
+	/**
+	 * Create an origin of the cell count module for the specified file without reading it.
+	 * 
+	 * @param file - the origin file
+	 * @return the origin
+	 */
+	private static Origin createOrigin(File file) {
+		Origin origin = new Origin(file, CellCountInitialiser.mainInit);
+		// counts are written often and mostly consist of IDs and times
+		origin.setFormat(BinaryFormat.COMPACT);
+		// the codecs do not share any state, so large origins are decoded on all cores
+		origin.setParallelDecoding(true);
+		return origin;
+	}
 
 	@Override
 	public void deserialise(InputStream originData, Origin originToBuild) throws IOException {
-		if (originToBuild != null && originData != null) {
-			try (DataInputStream dis = new DataInputStream(originData)) {
-				originToBuild.clear(); // ensure the origin is empty before building it
-				while (dis.available() > 0) {
-					CellCountResourceType type = CellCountResourceType.fromByte(dis.readByte());
-					ResourceID id = new ResourceID(originToBuild, dis.readLong());
-					Resource builtResource = null;
-					switch (type) {
-					
-					case COUNT:
-						byte[] binaryCountLDT = new byte[BinaryConverter.LOCAL_DATE_TIME_BYTES];
-						dis.read(binaryCountLDT);
-						if (dis.readBoolean()) {
-							builtResource = new Count(dis.readInt(), dis.readInt(), dis.readDouble(), 
-									BinaryConverter.getLocalDateTime(binaryCountLDT));
-						} else {
-							builtResource = new Count(dis.readDouble(), BinaryConverter.getLocalDateTime(binaryCountLDT));
-						}
-						break;
-						
-					case DILUTION:
-						byte[] binaryDilutionLDT = new byte[BinaryConverter.LOCAL_DATE_TIME_BYTES];
-						dis.read(binaryDilutionLDT);
-						builtResource = new Dilution(dis.readDouble(), dis.readDouble(), 
-								BinaryConverter.getLocalDateTime(binaryDilutionLDT));
-						break;
-						
-					case COUNTED_DILUTION:
-						int countLength = dis.readInt();
-						byte[] binaryCountRef = new byte[countLength];
-						dis.read(binaryCountRef);
-						int dilutionLength = dis.readInt();
-						byte[] binaryDilutionRef = new byte[dilutionLength];
-						dis.read(binaryDilutionRef);
-						builtResource = new CountedDilution(BinaryConverter.getResourceReference(binaryCountRef), 
-								BinaryConverter.getResourceReference(binaryDilutionRef));
-						break;
-						
-					case COUNTING_SERIES:
-						// TODO: implement
-						break;
-					
-					default:
-						throw new IOException(String.format("The resource type %s does not have a "
-								+ "deserialisation implementation.", type));
-					
-					}
-					builtResource.setID(id);
-					originToBuild.requestAdd(builtResource);
-				}
-			}
-		} else {
-			throw new NullPointerException(String.format("Cannot deserialise with input"
-					+ " %s and target origin %s.", originData, originToBuild));
-		}
+		CellCountInitialiser.CODECS.deserialise(originData, originToBuild);
+	}
+	
+	@Override
+	public long scan(BinaryReader reader) {
+		return CellCountInitialiser.CODECS.scan(reader);
+	}
+	
+	@Override
+	public Resource decode(BinaryReader reader, Origin origin) {
+		return CellCountInitialiser.CODECS.decode(reader, origin);
+	}
+	
+	@Override
+	public int getCodecID() {
+		return CellCountInitialiser.CODECS.getCodecID();
+	}
+	
+	/**
+	 * Create the registry of the codecs of all cell count resource types.
+	 * 
+	 * @return the codec registry
+	 */
+	private static CodecRegistry createCodecs() {
+		CodecRegistry codecs = new CodecRegistry(CellCountInitialiser.CODEC_ID);
+		codecs.register(Count.type.getIdentifier(), Count.CODEC);
+		codecs.register(Dilution.type.getIdentifier(), Dilution.CODEC);
+		codecs.register(CountedDilution.type.getIdentifier(), CountedDilution.CODEC);
+		codecs.register(CountingSeries.type.getIdentifier(), CountingSeries.CODEC);
+		return codecs;
 	}
 
 	@Override
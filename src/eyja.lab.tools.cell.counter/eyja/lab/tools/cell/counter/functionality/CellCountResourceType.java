@@ -17,6 +17,8 @@ public enum CellCountResourceType {
 	 * The number of bytes needed for serialisation of a cell count resource type
 	 */
 	public static final int BYTES = Byte.BYTES;
+	// all types indexed by their unsigned identifier, so finding a type does not copy values()
+	private static final CellCountResourceType[] TYPES = CellCountResourceType.createLookupTable();
 	private byte identifier = -1;
 	
 	private CellCountResourceType(byte identifier) {
@@ -32,18 +34,35 @@ public enum CellCountResourceType {
 		return new byte[] {this.identifier};
 	}
 	
+	/**
+	 * Get the binary identifier of the according cell count resource type.
+	 * 
+	 * @return the resource type's identifier
+	 */
+	public byte getIdentifier() {
+		return this.identifier;
+	}
+	
 	/**
 	 * Infer the cell count resource type from binary data.
 	 * 
 	 * @param data - the binary data identifying the cell count resource type
-	 * @return the corresponding resource type
+	 * @return the corresponding resource type or null if no type is identified by the data
 	 */
 	public static CellCountResourceType fromByte(byte data) {
-		for (CellCountResourceType v : CellCountResourceType.values()) {
-			if (v.identifier == data) {
-				return v;
-			}
+		return CellCountResourceType.TYPES[Byte.toUnsignedInt(data)];
+	}
+	
+	/**
+	 * Create the table of all types indexed by their unsigned identifier.
+	 * 
+	 * @return the lookup table
+	 */
+	private static CellCountResourceType[] createLookupTable() {
+		CellCountResourceType[] types = new CellCountResourceType[1 << Byte.SIZE];
+		for (CellCountResourceType type : CellCountResourceType.values()) {
+			types[Byte.toUnsignedInt(type.identifier)] = type;
 		}
-		return null;
+		return types;
 	}
 }
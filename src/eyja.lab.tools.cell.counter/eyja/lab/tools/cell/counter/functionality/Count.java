@@ -1,9 +1,15 @@
 package eyja.lab.tools.cell.counter.functionality;
 
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 
 import eyja.lab.tools.control.centre.binaryop.BinaryConverter;
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+import eyja.lab.tools.control.centre.binaryop.BinaryWriter;
+import eyja.lab.tools.control.centre.management.Origin;
 import eyja.lab.tools.control.centre.management.Resource;
+import eyja.lab.tools.control.centre.management.ResourceCodec;
+import eyja.lab.tools.control.centre.management.ResourceID;
 
 /**
  * The Count class represents a single cell count event.
@@ -17,6 +23,38 @@ public class Count extends Resource {
 	 * The resource type.
 	 */
 	public static final CellCountResourceType type = CellCountResourceType.COUNT;
+	/**
+	 * The codec deserialising counts.
+	 */
+	public static final ResourceCodec CODEC = new ResourceCodec() {
+		
+		@Override
+		public long scan(BinaryReader reader) {
+			long id = reader.readID();
+			reader.skipLocalDateTime();
+			if (reader.readBoolean()) {
+				reader.skip(BinaryConverter.INTEGER_BYTES * 2 + BinaryConverter.DOUBLE_BYTES);
+			} else {
+				reader.skip(BinaryConverter.DOUBLE_BYTES);
+			}
+			return id;
+		}
+		
+		@Override
+		public Resource decode(BinaryReader reader, Origin origin) {
+			ResourceID id = new ResourceID(origin, reader.readID());
+			LocalDateTime countTime = reader.readLocalDateTime();
+			Count count = null;
+			if (reader.readBoolean()) {
+				count = new Count(reader.readInt(), reader.readInt(), reader.readDouble(), countTime);
+			} else {
+				count = new Count(reader.readDouble(), countTime);
+			}
+			count.setID(id);
+			return count;
+		}
+		
+	};
 	private LocalDateTime timeOfCounting = null;
 	private double countingDensity = -1.0d;
 	boolean chamberUsed = false;
@@ -139,35 +177,39 @@ public class Count extends Resource {
 		return this.countingDensity;
 	}
 	
+	@Override
+	public byte getTypeIdentifier() {
+		return Count.type.getIdentifier();
+	}
+	
 	@Override
 	public byte[] serialise() {
+		int length = CellCountResourceType.BYTES + BinaryConverter.LONG_BYTES 
+				+ BinaryConverter.LOCAL_DATE_TIME_BYTES + BinaryConverter.BOOLEAN_BYTES;
+		if (this.chamberUsed) {
+			length += BinaryConverter.INTEGER_BYTES * 2 + BinaryConverter.DOUBLE_BYTES;
+		} else {
+			length += BinaryConverter.DOUBLE_BYTES;
+		}
+		byte[] serialisation = new byte[length];
+		this.serialise(new BinaryWriter(ByteBuffer.wrap(serialisation)));
+		return serialisation;
+	}
+	
+	@Override
+	public void serialise(BinaryWriter writer) {
 		if (this.getID() != null) {
-			byte[] type = Count.type.toBytes();
-			byte[] id = BinaryConverter.toBytes(this.getID().getID());
-			byte[] ldt = BinaryConverter.toBytes(this.timeOfCounting);
-			byte[] chamber = new byte[] {BinaryConverter.toBytes(this.chamberUsed)};
-			byte[] count = null;
+			writer.writeByte(Count.type.getIdentifier());
+			writer.writeID(this.getID().getID());
+			writer.writeLocalDateTime(this.timeOfCounting);
+			writer.writeBoolean(this.chamberUsed);
 			if (this.chamberUsed) {
-				byte[] chamberCount = BinaryConverter.toBytes(this.chamberCount);
-				byte[] countedSquares = BinaryConverter.toBytes(this.countedSquares);
-				byte[] squareVolume = BinaryConverter.toBytes(this.squareVolume);
-				count = new byte[chamberCount.length + countedSquares.length + squareVolume.length];
-				System.arraycopy(chamberCount, 0, count, 0, chamberCount.length);
-				System.arraycopy(countedSquares, 0, count, chamberCount.length, countedSquares.length);
-				System.arraycopy(squareVolume, 0, count, 
-						chamberCount.length + countedSquares.length, squareVolume.length);
+				writer.writeInt(this.chamberCount);
+				writer.writeInt(this.countedSquares);
+				writer.writeDouble(this.squareVolume);
 			} else {
-				count = BinaryConverter.toBytes(this.countingDensity);
+				writer.writeDouble(this.countingDensity);
 			}
-			byte[] serialisation = new byte[type.length + id.length + ldt.length + count.length];
-			System.arraycopy(type, 0, serialisation, 0, type.length);
-			System.arraycopy(id, 0, serialisation, type.length, id.length);
-			System.arraycopy(ldt, 0, serialisation, type.length + id.length, ldt.length);
-			System.arraycopy(chamber, 0, serialisation, 
-					type.length + id.length + ldt.length, chamber.length);
-			System.arraycopy(count, 0, serialisation, 
-					type.length + id.length + ldt.length + chamber.length, count.length);
-			return serialisation;
 		} else {
 			throw new NullPointerException(String.format("%s cannot be serialised without a resource "
 					+ "ID.", this));
@@ -1,11 +1,17 @@
 package eyja.lab.tools.cell.counter.functionality;
 
+import java.nio.ByteBuffer;
+
 import eyja.lab.tools.cell.counter.core.CellCountInitialiser;
 import eyja.lab.tools.control.centre.binaryop.BinaryConverter;
-import eyja.lab.tools.control.centre.binaryop.BinaryOperator;
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+import eyja.lab.tools.control.centre.binaryop.BinaryWriter;
 import eyja.lab.tools.control.centre.management.CachedReference;
+import eyja.lab.tools.control.centre.management.Origin;
 import eyja.lab.tools.control.centre.management.ReferenceException;
 import eyja.lab.tools.control.centre.management.Resource;
+import eyja.lab.tools.control.centre.management.ResourceCodec;
+import eyja.lab.tools.control.centre.management.ResourceID;
 import eyja.lab.tools.control.centre.management.ResourceReference;
 
 /**
@@ -21,6 +27,40 @@ public class CountedDilution extends Resource {
 	 * The resource type.
 	 */
 	public static final CellCountResourceType type = CellCountResourceType.COUNTED_DILUTION;
+	/**
+	 * The codec deserialising counted dilutions.
+	 */
+	public static final ResourceCodec CODEC = new ResourceCodec() {
+		
+		@Override
+		public long scan(BinaryReader reader) {
+			long id = reader.readID();
+			// framed records are skipped by their length
+			if (!reader.isFramed()) {
+				reader.skip(reader.readInt()); // count reference
+				reader.skip(reader.readInt()); // dilution reference
+			}
+			return id;
+		}
+		
+		@Override
+		public Resource decode(BinaryReader reader, Origin origin) {
+			ResourceID id = new ResourceID(origin, reader.readID());
+			boolean prefixed = !reader.isFramed();
+			if (prefixed) {
+				reader.readInt(); // length of the count reference
+			}
+			ResourceReference countRef = reader.readResourceReference();
+			if (prefixed) {
+				reader.readInt(); // length of the dilution reference
+			}
+			ResourceReference dilutionRef = reader.readResourceReference();
+			CountedDilution countedDilution = new CountedDilution(countRef, dilutionRef);
+			countedDilution.setID(id);
+			return countedDilution;
+		}
+		
+	};
 	private CachedReference countRef = null;
 	private CachedReference dilutionRef = null;
 	
@@ -52,7 +92,7 @@ public class CountedDilution extends Resource {
 	 * @param dilutionEvent - the reference to the dilution event
 	 */
 	public void setDilutionEvent(ResourceReference dilutionEvent) {
-		this.countRef = CachedReference.generateCachedReference(dilutionEvent);
+		this.dilutionRef = CachedReference.generateCachedReference(dilutionEvent);
 	}
 	
 	/**
@@ -76,24 +116,60 @@ public class CountedDilution extends Resource {
 	 * @throws ReferenceException if the internally kept resource reference could not be resolved
 	 */
 	public Dilution getDilutionEvent() throws ReferenceException {
-		if (this.countRef != null) {
+		if (this.dilutionRef != null) {
 			return this.dilutionRef.getResource(CellCountInitialiser.getMainHandler(), Dilution.class);
 		} else {
 			return null;
 		}
 	}
 	
+	/**
+	 * Get the reference to the cell count event. May be null.
+	 * 
+	 * @return the reference to the cell counting event
+	 */
+	CachedReference getCountingReference() {
+		return this.countRef;
+	}
+	
+	/**
+	 * Get the reference to the dilution event. May be null.
+	 * 
+	 * @return the reference to the dilution event
+	 */
+	CachedReference getDilutionReference() {
+		return this.dilutionRef;
+	}
+	
+	@Override
+	public byte getTypeIdentifier() {
+		return CountedDilution.type.getIdentifier();
+	}
+	
 	@Override
 	public byte[] serialise() {
+		byte[] serialisation = new byte[CellCountResourceType.BYTES + BinaryConverter.LONG_BYTES 
+				+ BinaryConverter.INTEGER_BYTES * 2 + BinaryWriter.getBinaryLength(this.countRef) 
+				+ BinaryWriter.getBinaryLength(this.dilutionRef)];
+		this.serialise(new BinaryWriter(ByteBuffer.wrap(serialisation)));
+		return serialisation;
+	}
+	
+	@Override
+	public void serialise(BinaryWriter writer) {
 		if (this.getID() != null) { 
-			byte[] type = Count.type.toBytes();
-			byte[] id = BinaryConverter.toBytes(this.getID().getID());
-			byte[] binaryCount = BinaryConverter.toBytes(this.countRef);
-			byte[] lengthCount = BinaryConverter.toBytes(binaryCount.length);
-			byte[] binaryDilution = BinaryConverter.toBytes(this.dilutionRef);
-			byte[] lengthDilution = BinaryConverter.toBytes(binaryDilution.length);
-			return BinaryOperator.joinBytes(type, id, lengthCount, binaryCount, 
-					lengthDilution, binaryDilution);
+			writer.writeByte(CountedDilution.type.getIdentifier());
+			writer.writeID(this.getID().getID());
+			// store lengths for easier deserialisation unless the resource is framed as a record
+			boolean prefixed = !writer.isFramed();
+			if (prefixed) {
+				writer.writeInt(writer.getReferenceLength(this.countRef));
+			}
+			writer.writeResourceReference(this.countRef);
+			if (prefixed) {
+				writer.writeInt(writer.getReferenceLength(this.dilutionRef));
+			}
+			writer.writeResourceReference(this.dilutionRef);
 		} else {
 			throw new NullPointerException(String.format("%s cannot be serialised without a resource "
 					+ "ID.", this));
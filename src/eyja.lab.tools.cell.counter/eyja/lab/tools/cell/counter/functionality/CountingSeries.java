@@ -1,14 +1,20 @@
 package eyja.lab.tools.cell.counter.functionality;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.logging.Level;
 
 import eyja.lab.tools.cell.counter.core.CellCountInitialiser;
 import eyja.lab.tools.control.centre.binaryop.BinaryConverter;
-import eyja.lab.tools.control.centre.binaryop.BinaryOperator;
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+import eyja.lab.tools.control.centre.binaryop.BinaryWriter;
 import eyja.lab.tools.control.centre.management.CachedReference;
+import eyja.lab.tools.control.centre.management.Origin;
+import eyja.lab.tools.control.centre.management.OriginHandler;
 import eyja.lab.tools.control.centre.management.ReferenceException;
 import eyja.lab.tools.control.centre.management.Resource;
+import eyja.lab.tools.control.centre.management.ResourceCodec;
+import eyja.lab.tools.control.centre.management.ResourceID;
 import eyja.lab.tools.control.centre.management.ResourceReference;
 import eyja.lab.tools.control.centre.operation.MainLogger;
 
@@ -25,6 +31,41 @@ public class CountingSeries extends Resource {
 	 * The resource type.
 	 */
 	public static final CellCountResourceType type = CellCountResourceType.COUNTING_SERIES;
+	/**
+	 * The codec deserialising counting series.
+	 */
+	public static final ResourceCodec CODEC = new ResourceCodec() {
+		
+		@Override
+		public long scan(BinaryReader reader) {
+			long id = reader.readID();
+			// framed records are skipped by their length
+			if (!reader.isFramed()) {
+				int countSize = reader.readInt();
+				for (int i = 0; i < countSize; i++) {
+					reader.skip(reader.readInt());
+				}
+			}
+			return id;
+		}
+		
+		@Override
+		public Resource decode(BinaryReader reader, Origin origin) {
+			ResourceID id = new ResourceID(origin, reader.readID());
+			CountingSeries series = new CountingSeries();
+			boolean prefixed = !reader.isFramed();
+			int countSize = reader.readInt();
+			for (int i = 0; i < countSize; i++) {
+				if (prefixed) {
+					reader.readInt(); // length of the reference
+				}
+				series.add(reader.readResourceReference());
+			}
+			series.setID(id);
+			return series;
+		}
+		
+	};
 	
 	private ArrayList<CachedReference> counts = new ArrayList<CachedReference>();
 	
@@ -79,36 +120,68 @@ public class CountingSeries extends Resource {
 	}
 	
 	/**
-	 * Get all the events that are part of this counting series.
+	 * Get all the events that are part of this counting series. All events and the counting and 
+	 * dilution events they consist of are resolved in bulk.
 	 * 
 	 * @return the events of this series
 	 */
 	public CountedDilution[] getEvents() {
-		return this.counts.stream().map(cd -> {
-			try {
-				return CellCountInitialiser.getMainHandler().dereference(cd, CountedDilution.class);
-			} catch (ReferenceException e) {
+		OriginHandler handler = CellCountInitialiser.getMainHandler();
+		Resource[] resources = handler.dereferenceAll(this.counts);
+		CountedDilution[] events = new CountedDilution[resources.length];
+		ArrayList<CachedReference> nestedReferences = new ArrayList<CachedReference>(resources.length * 2);
+		for (int i = 0; i < resources.length; i++) {
+			if (resources[i] instanceof CountedDilution) {
+				events[i] = (CountedDilution) resources[i];
+				if (events[i].getCountingReference() != null) {
+					nestedReferences.add(events[i].getCountingReference());
+				}
+				if (events[i].getDilutionReference() != null) {
+					nestedReferences.add(events[i].getDilutionReference());
+				}
+			} else if (resources[i] != null) {
 				MainLogger.getMainLogger().log(Level.SEVERE, String.format("The reference %s could not be "
-						+ "dereferenced", cd), e);
-				return null;
+						+ "dereferenced", this.counts.get(i)), new ReferenceException(String.format(
+								"The resource %s is of type %s while %s was expected.", resources[i], 
+								resources[i].getClass(), CountedDilution.class)));
 			}
-		}).toArray(CountedDilution[]::new);
+		}
+		// the events access their counts and dilutions through the cached references
+		handler.cacheAll(nestedReferences);
+		return events;
 	}
 
+	@Override
+	public byte getTypeIdentifier() {
+		return CountingSeries.type.getIdentifier();
+	}
+	
 	@Override
 	public byte[] serialise() {
+		int length = CellCountResourceType.BYTES + BinaryConverter.LONG_BYTES 
+				+ BinaryConverter.INTEGER_BYTES * (this.counts.size() + 1);
+		for (CachedReference c : this.counts) {
+			length += BinaryWriter.getBinaryLength(c);
+		}
+		byte[] serialisation = new byte[length];
+		this.serialise(new BinaryWriter(ByteBuffer.wrap(serialisation)));
+		return serialisation;
+	}
+	
+	@Override
+	public void serialise(BinaryWriter writer) {
 		if (this.getID() != null) { 
-			byte[] type = Count.type.toBytes();
-			byte[] id = BinaryConverter.toBytes(this.getID().getID());
-			byte[] countSize = BinaryConverter.toBytes(this.counts.size());
-			byte[][] binaryCounts = new byte[this.counts.size()][];
-			for (int i = 0; i < this.counts.size(); i++) {
-				final byte[] c =  BinaryConverter.toBytes(this.counts.get(i));
-				// store length for easier deserialisation
-				binaryCounts[i] = BinaryOperator.joinBytes(BinaryConverter.toBytes(c.length), c);
+			writer.writeByte(CountingSeries.type.getIdentifier());
+			writer.writeID(this.getID().getID());
+			writer.writeInt(this.counts.size());
+			// store lengths for easier deserialisation unless the resource is framed as a record
+			boolean prefixed = !writer.isFramed();
+			for (CachedReference c : this.counts) {
+				if (prefixed) {
+					writer.writeInt(writer.getReferenceLength(c));
+				}
+				writer.writeResourceReference(c);
 			}
-			byte[] flatBinaryCounts = BinaryOperator.joinBytes(binaryCounts);
-			return BinaryOperator.joinBytes(type, id, countSize, flatBinaryCounts);
 		} else {
 			throw new NullPointerException(String.format("%s cannot be serialised without a resource "
 					+ "ID.", this));
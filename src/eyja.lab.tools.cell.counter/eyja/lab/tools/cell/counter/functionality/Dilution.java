@@ -1,9 +1,15 @@
 package eyja.lab.tools.cell.counter.functionality;
 
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 
 import eyja.lab.tools.control.centre.binaryop.BinaryConverter;
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+import eyja.lab.tools.control.centre.binaryop.BinaryWriter;
+import eyja.lab.tools.control.centre.management.Origin;
 import eyja.lab.tools.control.centre.management.Resource;
+import eyja.lab.tools.control.centre.management.ResourceCodec;
+import eyja.lab.tools.control.centre.management.ResourceID;
 
 /**
  * The Dilution class represents a single sample dilution event.
@@ -17,6 +23,31 @@ public class Dilution extends Resource {
 	 * The resource type.
 	 */
 	public static final CellCountResourceType type = CellCountResourceType.DILUTION;
+	/**
+	 * The codec deserialising dilutions.
+	 */
+	public static final ResourceCodec CODEC = new ResourceCodec() {
+		
+		@Override
+		public long scan(BinaryReader reader) {
+			long id = reader.readID();
+			reader.skipLocalDateTime();
+			reader.skip(BinaryConverter.DOUBLE_BYTES * 2);
+			return id;
+		}
+		
+		@Override
+		public Resource decode(BinaryReader reader, Origin origin) {
+			ResourceID id = new ResourceID(origin, reader.readID());
+			LocalDateTime dilutionTime = reader.readLocalDateTime();
+			Dilution dilution = new Dilution(reader.readDouble(), reader.readDouble(), dilutionTime);
+			dilution.setID(id);
+			return dilution;
+		}
+		
+	};
+	private static final int SERIALISED_BYTES = CellCountResourceType.BYTES + BinaryConverter.LONG_BYTES
+			+ BinaryConverter.LOCAL_DATE_TIME_BYTES + BinaryConverter.DOUBLE_BYTES * 2;
 	private LocalDateTime timeOfDilution = null;
 	private double dilutionVolume = -1;
 	private double sampleVolume = -1;
@@ -78,7 +109,7 @@ public class Dilution extends Resource {
 	 */
 	public void setDilutionVolume(double dilutionVolume) {
 		if (dilutionVolume >= 0.0d) {
-			this.sampleVolume = dilutionVolume;
+			this.dilutionVolume = dilutionVolume;
 		} else {
 			throw new IllegalArgumentException(String.format("The dilution volume (%s) can not be "
 					+ "negative.", dilutionVolume));
@@ -119,21 +150,26 @@ public class Dilution extends Resource {
 		return this.timeOfDilution;
 	}
 	
+	@Override
+	public byte getTypeIdentifier() {
+		return Dilution.type.getIdentifier();
+	}
+	
 	@Override
 	public byte[] serialise() {
+		byte[] serialisation = new byte[Dilution.SERIALISED_BYTES];
+		this.serialise(new BinaryWriter(ByteBuffer.wrap(serialisation)));
+		return serialisation;
+	}
+	
+	@Override
+	public void serialise(BinaryWriter writer) {
 		if (this.getID() != null) {
-			byte[] type = BinaryConverter.toBytes(Dilution.type.ordinal());
-			byte[] id = BinaryConverter.toBytes(this.getID().getID());
-			byte[] ldt = BinaryConverter.toBytes(this.timeOfDilution);
-			byte[] sample = BinaryConverter.toBytes(this.sampleVolume);
-			byte[] dilution = BinaryConverter.toBytes(this.dilutionVolume);
-			byte[] serialisation = new byte[type.length + id.length + ldt.length + sample.length + dilution.length];
-			System.arraycopy(type, 0, serialisation, 0, type.length);
-			System.arraycopy(id, 0, serialisation, type.length, id.length);
-			System.arraycopy(ldt, 0, serialisation, type.length + id.length, ldt.length);
-			System.arraycopy(sample, 0, serialisation, type.length + id.length + ldt.length, sample.length);
-			System.arraycopy(dilution, 0, serialisation, type.length + id.length + ldt.length + sample.length, dilution.length);
-			return serialisation;
+			writer.writeByte(Dilution.type.getIdentifier());
+			writer.writeID(this.getID().getID());
+			writer.writeLocalDateTime(this.timeOfDilution);
+			writer.writeDouble(this.sampleVolume);
+			writer.writeDouble(this.dilutionVolume);
 		} else {
 			throw new NullPointerException(String.format("%s cannot be serialised without a resource "
 					+ "ID.", this));
@@ -298,6 +298,19 @@ public class BinaryConverterTesting implements TestSubject {
 				TestSubject.assertTestCondition(testRef.equals(convertedRef), 
 						String.format("The resource reference %s has been converted to %s and reconverted to %s.", 
 								testRef, binaryRep, convertedRef));
+			} { // test references converted after a reference to the same or a similar origin
+				String origin = TestRunnerWrapper.createRandomString();
+				ResourceReference[] testRefs = new ResourceReference[] {
+						new ResourceReference(origin, TestRunnerWrapper.RANDOM.nextLong()), 
+						new ResourceReference(origin, TestRunnerWrapper.RANDOM.nextLong()), 
+						new ResourceReference(origin + "x", TestRunnerWrapper.RANDOM.nextLong()), 
+						new ResourceReference(origin, TestRunnerWrapper.RANDOM.nextLong())};
+				for (ResourceReference testRef : testRefs) {
+					ResourceReference convertedRef = BinaryConverter.getResourceReference(BinaryConverter.toBytes(testRef));
+					TestSubject.assertTestCondition(testRef.equals(convertedRef) 
+							&& testRef.getOrigin().equals(convertedRef.getOrigin()), 
+							String.format("The resource reference %s has been reconverted to %s.", testRef, convertedRef));
+				}
 			} { // test invalid byte arrays
 				byte[] randomBytes = BinaryConverter.toBytes(TestRunnerWrapper.RANDOM.nextInt(3000000));
 				try {
@@ -0,0 +1,312 @@
+package eyja.lab.tools.control.centre.test.binaryop;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Objects;
+
+import eyja.lab.tools.control.centre.binaryop.BinaryConverter;
+import eyja.lab.tools.control.centre.binaryop.BinaryFormat;
+import eyja.lab.tools.control.centre.binaryop.BinaryOperator;
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+import eyja.lab.tools.control.centre.binaryop.BinaryWriter;
+import eyja.lab.tools.control.centre.binaryop.ReferenceDictionary;
+import eyja.lab.tools.control.centre.management.ResourceReference;
+import eyja.lab.tools.control.centre.test.TestRunnerWrapper;
+import koro.sensei.tester.TestFailureException;
+import koro.sensei.tester.TestSubject;
+
+/**
+ * The BinaryReaderTesting class test the BinaryReader class for correct functionality.
+ * 
+ * @author Planters
+ *
+ */
+public class BinaryReaderTesting implements TestSubject {
+	
+	@Override
+	public void runAllTests() throws TestFailureException {
+		BinaryReaderTesting.testConverterCompatibility();
+		BinaryReaderTesting.testUnderflow();
+		BinaryReaderTesting.testDictionary();
+		BinaryReaderTesting.testCompactFormat();
+	}
+	
+	/**
+	 * Test if the reader reads the binary representation created by the BinaryConverter class.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testConverterCompatibility() throws TestFailureException {
+		for (int i = 0; i < 10000; i++) {
+			boolean testBool = TestRunnerWrapper.RANDOM.nextBoolean();
+			int testInt = TestRunnerWrapper.RANDOM.nextInt();
+			long testLong = TestRunnerWrapper.RANDOM.nextLong();
+			double testDouble = TestRunnerWrapper.RANDOM.nextDouble() * 3000000d;
+			String testString = TestRunnerWrapper.RANDOM.nextDouble() < 0.05 ? null
+					: TestRunnerWrapper.createRandomString();
+			ResourceReference testRef = TestRunnerWrapper.RANDOM.nextDouble() < 0.05 ? null
+					: new ResourceReference(TestRunnerWrapper.createRandomString(), 
+							TestRunnerWrapper.RANDOM.nextLong());
+			LocalDateTime testLDT = null;
+			try {
+				testLDT = LocalDateTime.ofEpochSecond(TestRunnerWrapper.RANDOM.nextInt(), 
+						TestRunnerWrapper.RANDOM.nextInt(1000000000), ZoneOffset.UTC);
+			} catch (DateTimeException e) {
+				// ignore as this only happens if the maximum range of LocalDateTime is exceeded
+				testLDT = LocalDateTime.now();
+			}
+			byte[] binary = BinaryOperator.joinBytes(new byte[] {BinaryConverter.toBytes(testBool)}, 
+					BinaryConverter.toBytes(testInt), BinaryConverter.toBytes(testLong), 
+					BinaryConverter.toBytes(testDouble), BinaryConverter.toBytes(testString), 
+					BinaryConverter.toBytes(testLDT), BinaryConverter.toBytes(testRef));
+			// test heap and direct buffers
+			ByteBuffer buffer = null;
+			if (TestRunnerWrapper.RANDOM.nextBoolean()) {
+				buffer = ByteBuffer.wrap(binary);
+			} else {
+				buffer = ByteBuffer.allocateDirect(binary.length);
+				buffer.put(binary);
+				buffer.flip();
+			}
+			BinaryReader reader = new BinaryReader(buffer);
+			boolean readBool = reader.readBoolean();
+			int readInt = reader.readInt();
+			long readLong = reader.readLong();
+			double readDouble = reader.readDouble();
+			String readString = reader.readString();
+			LocalDateTime readLDT = reader.readLocalDateTime();
+			ResourceReference readRef = reader.readResourceReference();
+			TestSubject.assertTestCondition(testBool == readBool && testInt == readInt
+					&& testLong == readLong && testDouble == readDouble, 
+					String.format("The primitives %s, %s, %s, %s have been read as %s, %s, %s, %s.", 
+							testBool, testInt, testLong, testDouble, readBool, readInt, readLong, readDouble));
+			TestSubject.assertTestCondition(Objects.equals(testString, readString), 
+					String.format("The string %s has been read as %s.", testString, readString));
+			TestSubject.assertTestCondition(testLDT.equals(readLDT), 
+					String.format("The local date time %s has been read as %s.", testLDT, readLDT));
+			TestSubject.assertTestCondition(Objects.equals(testRef, readRef), 
+					String.format("The resource reference %s has been read as %s.", testRef, readRef));
+			TestSubject.assertTestCondition(!reader.hasRemaining(), 
+					String.format("The reader %s should not have any bytes remaining, but has %s.", 
+							reader, reader.remaining()));
+		}
+	}
+	
+	/**
+	 * Test reading beyond the available data.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testUnderflow() throws TestFailureException {
+		for (int i = 0; i < 10000; i++) {
+			{ // test too short strings
+				byte[] randomBytes = BinaryConverter.toBytes(TestRunnerWrapper.RANDOM.nextInt(3000000) + 1);
+				BinaryReader reader = new BinaryReader(randomBytes);
+				try {
+					String readString = reader.readString();
+					throw new TestFailureException(String.format("Reading %s as string should fail, but "
+							+ "was read as %s.", randomBytes, readString));
+				} catch (BufferUnderflowException e) {
+					// Do nothing as this is expected behaviour.
+				}
+			} { // test too short references
+				byte[] randomBytes = BinaryConverter.toBytes(TestRunnerWrapper.RANDOM.nextInt(3000000));
+				BinaryReader reader = new BinaryReader(randomBytes);
+				try {
+					ResourceReference readRef = reader.readResourceReference();
+					throw new TestFailureException(String.format("Reading %s as resource reference should "
+							+ "fail, but was read as %s.", randomBytes, readRef));
+				} catch (BufferUnderflowException e) {
+					// Do nothing as this is expected behaviour.
+				}
+			} { // test too short local date times
+				byte[] randomBytes = new byte[TestRunnerWrapper.RANDOM.nextInt(BinaryConverter.LOCAL_DATE_TIME_BYTES)];
+				BinaryReader reader = new BinaryReader(randomBytes);
+				try {
+					LocalDateTime readLDT = reader.readLocalDateTime();
+					throw new TestFailureException(String.format("Reading %s as local date time should "
+							+ "fail, but was read as %s.", randomBytes, readLDT));
+				} catch (BufferUnderflowException e) {
+					// Do nothing as this is expected behaviour.
+				}
+			}
+		} { // test null
+			try {
+				BinaryReader nullReader = new BinaryReader((ByteBuffer) null);
+				throw new TestFailureException(String.format("The creation of reader %s should fail.", 
+						nullReader));
+			} catch (NullPointerException e) {
+				// Do nothing as this is expected behaviour.
+			}
+		}
+	}
+	
+	/**
+	 * Test reading variable length integers and references written with a dictionary.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testDictionary() throws TestFailureException {
+		for (int i = 0; i < 10000; i++) {
+			String[] testOrigins = new String[TestRunnerWrapper.RANDOM.nextInt(5) + 1];
+			for (int j = 0; j < testOrigins.length; j++) {
+				testOrigins[j] = TestRunnerWrapper.createRandomString() + j;
+			}
+			ResourceReference[] testRefs = new ResourceReference[TestRunnerWrapper.RANDOM.nextInt(50)];
+			int[] testInts = new int[testRefs.length];
+			ReferenceDictionary writtenDictionary = new ReferenceDictionary();
+			BinaryWriter writer = new BinaryWriter();
+			writer.setDictionary(writtenDictionary);
+			for (int j = 0; j < testRefs.length; j++) {
+				testRefs[j] = TestRunnerWrapper.RANDOM.nextDouble() < 0.05 ? null 
+						: new ResourceReference(testOrigins[TestRunnerWrapper.RANDOM.nextInt(testOrigins.length)], 
+								TestRunnerWrapper.RANDOM.nextLong());
+				testInts[j] = TestRunnerWrapper.RANDOM.nextBoolean() ? TestRunnerWrapper.RANDOM.nextInt(300) 
+						: TestRunnerWrapper.RANDOM.nextInt();
+				int start = writer.position();
+				int expectedLength = writer.getReferenceLength(testRefs[j]);
+				writer.writeResourceReference(testRefs[j]);
+				TestSubject.assertTestCondition(writer.position() - start == expectedLength, 
+						String.format("The resource reference %s should take %s bytes, but took %s.", 
+								testRefs[j], expectedLength, writer.position() - start));
+				start = writer.position();
+				writer.writeVarInt(testInts[j]);
+				TestSubject.assertTestCondition(writer.position() - start == BinaryWriter.getVarIntLength(testInts[j]), 
+						String.format("The integer %s should take %s bytes, but took %s.", 
+								testInts[j], BinaryWriter.getVarIntLength(testInts[j]), writer.position() - start));
+			}
+			TestSubject.assertTestCondition(writtenDictionary.size() <= testOrigins.length, 
+					String.format("The dictionary %s should contain every origin only once.", writtenDictionary));
+			// the dictionary is transferred in its binary representation
+			BinaryWriter dictionaryWriter = new BinaryWriter();
+			writtenDictionary.write(dictionaryWriter);
+			ReferenceDictionary readDictionary = ReferenceDictionary.read(
+					new BinaryReader(dictionaryWriter.toByteArray()));
+			BinaryReader reader = new BinaryReader(ByteBuffer.wrap(writer.toByteArray()), readDictionary);
+			for (int j = 0; j < testRefs.length; j++) {
+				ResourceReference readRef = reader.readResourceReference();
+				int readInt = reader.readVarInt();
+				TestSubject.assertTestCondition(Objects.equals(testRefs[j], readRef), 
+						String.format("The resource reference %s has been read as %s.", testRefs[j], readRef));
+				TestSubject.assertTestCondition(testInts[j] == readInt, 
+						String.format("The integer %s has been read as %s.", testInts[j], readInt));
+			}
+			TestSubject.assertTestCondition(!reader.hasRemaining(), 
+					String.format("The reader %s should not have any bytes remaining, but has %s.", 
+							reader, reader.remaining()));
+			// indices not contained by the dictionary
+			BinaryWriter invalidWriter = new BinaryWriter();
+			invalidWriter.writeVarInt(readDictionary.size() + 1);
+			invalidWriter.writeLong(0);
+			try {
+				ResourceReference readRef = new BinaryReader(ByteBuffer.wrap(invalidWriter.toByteArray()), 
+						readDictionary).readResourceReference();
+				throw new TestFailureException(String.format("Reading an index beyond the dictionary %s "
+						+ "should fail, but was read as %s.", readDictionary, readRef));
+			} catch (IllegalArgumentException e) {
+				// Do nothing as this is expected behaviour.
+			}
+		}
+	}
+
+	
+	/**
+	 * Test reading resource IDs, local date times and variable length integers written in the 
+	 * compact format.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testCompactFormat() throws TestFailureException {
+		for (int i = 0; i < 10000; i++) {
+			long[] testIDs = new long[TestRunnerWrapper.RANDOM.nextInt(50)];
+			LocalDateTime[] testLDTs = new LocalDateTime[testIDs.length];
+			long[] testLongs = new long[testIDs.length];
+			// consecutive IDs starting at the first ID of an origin or random IDs
+			boolean consecutive = TestRunnerWrapper.RANDOM.nextBoolean();
+			BinaryWriter writer = new BinaryWriter();
+			writer.setFormat(BinaryFormat.COMPACT);
+			for (int j = 0; j < testIDs.length; j++) {
+				testIDs[j] = consecutive ? BinaryWriter.INITIAL_ID + j : TestRunnerWrapper.RANDOM.nextLong();
+				try {
+					testLDTs[j] = LocalDateTime.ofEpochSecond(TestRunnerWrapper.RANDOM.nextInt(), 
+							TestRunnerWrapper.RANDOM.nextInt(1000000000), ZoneOffset.UTC);
+				} catch (DateTimeException e) {
+					// ignore as this only happens if the maximum range of LocalDateTime is exceeded
+					testLDTs[j] = LocalDateTime.now();
+				}
+				testLongs[j] = TestRunnerWrapper.RANDOM.nextBoolean() ? TestRunnerWrapper.RANDOM.nextInt(300) - 150 
+						: TestRunnerWrapper.RANDOM.nextLong();
+				int start = writer.position();
+				writer.writeID(testIDs[j]);
+				TestSubject.assertTestCondition(!consecutive || writer.position() - start == 1, 
+						String.format("The consecutive ID %s should take a single byte, but took %s.", 
+								testIDs[j], writer.position() - start));
+				start = writer.position();
+				writer.writeLocalDateTime(testLDTs[j]);
+				TestSubject.assertTestCondition(writer.position() - start < BinaryConverter.LOCAL_DATE_TIME_BYTES, 
+						String.format("The local date time %s should take less than %s bytes, but took %s.", 
+								testLDTs[j], BinaryConverter.LOCAL_DATE_TIME_BYTES, writer.position() - start));
+				start = writer.position();
+				writer.writeVarLong(testLongs[j]);
+				TestSubject.assertTestCondition(writer.position() - start == BinaryWriter.getVarLongLength(testLongs[j]), 
+						String.format("The long %s should take %s bytes, but took %s.", testLongs[j], 
+								BinaryWriter.getVarLongLength(testLongs[j]), writer.position() - start));
+				writer.writeSignedVarLong(testLongs[j]);
+			}
+			BinaryReader reader = new BinaryReader(ByteBuffer.wrap(writer.toByteArray()), null, BinaryFormat.COMPACT);
+			for (int j = 0; j < testIDs.length; j++) {
+				long readID = reader.readID();
+				LocalDateTime readLDT = reader.readLocalDateTime();
+				long readLong = reader.readVarLong();
+				long readSignedLong = reader.readSignedVarLong();
+				TestSubject.assertTestCondition(testIDs[j] == readID, 
+						String.format("The ID %s has been read as %s.", testIDs[j], readID));
+				TestSubject.assertTestCondition(testLDTs[j].equals(readLDT), 
+						String.format("The local date time %s has been read as %s.", testLDTs[j], readLDT));
+				TestSubject.assertTestCondition(testLongs[j] == readLong && testLongs[j] == readSignedLong, 
+						String.format("The long %s has been read as %s and %s.", testLongs[j], readLong, 
+								readSignedLong));
+			}
+			TestSubject.assertTestCondition(!reader.hasRemaining(), 
+					String.format("The reader %s should not have any bytes remaining, but has %s.", 
+							reader, reader.remaining()));
+			// reading can start at any ID if the preceding one is known
+			if (testIDs.length > 1) {
+				BinaryWriter idWriter = new BinaryWriter();
+				idWriter.setFormat(BinaryFormat.COMPACT);
+				int[] starts = new int[testIDs.length];
+				for (int j = 0; j < testIDs.length; j++) {
+					starts[j] = idWriter.position();
+					idWriter.writeID(testIDs[j]);
+					idWriter.writeLocalDateTime(testLDTs[j]);
+				}
+				int start = TestRunnerWrapper.RANDOM.nextInt(testIDs.length - 1) + 1;
+				BinaryReader idReader = new BinaryReader(ByteBuffer.wrap(idWriter.toByteArray()), null, 
+						BinaryFormat.COMPACT);
+				idReader.setPosition(starts[start]);
+				idReader.setPreviousID(testIDs[start - 1]);
+				for (int j = start; j < testIDs.length; j++) {
+					long readID = idReader.readID();
+					idReader.skipLocalDateTime();
+					TestSubject.assertTestCondition(testIDs[j] == readID, 
+							String.format("The ID %s has been read as %s.", testIDs[j], readID));
+				}
+				TestSubject.assertTestCondition(!idReader.hasRemaining(), 
+						String.format("The reader %s should not have any bytes remaining, but has %s.", 
+								idReader, idReader.remaining()));
+			}
+		}
+		// the standard format writes IDs and local date times with fixed length
+		BinaryWriter standardWriter = new BinaryWriter();
+		standardWriter.writeID(Long.MAX_VALUE);
+		standardWriter.writeLocalDateTime(LocalDateTime.MIN);
+		TestSubject.assertTestCondition(standardWriter.position() == BinaryConverter.LONG_BYTES 
+				+ BinaryConverter.LOCAL_DATE_TIME_BYTES, String.format("The standard format should write "
+						+ "%s bytes, but wrote %s.", BinaryConverter.LONG_BYTES + BinaryConverter.LOCAL_DATE_TIME_BYTES, 
+						standardWriter.position()));
+	}
+
+}
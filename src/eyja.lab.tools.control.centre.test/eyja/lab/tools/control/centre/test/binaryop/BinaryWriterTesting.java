@@ -0,0 +1,225 @@
+package eyja.lab.tools.control.centre.test.binaryop;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import eyja.lab.tools.control.centre.binaryop.BinaryConverter;
+import eyja.lab.tools.control.centre.binaryop.BinaryOperator;
+import eyja.lab.tools.control.centre.binaryop.BinaryWriter;
+import eyja.lab.tools.control.centre.management.ResourceReference;
+import eyja.lab.tools.control.centre.test.TestRunnerWrapper;
+import koro.sensei.tester.TestFailureException;
+import koro.sensei.tester.TestSubject;
+
+/**
+ * The BinaryWriterTesting class test the BinaryWriter class for correct functionality.
+ * 
+ * @author Planters
+ *
+ */
+public class BinaryWriterTesting implements TestSubject {
+	
+	@Override
+	public void runAllTests() throws TestFailureException {
+		BinaryWriterTesting.testConverterCompatibility();
+		BinaryWriterTesting.testFixedBuffer();
+		BinaryWriterTesting.testLengthPrefix();
+		BinaryWriterTesting.testClear();
+		BinaryWriterTesting.testDrain();
+	}
+	
+	/**
+	 * Test if the writer yields the same binary representation as the BinaryConverter class.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testConverterCompatibility() throws TestFailureException {
+		for (int i = 0; i < 10000; i++) {
+			BinaryWriter writer = new BinaryWriter(TestRunnerWrapper.RANDOM.nextInt(64));
+			boolean testBool = TestRunnerWrapper.RANDOM.nextBoolean();
+			int testInt = TestRunnerWrapper.RANDOM.nextInt();
+			long testLong = TestRunnerWrapper.RANDOM.nextLong();
+			double testDouble = TestRunnerWrapper.RANDOM.nextDouble() * 3000000d;
+			String testString = TestRunnerWrapper.RANDOM.nextDouble() < 0.05 ? null
+					: TestRunnerWrapper.createRandomString();
+			ResourceReference testRef = TestRunnerWrapper.RANDOM.nextDouble() < 0.05 ? null
+					: new ResourceReference(TestRunnerWrapper.createRandomString(), 
+							TestRunnerWrapper.RANDOM.nextLong());
+			LocalDateTime testLDT = null;
+			try {
+				testLDT = LocalDateTime.ofEpochSecond(TestRunnerWrapper.RANDOM.nextInt(), 
+						TestRunnerWrapper.RANDOM.nextInt(1000000000), ZoneOffset.UTC);
+			} catch (DateTimeException e) {
+				// ignore as this only happens if the maximum range of LocalDateTime is exceeded
+				testLDT = LocalDateTime.now();
+			}
+			writer.writeBoolean(testBool);
+			writer.writeInt(testInt);
+			writer.writeLong(testLong);
+			writer.writeDouble(testDouble);
+			writer.writeString(testString);
+			writer.writeLocalDateTime(testLDT);
+			writer.writeResourceReference(testRef);
+			byte[] reference = BinaryOperator.joinBytes(new byte[] {BinaryConverter.toBytes(testBool)}, 
+					BinaryConverter.toBytes(testInt), BinaryConverter.toBytes(testLong), 
+					BinaryConverter.toBytes(testDouble), BinaryConverter.toBytes(testString), 
+					BinaryConverter.toBytes(testLDT), BinaryConverter.toBytes(testRef));
+			byte[] written = writer.toByteArray();
+			TestSubject.assertTestCondition(Arrays.equals(reference, written), 
+					String.format("The writer should have written %s, but wrote %s.", 
+							Arrays.toString(reference), Arrays.toString(written)));
+			TestSubject.assertTestCondition(writer.position() == reference.length, 
+					String.format("The writer should be at position %s, but is at %s.", 
+							reference.length, writer.position()));
+			if (testString != null) {
+				int encodedLength = BinaryWriter.getEncodedLength(testString);
+				int expectedLength = BinaryConverter.toBytes(testString).length - BinaryConverter.INTEGER_BYTES;
+				TestSubject.assertTestCondition(encodedLength == expectedLength, 
+						String.format("The encoded length of %s should be %s, but is %s.", 
+								testString, expectedLength, encodedLength));
+			}
+		} { // test unpaired surrogates
+			String surrogates = "a\uD800b\uDC00c\uD83D\uDE00";
+			BinaryWriter writer = new BinaryWriter();
+			writer.writeString(surrogates);
+			byte[] reference = BinaryConverter.toBytes(surrogates);
+			byte[] written = writer.toByteArray();
+			TestSubject.assertTestCondition(Arrays.equals(reference, written), 
+					String.format("The writer should have written %s, but wrote %s.", 
+							Arrays.toString(reference), Arrays.toString(written)));
+		}
+	}
+	
+	/**
+	 * Test writing into a caller supplied buffer.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testFixedBuffer() throws TestFailureException {
+		for (int i = 0; i < 10000; i++) {
+			int numLongs = TestRunnerWrapper.RANDOM.nextInt(30);
+			ByteBuffer fixedBuffer = ByteBuffer.allocate(numLongs * BinaryConverter.LONG_BYTES);
+			BinaryWriter writer = new BinaryWriter(fixedBuffer);
+			for (int j = 0; j < numLongs; j++) {
+				writer.writeLong(j);
+			}
+			TestSubject.assertTestCondition(writer.getBuffer() == fixedBuffer, 
+					String.format("The writer should write to buffer %s, but writes to %s.", 
+							fixedBuffer, writer.getBuffer()));
+			try {
+				writer.writeLong(numLongs);
+				throw new TestFailureException(String.format("Writing beyond the limit of %s should fail.", 
+						fixedBuffer));
+			} catch (BufferOverflowException e) {
+				// Do nothing as this is expected behaviour.
+			}
+		} { // test null
+			try {
+				BinaryWriter nullWriter = new BinaryWriter(null);
+				throw new TestFailureException(String.format("The creation of writer %s should fail.", 
+						nullWriter));
+			} catch (NullPointerException e) {
+				// Do nothing as this is expected behaviour.
+			}
+		}
+	}
+	
+	/**
+	 * Test overwriting already written ints.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testLengthPrefix() throws TestFailureException {
+		for (int i = 0; i < 10000; i++) {
+			BinaryWriter writer = new BinaryWriter(0);
+			writer.writeInt(0);
+			String testString = TestRunnerWrapper.createRandomString();
+			writer.writeString(testString);
+			writer.writeInt(0, writer.position() - BinaryConverter.INTEGER_BYTES);
+			byte[] binaryString = BinaryConverter.toBytes(testString);
+			byte[] reference = BinaryOperator.joinBytes(BinaryConverter.toBytes(binaryString.length), 
+					binaryString);
+			byte[] written = writer.toByteArray();
+			TestSubject.assertTestCondition(Arrays.equals(reference, written), 
+					String.format("The writer should have written %s, but wrote %s.", 
+							Arrays.toString(reference), Arrays.toString(written)));
+			try {
+				writer.writeInt(writer.position() - 1, 0);
+				throw new TestFailureException(String.format("Overwriting unwritten data of writer %s "
+						+ "should fail.", writer));
+			} catch (IndexOutOfBoundsException e) {
+				// Do nothing as this is expected behaviour.
+			}
+		}
+	}
+	
+	/**
+	 * Test reusing a writer.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testClear() throws TestFailureException {
+		BinaryWriter writer = new BinaryWriter();
+		for (int i = 0; i < 10000; i++) {
+			writer.clear();
+			long testLong = TestRunnerWrapper.RANDOM.nextLong();
+			writer.writeLong(testLong);
+			byte[] reference = BinaryConverter.toBytes(testLong);
+			byte[] written = writer.toByteArray();
+			TestSubject.assertTestCondition(Arrays.equals(reference, written), 
+					String.format("The writer should have written %s, but wrote %s.", 
+							Arrays.toString(reference), Arrays.toString(written)));
+		}
+	}
+	
+	/**
+	 * Test draining a writer to a channel.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testDrain() throws TestFailureException {
+		BinaryWriter writer = new BinaryWriter();
+		ByteArrayOutputStream drained = new ByteArrayOutputStream();
+		WritableByteChannel channel = Channels.newChannel(drained);
+		ByteArrayOutputStream reference = new ByteArrayOutputStream();
+		for (int i = 0; i < 10000; i++) {
+			ResourceReference testRef = TestRunnerWrapper.RANDOM.nextDouble() < 0.05 ? null
+					: new ResourceReference(TestRunnerWrapper.createRandomString(), 
+							TestRunnerWrapper.RANDOM.nextLong());
+			byte[] binaryRef = BinaryConverter.toBytes(testRef);
+			reference.write(binaryRef, 0, binaryRef.length);
+			writer.writeResourceReference(testRef);
+			TestSubject.assertTestCondition(BinaryWriter.getBinaryLength(testRef) == binaryRef.length, 
+					String.format("The binary length of %s should be %s, but is %s.", testRef, 
+							binaryRef.length, BinaryWriter.getBinaryLength(testRef)));
+			if (TestRunnerWrapper.RANDOM.nextDouble() < 0.1) {
+				try {
+					writer.drainTo(channel);
+				} catch (IOException e) {
+					e.printStackTrace();
+					throw new TestFailureException(e);
+				}
+				TestSubject.assertTestCondition(writer.position() == 0, 
+						String.format("The writer %s should be empty after draining, but has %s bytes.", 
+								writer, writer.position()));
+			}
+		}
+		try {
+			writer.drainTo(channel);
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new TestFailureException(e);
+		}
+		TestSubject.assertTestCondition(Arrays.equals(reference.toByteArray(), drained.toByteArray()), 
+				"The drained bytes differ from the written ones.");
+	}
+
+}
@@ -1,9 +1,17 @@
 package eyja.lab.tools.control.centre.test.management;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import eyja.lab.tools.control.centre.management.CachedReference;
 import eyja.lab.tools.control.centre.management.Origin;
 import eyja.lab.tools.control.centre.management.OriginHandler;
 import eyja.lab.tools.control.centre.management.ReferenceException;
+import eyja.lab.tools.control.centre.management.ReferenceStrength;
 import eyja.lab.tools.control.centre.management.Resource;
 import eyja.lab.tools.control.centre.management.ResourceID;
 import eyja.lab.tools.control.centre.management.ResourceReference;
@@ -26,6 +34,9 @@ public class CachedReferenceTesting implements TestSubject {
 		CachedReferenceTesting.testGetCachedResource();
 		CachedReferenceTesting.testGetResource();
 		CachedReferenceTesting.testgenerateCachedReference();
+		CachedReferenceTesting.testStale();
+		CachedReferenceTesting.testStrength();
+		CachedReferenceTesting.testConcurrency();
 	}
 	
 	/**
@@ -492,6 +503,237 @@ public class CachedReferenceTesting implements TestSubject {
 				null, null, nullRef));
 	}
 	
+	/**
+	 * Test detecting and refreshing stale cached resources.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testStale() throws TestFailureException {
+		for (int i = 0; i < 10000; i++) {
+			OriginHandler testHandler = new OriginHandler();
+			Origin testOrigin = CachedReferenceTesting.createRandomOrigin();
+			testHandler.requestAdd(testOrigin);
+			TestResource testResource = new TestResource();
+			testOrigin.requestAdd(testResource);
+			CachedReference testRef = testResource.getCachedReference();
+			TestSubject.assertTestCondition(testRef.getResource(testHandler) == testResource && !testRef.isStale(), 
+					String.format("The cached reference %s should have cached %s.", testRef, testResource));
+			// adding unrelated resources must not invalidate the cache
+			long generation = testOrigin.getGeneration();
+			testOrigin.requestAdd(new TestResource());
+			TestSubject.assertTestCondition(!testRef.isStale() && generation == testOrigin.getGeneration(), 
+					String.format("The cached reference %s should not be stale after adding a resource.", testRef));
+			Resource result;
+			switch (TestRunnerWrapper.RANDOM.nextInt(4)) {
+			case 0: // replace the resource
+				TestResource replacement = new TestResource(testResource.getID());
+				testOrigin.requestAdd(replacement);
+				result = replacement;
+				break;
+			case 1: // remove the resource
+				testOrigin.remove(testResource.getID());
+				result = null;
+				break;
+			case 2: // remove all resources
+				testOrigin.clear();
+				result = null;
+				break;
+			default: // replace the origin
+				Origin replacementOrigin = new Origin(testOrigin.getFile(), null);
+				testHandler.requestAdd(replacementOrigin);
+				TestResource replacementResource = new TestResource(new ResourceID(replacementOrigin, 
+						testResource.getID().getID()));
+				replacementOrigin.requestAdd(replacementResource);
+				result = replacementResource;
+				break;
+			}
+			TestSubject.assertTestCondition(testRef.isCached() && testRef.isStale(), 
+					String.format("The cached reference %s should be stale after modifying origin %s.", 
+							testRef, testOrigin));
+			TestSubject.assertTestCondition(testRef.getResource(testHandler) == result, 
+					String.format("The stale reference %s should have been refreshed to %s, but points to %s.", 
+							testRef, result, testRef.getCachedResource()));
+			// missing resources are looked up again
+			TestSubject.assertTestCondition(result != null || testRef.isStale(), 
+					String.format("The reference %s to a missing resource should be stale.", testRef));
+			testHandler.remove(testOrigin);
+			TestSubject.assertTestCondition(testRef.isStale(), 
+					String.format("The cached reference %s should be stale after removing its origin.", testRef));
+			try {
+				testRef.getResource(testHandler);
+				throw new TestFailureException(String.format("Refreshing the reference %s should fail as "
+						+ "the handler %s does not handle its origin anymore.", testRef, testHandler));
+			} catch (IllegalArgumentException e) {
+				// Do nothing as this is expected behaviour.
+			}
+		}
+	}
+	
+	/**
+	 * Test holding cached resources with different strengths.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testStrength() throws TestFailureException {
+		ReferenceStrength[] strengths = ReferenceStrength.values();
+		for (int i = 0; i < 10000; i++) {
+			ReferenceStrength defaultStrength = strengths[TestRunnerWrapper.RANDOM.nextInt(strengths.length)];
+			CachedReference.setDefaultStrength(defaultStrength);
+			OriginHandler testHandler = new OriginHandler();
+			Origin testOrigin = CachedReferenceTesting.createRandomOrigin();
+			testHandler.requestAdd(testOrigin);
+			TestResource testResource = new TestResource();
+			testOrigin.requestAdd(testResource);
+			CachedReference testRef = testResource.getCachedReference();
+			TestSubject.assertTestCondition(testRef.getStrength() == defaultStrength, 
+					String.format("The cached reference %s should use the default strength %s instead of %s.", 
+							testRef, defaultStrength, testRef.getStrength()));
+			// strongly reachable resources are kept regardless of the strength
+			TestSubject.assertTestCondition(testRef.getResource(testHandler) == testResource 
+					&& testRef.isCached() && !testRef.isStale(), 
+					String.format("The cached reference %s should have cached %s.", testRef, testResource));
+			ReferenceStrength strength = strengths[TestRunnerWrapper.RANDOM.nextInt(strengths.length)];
+			testRef.setStrength(strength);
+			TestSubject.assertTestCondition(testRef.getStrength() == strength 
+					&& testRef.getCachedResource() == testResource && !testRef.isStale(), 
+					String.format("The cached reference %s should keep %s after changing its strength to %s.", 
+							testRef, testResource, strength));
+		}
+		CachedReference.setDefaultStrength(ReferenceStrength.STRONG);
+		{ // test reclaiming weakly cached resources of unloaded origins
+			OriginHandler testHandler = new OriginHandler();
+			Origin weakOrigin = CachedReferenceTesting.createRandomOrigin();
+			Origin strongOrigin = CachedReferenceTesting.createRandomOrigin();
+			File weakFile = weakOrigin.getFile();
+			testHandler.requestAdd(weakOrigin);
+			testHandler.requestAdd(strongOrigin);
+			CachedReference weakRef = new CachedReference(new ResourceID(weakOrigin, 0));
+			weakRef.setStrength(ReferenceStrength.WEAK);
+			CachedReference strongRef = new CachedReference(new ResourceID(strongOrigin, 0));
+			weakOrigin.requestAdd(new TestResource(new ResourceID(weakOrigin, 0)));
+			strongOrigin.requestAdd(new TestResource(new ResourceID(strongOrigin, 0)));
+			weakRef.cache(testHandler);
+			strongRef.cache(testHandler);
+			testHandler.remove(weakOrigin);
+			testHandler.remove(strongOrigin);
+			weakOrigin = null;
+			strongOrigin = null;
+			for (int i = 0; i < 100 && weakRef.isCached(); i++) {
+				System.gc();
+			}
+			TestSubject.assertTestCondition(!weakRef.isCached() && weakRef.getCachedResource() == null 
+					&& weakRef.isStale(), 
+					String.format("The weakly cached reference %s should have been reclaimed.", weakRef));
+			TestSubject.assertTestCondition(strongRef.isCached() && strongRef.getCachedResource() != null, 
+					String.format("The strongly cached reference %s should not have been reclaimed.", strongRef));
+			// reclaimed resources are dereferenced transparently
+			Origin reloadedOrigin = new Origin(weakFile, null);
+			TestResource reloadedResource = new TestResource(new ResourceID(reloadedOrigin, 0));
+			reloadedOrigin.requestAdd(reloadedResource);
+			testHandler.requestAdd(reloadedOrigin);
+			TestSubject.assertTestCondition(weakRef.getResource(testHandler) == reloadedResource, 
+					String.format("The reclaimed reference %s should have been dereferenced to %s.", 
+							weakRef, reloadedResource));
+		}
+		try {
+			CachedReference.setDefaultStrength(null);
+			throw new TestFailureException("Setting a null default strength should fail.");
+		} catch (NullPointerException e) {
+			// Do nothing as this is expected behaviour.
+		}
+		try {
+			CachedReference nullRef = CachedReferenceTesting.createRandomReference();
+			nullRef.setStrength(null);
+			throw new TestFailureException(String.format("Setting a null strength for %s should fail.", nullRef));
+		} catch (NullPointerException e) {
+			// Do nothing as this is expected behaviour.
+		}
+	}
+	
+	/**
+	 * Test sharing cached references between threads while the referenced resources are replaced.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testConcurrency() throws TestFailureException {
+		for (int i = 0; i < 20; i++) {
+			OriginHandler testHandler = new OriginHandler();
+			Origin testOrigin = new Origin(OriginTesting.createRandomOrigin().getFile(), null, null, true);
+			testHandler.requestAdd(testOrigin);
+			int numResources = TestRunnerWrapper.RANDOM.nextInt(100) + 1;
+			CachedReference[] testRefs = new CachedReference[numResources];
+			for (int j = 0; j < numResources; j++) {
+				testOrigin.requestAdd(new TestResource(new ResourceID(testOrigin, j)));
+				testRefs[j] = new CachedReference(new ResourceID(testOrigin, j));
+			}
+			int numThreads = TestRunnerWrapper.RANDOM.nextInt(7) + 2;
+			ExecutorService executor = Executors.newFixedThreadPool(numThreads + 1);
+			try {
+				{ // test threads racing on uncached references
+					ArrayList<Future<Resource[]>> readers = new ArrayList<Future<Resource[]>>();
+					for (int j = 0; j < numThreads; j++) {
+						readers.add(executor.submit(() -> {
+							Resource[] resolved = new Resource[numResources];
+							for (int k = 0; k < numResources; k++) {
+								resolved[k] = testRefs[k].getResource(testHandler);
+							}
+							return resolved;
+						}));
+					}
+					for (Future<Resource[]> reader : readers) {
+						Resource[] resolved = reader.get();
+						for (int j = 0; j < numResources; j++) {
+							TestSubject.assertTestCondition(resolved[j] == testOrigin.retrieve(j) 
+									&& testRefs[j].getCachedResource() == resolved[j], 
+									String.format("The cached reference %s should resolve to %s instead of %s.", 
+											testRefs[j], testOrigin.retrieve(j), resolved[j]));
+						}
+					}
+				}
+				{ // test threads accessing references while the resources are replaced
+					Future<?> modifications = executor.submit(() -> {
+						for (int j = 0; j < 2000; j++) {
+							testOrigin.requestAdd(new TestResource(new ResourceID(testOrigin, j % numResources)));
+						}
+					});
+					ArrayList<Future<Boolean>> readers = new ArrayList<Future<Boolean>>();
+					for (int j = 0; j < numThreads; j++) {
+						readers.add(executor.submit(() -> {
+							for (int k = 0; k < 20000; k++) {
+								CachedReference testRef = testRefs[k % numResources];
+								if (k % 7 == 0) {
+									testRef.cache(testHandler);
+								}
+								Resource resolved = testRef.getResource(testHandler);
+								if (resolved == null || resolved.getID().getID() != testRef.getID()) {
+									return false;
+								}
+							}
+							return true;
+						}));
+					}
+					modifications.get();
+					for (Future<Boolean> reader : readers) {
+						TestSubject.assertTestCondition(reader.get(), 
+								String.format("The cached references of origin %s should resolve to "
+										+ "their resources while the resources are replaced.", testOrigin));
+					}
+					for (CachedReference testRef : testRefs) {
+						TestSubject.assertTestCondition(testRef.getResource(testHandler) 
+								== testOrigin.retrieve(testRef.getID()) && !testRef.isStale(), 
+								String.format("The cached reference %s should resolve to the latest resource %s.", 
+										testRef, testOrigin.retrieve(testRef.getID())));
+					}
+				}
+			} catch (InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+	
 	/**
 	 * Create a random resource reference.
 	 * 
@@ -0,0 +1,262 @@
+package eyja.lab.tools.control.centre.test.management;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+import eyja.lab.tools.control.centre.binaryop.BinaryWriter;
+import eyja.lab.tools.control.centre.management.CodecRegistry;
+import eyja.lab.tools.control.centre.management.Origin;
+import eyja.lab.tools.control.centre.management.Resource;
+import eyja.lab.tools.control.centre.management.ResourceCodec;
+import eyja.lab.tools.control.centre.management.ResourceID;
+import eyja.lab.tools.control.centre.test.TestRunnerWrapper;
+import koro.sensei.tester.TestFailureException;
+import koro.sensei.tester.TestSubject;
+
+/**
+ * The CodecRegistryTesting class test the CodecRegistry class for correct functionality.
+ * 
+ * @author Planters
+ *
+ */
+public class CodecRegistryTesting implements TestSubject {
+	
+	private static final String TEST_FOLDER = "LabToolsTestRunnerCodecRegistry/";
+	private static final byte[] TYPES = {0, 7, (byte) 200};
+	
+	@Override
+	public void runAllTests() throws TestFailureException {
+		CodecRegistryTesting.testRegister();
+		CodecRegistryTesting.testDispatch();
+		CodecRegistryTesting.testDeserialise();
+		CodecRegistryTesting.testOriginFiles();
+	}
+	
+	/**
+	 * Test registering codecs.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testRegister() throws TestFailureException {
+		int codecID = TestRunnerWrapper.RANDOM.nextInt();
+		CodecRegistry registry = new CodecRegistry(codecID);
+		TestSubject.assertTestCondition(registry.getCodecID() == codecID, 
+				String.format("The codec ID %s should be %s.", registry.getCodecID(), codecID));
+		for (int type = Byte.MIN_VALUE; type <= Byte.MAX_VALUE; type++) {
+			TestSubject.assertTestCondition(registry.getCodec((byte) type) == null, 
+					String.format("The resource type %s should not have a codec.", type));
+		}
+		for (byte type : CodecRegistryTesting.TYPES) {
+			ResourceCodec codec = TypedTestResource.createCodec(type);
+			TestSubject.assertTestCondition(registry.register(type, codec) == null, 
+					String.format("The resource type %s should not have had a codec.", type));
+			TestSubject.assertTestCondition(registry.getCodec(type) == codec, 
+					String.format("The codec of resource type %s should be %s.", type, codec));
+			ResourceCodec replacement = TypedTestResource.createCodec(type);
+			TestSubject.assertTestCondition(registry.register(type, replacement) == codec, 
+					String.format("The replaced codec of resource type %s should be %s.", type, codec));
+			TestSubject.assertTestCondition(registry.getCodec(type) == replacement, 
+					String.format("The codec of resource type %s should be %s.", type, replacement));
+		}
+		TestSubject.assertTestCondition(registry.getCodec((byte) 1) == null, 
+				"The resource type 1 should not have a codec.");
+		try {
+			registry.register((byte) 1, null);
+			throw new TestFailureException("Null should not be registered as codec.");
+		} catch (NullPointerException e) {
+			// Do nothing as this is expected behaviour.
+		}
+	}
+	
+	/**
+	 * Test scanning and decoding resources by their type identifier.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testDispatch() throws TestFailureException {
+		CodecRegistry registry = CodecRegistryTesting.createRegistry(0);
+		for (int i = 0; i < 1000; i++) {
+			TypedTestResource[] resources = new TypedTestResource[TestRunnerWrapper.RANDOM.nextInt(50) + 1];
+			BinaryWriter writer = new BinaryWriter();
+			for (int j = 0; j < resources.length; j++) {
+				resources[j] = new TypedTestResource(CodecRegistryTesting.TYPES[TestRunnerWrapper.RANDOM.nextInt(
+						CodecRegistryTesting.TYPES.length)], new ResourceID(null, TestRunnerWrapper.RANDOM.nextLong()));
+				resources[j].serialise(writer);
+			}
+			byte[] data = writer.toByteArray();
+			BinaryReader scanReader = new BinaryReader(data);
+			BinaryReader decodeReader = new BinaryReader(data);
+			for (TypedTestResource expected : resources) {
+				long id = registry.scan(scanReader);
+				TestSubject.assertTestCondition(id == expected.getID().getID(), 
+						String.format("The scanned ID %s should be %s.", id, expected.getID().getID()));
+				Resource decoded = registry.decode(decodeReader, null);
+				TestSubject.assertTestCondition(expected.equals(decoded), 
+						String.format("The resource %s has been decoded as %s.", expected, decoded));
+				TestSubject.assertTestCondition(scanReader.position() == decodeReader.position(), 
+						String.format("Scanning ended at %s, but decoding at %s.", scanReader.position(), 
+								decodeReader.position()));
+			}
+			TestSubject.assertTestCondition(!scanReader.hasRemaining(), 
+					String.format("%s bytes should not have been scanned.", data.length - scanReader.position()));
+		}
+		// types without codec
+		BinaryWriter writer = new BinaryWriter();
+		new TypedTestResource((byte) 1, new ResourceID(null, TestRunnerWrapper.RANDOM.nextLong())).serialise(writer);
+		try {
+			registry.scan(new BinaryReader(writer.toByteArray()));
+			throw new TestFailureException("A resource without registered codec should not be scanned.");
+		} catch (IllegalArgumentException e) {
+			// Do nothing as this is expected behaviour.
+		}
+		try {
+			registry.decode(new BinaryReader(writer.toByteArray()), null);
+			throw new TestFailureException("A resource without registered codec should not be decoded.");
+		} catch (IllegalArgumentException e) {
+			// Do nothing as this is expected behaviour.
+		}
+	}
+	
+	/**
+	 * Test deserialising streamed origin data.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testDeserialise() throws TestFailureException {
+		CodecRegistry registry = CodecRegistryTesting.createRegistry(0);
+		for (int i = 0; i < 100; i++) {
+			Origin origin = new Origin(CodecRegistryTesting.createRandomFile(), registry);
+			HashSet<Resource> expected = new HashSet<Resource>();
+			BinaryWriter writer = new BinaryWriter();
+			// some origins do not fit into the window streamed data is decoded through
+			int randomNumResource = i % 10 == 0 ? TestRunnerWrapper.RANDOM.nextInt(20000) + 10000 
+					: TestRunnerWrapper.RANDOM.nextInt(100);
+			for (int j = 0; j < randomNumResource; j++) {
+				TypedTestResource resource = new TypedTestResource(CodecRegistryTesting.TYPES[
+						TestRunnerWrapper.RANDOM.nextInt(CodecRegistryTesting.TYPES.length)]);
+				origin.requestAdd(resource);
+				resource.serialise(writer);
+				expected.add(resource);
+			}
+			byte[] data = writer.toByteArray();
+			try {
+				Origin readOrigin = new Origin(origin.getFile(), registry);
+				registry.deserialise(new ByteArrayInputStream(data), readOrigin);
+				TestSubject.assertTestCondition(expected.equals(new HashSet<Resource>(
+						Arrays.asList(readOrigin.getResources()))), 
+						String.format("Origin %s should contain the resources of origin %s.", readOrigin, origin));
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			}
+			if (data.length > 0) {
+				try {
+					registry.deserialise(new ByteArrayInputStream(Arrays.copyOf(data, data.length - 1)), 
+							new Origin(origin.getFile(), registry));
+					throw new TestFailureException("Incomplete data should not be deserialised.");
+				} catch (IOException e) {
+					// Do nothing as this is expected behaviour.
+				}
+			}
+		}
+		try {
+			registry.deserialise(null, new Origin(CodecRegistryTesting.createRandomFile(), registry));
+			throw new TestFailureException("Null should not be deserialised.");
+		} catch (NullPointerException e) {
+			// Do nothing as this is expected behaviour.
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new TestFailureException(e);
+		}
+	}
+	
+	/**
+	 * Test writing and reading origin files with codec registries.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testOriginFiles() throws TestFailureException {
+		int codecID = TestRunnerWrapper.RANDOM.nextInt(Integer.MAX_VALUE) + 1;
+		CodecRegistry registry = CodecRegistryTesting.createRegistry(codecID);
+		for (int i = 0; i < 50; i++) {
+			Origin origin = new Origin(CodecRegistryTesting.createRandomFile(), registry);
+			int randomNumResource = TestRunnerWrapper.RANDOM.nextInt(100) + 1;
+			for (int j = 0; j < randomNumResource; j++) {
+				origin.requestAdd(new TypedTestResource(CodecRegistryTesting.TYPES[
+						TestRunnerWrapper.RANDOM.nextInt(CodecRegistryTesting.TYPES.length)]));
+			}
+			HashSet<Resource> expected = new HashSet<Resource>(Arrays.asList(origin.getResources()));
+			File index = new File(origin.getFile().getPath() + Origin.INDEX_EXTENSION);
+			try {
+				origin.write();
+				Origin readOrigin = new Origin(origin.getFile(), registry);
+				readOrigin.read();
+				TestSubject.assertTestCondition(expected.equals(new HashSet<Resource>(
+						Arrays.asList(readOrigin.getResources()))), 
+						String.format("Origin %s should equal the origin %s", readOrigin, origin));
+				index.delete();
+				Origin mappedOrigin = new Origin(origin.getFile(), registry);
+				mappedOrigin.map();
+				TestSubject.assertTestCondition(expected.equals(new HashSet<Resource>(
+						Arrays.asList(mappedOrigin.getResources()))), 
+						String.format("Mapped origin %s should equal the origin %s", mappedOrigin, origin));
+				// registries without codec ID accept the file
+				Origin unboundOrigin = new Origin(origin.getFile(), CodecRegistryTesting.createRegistry(0));
+				unboundOrigin.read();
+				TestSubject.assertTestCondition(expected.equals(new HashSet<Resource>(
+						Arrays.asList(unboundOrigin.getResources()))), 
+						String.format("Origin %s should equal the origin %s", unboundOrigin, origin));
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			}
+			// files written for another codec are rejected
+			CodecRegistry otherRegistry = CodecRegistryTesting.createRegistry(codecID - 1 == 0 ? codecID + 1 : codecID - 1);
+			try {
+				new Origin(origin.getFile(), otherRegistry).read();
+				throw new TestFailureException(String.format("Origin file %s should not be read with codec %s.", 
+						origin.getFile(), otherRegistry.getCodecID()));
+			} catch (IOException e) {
+				// Do nothing as this is expected behaviour.
+			}
+			try {
+				new Origin(origin.getFile(), otherRegistry).map();
+				throw new TestFailureException(String.format("Origin file %s should not be mapped with codec %s.", 
+						origin.getFile(), otherRegistry.getCodecID()));
+			} catch (IOException e) {
+				// Do nothing as this is expected behaviour.
+			}
+			origin.getFile().delete();
+			index.delete();
+		}
+		new File(CodecRegistryTesting.TEST_FOLDER).delete();
+	}
+	
+	/**
+	 * Create a registry containing a codec for each test type.
+	 * 
+	 * @param codecID - the codec ID of the registry
+	 * @return the registry
+	 */
+	private static CodecRegistry createRegistry(int codecID) {
+		CodecRegistry registry = new CodecRegistry(codecID);
+		for (byte type : CodecRegistryTesting.TYPES) {
+			registry.register(type, TypedTestResource.createCodec(type));
+		}
+		return registry;
+	}
+	
+	/**
+	 * Create a random file.
+	 * 
+	 * @return a random file
+	 */
+	private static File createRandomFile() {
+		return new File(CodecRegistryTesting.TEST_FOLDER + TestRunnerWrapper.RANDOM.nextInt());
+	}
+
+}
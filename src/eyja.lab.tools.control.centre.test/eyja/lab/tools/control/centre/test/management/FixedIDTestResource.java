@@ -0,0 +1,104 @@
+package eyja.lab.tools.control.centre.test.management;
+
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+import eyja.lab.tools.control.centre.binaryop.BinaryWriter;
+import eyja.lab.tools.control.centre.management.Origin;
+import eyja.lab.tools.control.centre.management.Resource;
+import eyja.lab.tools.control.centre.management.ResourceCodec;
+import eyja.lab.tools.control.centre.management.ResourceID;
+
+/**
+ * The FixedIDTestResource class is a simple implementation of a resource consisting of a type 
+ * identifier and a resource ID for testing purposes. In contrast to the TypedTestResource class 
+ * the ID is always written as long, so the resource does not take part in compact ID encoding.
+ * 
+ * @author Planters
+ * 
+ */
+public final class FixedIDTestResource extends Resource {
+	
+	private final byte type;
+	
+	/**
+	 * Create a test resource of the specified type.
+	 * 
+	 * @param type - the type identifier of the resource
+	 * @param id - the resource's ID
+	 */
+	public FixedIDTestResource(byte type, @SuppressWarnings("exports") ResourceID id) {
+		this.type = type;
+		this.setID(id);
+	}
+	
+	/**
+	 * Create a test resource of the specified type.
+	 * 
+	 * @param type - the type identifier of the resource
+	 */
+	public FixedIDTestResource(byte type) {
+		this.type = type;
+	}
+	
+	/**
+	 * Create a codec deserialising fixed ID test resources of the specified type.
+	 * 
+	 * @param type - the type identifier the codec is registered for
+	 * @return the codec of the type
+	 */
+	@SuppressWarnings("exports")
+	public static ResourceCodec createCodec(byte type) {
+		return new ResourceCodec() {
+			
+			@Override
+			public long scan(BinaryReader reader) {
+				return reader.readLong();
+			}
+			
+			@Override
+			public Resource decode(BinaryReader reader, Origin origin) {
+				return new FixedIDTestResource(type, new ResourceID(origin, reader.readLong()));
+			}
+		
+		};
+	}
+	
+	@Override
+	public byte getTypeIdentifier() {
+		return this.type;
+	}
+	
+	@Override
+	public byte[] serialise() {
+		BinaryWriter writer = new BinaryWriter();
+		this.serialise(writer);
+		return writer.toByteArray();
+	}
+	
+	@Override
+	public void serialise(@SuppressWarnings("exports") BinaryWriter writer) {
+		writer.writeByte(this.type);
+		writer.writeLong(this.getID().getID());
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * ((this.id == null) ? 0 : Long.hashCode(this.id.getID())) + this.type;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		// ignore origin as this leads to a circular equals relation and a resulting infinity loop
+		if (obj instanceof FixedIDTestResource) {
+			FixedIDTestResource comp = (FixedIDTestResource) obj;
+			if (this.type == comp.type) {
+				if (this.id == null && comp.id == null) {
+					return true;
+				} else if (this.id != null && comp.id != null) {
+					return this.id.getID() == comp.id.getID();
+				}
+			}
+		}
+		return false;
+	}
+
+}
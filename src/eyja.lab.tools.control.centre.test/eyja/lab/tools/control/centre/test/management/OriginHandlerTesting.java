@@ -1,10 +1,21 @@
 package eyja.lab.tools.control.centre.test.management;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import eyja.lab.tools.control.centre.management.CachedReference;
+import eyja.lab.tools.control.centre.management.CodecRegistry;
 import eyja.lab.tools.control.centre.management.Origin;
+import eyja.lab.tools.control.centre.management.OriginDeserialiser;
 import eyja.lab.tools.control.centre.management.OriginHandler;
 import eyja.lab.tools.control.centre.management.ReferenceException;
 import eyja.lab.tools.control.centre.management.Resource;
@@ -20,6 +31,9 @@ import koro.sensei.tester.TestSubject;
  *
  */
 public class OriginHandlerTesting implements TestSubject {
+	
+	private static final String TEST_FOLDER = "LabToolsTestRunnerOriginHandler/";
+	private static final byte TEST_TYPE = 7;
 
 	private static final Comparator<Origin> ORIGIN_COMPARATOR= new Comparator<Origin>() {
 
@@ -38,6 +52,10 @@ public class OriginHandlerTesting implements TestSubject {
 		OriginHandlerTesting.testRemove();
 		OriginHandlerTesting.testDereference();
 		OriginHandlerTesting.testCheckedDereference();
+		OriginHandlerTesting.testGetOrigin();
+		OriginHandlerTesting.testBulkDereference();
+		OriginHandlerTesting.testConcurrentDereference();
+		OriginHandlerTesting.testLazyAdd();
 	}
 	
 	/**
@@ -76,7 +94,7 @@ public class OriginHandlerTesting implements TestSubject {
 			// Sort arrays so they are comparable.
 			Arrays.sort(randomOrigins, OriginHandlerTesting.ORIGIN_COMPARATOR);
 			Origin[] retrievedOrigins = testHandler.getOrigins();
-			Arrays.sort(randomOrigins, OriginHandlerTesting.ORIGIN_COMPARATOR);
+			Arrays.sort(retrievedOrigins, OriginHandlerTesting.ORIGIN_COMPARATOR);
 			TestSubject.assertTestCondition(Arrays.equals(retrievedOrigins, randomOrigins), 
 					String.format("The origin handler %s should contain the origins %s, but contains %s.", 
 							testHandler, Arrays.toString(randomOrigins), 
@@ -333,5 +351,254 @@ public class OriginHandlerTesting implements TestSubject {
 			}
 		}
 	}
+	
+	/**
+	 * Test getting origins by their file paths.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testGetOrigin() throws TestFailureException {
+		for (int i = 0; i < 10000; i++) {
+			OriginHandler pathHandler = new OriginHandler();
+			Origin pathOrigin = OriginTesting.createRandomOrigin();
+			String path = new String(pathOrigin.getFile().getPath()); // an equal but not identical path
+			TestSubject.assertTestCondition(pathHandler.getOrigin(path) == null, 
+					String.format("The origin handler %s should not contain an origin for %s.", pathHandler, path));
+			pathHandler.requestAdd(pathOrigin);
+			TestSubject.assertTestCondition(pathHandler.getOrigin(path) == pathOrigin, 
+					String.format("The origin handler %s should contain the origin %s.", pathHandler, pathOrigin));
+			pathHandler.remove(pathOrigin);
+			TestSubject.assertTestCondition(pathHandler.getOrigin(path) == null, 
+					String.format("The origin handler %s should not contain an origin for %s.", pathHandler, path));
+		}
+	}
+	
+	/**
+	 * Test dereferencing many resource references of multiple origins at once.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testBulkDereference() throws TestFailureException {
+		for (int i = 0; i < 1000; i++) {
+			OriginHandler bulkHandler = new OriginHandler();
+			Origin[] bulkOrigins = new Origin[TestRunnerWrapper.RANDOM.nextInt(5) + 1];
+			for (int j = 0; j < bulkOrigins.length; j++) {
+				bulkOrigins[j] = OriginTesting.createRandomOrigin();
+				bulkHandler.requestAdd(bulkOrigins[j]);
+				for (int k = TestRunnerWrapper.RANDOM.nextInt(50); k >= 0; k--) {
+					bulkOrigins[j].requestAdd(new TestResource());
+				}
+			}
+			// references to existing, removed and repeated resources in random order
+			int numReferences = TestRunnerWrapper.RANDOM.nextInt(200);
+			ArrayList<CachedReference> references = new ArrayList<CachedReference>(numReferences);
+			Resource[] expected = new Resource[numReferences];
+			for (int j = 0; j < numReferences; j++) {
+				Origin refOrigin = bulkOrigins[TestRunnerWrapper.RANDOM.nextInt(bulkOrigins.length)];
+				Resource[] allResources = refOrigin.getResources();
+				Resource refResource = allResources[TestRunnerWrapper.RANDOM.nextInt(allResources.length)];
+				references.add(refResource.getCachedReference());
+				if (allResources.length > 1 && TestRunnerWrapper.RANDOM.nextDouble() < 0.1) {
+					refOrigin.remove(refResource.getID());
+				}
+			}
+			for (int j = 0; j < numReferences; j++) {
+				expected[j] = bulkHandler.dereference(references.get(j));
+			}
+			Resource[] dereferenced = bulkHandler.dereferenceAll(references);
+			TestSubject.assertTestCondition(Arrays.equals(expected, dereferenced), 
+					String.format("The origin handler %s should dereference the resource references %s to %s, "
+							+ "but dereferenced them to %s.", bulkHandler, references, Arrays.toString(expected), 
+							Arrays.toString(dereferenced)));
+			try {
+				TestResource[] typed = bulkHandler.dereferenceAll(references, TestResource.class);
+				TestSubject.assertTestCondition(Arrays.equals(expected, typed), 
+						String.format("The origin handler %s should dereference the resource references %s to %s, "
+								+ "but dereferenced them to %s.", bulkHandler, references, Arrays.toString(expected), 
+								Arrays.toString(typed)));
+				if (numReferences > 0 && Arrays.stream(expected).anyMatch(r -> r != null)) {
+					bulkHandler.dereferenceAll(references, DifferentTestResource.class);
+					throw new TestFailureException(String.format("The origin handler %s should fail "
+							+ "dereferencing %s to type %s.", bulkHandler, references, DifferentTestResource.class));
+				}
+			} catch (ReferenceException e) {
+				// Do nothing as this is expected behaviour.
+			}
+			bulkHandler.cacheAll(references);
+			for (int j = 0; j < numReferences; j++) {
+				TestSubject.assertTestCondition(references.get(j).isCached() 
+						&& references.get(j).getCachedResource() == expected[j], 
+						String.format("The reference %s should have cached %s.", references.get(j), expected[j]));
+			}
+		}
+		{ // test unmanaged origins and null
+			OriginHandler unmanagedHandler = new OriginHandler();
+			Origin unmanagedOrigin = OriginTesting.createRandomOrigin();
+			Resource unmanagedResource = new TestResource();
+			unmanagedOrigin.requestAdd(unmanagedResource);
+			try {
+				unmanagedHandler.dereferenceAll(Arrays.asList(unmanagedResource.getReference()));
+				throw new TestFailureException(String.format("The origin handler %s should fail "
+						+ "dereferencing a reference of the unmanaged origin %s.", unmanagedHandler, unmanagedOrigin));
+			} catch (IllegalArgumentException e) {
+				// Do nothing as this is expected behaviour.
+			}
+			try {
+				unmanagedHandler.dereferenceAll(new ResourceReference[] {null});
+				throw new TestFailureException(String.format("The origin handler %s should fail "
+						+ "dereferencing %s.", unmanagedHandler, null));
+			} catch (NullPointerException e) {
+				// Do nothing as this is expected behaviour.
+			}
+		}
+	}
+	
+	/**
+	 * Test dereferencing resource references while origins are added and removed.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testConcurrentDereference() throws TestFailureException {
+		for (int i = 0; i < 20; i++) {
+			OriginHandler concurrentHandler = new OriginHandler();
+			Origin refOrigin = OriginTesting.createRandomOrigin();
+			Resource[] refResources = new Resource[TestRunnerWrapper.RANDOM.nextInt(100) + 1];
+			for (int j = 0; j < refResources.length; j++) {
+				refResources[j] = new TestResource();
+				refOrigin.requestAdd(refResources[j]);
+			}
+			concurrentHandler.requestAdd(refOrigin);
+			int numThreads = TestRunnerWrapper.RANDOM.nextInt(7) + 2;
+			ExecutorService executor = Executors.newFixedThreadPool(numThreads + 1);
+			try {
+				Future<?> modifications = executor.submit(() -> {
+					for (int j = 0; j < 2000; j++) {
+						Origin temporaryOrigin = OriginTesting.createRandomOrigin();
+						concurrentHandler.requestAdd(temporaryOrigin);
+						concurrentHandler.remove(temporaryOrigin);
+					}
+				});
+				ArrayList<Future<Boolean>> readers = new ArrayList<Future<Boolean>>();
+				for (int j = 0; j < numThreads; j++) {
+					readers.add(executor.submit(() -> {
+						for (int k = 0; k < 20000; k++) {
+							Resource expected = refResources[k % refResources.length];
+							if (concurrentHandler.dereference(expected.getReference()) != expected) {
+								return false;
+							}
+						}
+						return true;
+					}));
+				}
+				modifications.get();
+				for (Future<Boolean> reader : readers) {
+					TestSubject.assertTestCondition(reader.get(), 
+							String.format("The origin handler %s should dereference all resources of origin %s "
+									+ "while other origins are modified.", concurrentHandler, refOrigin));
+				}
+			} catch (InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+	
+	/**
+	 * Test origins being loaded on their first dereference.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testLazyAdd() throws TestFailureException {
+		CodecRegistry registry = new CodecRegistry(0);
+		registry.register(OriginHandlerTesting.TEST_TYPE, TypedTestResource.createCodec(OriginHandlerTesting.TEST_TYPE));
+		AtomicInteger reads = new AtomicInteger();
+		OriginDeserialiser countingDeserialiser = new OriginDeserialiser() {
+			
+			@Override
+			public void deserialise(InputStream originData, Origin originToBuild) throws IOException {
+				reads.incrementAndGet();
+				registry.deserialise(originData, originToBuild);
+			}
+			
+		};
+		for (int i = 0; i < 20; i++) {
+			File originFile = new File(OriginHandlerTesting.TEST_FOLDER + TestRunnerWrapper.RANDOM.nextInt());
+			Origin writtenOrigin = new Origin(originFile, registry);
+			Resource[] resources = new Resource[TestRunnerWrapper.RANDOM.nextInt(100) + 1];
+			for (int j = 0; j < resources.length; j++) {
+				resources[j] = new TypedTestResource(OriginHandlerTesting.TEST_TYPE);
+				writtenOrigin.requestAdd(resources[j]);
+			}
+			OriginHandler lazyHandler = new OriginHandler();
+			Origin lazyOrigin = new Origin(originFile, countingDeserialiser);
+			reads.set(0);
+			TestSubject.assertTestCondition(lazyHandler.requestLazyAdd(lazyOrigin), 
+					String.format("The origin %s should be added lazily.", lazyOrigin));
+			TestSubject.assertTestCondition(!lazyHandler.requestLazyAdd(null), 
+					"Null should not be added lazily.");
+			TestSubject.assertTestCondition(lazyHandler.getOrigin(originFile.getPath()) == lazyOrigin 
+					&& !lazyHandler.isLoaded(originFile.getPath()), 
+					String.format("The origin %s should be registered without being loaded.", lazyOrigin));
+			TestSubject.assertTestCondition(Arrays.equals(lazyHandler.getOrigins(), new Origin[] {lazyOrigin}), 
+					String.format("The lazy origin %s should be managed by the handler.", lazyOrigin));
+			// failed loads are retried on the next dereference
+			try {
+				lazyHandler.dereference(resources[0].getReference());
+				throw new TestFailureException(String.format("The origin %s should not be loaded without file.", 
+						lazyOrigin));
+			} catch (IllegalStateException e) {
+				// Do nothing as this is expected behaviour.
+			}
+			ExecutorService executor = Executors.newFixedThreadPool(TestRunnerWrapper.RANDOM.nextInt(7) + 2);
+			try {
+				writtenOrigin.write();
+				// only a single thread loads the origin
+				ArrayList<Future<Boolean>> readers = new ArrayList<Future<Boolean>>();
+				for (int j = 0; j < 8; j++) {
+					readers.add(executor.submit(() -> {
+						for (Resource expected : resources) {
+							if (!expected.equals(lazyHandler.dereference(expected.getReference()))) {
+								return false;
+							}
+						}
+						return true;
+					}));
+				}
+				for (Future<Boolean> reader : readers) {
+					TestSubject.assertTestCondition(reader.get(), 
+							String.format("The origin handler %s should dereference all resources of the lazy "
+									+ "origin %s.", lazyHandler, lazyOrigin));
+				}
+				TestSubject.assertTestCondition(reads.get() == 1, 
+						String.format("The lazy origin %s should be read once instead of %s times.", 
+								lazyOrigin, reads.get()));
+				TestSubject.assertTestCondition(lazyHandler.isLoaded(originFile.getPath()) 
+						&& Arrays.equals(lazyHandler.getOrigins(), new Origin[] {lazyOrigin}), 
+						String.format("The lazy origin %s should have been loaded.", lazyOrigin));
+				// removed lazy origins are neither loaded nor resolved
+				lazyHandler.requestLazyAdd(new Origin(originFile, countingDeserialiser));
+				lazyHandler.remove(lazyOrigin);
+				TestSubject.assertTestCondition(lazyHandler.getOrigins().length == 0, 
+						String.format("The origin handler %s should not contain any origins.", lazyHandler));
+				try {
+					lazyHandler.dereference(resources[0].getReference());
+					throw new TestFailureException(String.format("The origin %s should have been removed.", 
+							lazyOrigin));
+				} catch (IllegalArgumentException e) {
+					// Do nothing as this is expected behaviour.
+				}
+			} catch (IOException | InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			} finally {
+				executor.shutdownNow();
+				originFile.delete();
+				new File(originFile.getPath() + Origin.INDEX_EXTENSION).delete();
+			}
+		}
+		new File(OriginHandlerTesting.TEST_FOLDER).delete();
+	}
 
 }
@@ -0,0 +1,343 @@
+package eyja.lab.tools.control.centre.test.management;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import eyja.lab.tools.control.centre.management.CodecRegistry;
+import eyja.lab.tools.control.centre.management.Origin;
+import eyja.lab.tools.control.centre.management.OriginHandler;
+import eyja.lab.tools.control.centre.management.OriginResidencyManager;
+import eyja.lab.tools.control.centre.management.Resource;
+import eyja.lab.tools.control.centre.test.TestRunnerWrapper;
+import koro.sensei.tester.TestFailureException;
+import koro.sensei.tester.TestSubject;
+
+/**
+ * The OriginResidencyManagerTesting class test the OriginResidencyManager class for correct 
+ * functionality.
+ * 
+ * @author Planters
+ *
+ */
+public class OriginResidencyManagerTesting implements TestSubject {
+	
+	private static final String TEST_FOLDER = "LabToolsTestRunnerResidency/";
+	private static final byte TEST_TYPE = 7;
+	private static final CodecRegistry REGISTRY = OriginResidencyManagerTesting.createRegistry();
+	
+	@Override
+	public void runAllTests() throws TestFailureException {
+		OriginResidencyManagerTesting.testConstructors();
+		OriginResidencyManagerTesting.testEviction();
+		OriginResidencyManagerTesting.testUnmanaged();
+		OriginResidencyManagerTesting.testFlush();
+		OriginResidencyManagerTesting.testConcurrentEviction();
+	}
+	
+	/**
+	 * Test the constructors and the budget.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testConstructors() throws TestFailureException {
+		try {
+			new OriginResidencyManager(null, 1);
+			throw new TestFailureException("A residency manager should not be created without handler.");
+		} catch (NullPointerException e) {
+			// Do nothing as this is expected behaviour.
+		}
+		try {
+			new OriginResidencyManager(new OriginHandler(), 1, null);
+			throw new TestFailureException("A residency manager should not be created without footprint function.");
+		} catch (NullPointerException e) {
+			// Do nothing as this is expected behaviour.
+		}
+		for (long budget : new long[] {0, -1, Long.MIN_VALUE}) {
+			try {
+				new OriginResidencyManager(new OriginHandler(), budget);
+				throw new TestFailureException(String.format("The budget %s should not be accepted.", budget));
+			} catch (IllegalArgumentException e) {
+				// Do nothing as this is expected behaviour.
+			}
+		}
+		OriginResidencyManager manager = new OriginResidencyManager(new OriginHandler(), 10);
+		manager.setBudget(5);
+		TestSubject.assertTestCondition(manager.getBudget() == 5, 
+				String.format("The budget %s should be 5.", manager.getBudget()));
+		try {
+			manager.setBudget(0);
+			throw new TestFailureException("The budget 0 should not be accepted.");
+		} catch (IllegalArgumentException e) {
+			// Do nothing as this is expected behaviour.
+		}
+		TestSubject.assertTestCondition(manager.getResidentFootprint() == 0, 
+				String.format("The resident footprint %s should be 0.", manager.getResidentFootprint()));
+	}
+	
+	/**
+	 * Test evicting the least recently dereferenced origins and reading them again.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testEviction() throws TestFailureException {
+		for (int i = 0; i < 20; i++) {
+			try {
+				OriginHandler handler = new OriginHandler();
+				Origin[] origins = OriginResidencyManagerTesting.createOrigins(handler, 5, true);
+				OriginResidencyManager manager = new OriginResidencyManager(handler, 2, origin -> 1);
+				OriginResidencyManagerTesting.assertDereference(handler, origins[0]);
+				OriginResidencyManagerTesting.assertDereference(handler, origins[1]);
+				TestSubject.assertTestCondition(manager.isResident(origins[0]) && manager.isResident(origins[1]), 
+						"The first two origins should be resident.");
+				OriginResidencyManagerTesting.assertDereference(handler, origins[2]);
+				TestSubject.assertTestCondition(!manager.isResident(origins[0]) 
+						&& !handler.isLoaded(origins[0].getFile().getPath()), 
+						String.format("The least recently used origin %s should have been evicted.", origins[0]));
+				TestSubject.assertTestCondition(manager.getResidentFootprint() == 2, 
+						String.format("The resident footprint %s should be 2.", manager.getResidentFootprint()));
+				// evicted origins are read again on their next dereference
+				OriginResidencyManagerTesting.assertDereference(handler, origins[0]);
+				TestSubject.assertTestCondition(manager.isResident(origins[0]) && !manager.isResident(origins[1]) 
+						&& manager.isResident(origins[2]), 
+						String.format("The origin %s should have been evicted instead of %s.", origins[1], origins[0]));
+				manager.setBudget(1);
+				TestSubject.assertTestCondition(manager.getResidentFootprint() == 1 && manager.isResident(origins[0]), 
+						String.format("Only the most recently used origin %s should be resident.", origins[0]));
+				// origins accessed directly are read again as well
+				TestSubject.assertTestCondition(new HashSet<Resource>(Arrays.asList(origins[2].getResources())).equals(
+						new HashSet<Resource>(Arrays.asList(OriginResidencyManagerTesting.readAgain(origins[2]).getResources()))), 
+						String.format("The evicted origin %s should be read again when accessed.", origins[2]));
+				// the default footprint is the serialised size
+				TestSubject.assertTestCondition(OriginResidencyManager.estimateFootprint(origins[3]) 
+						== origins[3].getFile().length(), 
+						String.format("The footprint of origin %s should be its file size.", origins[3]));
+				manager.detach();
+				for (Origin origin : origins) {
+					OriginResidencyManagerTesting.assertDereference(handler, origin);
+				}
+				TestSubject.assertTestCondition(manager.getResidentFootprint() == 0 
+						&& Arrays.stream(origins).allMatch(origin -> handler.isLoaded(origin.getFile().getPath())), 
+						"A detached manager should not evict any origins.");
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			} finally {
+				OriginResidencyManagerTesting.deleteFiles();
+			}
+		}
+	}
+	
+	/**
+	 * Test not evicting origins, which are not concurrent, as they are accessed without locking.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testUnmanaged() throws TestFailureException {
+		for (int i = 0; i < 20; i++) {
+			try {
+				OriginHandler handler = new OriginHandler();
+				Origin[] origins = OriginResidencyManagerTesting.createOrigins(handler, 3, false);
+				OriginResidencyManager manager = new OriginResidencyManager(handler, 1, origin -> 1);
+				for (Origin origin : origins) {
+					OriginResidencyManagerTesting.assertDereference(handler, origin);
+				}
+				TestSubject.assertTestCondition(manager.getResidentFootprint() == 0 
+						&& Arrays.stream(origins).noneMatch(origin -> manager.isResident(origin)) 
+						&& Arrays.stream(origins).allMatch(origin -> handler.isLoaded(origin.getFile().getPath())), 
+						"Origins, which are not concurrent, should neither be managed nor evicted.");
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			} finally {
+				OriginResidencyManagerTesting.deleteFiles();
+			}
+		}
+	}
+	
+	/**
+	 * Test writing modified origins before they are evicted.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testFlush() throws TestFailureException {
+		for (int i = 0; i < 20; i++) {
+			try {
+				OriginHandler handler = new OriginHandler();
+				Origin[] origins = OriginResidencyManagerTesting.createOrigins(handler, 4, true);
+				OriginResidencyManager manager = new OriginResidencyManager(handler, 1, origin -> 1);
+				OriginResidencyManagerTesting.assertDereference(handler, origins[0]);
+				Resource added = new TypedTestResource(OriginResidencyManagerTesting.TEST_TYPE);
+				origins[0].requestAdd(added);
+				TestSubject.assertTestCondition(origins[0].isModified(), 
+						String.format("The origin %s should be modified.", origins[0]));
+				OriginResidencyManagerTesting.assertDereference(handler, origins[1]);
+				TestSubject.assertTestCondition(!manager.isResident(origins[0]) && !origins[0].isModified(), 
+						String.format("The modified origin %s should have been written and evicted.", origins[0]));
+				TestSubject.assertTestCondition(added.equals(OriginResidencyManagerTesting.readAgain(origins[0]).retrieve(
+						added.getID().getID())), 
+						String.format("The resource %s should have been written before eviction.", added));
+				TestSubject.assertTestCondition(added.equals(handler.dereference(added.getReference())), 
+						String.format("The resource %s should be dereferenced after eviction.", added));
+				// origins which have never been written are written before eviction as well
+				Origin unwritten = new Origin(new File(OriginResidencyManagerTesting.TEST_FOLDER 
+						+ TestRunnerWrapper.RANDOM.nextInt()), OriginResidencyManagerTesting.REGISTRY, null, true);
+				Resource unwrittenResource = new TypedTestResource(OriginResidencyManagerTesting.TEST_TYPE);
+				unwritten.requestAdd(unwrittenResource);
+				handler.requestAdd(unwritten);
+				TestSubject.assertTestCondition(handler.dereference(unwrittenResource.getReference()) == unwrittenResource, 
+						String.format("The resource %s should be dereferenced.", unwrittenResource));
+				OriginResidencyManagerTesting.assertDereference(handler, origins[2]);
+				TestSubject.assertTestCondition(unwritten.getFile().isFile() && !manager.isResident(unwritten), 
+						String.format("The origin %s should have been written and evicted.", unwritten));
+				TestSubject.assertTestCondition(unwrittenResource.equals(handler.dereference(unwrittenResource.getReference())), 
+						String.format("The resource %s should be dereferenced after eviction.", unwrittenResource));
+				// origins whose resources have been modified in place are marked explicitly
+				OriginResidencyManagerTesting.assertDereference(handler, origins[2]);
+				origins[2].markModified();
+				TestSubject.assertTestCondition(origins[2].isModified(), 
+						String.format("The marked origin %s should be modified.", origins[2]));
+				OriginResidencyManagerTesting.assertDereference(handler, origins[3]);
+				TestSubject.assertTestCondition(!manager.isResident(origins[2]) && !origins[2].isModified(), 
+						String.format("The marked origin %s should have been written and evicted.", origins[2]));
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			} finally {
+				OriginResidencyManagerTesting.deleteFiles();
+			}
+		}
+	}
+	
+	/**
+	 * Test dereferencing resources while their origins are evicted.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testConcurrentEviction() throws TestFailureException {
+		for (int i = 0; i < 10; i++) {
+			ExecutorService executor = Executors.newFixedThreadPool(TestRunnerWrapper.RANDOM.nextInt(7) + 2);
+			try {
+				OriginHandler handler = new OriginHandler();
+				Origin[] origins = OriginResidencyManagerTesting.createOrigins(handler, 6, true);
+				new OriginResidencyManager(handler, 2, origin -> 1);
+				ArrayList<Future<Boolean>> readers = new ArrayList<Future<Boolean>>();
+				for (int j = 0; j < 8; j++) {
+					readers.add(executor.submit(() -> {
+						for (int k = 0; k < 200; k++) {
+							Origin origin = origins[TestRunnerWrapper.RANDOM.nextInt(origins.length)];
+							Resource[] expected = OriginResidencyManagerTesting.readAgain(origin).getResources();
+							for (Resource r : expected) {
+								if (!r.equals(handler.dereference(r.getReference()))) {
+									return false;
+								}
+							}
+						}
+						return true;
+					}));
+				}
+				for (Future<Boolean> reader : readers) {
+					TestSubject.assertTestCondition(reader.get(), 
+							String.format("The origin handler %s should dereference all resources while origins "
+									+ "are evicted.", handler));
+				}
+			} catch (IOException | InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			} finally {
+				executor.shutdownNow();
+				OriginResidencyManagerTesting.deleteFiles();
+			}
+		}
+	}
+	
+	/**
+	 * Assert that a random resource of the specified origin is dereferenced by the handler.
+	 * 
+	 * @param handler - the handler to dereference from
+	 * @param origin - the origin containing the resource
+	 * @throws TestFailureException if the resource is not dereferenced
+	 */
+	private static void assertDereference(OriginHandler handler, Origin origin) throws TestFailureException {
+		try {
+			Resource[] expected = OriginResidencyManagerTesting.readAgain(origin).getResources();
+			Resource r = expected[TestRunnerWrapper.RANDOM.nextInt(expected.length)];
+			TestSubject.assertTestCondition(r.equals(handler.dereference(r.getReference())), 
+					String.format("The resource %s should be dereferenced from origin %s.", r, origin));
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new TestFailureException(e);
+		}
+	}
+	
+	/**
+	 * Create and write origins containing random resources and add them to the specified handler.
+	 * 
+	 * @param handler - the handler to add the origins to
+	 * @param numOrigins - the number of origins to create
+	 * @param concurrent - true if the origins are concurrent
+	 * @return the origins
+	 * @throws IOException if an origin could not be written
+	 */
+	private static Origin[] createOrigins(OriginHandler handler, int numOrigins, boolean concurrent) 
+			throws IOException {
+		Origin[] origins = new Origin[numOrigins];
+		for (int i = 0; i < numOrigins; i++) {
+			origins[i] = new Origin(new File(OriginResidencyManagerTesting.TEST_FOLDER + i), 
+					OriginResidencyManagerTesting.REGISTRY, null, concurrent);
+			int randomNumResource = TestRunnerWrapper.RANDOM.nextInt(100) + 1;
+			for (int j = 0; j < randomNumResource; j++) {
+				origins[i].requestAdd(new TypedTestResource(OriginResidencyManagerTesting.TEST_TYPE));
+			}
+			origins[i].write();
+			handler.requestAdd(origins[i]);
+		}
+		return origins;
+	}
+	
+	/**
+	 * Read the file of the specified origin into a new origin.
+	 * 
+	 * @param origin - the origin to read again
+	 * @return the new origin
+	 * @throws IOException if the origin file could not be read
+	 */
+	private static Origin readAgain(Origin origin) throws IOException {
+		Origin readOrigin = new Origin(origin.getFile(), OriginResidencyManagerTesting.REGISTRY);
+		readOrigin.read();
+		return readOrigin;
+	}
+	
+	/**
+	 * Create a registry containing the codec of the test type.
+	 * 
+	 * @return the registry
+	 */
+	private static CodecRegistry createRegistry() {
+		CodecRegistry registry = new CodecRegistry(0);
+		registry.register(OriginResidencyManagerTesting.TEST_TYPE, 
+				TypedTestResource.createCodec(OriginResidencyManagerTesting.TEST_TYPE));
+		return registry;
+	}
+	
+	/**
+	 * Delete all created files and folders.
+	 */
+	private static void deleteFiles() {
+		File testFolder = new File(OriginResidencyManagerTesting.TEST_FOLDER);
+		File[] testFiles = testFolder.listFiles();
+		if (testFiles != null) {
+			for (File f : testFiles) {
+				f.delete();
+			}
+		}
+		testFolder.delete();
+	}
+
+}
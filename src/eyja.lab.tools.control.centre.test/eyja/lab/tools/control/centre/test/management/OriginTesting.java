@@ -3,17 +3,37 @@ package eyja.lab.tools.control.centre.test.management;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import eyja.lab.tools.control.centre.binaryop.BinaryFormat;
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+import eyja.lab.tools.control.centre.management.CodecRegistry;
 import eyja.lab.tools.control.centre.management.Origin;
 import eyja.lab.tools.control.centre.management.OriginDeserialiser;
 import eyja.lab.tools.control.centre.management.OriginSerialiser;
+import eyja.lab.tools.control.centre.management.RandomAccessDeserialiser;
 import eyja.lab.tools.control.centre.management.Resource;
 import eyja.lab.tools.control.centre.management.ResourceID;
+import eyja.lab.tools.control.centre.management.ResourceReference;
 import eyja.lab.tools.control.centre.test.TestRunnerWrapper;
 import koro.sensei.tester.TestFailureException;
 import koro.sensei.tester.TestSubject;
@@ -27,6 +47,8 @@ import koro.sensei.tester.TestSubject;
 public class OriginTesting implements TestSubject {
 	
 	private static final String TEST_FOLDER = "LabToolsTestRunnerOrigin/";
+	// magic number, version, flags, codec ID, resource count and dictionary position
+	private static final int HEADER_BYTES = 5 * Integer.BYTES + Long.BYTES;
 	private static final Comparator<Resource> RESOURCE_COMPARATOR = new Comparator<Resource>() {
 
 		@Override
@@ -48,6 +70,72 @@ public class OriginTesting implements TestSubject {
 			}
 		}
 		
+	};
+	private static final RandomAccessDeserialiser TEST_RANDOM_ACCESS_DESERIALISER = new RandomAccessDeserialiser() {
+
+		@Override
+		public void deserialise(InputStream originData, Origin originToBuild) throws IOException {
+			OriginTesting.TEST_DESERIALISER.deserialise(originData, originToBuild);
+		}
+
+		@Override
+		public long scan(BinaryReader reader) {
+			return reader.readLong();
+		}
+
+		@Override
+		public Resource decode(BinaryReader reader, Origin origin) {
+			return new TestResource(new ResourceID(origin, reader.readLong()));
+		}
+		
+	};
+	private static final OriginDeserialiser REFERENCE_DESERIALISER = new OriginDeserialiser() {
+
+		@Override
+		public void deserialise(InputStream originData, Origin originToBuild) throws IOException {
+			BinaryReader reader = new BinaryReader(originData.readAllBytes());
+			while (reader.hasRemaining()) {
+				originToBuild.requestAdd(ReferenceTestResource.decode(reader, originToBuild));
+			}
+		}
+		
+	};
+	private static final RandomAccessDeserialiser REFERENCE_RANDOM_ACCESS_DESERIALISER = new RandomAccessDeserialiser() {
+
+		@Override
+		public void deserialise(InputStream originData, Origin originToBuild) throws IOException {
+			OriginTesting.REFERENCE_DESERIALISER.deserialise(originData, originToBuild);
+		}
+
+		@Override
+		public long scan(BinaryReader reader) {
+			return ReferenceTestResource.scan(reader);
+		}
+
+		@Override
+		public Resource decode(BinaryReader reader, Origin origin) {
+			return ReferenceTestResource.decode(reader, origin);
+		}
+		
+	};
+	// only reads the ID, so resources can only be scanned with the length of their record
+	private static final RandomAccessDeserialiser ID_SCANNING_DESERIALISER = new RandomAccessDeserialiser() {
+
+		@Override
+		public void deserialise(InputStream originData, Origin originToBuild) throws IOException {
+			OriginTesting.REFERENCE_DESERIALISER.deserialise(originData, originToBuild);
+		}
+
+		@Override
+		public long scan(BinaryReader reader) {
+			return reader.readID();
+		}
+
+		@Override
+		public Resource decode(BinaryReader reader, Origin origin) {
+			return ReferenceTestResource.decode(reader, origin);
+		}
+		
 	};
 	private static final OriginSerialiser TEST_SERIALISER = new OriginSerialiser() {
 		
@@ -72,12 +160,26 @@ public class OriginTesting implements TestSubject {
 		OriginTesting.testConstructors();
 		OriginTesting.testGetting();
 		OriginTesting.testGetResources();
+		OriginTesting.testForEach();
+		OriginTesting.testManyResources();
 		OriginTesting.testAddingResources();
 		OriginTesting.testRetrieve();
 		OriginTesting.testRemove();
 		OriginTesting.testClear();
 		OriginTesting.testRequestID();
 		OriginTesting.testIO();
+		OriginTesting.testMap();
+		OriginTesting.testRetrieveAll();
+		OriginTesting.testJournal();
+		OriginTesting.testIntegrity();
+		OriginTesting.testReferenceDictionary();
+		OriginTesting.testCompactFormat();
+		OriginTesting.testCompactIDBase();
+		OriginTesting.testHeader();
+		OriginTesting.testLegacyVersions();
+		OriginTesting.testParallelDecoding();
+		OriginTesting.testFraming();
+		OriginTesting.testConcurrency();
 	}
 	
 	/**
@@ -206,6 +308,77 @@ public class OriginTesting implements TestSubject {
 		}
 	}
 	
+	/**
+	 * Test iterating over the resources of the origin.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testForEach() throws TestFailureException {
+		for (int i = 0; i < 10000; i++) {
+			Origin firstOrigin = OriginTesting.createRandomOrigin();
+			int randomNumResource = TestRunnerWrapper.RANDOM.nextInt(300);
+			for (int j = 0; j < randomNumResource; j++) {
+				firstOrigin.requestAdd(new TestResource());
+			}
+			ArrayList<Resource> iteratedResources = new ArrayList<Resource>();
+			firstOrigin.forEach(iteratedResources::add);
+			Resource[] retrievedResources = firstOrigin.getResources();
+			Resource[] iteratedArray = iteratedResources.toArray(new Resource[iteratedResources.size()]);
+			Arrays.sort(retrievedResources, OriginTesting.RESOURCE_COMPARATOR);
+			Arrays.sort(iteratedArray, OriginTesting.RESOURCE_COMPARATOR);
+			TestSubject.assertTestCondition(Arrays.equals(retrievedResources, iteratedArray), 
+					String.format("Iterating over origin %s should yield %s, but yielded %s.", 
+							firstOrigin, Arrays.toString(retrievedResources), Arrays.toString(iteratedArray)));
+		}
+		try {
+			OriginTesting.createRandomOrigin().forEach(null);
+			throw new TestFailureException("Iterating with a null action should fail.");
+		} catch (NullPointerException e) {
+			// Do nothing as this is expected behaviour.
+		}
+	}
+	
+	/**
+	 * Test adding, retrieving and removing many resources with arbitrary IDs.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testManyResources() throws TestFailureException {
+		for (int i = 0; i < 100; i++) {
+			Origin manyOrigin = OriginTesting.createRandomOrigin();
+			HashMap<Long, Resource> expectedResources = new HashMap<Long, Resource>();
+			// a small ID range enforces collisions and replacements
+			int idRange = TestRunnerWrapper.RANDOM.nextInt(5000) + 1;
+			long idOffset = TestRunnerWrapper.RANDOM.nextLong();
+			for (int j = 0; j < 10000; j++) {
+				long id = idOffset + TestRunnerWrapper.RANDOM.nextInt(idRange);
+				if (TestRunnerWrapper.RANDOM.nextDouble() < 0.6) {
+					TestResource resource = new TestResource(new ResourceID(manyOrigin, id));
+					manyOrigin.requestAdd(resource);
+					expectedResources.put(id, resource);
+				} else {
+					Resource expected = expectedResources.remove(id);
+					Resource removed = manyOrigin.remove(id);
+					TestSubject.assertTestCondition(Objects.equals(expected, removed), 
+							String.format("The resource %s removed from origin %s should be %s.", 
+									removed, manyOrigin, expected));
+				}
+				long retrieveID = idOffset + TestRunnerWrapper.RANDOM.nextInt(idRange);
+				Resource retrieved = manyOrigin.retrieve(retrieveID);
+				TestSubject.assertTestCondition(retrieved == expectedResources.get(retrieveID), 
+						String.format("The resource %s retrieved from origin %s should be %s.", 
+								retrieved, manyOrigin, expectedResources.get(retrieveID)));
+			}
+			TestSubject.assertTestCondition(manyOrigin.getResources().length == expectedResources.size(), 
+					String.format("The origin %s should contain %s resources instead of %s.", 
+							manyOrigin, expectedResources.size(), manyOrigin.getResources().length));
+			for (Resource expected : expectedResources.values()) {
+				TestSubject.assertTestCondition(manyOrigin.retrieve(expected.getID()) == expected, 
+						String.format("The origin %s should contain the resource %s.", manyOrigin, expected));
+			}
+		}
+	}
+	
 	/**
 	 * Test adding resources to the origin.
 	 * 
@@ -534,6 +707,451 @@ public class OriginTesting implements TestSubject {
 		testFolder.delete();
 	}
 	
+	/**
+	 * Test mapping origins and retrieving the mapped resources.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testMap() throws TestFailureException {
+		for (int i = 0; i < 1000; i++) {
+			{ // test lazy deserialisation
+				Origin writtenOrigin = new Origin(OriginTesting.createRandomFile(), 
+						OriginTesting.TEST_RANDOM_ACCESS_DESERIALISER);
+				// add some random resources
+				int randomNumResource = TestRunnerWrapper.RANDOM.nextInt(300) + 1;
+				for (int j = 0; j < randomNumResource; j++) {
+					writtenOrigin.requestAdd(new TestResource());
+				}
+				try {
+					writtenOrigin.write();
+					Origin mappedOrigin = new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser());
+					mappedOrigin.map();
+					Resource[] allResources = writtenOrigin.getResources();
+					for (int j = 0; j < 10; j++) {
+						Resource expected = allResources[TestRunnerWrapper.RANDOM.nextInt(allResources.length)];
+						Resource mapped = mappedOrigin.retrieve(expected.getID().getID());
+						TestSubject.assertTestCondition(expected.equals(mapped) && mapped.getID().getOrigin() == mappedOrigin, 
+								String.format("The resource %s retrieved from mapped origin %s should be %s.", 
+										mapped, mappedOrigin, expected));
+					}
+					// removing and adding must behave like an origin which has been read
+					long removeID = allResources[TestRunnerWrapper.RANDOM.nextInt(allResources.length)].getID().getID();
+					Resource expectedRemoved = writtenOrigin.remove(removeID);
+					Resource removed = mappedOrigin.remove(removeID);
+					TestSubject.assertTestCondition(expectedRemoved.equals(removed), 
+							String.format("The resource %s removed from mapped origin %s should be %s.", 
+									removed, mappedOrigin, expectedRemoved));
+					TestSubject.assertTestCondition(mappedOrigin.retrieve(removeID) == null, 
+							String.format("The removed resource %s should not be retrieved from mapped origin %s.", 
+									removeID, mappedOrigin));
+					writtenOrigin.requestAdd(new TestResource());
+					mappedOrigin.requestAdd(new TestResource());
+					TestSubject.assertTestCondition(mappedOrigin.equals(writtenOrigin), 
+							String.format("Mapped origin %s should equal the origin %s", mappedOrigin, writtenOrigin));
+					// writing must not lose resources not yet retrieved
+					mappedOrigin.write();
+					mappedOrigin.map();
+					mappedOrigin.write();
+					Origin readOrigin = new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser());
+					readOrigin.read();
+					TestSubject.assertTestCondition(readOrigin.equals(writtenOrigin), 
+							String.format("Origin %s should equal the origin %s", readOrigin, writtenOrigin));
+					// deserialisers without random access read the whole origin
+					Origin fallbackOrigin = new Origin(writtenOrigin.getFile(), OriginTesting.TEST_DESERIALISER);
+					fallbackOrigin.map();
+					Origin streamedOrigin = new Origin(writtenOrigin.getFile(), OriginTesting.TEST_DESERIALISER);
+					streamedOrigin.read();
+					TestSubject.assertTestCondition(fallbackOrigin.equals(streamedOrigin), 
+							String.format("Origin %s should equal the origin %s", fallbackOrigin, streamedOrigin));
+					// outdated or missing index files must not be used
+					File indexFile = new File(writtenOrigin.getFile().getPath() + Origin.INDEX_EXTENSION);
+					TestSubject.assertTestCondition(indexFile.isFile(), 
+							String.format("The index file %s of origin %s should exist.", indexFile, writtenOrigin));
+					byte[] outdatedIndex = Files.readAllBytes(indexFile.toPath());
+					writtenOrigin.requestAdd(new TestResource());
+					writtenOrigin.write();
+					Files.write(indexFile.toPath(), outdatedIndex);
+					Origin outdatedOrigin = new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser());
+					outdatedOrigin.map();
+					TestSubject.assertTestCondition(outdatedOrigin.equals(writtenOrigin), 
+							String.format("Origin %s should equal the origin %s", outdatedOrigin, writtenOrigin));
+					indexFile.delete();
+					Origin scannedOrigin = new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser());
+					scannedOrigin.map();
+					TestSubject.assertTestCondition(scannedOrigin.equals(writtenOrigin), 
+							String.format("Origin %s should equal the origin %s", scannedOrigin, writtenOrigin));
+				} catch (IOException e) {
+					e.printStackTrace();
+					throw new TestFailureException(e);
+				}
+				writtenOrigin.getFile().delete();
+			} { // test corrupted files
+				File corruptedFile = OriginTesting.createRandomFile();
+				corruptedFile.getParentFile().mkdirs();
+				try (FileOutputStream corruptedData = new FileOutputStream(corruptedFile)) {
+					corruptedData.write(new byte[TestRunnerWrapper.RANDOM.nextInt(7) + 9]);
+				} catch (IOException e) {
+					e.printStackTrace();
+					throw new TestFailureException(e);
+				}
+				Origin corruptedOrigin = new Origin(corruptedFile, OriginTesting.TEST_RANDOM_ACCESS_DESERIALISER);
+				try {
+					corruptedOrigin.map();
+					throw new TestFailureException(String.format(
+							"Mapping the corrupted origin %s should fail.", corruptedOrigin));
+				} catch (IOException e) {
+					// Do nothing as this is expected behaviour.
+				}
+				corruptedFile.delete();
+			}
+		}
+		new File(OriginTesting.TEST_FOLDER).delete();
+	}
+	
+	/**
+	 * Test retrieving many resources at once from read and mapped origins.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testRetrieveAll() throws TestFailureException {
+		for (int i = 0; i < 1000; i++) {
+			Origin writtenOrigin = new Origin(OriginTesting.createRandomFile(), 
+					OriginTesting.TEST_RANDOM_ACCESS_DESERIALISER);
+			int randomNumResource = TestRunnerWrapper.RANDOM.nextInt(300) + 1;
+			for (int j = 0; j < randomNumResource; j++) {
+				writtenOrigin.requestAdd(new TestResource());
+			}
+			// existing, repeated and missing IDs in random order
+			long[] ids = new long[TestRunnerWrapper.RANDOM.nextInt(400)];
+			for (int j = 0; j < ids.length; j++) {
+				ids[j] = Long.MIN_VALUE + TestRunnerWrapper.RANDOM.nextInt(randomNumResource + 20);
+			}
+			try {
+				writtenOrigin.write();
+				Origin mappedOrigin = new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser());
+				mappedOrigin.map();
+				// some resources are already deserialised
+				for (int j = 0; j < 10 && j < ids.length; j++) {
+					mappedOrigin.retrieve(ids[TestRunnerWrapper.RANDOM.nextInt(ids.length)]);
+				}
+				Resource[] expected = new Resource[ids.length];
+				for (int j = 0; j < ids.length; j++) {
+					expected[j] = writtenOrigin.retrieve(ids[j]);
+				}
+				Resource[] retrieved = writtenOrigin.retrieveAll(ids);
+				Resource[] mapped = mappedOrigin.retrieveAll(ids);
+				TestSubject.assertTestCondition(Arrays.equals(expected, retrieved) && Arrays.equals(expected, mapped), 
+						String.format("The resources %s and %s retrieved from origins %s and %s should be %s.", 
+								Arrays.toString(retrieved), Arrays.toString(mapped), writtenOrigin, mappedOrigin, 
+								Arrays.toString(expected)));
+				for (int j = 0; j < ids.length; j++) {
+					TestSubject.assertTestCondition(mapped[j] == mappedOrigin.retrieve(ids[j]), 
+							String.format("The resource %s retrieved from mapped origin %s should be %s.", 
+									mapped[j], mappedOrigin, mappedOrigin.retrieve(ids[j])));
+				}
+				TestSubject.assertTestCondition(mappedOrigin.equals(writtenOrigin), 
+						String.format("Mapped origin %s should equal the origin %s", mappedOrigin, writtenOrigin));
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			}
+			writtenOrigin.getFile().delete();
+			new File(writtenOrigin.getFile().getPath() + Origin.INDEX_EXTENSION).delete();
+		}
+		new File(OriginTesting.TEST_FOLDER).delete();
+	}
+	
+	/**
+	 * Test journaling modifications of origins.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testJournal() throws TestFailureException {
+		for (int i = 0; i < 1000; i++) {
+			{ // test replaying the journal
+				Origin journaledOrigin = new Origin(OriginTesting.createRandomFile(), 
+						OriginTesting.TEST_RANDOM_ACCESS_DESERIALISER);
+				File journalFile = new File(journaledOrigin.getFile().getPath() + Origin.JOURNAL_EXTENSION);
+				try {
+					journaledOrigin.setJournaling(true);
+					TestSubject.assertTestCondition(journaledOrigin.isJournaling(), 
+							String.format("The origin %s should be journaling.", journaledOrigin));
+					// a journal without origin file
+					OriginTesting.modifyRandomly(journaledOrigin);
+					OriginTesting.assertReplay(journaledOrigin);
+					// a journal on top of an origin file
+					journaledOrigin.compact();
+					// file header followed by a single block with length and checksum of framed resources
+					TestSubject.assertTestCondition(!journaledOrigin.getFile().isFile() 
+							|| journaledOrigin.getFile().length() == OriginTesting.HEADER_BYTES 
+							+ (journaledOrigin.getResources().length > 0 ? 2 * Integer.BYTES : 0) 
+							+ journaledOrigin.getResources().length * (1 + Long.BYTES),  
+							String.format("The origin file %s should contain all resources after compaction.", 
+									journaledOrigin.getFile()));
+					OriginTesting.modifyRandomly(journaledOrigin);
+					OriginTesting.assertReplay(journaledOrigin);
+					// incompletely written records must be ignored
+					byte[] journal = Files.readAllBytes(journalFile.toPath());
+					byte[] tornJournal = Arrays.copyOf(journal, journal.length + TestRunnerWrapper.RANDOM.nextInt(30) + 1);
+					tornJournal[journal.length] = 1; // start of an add operation
+					Files.write(journalFile.toPath(), tornJournal);
+					OriginTesting.assertReplay(journaledOrigin);
+					// a journal of a previous origin file must be ignored
+					journaledOrigin.setJournaling(false);
+					journal = Files.readAllBytes(journalFile.toPath());
+					journaledOrigin.write();
+					Files.write(journalFile.toPath(), journal);
+					OriginTesting.assertReplay(journaledOrigin);
+					// the journal must be continued after reopening
+					journaledOrigin.setJournaling(true);
+					OriginTesting.modifyRandomly(journaledOrigin);
+					journaledOrigin.setJournaling(false);
+					journaledOrigin.setJournaling(true);
+					OriginTesting.modifyRandomly(journaledOrigin);
+					OriginTesting.assertReplay(journaledOrigin);
+					journaledOrigin.setJournaling(false);
+				} catch (IOException e) {
+					e.printStackTrace();
+					throw new TestFailureException(e);
+				}
+				journaledOrigin.getFile().delete();
+				journalFile.delete();
+				new File(journaledOrigin.getFile().getPath() + Origin.INDEX_EXTENSION).delete();
+			} { // test deserialisers without random access
+				Origin streamedOrigin = new Origin(OriginTesting.createRandomFile(), OriginTesting.TEST_DESERIALISER);
+				try {
+					streamedOrigin.setJournaling(true);
+					throw new TestFailureException(String.format(
+							"Journaling origin %s without random access deserialiser should fail.", streamedOrigin));
+				} catch (IllegalStateException e) {
+					// Do nothing as this is expected behaviour.
+				} catch (IOException e) {
+					e.printStackTrace();
+					throw new TestFailureException(e);
+				}
+			}
+		}
+		new File(OriginTesting.TEST_FOLDER).delete();
+	}
+	
+	/**
+	 * Test detecting corrupted origin files and replacing origin files safely.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testIntegrity() throws TestFailureException {
+		OriginDeserialiser failingDeserialiser = (originData, originToBuild) -> {
+			DataInputStream dis = new DataInputStream(originData);
+			while (dis.available() > 0) {
+				originToBuild.requestAdd(new TestResource(new ResourceID(originToBuild, dis.readLong())));
+			}
+		};
+		for (int i = 0; i < 1000; i++) {
+			Origin writtenOrigin = new Origin(OriginTesting.createRandomFile(), 
+					OriginTesting.TEST_RANDOM_ACCESS_DESERIALISER);
+			File indexFile = new File(writtenOrigin.getFile().getPath() + Origin.INDEX_EXTENSION);
+			int randomNumResource = TestRunnerWrapper.RANDOM.nextInt(300) + 1;
+			for (int j = 0; j < randomNumResource; j++) {
+				writtenOrigin.requestAdd(new TestResource());
+			}
+			try {
+				writtenOrigin.write();
+				TestSubject.assertTestCondition(!new File(writtenOrigin.getFile().getPath() + ".tmp").exists(), 
+						String.format("No temporary file should remain after writing origin %s.", writtenOrigin));
+				Origin intactOrigin = new Origin(writtenOrigin.getFile(), failingDeserialiser);
+				intactOrigin.read();
+				TestSubject.assertTestCondition(intactOrigin.getResources().length == randomNumResource, 
+						String.format("Origin %s should contain %s resources.", intactOrigin, randomNumResource));
+				// flip a single payload bit without invalidating the index
+				long lastModified = writtenOrigin.getFile().lastModified();
+				try (RandomAccessFile originData = new RandomAccessFile(writtenOrigin.getFile(), "rw")) {
+					long position = OriginTesting.HEADER_BYTES + Integer.BYTES + TestRunnerWrapper.RANDOM.nextInt(randomNumResource * Long.BYTES);
+					originData.seek(position);
+					int corrupted = originData.read() ^ (1 << TestRunnerWrapper.RANDOM.nextInt(8));
+					originData.seek(position);
+					originData.write(corrupted);
+				}
+				writtenOrigin.getFile().setLastModified(lastModified);
+				Origin readOrigin = new Origin(writtenOrigin.getFile(), failingDeserialiser);
+				try {
+					readOrigin.read();
+					throw new TestFailureException(String.format(
+							"Reading the corrupted origin %s should fail.", readOrigin));
+				} catch (IOException e) {
+					// Do nothing as this is expected behaviour.
+				}
+				Origin mappedOrigin = new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser());
+				mappedOrigin.map();
+				try {
+					mappedOrigin.getResources();
+					throw new TestFailureException(String.format(
+							"Retrieving resources of the corrupted origin %s should fail.", mappedOrigin));
+				} catch (UncheckedIOException e) {
+					// Do nothing as this is expected behaviour.
+				}
+				indexFile.delete();
+				Origin scannedOrigin = new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser());
+				try {
+					scannedOrigin.map();
+					throw new TestFailureException(String.format(
+							"Mapping the corrupted origin %s should fail.", scannedOrigin));
+				} catch (IOException e) {
+					// Do nothing as this is expected behaviour.
+				}
+				// a failing serialiser must not destroy the previous origin file
+				byte[] previousData = Files.readAllBytes(writtenOrigin.getFile().toPath());
+				Origin failingOrigin = new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser(), 
+						(originData, origin) -> {
+							originData.write(new byte[TestRunnerWrapper.RANDOM.nextInt(100)]);
+							throw new IOException("Serialisation failed.");
+						});
+				try {
+					failingOrigin.write();
+					throw new TestFailureException(String.format(
+							"Writing the origin %s with a failing serialiser should fail.", failingOrigin));
+				} catch (IOException e) {
+					// Do nothing as this is expected behaviour.
+				}
+				TestSubject.assertTestCondition(Arrays.equals(previousData, 
+						Files.readAllBytes(writtenOrigin.getFile().toPath())), 
+						String.format("The file of origin %s should not have been changed.", failingOrigin));
+				TestSubject.assertTestCondition(!new File(writtenOrigin.getFile().getPath() + ".tmp").exists(), 
+						String.format("No temporary file should remain after writing origin %s.", failingOrigin));
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			}
+			writtenOrigin.getFile().delete();
+			indexFile.delete();
+		}
+		new File(OriginTesting.TEST_FOLDER).delete();
+	}
+	
+	/**
+	 * Test modifying concurrent origins from multiple threads.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testConcurrency() throws TestFailureException {
+		for (int i = 0; i < 20; i++) {
+			Origin concurrentOrigin = new Origin(OriginTesting.createRandomFile(), 
+					OriginTesting.TEST_RANDOM_ACCESS_DESERIALISER, null, true);
+			TestSubject.assertTestCondition(concurrentOrigin.isConcurrent(), 
+					String.format("The origin %s should be concurrent.", concurrentOrigin));
+			int numThreads = TestRunnerWrapper.RANDOM.nextInt(7) + 2;
+			int numResources = TestRunnerWrapper.RANDOM.nextInt(5000) + 1;
+			ExecutorService executor = Executors.newFixedThreadPool(numThreads + 1);
+			ArrayList<Future<List<Resource>>> kept = new ArrayList<Future<List<Resource>>>();
+			try {
+				for (int j = 0; j < numThreads; j++) {
+					kept.add(executor.submit(() -> {
+						ArrayList<Resource> keptResources = new ArrayList<Resource>();
+						for (int k = 0; k < numResources; k++) {
+							TestResource added = new TestResource();
+							ResourceID id = concurrentOrigin.requestAdd(added);
+							if (concurrentOrigin.retrieve(id) != added) {
+								throw new IllegalStateException(String.format("The resource %s should have been "
+										+ "retrieved from origin %s.", added, concurrentOrigin));
+							}
+							if (k % 3 == 0) {
+								if (concurrentOrigin.remove(id) != added || concurrentOrigin.retrieve(id) != null) {
+									throw new IllegalStateException(String.format("The resource %s should have been "
+											+ "removed from origin %s.", added, concurrentOrigin));
+								}
+							} else {
+								keptResources.add(added);
+							}
+						}
+						return keptResources;
+					}));
+				}
+				// snapshots must be taken and written while the origin is modified
+				Future<?> snapshots = executor.submit(() -> {
+					for (int j = 0; j < 5; j++) {
+						Resource[] snapshot = concurrentOrigin.getResources();
+						for (Resource r : snapshot) {
+							if (r == null) {
+								throw new IllegalStateException("A snapshot must not contain null.");
+							}
+						}
+						concurrentOrigin.write();
+						Origin readOrigin = new Origin(concurrentOrigin.getFile(), concurrentOrigin.getDeserialiser());
+						readOrigin.read();
+					}
+					return null;
+				});
+				HashSet<Long> expectedIDs = new HashSet<Long>();
+				for (Future<List<Resource>> keptResources : kept) {
+					for (Resource r : keptResources.get()) {
+						TestSubject.assertTestCondition(expectedIDs.add(r.getID().getID()), 
+								String.format("The ID %s of origin %s has been issued multiple times.", 
+										r.getID(), concurrentOrigin));
+					}
+				}
+				snapshots.get();
+				Resource[] allResources = concurrentOrigin.getResources();
+				TestSubject.assertTestCondition(allResources.length == expectedIDs.size(), 
+						String.format("The origin %s should contain %s resources instead of %s.", 
+								concurrentOrigin, expectedIDs.size(), allResources.length));
+				for (Resource r : allResources) {
+					TestSubject.assertTestCondition(expectedIDs.contains(r.getID().getID()), 
+							String.format("The resource %s should not be contained by origin %s.", 
+									r, concurrentOrigin));
+				}
+				TestSubject.assertTestCondition(concurrentOrigin.requestID() == Long.MIN_VALUE 
+						+ (long) numThreads * numResources, 
+						String.format("The origin %s should have issued %s IDs.", 
+								concurrentOrigin, numThreads * numResources));
+			} catch (InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			} finally {
+				executor.shutdownNow();
+			}
+			concurrentOrigin.getFile().delete();
+			new File(concurrentOrigin.getFile().getPath() + Origin.INDEX_EXTENSION).delete();
+		}
+		new File(OriginTesting.TEST_FOLDER).delete();
+	}
+	
+	/**
+	 * Add and remove random resources. The resource with the highest ID is never removed, so the 
+	 * next ID of the origin can be derived from its resources.
+	 * 
+	 * @param origin - the origin to modify
+	 */
+	private static void modifyRandomly(Origin origin) {
+		int randomNumResource = TestRunnerWrapper.RANDOM.nextInt(100);
+		for (int j = 0; j < randomNumResource; j++) {
+			origin.requestAdd(new TestResource());
+		}
+		Resource[] allResources = origin.getResources();
+		for (int j = 0; j + 1 < allResources.length; j++) {
+			if (TestRunnerWrapper.RANDOM.nextDouble() < 0.1) {
+				origin.remove(allResources[j].getID());
+			}
+		}
+		origin.requestAdd(new TestResource());
+	}
+	
+	/**
+	 * Assert that reading and mapping the specified origin yields the same origin.
+	 * 
+	 * @param origin - the origin to compare to
+	 * @throws IOException if reading failed
+	 * @throws TestFailureException if the origins are not equal
+	 */
+	private static void assertReplay(Origin origin) throws IOException, TestFailureException {
+		Origin readOrigin = new Origin(origin.getFile(), origin.getDeserialiser());
+		readOrigin.read();
+		TestSubject.assertTestCondition(readOrigin.equals(origin), 
+				String.format("Read origin %s should equal the journaled origin %s", readOrigin, origin));
+		Origin mappedOrigin = new Origin(origin.getFile(), origin.getDeserialiser());
+		mappedOrigin.map();
+		TestSubject.assertTestCondition(mappedOrigin.equals(origin), 
+				String.format("Mapped origin %s should equal the journaled origin %s", mappedOrigin, origin));
+	}
+	
 	/**
 	 * Create a random origin.
 	 * 
@@ -582,6 +1200,499 @@ public class OriginTesting implements TestSubject {
 		};
 	}
 	
+	/**
+	 * Test storing the origin paths of resource references once per origin file and reading 
+	 * origin files storing the paths once per reference.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testReferenceDictionary() throws TestFailureException {
+		for (int i = 0; i < 200; i++) {
+			String[] referencedPaths = new String[TestRunnerWrapper.RANDOM.nextInt(5) + 1];
+			for (int j = 0; j < referencedPaths.length; j++) {
+				referencedPaths[j] = OriginTesting.createRandomFile().getPath() + "-" + j;
+			}
+			Origin writtenOrigin = new Origin(OriginTesting.createRandomFile(), 
+					OriginTesting.REFERENCE_RANDOM_ACCESS_DESERIALISER);
+			int randomNumResource = TestRunnerWrapper.RANDOM.nextInt(300) + 1;
+			// origins only referencing null still need their dictionary for reading
+			double nullProbability = TestRunnerWrapper.RANDOM.nextDouble() < 0.1 ? 1 : 0.05;
+			for (int j = 0; j < randomNumResource; j++) {
+				ResourceReference reference = TestRunnerWrapper.RANDOM.nextDouble() < nullProbability ? null 
+						: new ResourceReference(referencedPaths[TestRunnerWrapper.RANDOM.nextInt(referencedPaths.length)], 
+								TestRunnerWrapper.RANDOM.nextLong());
+				writtenOrigin.requestAdd(new ReferenceTestResource(reference));
+			}
+			try {
+				writtenOrigin.write();
+				// every referenced path is stored at most once
+				String fileContent = new String(Files.readAllBytes(writtenOrigin.getFile().toPath()), 
+						StandardCharsets.ISO_8859_1);
+				for (String path : referencedPaths) {
+					String encodedPath = new String(path.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+					int first = fileContent.indexOf(encodedPath);
+					TestSubject.assertTestCondition(first < 0 || fileContent.indexOf(encodedPath, first + 1) < 0, 
+							String.format("The origin file %s should store the path %s only once.", 
+									writtenOrigin.getFile(), path));
+				}
+				Origin readOrigin = new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser());
+				readOrigin.read();
+				TestSubject.assertTestCondition(readOrigin.equals(writtenOrigin), 
+						String.format("Origin %s should equal the origin %s", readOrigin, writtenOrigin));
+				Origin mappedOrigin = new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser());
+				mappedOrigin.map();
+				TestSubject.assertTestCondition(mappedOrigin.equals(writtenOrigin), 
+						String.format("Mapped origin %s should equal the origin %s", mappedOrigin, writtenOrigin));
+				// files with dictionary cannot be streamed
+				Origin streamedOrigin = new Origin(writtenOrigin.getFile(), OriginTesting.REFERENCE_DESERIALISER);
+				try {
+					streamedOrigin.read();
+					throw new TestFailureException(String.format("Origin %s should not be streamed from a "
+							+ "file with dictionary.", streamedOrigin));
+				} catch (IOException e) {
+					// Do nothing as this is expected behaviour.
+				}
+				// origins without random access store the complete path per reference
+				Origin inlineOrigin = new Origin(OriginTesting.createRandomFile(), OriginTesting.REFERENCE_DESERIALISER);
+				for (Resource r : writtenOrigin.getResources()) {
+					inlineOrigin.requestAdd(new ReferenceTestResource(((ReferenceTestResource) r).getResourceReference()));
+				}
+				inlineOrigin.write();
+				Origin inlineReadOrigin = new Origin(inlineOrigin.getFile(), OriginTesting.REFERENCE_RANDOM_ACCESS_DESERIALISER);
+				inlineReadOrigin.read();
+				TestSubject.assertTestCondition(Arrays.equals(inlineReadOrigin.getResources(), inlineOrigin.getResources()), 
+						String.format("Origin %s should equal the origin %s", inlineReadOrigin, inlineOrigin));
+				// origin files of the first version without dictionary position
+				byte[] currentFile = Files.readAllBytes(inlineOrigin.getFile().toPath());
+				ByteBuffer legacyFile = ByteBuffer.allocate(currentFile.length - OriginTesting.HEADER_BYTES 
+						+ 2 * Integer.BYTES);
+				legacyFile.putInt(ByteBuffer.wrap(currentFile).getInt()).putInt(1);
+				legacyFile.put(currentFile, OriginTesting.HEADER_BYTES, currentFile.length - OriginTesting.HEADER_BYTES);
+				Files.write(inlineOrigin.getFile().toPath(), legacyFile.array());
+				Files.deleteIfExists(new File(inlineOrigin.getFile().getPath() + Origin.INDEX_EXTENSION).toPath());
+				Origin legacyOrigin = new Origin(inlineOrigin.getFile(), OriginTesting.REFERENCE_RANDOM_ACCESS_DESERIALISER);
+				legacyOrigin.map();
+				TestSubject.assertTestCondition(Arrays.equals(legacyOrigin.getResources(), inlineOrigin.getResources()), 
+						String.format("Legacy origin %s should equal the origin %s", legacyOrigin, inlineOrigin));
+				legacyOrigin.read();
+				TestSubject.assertTestCondition(Arrays.equals(legacyOrigin.getResources(), inlineOrigin.getResources()), 
+						String.format("Legacy origin %s should equal the origin %s", legacyOrigin, inlineOrigin));
+				inlineOrigin.getFile().delete();
+				writtenOrigin.getFile().delete();
+				new File(writtenOrigin.getFile().getPath() + Origin.INDEX_EXTENSION).delete();
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			}
+		}
+	}
+	
+	/**
+	 * Test writing and reading origin files in the compact format.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testCompactFormat() throws TestFailureException {
+		try {
+			new Origin(OriginTesting.createRandomFile(), OriginTesting.REFERENCE_DESERIALISER)
+					.setFormat(BinaryFormat.COMPACT);
+			throw new TestFailureException("The compact format should require a random access deserialiser.");
+		} catch (IllegalStateException e) {
+			// Do nothing as this is expected behaviour.
+		}
+		for (int i = 0; i < 200; i++) {
+			Origin compactOrigin = new Origin(OriginTesting.createRandomFile(), 
+					OriginTesting.REFERENCE_RANDOM_ACCESS_DESERIALISER);
+			compactOrigin.setFormat(BinaryFormat.COMPACT);
+			Origin standardOrigin = new Origin(OriginTesting.createRandomFile(), 
+					OriginTesting.REFERENCE_RANDOM_ACCESS_DESERIALISER);
+			int randomNumResource = TestRunnerWrapper.RANDOM.nextInt(300) + 1;
+			for (int j = 0; j < randomNumResource; j++) {
+				ResourceReference reference = TestRunnerWrapper.RANDOM.nextBoolean() ? null 
+						: new ResourceReference(standardOrigin.getFile().getPath(), TestRunnerWrapper.RANDOM.nextLong());
+				compactOrigin.requestAdd(new ReferenceTestResource(reference));
+				standardOrigin.requestAdd(new ReferenceTestResource(reference));
+			}
+			// gaps between the IDs
+			for (int j = TestRunnerWrapper.RANDOM.nextInt(randomNumResource); j > 0; j--) {
+				long id = compactOrigin.getResources()[TestRunnerWrapper.RANDOM.nextInt(
+						compactOrigin.getResources().length)].getID().getID();
+				compactOrigin.remove(id);
+				standardOrigin.remove(id);
+			}
+			File compactIndex = new File(compactOrigin.getFile().getPath() + Origin.INDEX_EXTENSION);
+			try {
+				compactOrigin.write();
+				standardOrigin.write();
+				TestSubject.assertTestCondition(compactOrigin.getFile().length() < standardOrigin.getFile().length(), 
+						String.format("The compact origin file %s (%s bytes) should be smaller than the standard "
+								+ "origin file %s (%s bytes).", compactOrigin.getFile(), compactOrigin.getFile().length(), 
+								standardOrigin.getFile(), standardOrigin.getFile().length()));
+				Origin readOrigin = new Origin(compactOrigin.getFile(), compactOrigin.getDeserialiser());
+				readOrigin.read();
+				// the IDs of removed resources are not reserved anymore, so only the resources are compared
+				HashSet<Resource> expectedResources = new HashSet<Resource>(Arrays.asList(compactOrigin.getResources()));
+				TestSubject.assertTestCondition(expectedResources.equals(
+						new HashSet<Resource>(Arrays.asList(readOrigin.getResources()))), 
+						String.format("Origin %s should equal the origin %s", readOrigin, compactOrigin));
+				// single resources are decoded relative to the preceding resource
+				Origin mappedOrigin = new Origin(compactOrigin.getFile(), compactOrigin.getDeserialiser());
+				mappedOrigin.map();
+				Resource[] compactResources = compactOrigin.getResources();
+				Resource expected = compactResources[TestRunnerWrapper.RANDOM.nextInt(compactResources.length)];
+				Resource retrieved = mappedOrigin.retrieve(expected.getID().getID());
+				TestSubject.assertTestCondition(expected.equals(retrieved), 
+						String.format("The resource %s has been retrieved as %s.", expected, retrieved));
+				TestSubject.assertTestCondition(expectedResources.equals(
+						new HashSet<Resource>(Arrays.asList(mappedOrigin.getResources()))), 
+						String.format("Mapped origin %s should equal the origin %s", mappedOrigin, compactOrigin));
+				compactIndex.delete();
+				Origin scannedOrigin = new Origin(compactOrigin.getFile(), compactOrigin.getDeserialiser());
+				scannedOrigin.map();
+				TestSubject.assertTestCondition(expectedResources.equals(
+						new HashSet<Resource>(Arrays.asList(scannedOrigin.getResources()))), 
+						String.format("Scanned origin %s should equal the origin %s", scannedOrigin, compactOrigin));
+				// compact files cannot be streamed
+				Origin streamedOrigin = new Origin(compactOrigin.getFile(), OriginTesting.REFERENCE_DESERIALISER);
+				try {
+					streamedOrigin.read();
+					throw new TestFailureException(String.format("Origin %s should not be streamed from a "
+							+ "compact file.", streamedOrigin));
+				} catch (IOException e) {
+					// Do nothing as this is expected behaviour.
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			}
+			compactOrigin.getFile().delete();
+			compactIndex.delete();
+			standardOrigin.getFile().delete();
+			new File(standardOrigin.getFile().getPath() + Origin.INDEX_EXTENSION).delete();
+		}
+	}
+	
+	/**
+	 * Test decoding compact origin files containing resources, which do not write their ID as 
+	 * compact ID, followed by resources, which do.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testCompactIDBase() throws TestFailureException {
+		byte fixedType = 1;
+		byte compactType = 2;
+		CodecRegistry registry = new CodecRegistry(0);
+		registry.register(fixedType, FixedIDTestResource.createCodec(fixedType));
+		registry.register(compactType, TypedTestResource.createCodec(compactType));
+		for (int i = 0; i < 50; i++) {
+			Origin writtenOrigin = new Origin(OriginTesting.createRandomFile(), registry);
+			writtenOrigin.setFormat(BinaryFormat.COMPACT);
+			int randomNumResource = TestRunnerWrapper.RANDOM.nextInt(300) + 2;
+			for (int j = 0; j < randomNumResource; j++) {
+				// every resource without compact ID is followed by one with compact ID
+				if (j % 2 == 0) {
+					writtenOrigin.requestAdd(new FixedIDTestResource(fixedType));
+				} else {
+					writtenOrigin.requestAdd(new TypedTestResource(compactType));
+				}
+			}
+			File indexFile = new File(writtenOrigin.getFile().getPath() + Origin.INDEX_EXTENSION);
+			try {
+				writtenOrigin.write();
+				HashSet<Resource> expectedResources = new HashSet<Resource>(Arrays.asList(writtenOrigin.getResources()));
+				Origin readOrigin = new Origin(writtenOrigin.getFile(), registry);
+				readOrigin.read();
+				TestSubject.assertTestCondition(expectedResources.equals(
+						new HashSet<Resource>(Arrays.asList(readOrigin.getResources()))), 
+						String.format("Origin %s should equal the origin %s", readOrigin, writtenOrigin));
+				// single resources are decoded relative to the preceding resource
+				Origin mappedOrigin = new Origin(writtenOrigin.getFile(), registry);
+				mappedOrigin.map();
+				for (Resource expected : writtenOrigin.getResources()) {
+					Resource retrieved = mappedOrigin.retrieve(expected.getID().getID());
+					TestSubject.assertTestCondition(expected.equals(retrieved), 
+							String.format("The resource %s has been retrieved as %s.", expected, retrieved));
+				}
+				indexFile.delete();
+				Origin scannedOrigin = new Origin(writtenOrigin.getFile(), registry);
+				scannedOrigin.map();
+				TestSubject.assertTestCondition(expectedResources.equals(
+						new HashSet<Resource>(Arrays.asList(scannedOrigin.getResources()))), 
+						String.format("Scanned origin %s should equal the origin %s", scannedOrigin, writtenOrigin));
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			}
+			writtenOrigin.getFile().delete();
+			indexFile.delete();
+		}
+	}
+	
+	/**
+	 * Test the header of origin files.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testHeader() throws TestFailureException {
+		for (int i = 0; i < 50; i++) {
+			Origin writtenOrigin = new Origin(OriginTesting.createRandomFile(), 
+					OriginTesting.REFERENCE_RANDOM_ACCESS_DESERIALISER);
+			writtenOrigin.setFormat(BinaryFormat.COMPACT);
+			int randomNumResource = TestRunnerWrapper.RANDOM.nextInt(100) + 1;
+			for (int j = 0; j < randomNumResource; j++) {
+				writtenOrigin.requestAdd(new ReferenceTestResource(new ResourceReference(
+						writtenOrigin.getFile().getPath(), TestRunnerWrapper.RANDOM.nextLong())));
+			}
+			File index = new File(writtenOrigin.getFile().getPath() + Origin.INDEX_EXTENSION);
+			try {
+				writtenOrigin.write();
+				byte[] currentFile = Files.readAllBytes(writtenOrigin.getFile().toPath());
+				ByteBuffer header = ByteBuffer.wrap(currentFile);
+				TestSubject.assertTestCondition(header.getInt(Integer.BYTES) == 5 && header.getInt(2 * Integer.BYTES) == 3 
+						&& header.getInt(3 * Integer.BYTES) == 0 && header.getInt(4 * Integer.BYTES) == randomNumResource, 
+						String.format("The header of origin file %s does not state version 5, the compact and framed "
+								+ "flags, no codec and %s resources.", writtenOrigin.getFile(), randomNumResource));
+				// a resource count not matching the resources
+				ByteBuffer miscountedFile = ByteBuffer.wrap(currentFile.clone());
+				miscountedFile.putInt(4 * Integer.BYTES, randomNumResource + TestRunnerWrapper.RANDOM.nextInt(10) + 1);
+				Files.write(writtenOrigin.getFile().toPath(), miscountedFile.array());
+				try {
+					new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser()).map();
+					throw new TestFailureException(String.format("Origin file %s does not contain the stated "
+							+ "number of resources and should not be mapped.", writtenOrigin.getFile()));
+				} catch (IOException e) {
+					// Do nothing as this is expected behaviour.
+				}
+				// unknown flags and versions
+				ByteBuffer flaggedFile = ByteBuffer.wrap(currentFile.clone());
+				flaggedFile.putInt(2 * Integer.BYTES, 1 << (TestRunnerWrapper.RANDOM.nextInt(31) + 1));
+				Files.write(writtenOrigin.getFile().toPath(), flaggedFile.array());
+				try {
+					new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser()).read();
+					throw new TestFailureException(String.format("Origin file %s has unknown flags and should not "
+							+ "be read.", writtenOrigin.getFile()));
+				} catch (IOException e) {
+					// Do nothing as this is expected behaviour.
+				}
+				ByteBuffer futureFile = ByteBuffer.wrap(currentFile.clone());
+				futureFile.putInt(Integer.BYTES, 6);
+				Files.write(writtenOrigin.getFile().toPath(), futureFile.array());
+				try {
+					new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser()).read();
+					throw new TestFailureException(String.format("Origin file %s has an unknown version and "
+							+ "should not be read.", writtenOrigin.getFile()));
+				} catch (IOException e) {
+					// Do nothing as this is expected behaviour.
+				}
+				Files.write(writtenOrigin.getFile().toPath(), Arrays.copyOf(currentFile, OriginTesting.HEADER_BYTES - 1));
+				try {
+					new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser()).read();
+					throw new TestFailureException(String.format("Origin file %s ends within its header and "
+							+ "should not be read.", writtenOrigin.getFile()));
+				} catch (IOException e) {
+					// Do nothing as this is expected behaviour.
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			}
+			writtenOrigin.getFile().delete();
+			index.delete();
+		}
+		new File(OriginTesting.TEST_FOLDER).delete();
+	}
+	
+	/**
+	 * Test decoding mapped resources in parallel.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testParallelDecoding() throws TestFailureException {
+		try {
+			new Origin(OriginTesting.createRandomFile(), OriginTesting.REFERENCE_DESERIALISER).setParallelDecoding(true);
+			throw new TestFailureException("Parallel decoding should require a random access deserialiser.");
+		} catch (IllegalStateException e) {
+			// Do nothing as this is expected behaviour.
+		}
+		for (int i = 0; i < 10; i++) {
+			Origin writtenOrigin = new Origin(OriginTesting.createRandomFile(), 
+					OriginTesting.REFERENCE_RANDOM_ACCESS_DESERIALISER);
+			writtenOrigin.setFormat(TestRunnerWrapper.RANDOM.nextBoolean() ? BinaryFormat.COMPACT : BinaryFormat.STANDARD);
+			// more resources than decoded by a single task
+			int randomNumResource = TestRunnerWrapper.RANDOM.nextInt(50000) + 5000;
+			for (int j = 0; j < randomNumResource; j++) {
+				ResourceReference reference = TestRunnerWrapper.RANDOM.nextBoolean() ? null 
+						: new ResourceReference(writtenOrigin.getFile().getPath(), TestRunnerWrapper.RANDOM.nextLong());
+				writtenOrigin.requestAdd(new ReferenceTestResource(reference));
+			}
+			HashSet<Resource> expectedResources = new HashSet<Resource>(Arrays.asList(writtenOrigin.getResources()));
+			File index = new File(writtenOrigin.getFile().getPath() + Origin.INDEX_EXTENSION);
+			try {
+				writtenOrigin.write();
+				Origin readOrigin = new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser());
+				readOrigin.setParallelDecoding(true);
+				TestSubject.assertTestCondition(readOrigin.isParallelDecoding(), 
+						String.format("Origin %s should decode in parallel.", readOrigin));
+				readOrigin.read();
+				TestSubject.assertTestCondition(expectedResources.equals(
+						new HashSet<Resource>(Arrays.asList(readOrigin.getResources()))), 
+						String.format("Origin %s should equal the origin %s", readOrigin, writtenOrigin));
+				// retrieve some resources before decoding the remaining ones at once
+				index.delete();
+				Origin mappedOrigin = new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser(), null, true);
+				mappedOrigin.setParallelDecoding(true);
+				mappedOrigin.map();
+				Resource[] writtenResources = writtenOrigin.getResources();
+				for (int j = TestRunnerWrapper.RANDOM.nextInt(100); j > 0; j--) {
+					Resource expected = writtenResources[TestRunnerWrapper.RANDOM.nextInt(writtenResources.length)];
+					Resource retrieved = mappedOrigin.retrieve(expected.getID().getID());
+					TestSubject.assertTestCondition(expected.equals(retrieved), 
+							String.format("The resource %s has been retrieved as %s.", expected, retrieved));
+				}
+				TestSubject.assertTestCondition(expectedResources.equals(
+						new HashSet<Resource>(Arrays.asList(mappedOrigin.getResources()))), 
+						String.format("Mapped origin %s should equal the origin %s", mappedOrigin, writtenOrigin));
+				readOrigin.setParallelDecoding(false);
+				TestSubject.assertTestCondition(!readOrigin.isParallelDecoding(), 
+						String.format("Origin %s should not decode in parallel.", readOrigin));
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			}
+			// corrupted blocks are detected before decoding
+			try (RandomAccessFile corruptedFile = new RandomAccessFile(writtenOrigin.getFile(), "rw")) {
+				long position = OriginTesting.HEADER_BYTES + Integer.BYTES + TestRunnerWrapper.RANDOM.nextInt(
+						randomNumResource);
+				corruptedFile.seek(position);
+				int original = corruptedFile.read();
+				corruptedFile.seek(position);
+				corruptedFile.write(original ^ 0xFF);
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			}
+			Origin corruptedOrigin = new Origin(writtenOrigin.getFile(), writtenOrigin.getDeserialiser());
+			corruptedOrigin.setParallelDecoding(true);
+			try {
+				corruptedOrigin.read();
+				throw new TestFailureException(String.format("The corrupted origin file %s should not be read.", 
+						writtenOrigin.getFile()));
+			} catch (IOException | UncheckedIOException e) {
+				// Do nothing as this is expected behaviour.
+			}
+			writtenOrigin.getFile().delete();
+			index.delete();
+		}
+		new File(OriginTesting.TEST_FOLDER).delete();
+	}
+	
+	/**
+	 * Test reading origin files written by earlier versions, which are stored next to this class. 
+	 * Every file contains 24 reference test resources, the resource with index j referencing null 
+	 * if j is a multiple of 5 and the resource 1000 * j - 7 of the origin legacy/referenced-(j % 3) 
+	 * otherwise. The files of the second and fourth version store their resources in the standard 
+	 * format, the file of the third version in the compact format.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testLegacyVersions() throws TestFailureException {
+		for (int version = 2; version <= 4; version++) {
+			Origin legacyOrigin = new Origin(OriginTesting.createRandomFile(), 
+					OriginTesting.REFERENCE_RANDOM_ACCESS_DESERIALISER);
+			HashSet<Resource> expectedResources = new HashSet<Resource>();
+			for (int j = 0; j < 24; j++) {
+				expectedResources.add(new ReferenceTestResource(new ResourceID(legacyOrigin, Long.MIN_VALUE + j), 
+						j % 5 == 0 ? null : new ResourceReference("legacy/referenced-" + (j % 3) + ".origin", 1000L * j - 7)));
+			}
+			try (InputStream legacyFile = OriginTesting.class.getResourceAsStream(
+					String.format("legacy/version-%s.origin", version))) {
+				TestSubject.assertTestCondition(legacyFile != null, 
+						String.format("The origin file of version %s is missing.", version));
+				legacyOrigin.getFile().getParentFile().mkdirs();
+				Files.write(legacyOrigin.getFile().toPath(), legacyFile.readAllBytes());
+				legacyOrigin.read();
+				TestSubject.assertTestCondition(expectedResources.equals(
+						new HashSet<Resource>(Arrays.asList(legacyOrigin.getResources()))), 
+						String.format("Origin %s of version %s should contain the resources %s", legacyOrigin, 
+								version, expectedResources));
+				legacyOrigin.setParallelDecoding(true);
+				legacyOrigin.read();
+				TestSubject.assertTestCondition(expectedResources.equals(
+						new HashSet<Resource>(Arrays.asList(legacyOrigin.getResources()))), 
+						String.format("Origin %s of version %s decoded in parallel should contain the resources %s", 
+								legacyOrigin, version, expectedResources));
+				// scanned, as there is no index file
+				Origin mappedOrigin = new Origin(legacyOrigin.getFile(), legacyOrigin.getDeserialiser());
+				mappedOrigin.map();
+				TestSubject.assertTestCondition(expectedResources.equals(
+						new HashSet<Resource>(Arrays.asList(mappedOrigin.getResources()))), 
+						String.format("Mapped origin %s of version %s should contain the resources %s", mappedOrigin, 
+								version, expectedResources));
+				// the resources are written in the current version
+				mappedOrigin.write();
+				Origin rewrittenOrigin = new Origin(legacyOrigin.getFile(), legacyOrigin.getDeserialiser());
+				rewrittenOrigin.read();
+				TestSubject.assertTestCondition(expectedResources.equals(
+						new HashSet<Resource>(Arrays.asList(rewrittenOrigin.getResources()))), 
+						String.format("Rewritten origin %s of version %s should contain the resources %s", 
+								rewrittenOrigin, version, expectedResources));
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			}
+			legacyOrigin.getFile().delete();
+			new File(legacyOrigin.getFile().getPath() + Origin.INDEX_EXTENSION).delete();
+		}
+		new File(OriginTesting.TEST_FOLDER).delete();
+	}
+	
+	/**
+	 * Test framing resources as records.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testFraming() throws TestFailureException {
+		for (int i = 0; i < 100; i++) {
+			Origin writtenOrigin = new Origin(OriginTesting.createRandomFile(), 
+					OriginTesting.REFERENCE_RANDOM_ACCESS_DESERIALISER);
+			writtenOrigin.setFormat(TestRunnerWrapper.RANDOM.nextBoolean() ? BinaryFormat.COMPACT : BinaryFormat.STANDARD);
+			int randomNumResource = TestRunnerWrapper.RANDOM.nextInt(300) + 1;
+			for (int j = 0; j < randomNumResource; j++) {
+				ResourceReference reference = TestRunnerWrapper.RANDOM.nextBoolean() ? null 
+						: new ResourceReference(TestRunnerWrapper.createRandomString(), TestRunnerWrapper.RANDOM.nextLong());
+				writtenOrigin.requestAdd(new ReferenceTestResource(reference));
+			}
+			HashSet<Resource> expectedResources = new HashSet<Resource>(Arrays.asList(writtenOrigin.getResources()));
+			File index = new File(writtenOrigin.getFile().getPath() + Origin.INDEX_EXTENSION);
+			try {
+				writtenOrigin.write();
+				index.delete();
+				// the records are skipped by their length instead of by the deserialiser
+				Origin scannedOrigin = new Origin(writtenOrigin.getFile(), OriginTesting.ID_SCANNING_DESERIALISER);
+				scannedOrigin.map();
+				Resource[] writtenResources = writtenOrigin.getResources();
+				Resource expected = writtenResources[TestRunnerWrapper.RANDOM.nextInt(writtenResources.length)];
+				Resource retrieved = scannedOrigin.retrieve(expected.getID().getID());
+				TestSubject.assertTestCondition(expected.equals(retrieved), 
+						String.format("The resource %s has been retrieved as %s.", expected, retrieved));
+				TestSubject.assertTestCondition(expectedResources.equals(
+						new HashSet<Resource>(Arrays.asList(scannedOrigin.getResources()))), 
+						String.format("Scanned origin %s should equal the origin %s", scannedOrigin, writtenOrigin));
+				Origin readOrigin = new Origin(writtenOrigin.getFile(), OriginTesting.ID_SCANNING_DESERIALISER);
+				readOrigin.read();
+				TestSubject.assertTestCondition(expectedResources.equals(
+						new HashSet<Resource>(Arrays.asList(readOrigin.getResources()))), 
+						String.format("Origin %s should equal the origin %s", readOrigin, writtenOrigin));
+			} catch (IOException e) {
+				e.printStackTrace();
+				throw new TestFailureException(e);
+			}
+			writtenOrigin.getFile().delete();
+			index.delete();
+		}
+		new File(OriginTesting.TEST_FOLDER).delete();
+	}
+	
 	/**
 	 * Create a random file.
 	 * 
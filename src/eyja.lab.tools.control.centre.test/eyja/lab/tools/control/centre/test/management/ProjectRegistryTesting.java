@@ -0,0 +1,192 @@
+package eyja.lab.tools.control.centre.test.management;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.BooleanSupplier;
+
+import eyja.lab.tools.control.centre.management.ProjectRegistry;
+import eyja.lab.tools.control.centre.test.TestRunnerWrapper;
+import koro.sensei.tester.TestFailureException;
+import koro.sensei.tester.TestSubject;
+
+/**
+ * The ProjectRegistryTesting class test the ProjectRegistry class for correct functionality.
+ * 
+ * @author Planters
+ *
+ */
+public class ProjectRegistryTesting implements TestSubject {
+	
+	private static final File TEST_FOLDER = new File("LabToolsTestRunnerRegistry");
+	// the time in milliseconds changes of the watched folder may take to be indexed
+	private static final long WATCH_TIMEOUT = 10000;
+	
+	@Override
+	public void runAllTests() throws TestFailureException {
+		ProjectRegistryTesting.testConstructor();
+		ProjectRegistryTesting.testMissingFolder();
+		ProjectRegistryTesting.testIndex();
+		ProjectRegistryTesting.testClose();
+	}
+	
+	/**
+	 * Test the constructor.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testConstructor() throws TestFailureException {
+		try {
+			new ProjectRegistry(null);
+			throw new TestFailureException("A project registry should not be created without folder.");
+		} catch (NullPointerException e) {
+			// Do nothing as this is expected behaviour.
+		}
+		TestSubject.assertTestCondition(ProjectRegistry.getDefault() == ProjectRegistry.getDefault(), 
+				"The default project registry should be shared.");
+	}
+	
+	/**
+	 * Test that a missing projects folder is treated as empty and indexed after its creation.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testMissingFolder() throws TestFailureException {
+		ProjectRegistryTesting.deleteFiles();
+		try (ProjectRegistry registry = new ProjectRegistry(ProjectRegistryTesting.TEST_FOLDER)) {
+			TestSubject.assertTestCondition(registry.getProjectNames().isEmpty(), 
+					String.format("The missing folder should not contain the projects %s.", registry.getProjectNames()));
+			TestSubject.assertTestCondition(!registry.exists("Missing"), 
+					"A project in a missing folder should not exist.");
+			TestSubject.assertTestCondition(!registry.contains("Missing"), 
+					"A project in a missing folder should not be indexed.");
+			String name = Integer.toString(TestRunnerWrapper.RANDOM.nextInt(Integer.MAX_VALUE));
+			TestSubject.assertTestCondition(new File(ProjectRegistryTesting.TEST_FOLDER, name).mkdirs(), 
+					"The project folder could not be created.");
+			TestSubject.assertTestCondition(registry.contains(name), 
+					String.format("The project %s should be indexed after creating the projects folder.", name));
+		} catch (IOException e) {
+			throw new TestFailureException(e);
+		} finally {
+			ProjectRegistryTesting.deleteFiles();
+		}
+	}
+	
+	/**
+	 * Test that the index follows projects being created and deleted.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testIndex() throws TestFailureException {
+		ProjectRegistryTesting.deleteFiles();
+		try (ProjectRegistry registry = new ProjectRegistry(ProjectRegistryTesting.TEST_FOLDER)) {
+			TreeSet<String> names = new TreeSet<String>();
+			for (int i = 0; i < 10; i++) {
+				String name = String.format("Project %s", TestRunnerWrapper.RANDOM.nextInt(Integer.MAX_VALUE));
+				names.add(name);
+				new File(ProjectRegistryTesting.TEST_FOLDER, name).mkdirs();
+			}
+			SortedSet<String> indexed = registry.getProjectNames();
+			TestSubject.assertTestCondition(names.equals(indexed), 
+					String.format("The projects %s should be indexed instead of %s.", names, indexed));
+			try {
+				indexed.clear();
+				throw new TestFailureException("The indexed project names should not be modifiable.");
+			} catch (UnsupportedOperationException e) {
+				// Do nothing as this is expected behaviour.
+			}
+			for (String name : names) {
+				TestSubject.assertTestCondition(registry.exists(name), 
+						String.format("The project %s should exist.", name));
+			}
+			// changes made after the folder has been listed are only seen by watching
+			String created = "Created";
+			new File(ProjectRegistryTesting.TEST_FOLDER, created).mkdir();
+			TestSubject.assertTestCondition(ProjectRegistryTesting.await(() -> registry.contains(created)), 
+					String.format("The created project %s should be indexed.", created));
+			String deleted = names.first();
+			new File(ProjectRegistryTesting.TEST_FOLDER, deleted).delete();
+			TestSubject.assertTestCondition(ProjectRegistryTesting.await(() -> !registry.contains(deleted)), 
+					String.format("The deleted project %s should not be indexed.", deleted));
+			// checking a single project does not depend on the watch service
+			String checked = "Checked";
+			new File(ProjectRegistryTesting.TEST_FOLDER, checked).mkdir();
+			TestSubject.assertTestCondition(registry.exists(checked), 
+					String.format("The project %s should exist immediately.", checked));
+			new File(ProjectRegistryTesting.TEST_FOLDER, checked).delete();
+			TestSubject.assertTestCondition(!registry.exists(checked), 
+					String.format("The project %s should not exist immediately.", checked));
+			try {
+				registry.exists(null);
+				throw new TestFailureException("A project without name should not be checked.");
+			} catch (NullPointerException e) {
+				// Do nothing as this is expected behaviour.
+			}
+		} catch (IOException e) {
+			throw new TestFailureException(e);
+		} finally {
+			ProjectRegistryTesting.deleteFiles();
+		}
+	}
+	
+	/**
+	 * Test that a closed registry lists the projects folder on every use.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testClose() throws TestFailureException {
+		ProjectRegistryTesting.deleteFiles();
+		ProjectRegistry registry = new ProjectRegistry(ProjectRegistryTesting.TEST_FOLDER);
+		try {
+			TestSubject.assertTestCondition(ProjectRegistryTesting.TEST_FOLDER.mkdirs(), 
+					"The projects folder could not be created.");
+			TestSubject.assertTestCondition(registry.getProjectNames().isEmpty(), 
+					String.format("The empty folder should not contain the projects %s.", registry.getProjectNames()));
+			registry.close();
+			String unwatched = "Unwatched";
+			new File(ProjectRegistryTesting.TEST_FOLDER, unwatched).mkdir();
+			TestSubject.assertTestCondition(registry.contains(unwatched), 
+					String.format("The project %s should be indexed by the closed registry.", unwatched));
+		} catch (IOException e) {
+			throw new TestFailureException(e);
+		} finally {
+			ProjectRegistryTesting.deleteFiles();
+		}
+	}
+	
+	/**
+	 * Wait until the specified condition is met or the watch timeout has passed.
+	 * 
+	 * @param condition - the condition to wait for
+	 * @return true if the condition has been met
+	 * @throws TestFailureException if the waiting thread has been interrupted
+	 */
+	private static boolean await(BooleanSupplier condition) throws TestFailureException {
+		long end = System.currentTimeMillis() + ProjectRegistryTesting.WATCH_TIMEOUT;
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > end) {
+				return false;
+			}
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				throw new TestFailureException(e);
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Delete all test projects and their folder.
+	 */
+	private static void deleteFiles() {
+		File[] projects = ProjectRegistryTesting.TEST_FOLDER.listFiles();
+		if (projects != null) {
+			Arrays.stream(projects).forEach(File::delete);
+		}
+		ProjectRegistryTesting.TEST_FOLDER.delete();
+	}
+
+}
@@ -0,0 +1,320 @@
+package eyja.lab.tools.control.centre.test.management;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+import eyja.lab.tools.control.centre.management.CodecRegistry;
+import eyja.lab.tools.control.centre.management.Origin;
+import eyja.lab.tools.control.centre.management.Project;
+import eyja.lab.tools.control.centre.management.ProjectManifest;
+import eyja.lab.tools.control.centre.management.Resource;
+import eyja.lab.tools.control.centre.test.TestRunnerWrapper;
+import koro.sensei.tester.TestFailureException;
+import koro.sensei.tester.TestSubject;
+
+/**
+ * The ProjectTesting class test the Project class for correct functionality.
+ * 
+ * @author Planters
+ *
+ */
+public class ProjectTesting implements TestSubject {
+	
+	private static final String TEST_PROJECT = "LabToolsTestRunnerProject";
+	private static final byte[] TYPES = {0, 7, (byte) 200};
+	
+	@Override
+	public void runAllTests() throws TestFailureException {
+		ProjectTesting.testOpen();
+		ProjectTesting.testRead();
+		ProjectTesting.testManifest();
+	}
+	
+	/**
+	 * Test opening existing projects.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testOpen() throws TestFailureException {
+		boolean createdProjectsFolder = Project.getProjectsFolder().mkdirs();
+		try {
+			Project.open(ProjectTesting.TEST_PROJECT);
+			throw new TestFailureException(String.format("The project %s should not exist.", 
+					ProjectTesting.TEST_PROJECT));
+		} catch (IOException e) {
+			// Do nothing as this is expected behaviour.
+		}
+		for (String name : new String[] {null, ""}) {
+			try {
+				Project.open(name);
+				throw new TestFailureException(String.format("A project named %s should not be opened.", name));
+			} catch (IllegalArgumentException e) {
+				// Do nothing as this is expected behaviour.
+			} catch (IOException e) {
+				throw new TestFailureException(e);
+			}
+		}
+		try {
+			Project createdProject = new Project(ProjectTesting.TEST_PROJECT);
+			createdProject.write();
+			Project openedProject = Project.open(ProjectTesting.TEST_PROJECT);
+			TestSubject.assertTestCondition(openedProject.getProjectFile().equals(createdProject.getProjectFile()), 
+					String.format("The project file %s should be %s.", openedProject.getProjectFile(), 
+							createdProject.getProjectFile()));
+			TestSubject.assertTestCondition(openedProject.read().isEmpty(), 
+					String.format("The project %s should not contain any origins.", openedProject.getProjectFile()));
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new TestFailureException(e);
+		} finally {
+			ProjectTesting.deleteTestProject(createdProjectsFolder);
+		}
+	}
+	
+	/**
+	 * Test loading all origins of a project.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testRead() throws TestFailureException {
+		boolean createdProjectsFolder = Project.getProjectsFolder().mkdirs();
+		int codecID = TestRunnerWrapper.RANDOM.nextInt(Integer.MAX_VALUE) + 1;
+		CodecRegistry registry = new CodecRegistry(codecID);
+		for (byte type : ProjectTesting.TYPES) {
+			registry.register(type, TypedTestResource.createCodec(type));
+		}
+		try {
+			for (int i = 0; i < 20; i++) {
+				Project writtenProject = new Project(ProjectTesting.TEST_PROJECT);
+				ArrayList<Origin> origins = new ArrayList<Origin>();
+				int randomNumOrigin = TestRunnerWrapper.RANDOM.nextInt(20) + 1;
+				for (int j = 0; j < randomNumOrigin; j++) {
+					Origin origin = new Origin(new File(writtenProject.getProjectFolder(), 
+							Integer.toString(j) + Origin.ORIGIN_EXTENSION), registry);
+					int randomNumResource = TestRunnerWrapper.RANDOM.nextInt(300);
+					for (int k = 0; k < randomNumResource; k++) {
+						origin.requestAdd(new TypedTestResource(ProjectTesting.TYPES[
+								TestRunnerWrapper.RANDOM.nextInt(ProjectTesting.TYPES.length)]));
+					}
+					origin.write();
+					writtenProject.getOriginHandler().requestAdd(origin);
+					origins.add(origin);
+				}
+				writtenProject.write();
+				// every origin is loaded by the factory of its codec
+				Project readProject = Project.open(ProjectTesting.TEST_PROJECT);
+				readProject.registerOriginFactory(codecID, file -> new Origin(file, registry));
+				Map<File, Duration> loadingTimes = readProject.read();
+				TestSubject.assertTestCondition(loadingTimes.size() == origins.size(), 
+						String.format("The project should have loaded %s instead of %s origins.", 
+								origins.size(), loadingTimes.size()));
+				for (Origin origin : origins) {
+					TestSubject.assertTestCondition(loadingTimes.containsKey(origin.getFile()), 
+							String.format("No loading time has been reported for origin %s.", origin.getFile()));
+					Origin readOrigin = readProject.getOriginHandler().getOrigin(origin.getFile().getPath());
+					TestSubject.assertTestCondition(readOrigin != null && new HashSet<Resource>(Arrays.asList(
+							readOrigin.getResources())).equals(new HashSet<Resource>(Arrays.asList(
+									origin.getResources()))), 
+							String.format("The loaded origin %s should equal %s.", readOrigin, origin));
+				}
+				// lazily registered origins are only read on their first dereference
+				Project lazyProject = Project.open(ProjectTesting.TEST_PROJECT);
+				lazyProject.registerOriginFactory(codecID, file -> new Origin(file, registry));
+				lazyProject.readLazily();
+				TestSubject.assertTestCondition(lazyProject.getOriginHandler().getOrigins().length == origins.size(), 
+						String.format("The project should have registered %s instead of %s origins.", 
+								origins.size(), lazyProject.getOriginHandler().getOrigins().length));
+				for (Origin origin : origins) {
+					String path = origin.getFile().getPath();
+					TestSubject.assertTestCondition(!lazyProject.getOriginHandler().isLoaded(path), 
+							String.format("The origin %s should not have been loaded.", path));
+					for (Resource expected : origin.getResources()) {
+						TestSubject.assertTestCondition(expected.equals(lazyProject.getOriginHandler().dereference(
+								expected.getReference())), 
+								String.format("The resource %s should be dereferenced lazily.", expected));
+					}
+					TestSubject.assertTestCondition(origin.getResources().length == 0 
+							|| lazyProject.getOriginHandler().isLoaded(path), 
+							String.format("The origin %s should have been loaded.", path));
+				}
+				// origins without factory are not published, while all others are
+				Project unregisteredProject = Project.open(ProjectTesting.TEST_PROJECT);
+				Origin registeredOrigin = new Origin(origins.get(0).getFile(), registry);
+				unregisteredProject.getOriginHandler().requestAdd(registeredOrigin);
+				try {
+					unregisteredProject.read();
+					if (origins.size() > 1) {
+						throw new TestFailureException(String.format("The project %s should not be read "
+								+ "without origin factory.", unregisteredProject.getProjectFile()));
+					}
+				} catch (IOException e) {
+					TestSubject.assertTestCondition(e.getSuppressed().length == origins.size() - 1, 
+							String.format("%s instead of %s origins should have failed to load.", 
+									e.getSuppressed().length, origins.size() - 1));
+				}
+				TestSubject.assertTestCondition(Arrays.equals(unregisteredProject.getOriginHandler().getOrigins(), 
+						new Origin[] {registeredOrigin}), 
+						String.format("Only the registered origin %s should be published.", registeredOrigin));
+				TestSubject.assertTestCondition(registeredOrigin.getResources().length 
+						== origins.get(0).getResources().length, 
+						String.format("The registered origin %s should have been read.", registeredOrigin));
+				ProjectTesting.deleteTestProject(false);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new TestFailureException(e);
+		} finally {
+			ProjectTesting.deleteTestProject(createdProjectsFolder);
+		}
+	}
+	
+	/**
+	 * Test describing the origins of a project by its manifest.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testManifest() throws TestFailureException {
+		boolean createdProjectsFolder = Project.getProjectsFolder().mkdirs();
+		int codecID = TestRunnerWrapper.RANDOM.nextInt(Integer.MAX_VALUE) + 1;
+		CodecRegistry registry = new CodecRegistry(codecID);
+		for (byte type : ProjectTesting.TYPES) {
+			registry.register(type, TypedTestResource.createCodec(type));
+		}
+		try {
+			for (int i = 0; i < 20; i++) {
+				Project writtenProject = new Project(ProjectTesting.TEST_PROJECT);
+				TestSubject.assertTestCondition(writtenProject.getManifest() == null, 
+						String.format("The new project %s should not have a manifest.", writtenProject.getProjectFile()));
+				Origin[] origins = new Origin[TestRunnerWrapper.RANDOM.nextInt(10) + 1];
+				for (int j = 0; j < origins.length; j++) {
+					origins[j] = new Origin(new File(writtenProject.getProjectFolder(), 
+							Integer.toString(j) + Origin.ORIGIN_EXTENSION), registry);
+					int randomNumResource = TestRunnerWrapper.RANDOM.nextInt(300);
+					for (int k = 0; k < randomNumResource; k++) {
+						origins[j].requestAdd(new TypedTestResource(ProjectTesting.TYPES[
+								TestRunnerWrapper.RANDOM.nextInt(ProjectTesting.TYPES.length)]));
+					}
+					origins[j].write();
+					writtenProject.getOriginHandler().requestAdd(origins[j]);
+				}
+				// origins without file are not described
+				writtenProject.getOriginHandler().requestAdd(new Origin(null, registry));
+				writtenProject.write();
+				ProjectTesting.assertManifest(writtenProject.getManifest(), origins, codecID);
+				Project readProject = Project.open(ProjectTesting.TEST_PROJECT);
+				ProjectTesting.assertManifest(readProject.readManifest(), origins, codecID);
+				TestSubject.assertTestCondition(readProject.getOriginHandler().getOrigins().length == 0, 
+						"Reading the manifest should not load any origins.");
+				// changed origin files are described again
+				origins[0].requestAdd(new TypedTestResource(ProjectTesting.TYPES[0]));
+				origins[0].write();
+				origins[0].getFile().setLastModified(writtenProject.getManifest().getEntries().get(0).getLastModified() + 2000);
+				writtenProject.write();
+				ProjectTesting.assertManifest(writtenProject.getManifest(), origins, codecID);
+				TestSubject.assertTestCondition(writtenProject.getManifest().getEntries().get(0).isUnchanged(), 
+						String.format("The origin file %s should be unchanged.", origins[0].getFile()));
+				origins[0].getFile().setLastModified(origins[0].getFile().lastModified() + 2000);
+				TestSubject.assertTestCondition(!writtenProject.getManifest().getEntries().get(0).isUnchanged(), 
+						String.format("The origin file %s should have changed.", origins[0].getFile()));
+				// corrupted manifests are rejected
+				byte[] projectData = Files.readAllBytes(writtenProject.getProjectFile().toPath());
+				try (RandomAccessFile corruptedFile = new RandomAccessFile(writtenProject.getProjectFile(), "rw")) {
+					int corruptedPosition = TestRunnerWrapper.RANDOM.nextInt(projectData.length - 8) + 8;
+					corruptedFile.seek(corruptedPosition);
+					corruptedFile.writeByte(projectData[corruptedPosition] ^ 0xFF);
+				}
+				try {
+					Project.open(ProjectTesting.TEST_PROJECT).readManifest();
+					throw new TestFailureException(String.format("The corrupted project file %s should not be read.", 
+							writtenProject.getProjectFile()));
+				} catch (IOException e) {
+					// Do nothing as this is expected behaviour.
+				}
+				// legacy project files only stating the paths are still read
+				try (DataOutputStream legacyData = new DataOutputStream(new FileOutputStream(
+						writtenProject.getProjectFile()))) {
+					legacyData.writeInt(origins.length + 1);
+					for (Origin origin : origins) {
+						legacyData.writeInt(origin.getFile().getPath().length());
+						legacyData.writeUTF(origin.getFile().getPath());
+					}
+					legacyData.writeInt(-1);
+				}
+				Project legacyProject = Project.open(ProjectTesting.TEST_PROJECT);
+				legacyProject.registerOriginFactory(codecID, file -> new Origin(file, registry));
+				TestSubject.assertTestCondition(legacyProject.read().size() == origins.length, 
+						String.format("All %s origins of the legacy project file should be loaded.", origins.length));
+				for (ProjectManifest.Entry entry : legacyProject.getManifest().getEntries()) {
+					TestSubject.assertTestCondition(entry.getFileSize() == ProjectManifest.UNKNOWN 
+							&& !entry.isUnchanged(), 
+							String.format("The legacy entry %s should not state any metadata.", entry));
+				}
+				ProjectTesting.deleteTestProject(false);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new TestFailureException(e);
+		} finally {
+			ProjectTesting.deleteTestProject(createdProjectsFolder);
+		}
+	}
+	
+	/**
+	 * Assert that the specified manifest describes the specified origins.
+	 * 
+	 * @param manifest - the manifest to check
+	 * @param origins - the origins ordered by their path
+	 * @param codecID - the codec the origins have been written for
+	 * @throws TestFailureException if the manifest does not describe the origins
+	 * @throws IOException if an origin file could not be read
+	 */
+	private static void assertManifest(ProjectManifest manifest, Origin[] origins, int codecID) 
+			throws TestFailureException, IOException {
+		List<ProjectManifest.Entry> entries = manifest.getEntries();
+		TestSubject.assertTestCondition(entries.size() == origins.length, 
+				String.format("The manifest %s should describe %s origins.", manifest, origins.length));
+		for (int i = 0; i < origins.length; i++) {
+			ProjectManifest.Entry entry = entries.get(i);
+			File originFile = origins[i].getFile();
+			CRC32C checksum = new CRC32C();
+			checksum.update(Files.readAllBytes(originFile.toPath()));
+			TestSubject.assertTestCondition(entry.getFile().equals(originFile) && entry.getCodecID() == codecID 
+					&& entry.getResourceCount() == origins[i].getResources().length 
+					&& entry.getFileSize() == originFile.length() && entry.getLastModified() == originFile.lastModified() 
+					&& entry.getChecksum() == (int) checksum.getValue() && entry.isUnchanged(), 
+					String.format("The manifest entry %s should describe origin %s.", entry, origins[i]));
+		}
+	}
+	
+	/**
+	 * Delete the test project and all files it contains.
+	 * 
+	 * @param deleteProjectsFolder - true if the folder containing all projects should be deleted 
+	 * as well
+	 */
+	private static void deleteTestProject(boolean deleteProjectsFolder) {
+		File projectFolder = new File(Project.getProjectsFolder(), ProjectTesting.TEST_PROJECT);
+		File[] projectFiles = projectFolder.listFiles();
+		if (projectFiles != null) {
+			for (File f : projectFiles) {
+				f.delete();
+			}
+		}
+		projectFolder.delete();
+		if (deleteProjectsFolder) {
+			Project.getProjectsFolder().delete();
+		}
+	}
+
+}
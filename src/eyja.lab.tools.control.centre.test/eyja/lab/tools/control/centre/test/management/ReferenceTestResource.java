@@ -0,0 +1,123 @@
+package eyja.lab.tools.control.centre.test.management;
+
+import java.util.Objects;
+
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+import eyja.lab.tools.control.centre.binaryop.BinaryWriter;
+import eyja.lab.tools.control.centre.management.Origin;
+import eyja.lab.tools.control.centre.management.Resource;
+import eyja.lab.tools.control.centre.management.ResourceID;
+import eyja.lab.tools.control.centre.management.ResourceReference;
+
+/**
+ * The ReferenceTestResource class is a simple implementation of a resource consisting of a resource 
+ * ID and a reference to another resource for testing purposes.
+ * 
+ * @author Planters
+ *
+ */
+public final class ReferenceTestResource extends Resource {
+	
+	private final ResourceReference reference;
+	
+	/**
+	 * Create a test resource referencing the specified resource.
+	 * 
+	 * @param id - the resource's ID
+	 * @param reference - the referenced resource, may be null
+	 */
+	public ReferenceTestResource(@SuppressWarnings("exports") ResourceID id, 
+			@SuppressWarnings("exports") ResourceReference reference) {
+		this.setID(id);
+		this.reference = reference;
+	}
+	
+	/**
+	 * Create a test resource referencing the specified resource.
+	 * 
+	 * @param reference - the referenced resource, may be null
+	 */
+	public ReferenceTestResource(@SuppressWarnings("exports") ResourceReference reference) {
+		this.reference = reference;
+	}
+	
+	/**
+	 * Get the resource referenced by this resource.
+	 * 
+	 * @return the referenced resource
+	 */
+	@SuppressWarnings("exports")
+	public ResourceReference getResourceReference() {
+		return this.reference;
+	}
+	
+	@Override
+	public byte[] serialise() {
+		BinaryWriter writer = new BinaryWriter();
+		this.serialise(writer);
+		return writer.toByteArray();
+	}
+	
+	@Override
+	public void serialise(@SuppressWarnings("exports") BinaryWriter writer) {
+		writer.writeID(this.getID().getID());
+		// store the length for skipping the reference unless the resource is framed as a record
+		if (!writer.isFramed()) {
+			writer.writeInt(writer.getReferenceLength(this.reference));
+		}
+		writer.writeResourceReference(this.reference);
+	}
+	
+	/**
+	 * Skip the resource starting at the current position of the reader.
+	 * 
+	 * @param reader - the reader positioned at the start of a resource
+	 * @return the ID of the resource skipped
+	 */
+	public static long scan(@SuppressWarnings("exports") BinaryReader reader) {
+		long id = reader.readID();
+		// framed records are skipped by their length
+		if (!reader.isFramed()) {
+			reader.skip(reader.readInt());
+		}
+		return id;
+	}
+	
+	/**
+	 * Deserialise the resource starting at the current position of the reader.
+	 * 
+	 * @param reader - the reader positioned at the start of a resource
+	 * @param origin - the origin the resource belongs to
+	 * @return the deserialised resource
+	 */
+	public static ReferenceTestResource decode(@SuppressWarnings("exports") BinaryReader reader, 
+			@SuppressWarnings("exports") Origin origin) {
+		ResourceID id = new ResourceID(origin, reader.readID());
+		if (!reader.isFramed()) {
+			reader.readInt(); // length of the reference
+		}
+		return new ReferenceTestResource(id, reader.readResourceReference());
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * ((this.id == null) ? 0 : Long.hashCode(this.id.getID())) + Objects.hashCode(this.reference);
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		// ignore origin as this leads to a circular equals relation and a resulting infinity loop
+		if (obj instanceof ReferenceTestResource) {
+			ReferenceTestResource comp = (ReferenceTestResource) obj;
+			if (Objects.equals(this.reference, comp.reference)) {
+				if (this.id == null && comp.id == null) {
+					return true;
+				} else if (this.id != null && comp.id != null) {
+					return this.id.getID() == comp.id.getID();
+				}
+			}
+		}
+		return false;
+	}
+
+}
@@ -1,6 +1,12 @@
 package eyja.lab.tools.control.centre.test.management;
 
+import java.nio.charset.StandardCharsets;
+
+import eyja.lab.tools.control.centre.binaryop.BinaryConverter;
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+import eyja.lab.tools.control.centre.binaryop.BinaryWriter;
 import eyja.lab.tools.control.centre.management.Origin;
+import eyja.lab.tools.control.centre.management.OriginPath;
 import eyja.lab.tools.control.centre.management.ResourceID;
 import eyja.lab.tools.control.centre.management.ResourceReference;
 import eyja.lab.tools.control.centre.test.TestRunnerWrapper;
@@ -19,6 +25,7 @@ public class ResourceReferenceTesting implements TestSubject {
 	public void runAllTests() throws TestFailureException {
 		ResourceReferenceTesting.testConstructors();
 		ResourceReferenceTesting.testGetting();
+		ResourceReferenceTesting.testInterning();
 	}
 	
 	/**
@@ -112,7 +119,7 @@ public class ResourceReferenceTesting implements TestSubject {
 				TestSubject.assertTestCondition(testRef.getID() == testID, 
 						String.format("The ID specifier %s of the resource reference %s should be %s.", 
 								testRef.getID(), testRef, testID));
-				TestSubject.assertTestCondition(testRef.getOrigin() == testOrigin, 
+				TestSubject.assertTestCondition(testRef.getOrigin().equals(testOrigin), 
 						String.format("The origin specifier %s of the resource reference %s should be %s.", 
 								testRef.getOrigin(), testRef, testOrigin));
 			} { // test resource ID
@@ -123,11 +130,61 @@ public class ResourceReferenceTesting implements TestSubject {
 				TestSubject.assertTestCondition(testRef.getID() == testID, 
 						String.format("The ID specifier %s of the resource reference %s should be %s.", 
 								testRef.getID(), testRef, testID));
-				TestSubject.assertTestCondition(testRef.getOrigin() == testOrigin, 
+				TestSubject.assertTestCondition(testRef.getOrigin().equals(testOrigin), 
 						String.format("The origin specifier %s of the resource reference %s should be %s.", 
 								testRef.getOrigin(), testRef, testOrigin));
 			}
 		}
 	}
 	
+	/**
+	 * Test sharing interned origin paths between references.
+	 * 
+	 * @throws TestFailureException the test did fail
+	 */
+	private static void testInterning() throws TestFailureException {
+		for (int i = 0; i < 10000; i++) {
+			Origin testOrigin = OriginTesting.createRandomOrigin();
+			String testPath = testOrigin.getFile().getPath();
+			long testID = TestRunnerWrapper.RANDOM.nextLong();
+			ResourceReference[] testRefs = new ResourceReference[] {
+					new ResourceReference(new ResourceID(testOrigin, testID)), 
+					new ResourceReference(new String(testPath), testID), 
+					new ResourceReference(OriginPath.of(new String(testPath)).getPath(), testID), 
+					ResourceReference.of(OriginPath.of(new String(testPath)), testID), 
+					BinaryConverter.getResourceReference(BinaryConverter.toBytes(
+							new ResourceReference(testPath, testID))), 
+					null};
+			BinaryWriter testWriter = new BinaryWriter();
+			testWriter.writeResourceReference(testRefs[0]);
+			testRefs[5] = new BinaryReader(testWriter.toByteArray()).readResourceReference();
+			for (ResourceReference testRef : testRefs) {
+				TestSubject.assertTestCondition(testRef.getOriginPath() == testOrigin.getOriginPath() 
+						&& testRef.getOrigin() == testOrigin.getOriginPath().getPath(), 
+						String.format("The resource reference %s should share the origin path %s.", 
+								testRef, testOrigin.getOriginPath()));
+				TestSubject.assertTestCondition(testRef.equals(testRefs[0]) 
+						&& testRef.hashCode() == testRefs[0].hashCode(), 
+						String.format("The resource reference %s should equal %s.", testRef, testRefs[0]));
+			}
+			OriginPath otherPath = OriginPath.of(testPath + TestRunnerWrapper.createRandomString() + "failure");
+			TestSubject.assertTestCondition(otherPath != testOrigin.getOriginPath() 
+					&& otherPath.getHandle() != testOrigin.getOriginPath().getHandle(), 
+					String.format("The origin path %s should not share the handle of %s.", 
+							otherPath, testOrigin.getOriginPath()));
+			byte[] encodedPath = ("/" + testPath).getBytes(StandardCharsets.UTF_8);
+			TestSubject.assertTestCondition(testOrigin.getOriginPath().matches(encodedPath, 1, encodedPath.length - 1) 
+					&& !otherPath.matches(encodedPath, 1, encodedPath.length - 1), 
+					String.format("Only the origin path %s should match its representation.", 
+							testOrigin.getOriginPath()));
+		}
+		try {
+			OriginPath nullPath = OriginPath.of(null);
+			throw new TestFailureException(String.format("Interning the origin path %s should fail as "
+					+ "no path is supplied.", nullPath));
+		} catch (NullPointerException e) {
+			// Do nothing as this is expected behaviour.
+		}
+	}
+
 }
@@ -7,6 +7,7 @@ import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 
+import eyja.lab.tools.control.centre.management.OriginPath;
 import eyja.lab.tools.control.centre.management.ResourceReference;
 
 /**
@@ -42,6 +43,8 @@ public final class BinaryConverter {
 	private static final byte BOOLEAN_FALSE = 0;
 	private static final byte BOOLEAN_TRUE = 1;
 	private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+	// the origin path decoded most recently by each thread, as references often share their origin
+	private static final ThreadLocal<OriginPath> LAST_DECODED = new ThreadLocal<OriginPath>();
 	
 	/**
 	 * Constructor preventing instantiation.
@@ -187,7 +190,8 @@ public final class BinaryConverter {
 	}
 	
 	/**
-	 * Convert the specified array of bytes into a resource reference. May be null.
+	 * Convert the specified array of bytes into a resource reference. May be null. The origin 
+	 * path decoded most recently by the current thread is reused if it matches.
 	 * 
 	 * @param binaryReference - the binary representation of a resource reference
 	 * @return the resource reference represented by the supplied byte array
@@ -201,11 +205,16 @@ public final class BinaryConverter {
 			try {
 				int lengthOrigin = refBuffer.getInt();
 				if (lengthOrigin >= 0) {
-					byte[] binaryOrigin = new byte[lengthOrigin];
-					refBuffer.get(binaryOrigin);
-					String origin = new String(binaryOrigin, BinaryConverter.DEFAULT_CHARSET);
-					long id = refBuffer.getLong();
-					return new ResourceReference(origin, id);
+					if (refBuffer.remaining() < (long) lengthOrigin + BinaryConverter.LONG_BYTES) {
+						throw new BufferUnderflowException();
+					}
+					OriginPath origin = BinaryConverter.LAST_DECODED.get();
+					if (origin == null || !origin.matches(binaryReference, refBuffer.position(), lengthOrigin)) {
+						origin = OriginPath.of(binaryReference, refBuffer.position(), lengthOrigin);
+						BinaryConverter.LAST_DECODED.set(origin);
+					}
+					long id = refBuffer.getLong(refBuffer.position() + lengthOrigin);
+					return ResourceReference.of(origin, id);
 				} else {
 					return null;
 				}
@@ -0,0 +1,24 @@
+package eyja.lab.tools.control.centre.binaryop;
+
+/**
+ * The BinaryFormat enum represents how resource IDs and local date times are encoded by the 
+ * BinaryWriter and BinaryReader classes. Data can only be read in the format it has been 
+ * written in.
+ * 
+ * @author Planters
+ *
+ */
+public enum BinaryFormat {
+	
+	/**
+	 * IDs are written as longs and local date times as seven ints, identical to the BinaryConverter 
+	 * class.
+	 */
+	STANDARD, 
+	/**
+	 * IDs are written as variable length difference to the previously written ID and local date 
+	 * times as variable length epoch second followed by the nanosecond of the second.
+	 */
+	COMPACT;
+
+}
@@ -0,0 +1,496 @@
+package eyja.lab.tools.control.centre.binaryop;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import eyja.lab.tools.control.centre.management.OriginPath;
+import eyja.lab.tools.control.centre.management.ResourceReference;
+
+/**
+ * The BinaryReader class reads primitive values, strings, local date times and resource references 
+ * directly from a byte buffer without creating temporary arrays. It reads the binary representation 
+ * produced by the BinaryConverter and BinaryWriter classes. 
+ * Reading starts at the current position of the buffer and advances it. Resource references 
+ * written with a {@link ReferenceDictionary} can only be read with the same dictionary and resource 
+ * IDs and local date times only in the {@link BinaryFormat} they have been written in.
+ * 
+ * @author Planters
+ *
+ */
+public final class BinaryReader {
+	
+	private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+	private final ByteBuffer buffer;
+	// null if references are read with their complete origin path
+	private final ReferenceDictionary dictionary;
+	private final BinaryFormat format;
+	// resources framed as records are skipped by the length of their record
+	private final boolean framed;
+	private long previousID = BinaryWriter.INITIAL_ID;
+	private byte[] scratch = null; // only used for buffers without accessible array
+	// decoding the same origin repeatedly is the common case
+	private OriginPath lastDecoded = null;
+	
+	/**
+	 * Create a new reader reading from the specified buffer, starting at its current position.
+	 * 
+	 * @param buffer - the big endian buffer to read from
+	 * @throws NullPointerException if the buffer is null
+	 * @throws IllegalArgumentException if the buffer is not ordered big endian
+	 */
+	public BinaryReader(ByteBuffer buffer) {
+		this(buffer, null);
+	}
+	
+	/**
+	 * Create a new reader reading from the specified buffer, starting at its current position. 
+	 * Resource references are read as indices of the specified dictionary.
+	 * 
+	 * @param buffer - the big endian buffer to read from
+	 * @param dictionary - the dictionary the references have been written with or null if the 
+	 * references have been written with their complete origin path
+	 * @throws NullPointerException if the buffer is null
+	 * @throws IllegalArgumentException if the buffer is not ordered big endian
+	 */
+	public BinaryReader(ByteBuffer buffer, ReferenceDictionary dictionary) {
+		this(buffer, dictionary, BinaryFormat.STANDARD);
+	}
+	
+	/**
+	 * Create a new reader reading from the specified buffer, starting at its current position. 
+	 * Resource references are read as indices of the specified dictionary and resource IDs and 
+	 * local date times in the specified format.
+	 * 
+	 * @param buffer - the big endian buffer to read from
+	 * @param dictionary - the dictionary the references have been written with or null if the 
+	 * references have been written with their complete origin path
+	 * @param format - the format the data has been written in
+	 * @throws NullPointerException if the buffer or the format is null
+	 * @throws IllegalArgumentException if the buffer is not ordered big endian
+	 */
+	public BinaryReader(ByteBuffer buffer, ReferenceDictionary dictionary, BinaryFormat format) {
+		this(buffer, dictionary, format, false);
+	}
+	
+	/**
+	 * Create a new reader reading from the specified buffer, starting at its current position. 
+	 * Resource references are read as indices of the specified dictionary and resource IDs and 
+	 * local date times in the specified format. If the resources are framed as records, they 
+	 * have been written without the lengths needed for skipping their parts.
+	 * 
+	 * @param buffer - the big endian buffer to read from
+	 * @param dictionary - the dictionary the references have been written with or null if the 
+	 * references have been written with their complete origin path
+	 * @param format - the format the data has been written in
+	 * @param framed - true if the resources have been written framed as records
+	 * @throws NullPointerException if the buffer or the format is null
+	 * @throws IllegalArgumentException if the buffer is not ordered big endian
+	 */
+	public BinaryReader(ByteBuffer buffer, ReferenceDictionary dictionary, BinaryFormat format, 
+			boolean framed) {
+		if (buffer != null && format != null) {
+			if (buffer.order() == ByteOrder.BIG_ENDIAN) {
+				this.buffer = buffer;
+				this.dictionary = dictionary;
+				this.format = format;
+				this.framed = framed;
+			} else {
+				throw new IllegalArgumentException(String.format("The buffer %s must be ordered big "
+						+ "endian.", buffer));
+			}
+		} else {
+			throw new NullPointerException(String.format("A reader cannot read from %s in format %s.", 
+					buffer, format));
+		}
+	}
+	
+	/**
+	 * Create a new reader reading from the specified bytes.
+	 * 
+	 * @param data - the bytes to read from
+	 * @throws NullPointerException if the bytes are null
+	 */
+	public BinaryReader(byte[] data) {
+		this(ByteBuffer.wrap(data));
+	}
+	
+	/**
+	 * Read a boolean.
+	 * 
+	 * @return the boolean read
+	 * @throws BufferUnderflowException if no boolean is remaining
+	 */
+	public boolean readBoolean() {
+		return BinaryConverter.getBoolean(this.buffer.get());
+	}
+	
+	/**
+	 * Read a byte.
+	 * 
+	 * @return the byte read
+	 * @throws BufferUnderflowException if no byte is remaining
+	 */
+	public byte readByte() {
+		return this.buffer.get();
+	}
+	
+	/**
+	 * Read an unsigned variable length integer written by {@link BinaryWriter#writeVarInt(int)}.
+	 * 
+	 * @return the int read
+	 * @throws BufferUnderflowException if the integer is not completely remaining
+	 * @throws IllegalArgumentException if the integer is longer than five bytes
+	 */
+	public int readVarInt() {
+		int value = 0;
+		for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+			byte b = this.buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("The variable length integer is longer than five bytes.");
+	}
+	
+	/**
+	 * Read an unsigned variable length integer written by {@link BinaryWriter#writeVarLong(long)}.
+	 * 
+	 * @return the long read
+	 * @throws BufferUnderflowException if the integer is not completely remaining
+	 * @throws IllegalArgumentException if the integer is longer than ten bytes
+	 */
+	public long readVarLong() {
+		long value = 0;
+		for (int shift = 0; shift < Long.SIZE; shift += 7) {
+			byte b = this.buffer.get();
+			value |= (b & 0x7FL) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("The variable length integer is longer than ten bytes.");
+	}
+	
+	/**
+	 * Read a zigzag encoded variable length integer written by 
+	 * {@link BinaryWriter#writeSignedVarLong(long)}.
+	 * 
+	 * @return the long read
+	 * @throws BufferUnderflowException if the integer is not completely remaining
+	 * @throws IllegalArgumentException if the integer is longer than ten bytes
+	 */
+	public long readSignedVarLong() {
+		long zigzag = this.readVarLong();
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+	
+	/**
+	 * Read an int.
+	 * 
+	 * @return the int read
+	 * @throws BufferUnderflowException if no int is remaining
+	 */
+	public int readInt() {
+		return this.buffer.getInt();
+	}
+	
+	/**
+	 * Read a long.
+	 * 
+	 * @return the long read
+	 * @throws BufferUnderflowException if no long is remaining
+	 */
+	public long readLong() {
+		return this.buffer.getLong();
+	}
+	
+	/**
+	 * Read a resource ID written by {@link BinaryWriter#writeID(long)}. In the compact format the 
+	 * ID is read as difference to the previously read ID.
+	 * 
+	 * @return the resource ID read
+	 * @throws BufferUnderflowException if the resource ID is not completely remaining
+	 * @throws IllegalArgumentException if the data does not represent a valid resource ID
+	 */
+	public long readID() {
+		if (this.format == BinaryFormat.COMPACT) {
+			this.previousID += this.readSignedVarLong();
+			return this.previousID;
+		} else {
+			return this.buffer.getLong();
+		}
+	}
+	
+	/**
+	 * Set the ID the next compact ID is read relative to. This is needed when reading starts 
+	 * at a resource not being the first one written.
+	 * 
+	 * @param id - the ID written before the next ID to read
+	 */
+	public void setPreviousID(long id) {
+		this.previousID = id;
+	}
+	
+	/**
+	 * Read a double.
+	 * 
+	 * @return the double read
+	 * @throws BufferUnderflowException if no double is remaining
+	 */
+	public double readDouble() {
+		return this.buffer.getDouble();
+	}
+	
+	/**
+	 * Read the specified number of bytes into the specified array.
+	 * 
+	 * @param destination - the array to fill completely
+	 * @throws NullPointerException if the destination is null
+	 * @throws BufferUnderflowException if not enough bytes are remaining
+	 */
+	public void readBytes(byte[] destination) {
+		this.buffer.get(destination);
+	}
+	
+	/**
+	 * Read a length prefixed string. May be null.
+	 * 
+	 * @return the string read
+	 * @throws BufferUnderflowException if the string is not completely remaining
+	 */
+	public String readString() {
+		int length = this.buffer.getInt();
+		if (length >= 0) {
+			return this.decode(length);
+		} else {
+			return null;
+		}
+	}
+	
+	/**
+	 * Read a local date time.
+	 * 
+	 * @return the local date time read
+	 * @throws BufferUnderflowException if the local date time is not completely remaining
+	 * @throws java.time.DateTimeException if the data does not represent a valid local date time
+	 */
+	public LocalDateTime readLocalDateTime() {
+		if (this.format == BinaryFormat.COMPACT) {
+			long epochSecond = this.readSignedVarLong();
+			return LocalDateTime.ofEpochSecond(epochSecond, this.readVarInt(), ZoneOffset.UTC);
+		} else if (this.buffer.remaining() >= BinaryConverter.LOCAL_DATE_TIME_BYTES) {
+			int year = this.buffer.getInt();
+			int month = this.buffer.getInt();
+			int day = this.buffer.getInt();
+			int hour = this.buffer.getInt();
+			int minute = this.buffer.getInt();
+			int second = this.buffer.getInt();
+			int nano = this.buffer.getInt();
+			return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+		} else {
+			throw new BufferUnderflowException();
+		}
+	}
+	
+	/**
+	 * Skip a local date time without creating it.
+	 * 
+	 * @throws BufferUnderflowException if the local date time is not completely remaining
+	 * @throws IllegalArgumentException if the data does not represent a compact local date time
+	 */
+	public void skipLocalDateTime() {
+		if (this.format == BinaryFormat.COMPACT) {
+			this.readVarLong();
+			this.readVarInt();
+		} else {
+			this.skip(BinaryConverter.LOCAL_DATE_TIME_BYTES);
+		}
+	}
+	
+	/**
+	 * Read a resource reference. May be null. The origin path of the reference is interned 
+	 * without decoding it again if it equals the path decoded most recently by this reader. If a 
+	 * dictionary is set, the origin path is looked up in the dictionary instead.
+	 * 
+	 * @return the resource reference read
+	 * @throws BufferUnderflowException if the resource reference is not completely remaining
+	 * @throws IllegalArgumentException if the dictionary does not contain the index read
+	 */
+	public ResourceReference readResourceReference() {
+		if (this.dictionary != null) {
+			int index = this.readVarInt();
+			if (index != 0) {
+				OriginPath origin = this.dictionary.get(index - 1);
+				return ResourceReference.of(origin, this.buffer.getLong());
+			} else {
+				return null;
+			}
+		}
+		int length = this.buffer.getInt();
+		if (length >= 0) {
+			if (this.buffer.remaining() >= (long) length + BinaryConverter.LONG_BYTES) {
+				OriginPath origin;
+				int start = this.buffer.position();
+				if (this.buffer.hasArray()) {
+					origin = this.decodePath(this.buffer.array(), this.buffer.arrayOffset() + start, length);
+					this.buffer.position(start + length);
+				} else {
+					this.buffer.get(this.getScratch(length), 0, length);
+					origin = this.decodePath(this.scratch, 0, length);
+				}
+				return ResourceReference.of(origin, this.buffer.getLong());
+			} else {
+				throw new BufferUnderflowException();
+			}
+		} else {
+			return null;
+		}
+	}
+	
+	/**
+	 * Get the dictionary resource references are read with.
+	 * 
+	 * @return the dictionary or null if references are read with their complete origin path
+	 */
+	public ReferenceDictionary getDictionary() {
+		return this.dictionary;
+	}
+	
+	/**
+	 * Get the format resource IDs and local date times are read in.
+	 * 
+	 * @return the format of the reader
+	 */
+	public BinaryFormat getFormat() {
+		return this.format;
+	}
+	
+	/**
+	 * Check if the resources read have been written framed as records, so they can be skipped 
+	 * by the length of their record and do not store the lengths of their parts.
+	 * 
+	 * @return true if the resources are framed
+	 */
+	public boolean isFramed() {
+		return this.framed;
+	}
+	
+	/**
+	 * Skip the specified number of bytes.
+	 * 
+	 * @param bytes - the number of bytes to skip
+	 * @throws BufferUnderflowException if not enough bytes are remaining
+	 * @throws IllegalArgumentException if the number of bytes is negative
+	 */
+	public void skip(int bytes) {
+		if (bytes >= 0) {
+			if (this.buffer.remaining() >= bytes) {
+				this.buffer.position(this.buffer.position() + bytes);
+			} else {
+				throw new BufferUnderflowException();
+			}
+		} else {
+			throw new IllegalArgumentException(String.format("A negative number of bytes (%s) cannot "
+					+ "be skipped.", bytes));
+		}
+	}
+	
+	/**
+	 * Get the current position of the reader inside the underlying buffer.
+	 * 
+	 * @return the position of the reader
+	 */
+	public int position() {
+		return this.buffer.position();
+	}
+	
+	/**
+	 * Set the position of the reader inside the underlying buffer.
+	 * 
+	 * @param position - the new position
+	 * @throws IllegalArgumentException if the position is negative or exceeds the limit of the 
+	 * buffer
+	 */
+	public void setPosition(int position) {
+		this.buffer.position(position);
+	}
+	
+	/**
+	 * Get the number of bytes remaining.
+	 * 
+	 * @return the number of bytes that can still be read
+	 */
+	public int remaining() {
+		return this.buffer.remaining();
+	}
+	
+	/**
+	 * Check if any bytes are remaining.
+	 * 
+	 * @return true if there are bytes left to read
+	 */
+	public boolean hasRemaining() {
+		return this.buffer.hasRemaining();
+	}
+	
+	/**
+	 * Get the scratch array for buffers without accessible array.
+	 * 
+	 * @param length - the minimum number of bytes needed
+	 * @return the scratch array
+	 */
+	private byte[] getScratch(int length) {
+		if (this.scratch == null || this.scratch.length < length) {
+			this.scratch = new byte[Math.max(length, BinaryWriter.DEFAULT_CAPACITY)];
+		}
+		return this.scratch;
+	}
+	
+	/**
+	 * Get the interned origin path with the specified UTF-8 representation. The path decoded most 
+	 * recently by this reader is reused if it matches.
+	 * 
+	 * @param data - the array containing the UTF-8 representation of the path
+	 * @param offset - the index of the first byte of the path
+	 * @param length - the number of bytes of the path
+	 * @return the interned origin path
+	 */
+	private OriginPath decodePath(byte[] data, int offset, int length) {
+		if (this.lastDecoded == null || !this.lastDecoded.matches(data, offset, length)) {
+			this.lastDecoded = OriginPath.of(data, offset, length);
+		}
+		return this.lastDecoded;
+	}
+	
+	/**
+	 * Decode the specified number of UTF-8 bytes into a string.
+	 * 
+	 * @param length - the number of bytes to decode
+	 * @return the decoded string
+	 * @throws BufferUnderflowException if not enough bytes are remaining
+	 */
+	private String decode(int length) {
+		if (this.buffer.remaining() >= length) {
+			String decoded;
+			int start = this.buffer.position();
+			if (this.buffer.hasArray()) {
+				decoded = new String(this.buffer.array(), this.buffer.arrayOffset() + start, length, 
+						BinaryReader.DEFAULT_CHARSET);
+				this.buffer.position(start + length);
+			} else {
+				this.buffer.get(this.getScratch(length), 0, length);
+				decoded = new String(this.scratch, 0, length, BinaryReader.DEFAULT_CHARSET);
+			}
+			return decoded;
+		} else {
+			throw new BufferUnderflowException();
+		}
+	}
+
+}
@@ -0,0 +1,618 @@
+package eyja.lab.tools.control.centre.binaryop;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import eyja.lab.tools.control.centre.management.ResourceReference;
+
+/**
+ * The BinaryWriter class writes primitive values, strings, local date times and resource references 
+ * directly into a byte buffer without creating temporary arrays. The binary representation is 
+ * identical to the one produced by the BinaryConverter class. 
+ * A writer either writes into a caller supplied buffer of fixed size or into an internal buffer, 
+ * which grows as needed. A writer can be reused by clearing it. 
+ * If a {@link ReferenceDictionary} is set, resource references are written as the dictionary 
+ * index of their origin path instead of the complete path. 
+ * Resource IDs and local date times are written in the {@link BinaryFormat} of the writer.
+ * 
+ * @author Planters
+ *
+ */
+public final class BinaryWriter {
+	
+	/**
+	 * The default initial capacity of growable writers in bytes.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+	/**
+	 * The ID compact IDs are encoded relative to before any ID has been written, which is the 
+	 * first ID assigned by an origin.
+	 */
+	public static final long INITIAL_ID = Long.MIN_VALUE;
+	
+	private static final byte BOOLEAN_FALSE = 0;
+	private static final byte BOOLEAN_TRUE = 1;
+	private static final byte UNMAPPABLE_CHARACTER = (byte) '?';
+	private ByteBuffer buffer;
+	private final boolean growable;
+	// null if references are written with their complete origin path
+	private ReferenceDictionary dictionary = null;
+	private BinaryFormat format = BinaryFormat.STANDARD;
+	// resources framed as records are skipped by the length of their record
+	private boolean framed = false;
+	private long previousID = BinaryWriter.INITIAL_ID;
+	
+	/**
+	 * Create a new writer with an internal buffer of default capacity, which grows as needed.
+	 */
+	public BinaryWriter() {
+		this(BinaryWriter.DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Create a new writer with an internal buffer of the specified initial capacity, which grows 
+	 * as needed.
+	 * 
+	 * @param initialCapacity - the initial capacity of the internal buffer in bytes
+	 * @throws IllegalArgumentException if the initial capacity is negative
+	 */
+	public BinaryWriter(int initialCapacity) {
+		if (initialCapacity >= 0) {
+			this.buffer = ByteBuffer.allocate(initialCapacity);
+			this.growable = true;
+		} else {
+			throw new IllegalArgumentException(String.format("The capacity of a writer (%s) cannot be "
+					+ "negative.", initialCapacity));
+		}
+	}
+	
+	/**
+	 * Create a new writer writing into the specified buffer, starting at its current position. 
+	 * The buffer will never be replaced, so writing beyond its limit fails.
+	 * 
+	 * @param buffer - the big endian buffer to write to
+	 * @throws NullPointerException if the buffer is null
+	 * @throws IllegalArgumentException if the buffer is not ordered big endian
+	 */
+	public BinaryWriter(ByteBuffer buffer) {
+		if (buffer != null) {
+			if (buffer.order() == ByteOrder.BIG_ENDIAN) {
+				this.buffer = buffer;
+				this.growable = false;
+			} else {
+				throw new IllegalArgumentException(String.format("The buffer %s must be ordered big "
+						+ "endian.", buffer));
+			}
+		} else {
+			throw new NullPointerException("A writer cannot write to null.");
+		}
+	}
+	
+	/**
+	 * Write the specified boolean.
+	 * 
+	 * @param b - the boolean to write
+	 * @throws BufferOverflowException if the writer has a fixed buffer without sufficient space
+	 */
+	public void writeBoolean(boolean b) {
+		this.ensureCapacity(BinaryConverter.BOOLEAN_BYTES);
+		this.buffer.put(b ? BinaryWriter.BOOLEAN_TRUE : BinaryWriter.BOOLEAN_FALSE);
+	}
+	
+	/**
+	 * Write the specified byte.
+	 * 
+	 * @param b - the byte to write
+	 * @throws BufferOverflowException if the writer has a fixed buffer without sufficient space
+	 */
+	public void writeByte(byte b) {
+		this.ensureCapacity(Byte.BYTES);
+		this.buffer.put(b);
+	}
+	
+	/**
+	 * Write the specified int as unsigned variable length integer. Each byte stores seven bits, 
+	 * starting with the least significant ones, and its highest bit marks if more bytes follow. 
+	 * Negative values are treated as unsigned and take five bytes.
+	 * 
+	 * @param i - the int to write
+	 * @throws BufferOverflowException if the writer has a fixed buffer without sufficient space
+	 */
+	public void writeVarInt(int i) {
+		this.ensureCapacity(BinaryWriter.getVarIntLength(i));
+		while ((i & ~0x7F) != 0) {
+			this.buffer.put((byte) ((i & 0x7F) | 0x80));
+			i >>>= 7;
+		}
+		this.buffer.put((byte) i);
+	}
+	
+	/**
+	 * Write the specified long as unsigned variable length integer in the same way as 
+	 * {@link #writeVarInt(int)}. Negative values are treated as unsigned and take ten bytes.
+	 * 
+	 * @param l - the long to write
+	 * @throws BufferOverflowException if the writer has a fixed buffer without sufficient space
+	 */
+	public void writeVarLong(long l) {
+		this.ensureCapacity(BinaryWriter.getVarLongLength(l));
+		while ((l & ~0x7FL) != 0) {
+			this.buffer.put((byte) ((l & 0x7F) | 0x80));
+			l >>>= 7;
+		}
+		this.buffer.put((byte) l);
+	}
+	
+	/**
+	 * Write the specified long as zigzag encoded variable length integer, so values close to 
+	 * zero take few bytes regardless of their sign.
+	 * 
+	 * @param l - the long to write
+	 * @throws BufferOverflowException if the writer has a fixed buffer without sufficient space
+	 */
+	public void writeSignedVarLong(long l) {
+		this.writeVarLong(BinaryWriter.zigzag(l));
+	}
+	
+	/**
+	 * Write the specified int.
+	 * 
+	 * @param i - the int to write
+	 * @throws BufferOverflowException if the writer has a fixed buffer without sufficient space
+	 */
+	public void writeInt(int i) {
+		this.ensureCapacity(BinaryConverter.INTEGER_BYTES);
+		this.buffer.putInt(i);
+	}
+	
+	/**
+	 * Overwrite the int at the specified absolute position, which must have already been 
+	 * written. This allows writing length prefixes after the prefixed data.
+	 * 
+	 * @param position - the absolute position of the int to overwrite
+	 * @param i - the int to write
+	 * @throws IndexOutOfBoundsException if the position does not point to already written data
+	 */
+	public void writeInt(int position, int i) {
+		if (position >= 0 && position + BinaryConverter.INTEGER_BYTES <= this.buffer.position()) {
+			this.buffer.putInt(position, i);
+		} else {
+			throw new IndexOutOfBoundsException(String.format("No int has been written at position "
+					+ "%s.", position));
+		}
+	}
+	
+	/**
+	 * Write the specified long.
+	 * 
+	 * @param l - the long to write
+	 * @throws BufferOverflowException if the writer has a fixed buffer without sufficient space
+	 */
+	public void writeLong(long l) {
+		this.ensureCapacity(BinaryConverter.LONG_BYTES);
+		this.buffer.putLong(l);
+	}
+	
+	/**
+	 * Write the specified resource ID. In the compact format the difference to the previously 
+	 * written ID is written, which takes a single byte for consecutive IDs.
+	 * 
+	 * @param id - the resource ID to write
+	 * @throws BufferOverflowException if the writer has a fixed buffer without sufficient space
+	 */
+	public void writeID(long id) {
+		if (this.format == BinaryFormat.COMPACT) {
+			this.writeSignedVarLong(id - this.previousID);
+			this.previousID = id;
+		} else {
+			this.writeLong(id);
+		}
+	}
+	
+	/**
+	 * Set the ID the next compact ID is written relative to. This is needed when the written 
+	 * resources are read starting at a resource not being the first one written, as the reader 
+	 * needs to know the ID preceding the resource.
+	 * 
+	 * @param id - the ID preceding the next ID to write
+	 */
+	public void setPreviousID(long id) {
+		this.previousID = id;
+	}
+	
+	/**
+	 * Write the specified double.
+	 * 
+	 * @param d - the double to write
+	 * @throws BufferOverflowException if the writer has a fixed buffer without sufficient space
+	 */
+	public void writeDouble(double d) {
+		this.ensureCapacity(BinaryConverter.DOUBLE_BYTES);
+		this.buffer.putDouble(d);
+	}
+	
+	/**
+	 * Write the specified bytes as they are without any length prefix.
+	 * 
+	 * @param bytes - the bytes to write
+	 * @throws NullPointerException if the bytes are null
+	 * @throws BufferOverflowException if the writer has a fixed buffer without sufficient space
+	 */
+	public void writeBytes(byte[] bytes) {
+		this.ensureCapacity(bytes.length);
+		this.buffer.put(bytes);
+	}
+	
+	/**
+	 * Write the remaining bytes of the specified buffer as they are without any length prefix. 
+	 * The position of the buffer is advanced to its limit.
+	 * 
+	 * @param bytes - the buffer containing the bytes to write
+	 * @throws NullPointerException if the buffer is null
+	 * @throws BufferOverflowException if the writer has a fixed buffer without sufficient space
+	 */
+	public void writeBytes(ByteBuffer bytes) {
+		this.ensureCapacity(bytes.remaining());
+		this.buffer.put(bytes);
+	}
+	
+	/**
+	 * Write the specified string with its length prefix. Null is written as the int -1.
+	 * 
+	 * @param s - the string to write
+	 * @throws BufferOverflowException if the writer has a fixed buffer without sufficient space
+	 */
+	public void writeString(String s) {
+		if (s != null) {
+			int length = BinaryWriter.getEncodedLength(s);
+			this.ensureCapacity(BinaryConverter.INTEGER_BYTES + length);
+			this.buffer.putInt(length);
+			this.putEncoded(s);
+		} else {
+			this.writeInt(-1);
+		}
+	}
+	
+	/**
+	 * Write the specified local date time. In the compact format the local date time is written 
+	 * as epoch second and nanosecond of the second.
+	 * 
+	 * @param dateTime - the local date time to write
+	 * @throws NullPointerException if the local date time is null
+	 * @throws BufferOverflowException if the writer has a fixed buffer without sufficient space
+	 */
+	public void writeLocalDateTime(LocalDateTime dateTime) {
+		if (this.format == BinaryFormat.COMPACT) {
+			this.writeSignedVarLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+			this.writeVarInt(dateTime.getNano());
+		} else {
+			this.ensureCapacity(BinaryConverter.LOCAL_DATE_TIME_BYTES);
+			this.buffer.putInt(dateTime.getYear());
+			this.buffer.putInt(dateTime.getMonthValue());
+			this.buffer.putInt(dateTime.getDayOfMonth());
+			this.buffer.putInt(dateTime.getHour());
+			this.buffer.putInt(dateTime.getMinute());
+			this.buffer.putInt(dateTime.getSecond());
+			this.buffer.putInt(dateTime.getNano());
+		}
+	}
+	
+	/**
+	 * Write the specified resource reference. Null is written as the int -1. If a dictionary is 
+	 * set, the origin path is added to the dictionary and the reference is written as the index of 
+	 * the path plus one followed by the ID, while null is written as 0.
+	 * 
+	 * @param reference - the resource reference to write
+	 * @throws BufferOverflowException if the writer has a fixed buffer without sufficient space
+	 */
+	public void writeResourceReference(ResourceReference reference) {
+		if (this.dictionary != null) {
+			this.dictionary.markUsed();
+			if (reference != null) {
+				this.writeVarInt(this.dictionary.add(reference.getOriginPath()) + 1);
+				this.writeLong(reference.getID());
+			} else {
+				this.writeVarInt(0);
+			}
+		} else if (reference != null) {
+			String origin = reference.getOrigin();
+			int length = BinaryWriter.getEncodedLength(origin);
+			this.ensureCapacity(BinaryConverter.INTEGER_BYTES + length + BinaryConverter.LONG_BYTES);
+			this.buffer.putInt(length);
+			this.putEncoded(origin);
+			this.buffer.putLong(reference.getID());
+		} else {
+			this.writeInt(-1);
+		}
+	}
+	
+	/**
+	 * Get the number of bytes needed by this writer to write the specified resource reference, 
+	 * which depends on whether a dictionary is set.
+	 * 
+	 * @param reference - the resource reference to measure
+	 * @return the length of the binary representation of the resource reference
+	 */
+	public int getReferenceLength(ResourceReference reference) {
+		if (this.dictionary != null) {
+			if (reference != null) {
+				int index = this.dictionary.indexOf(reference.getOriginPath());
+				// the path will be added as next entry if not contained yet
+				return BinaryWriter.getVarIntLength((index >= 0 ? index : this.dictionary.size()) + 1) 
+						+ BinaryConverter.LONG_BYTES;
+			} else {
+				return BinaryWriter.getVarIntLength(0);
+			}
+		} else {
+			return BinaryWriter.getBinaryLength(reference);
+		}
+	}
+	
+	/**
+	 * Get the dictionary resource references are written with.
+	 * 
+	 * @return the dictionary or null if references are written with their complete origin path
+	 */
+	public ReferenceDictionary getDictionary() {
+		return this.dictionary;
+	}
+	
+	/**
+	 * Set the dictionary resource references are written with. The dictionary is kept when the 
+	 * writer is cleared, so it can span multiple chunks of data.
+	 * 
+	 * @param dictionary - the dictionary or null to write references with their complete origin path
+	 */
+	public void setDictionary(ReferenceDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+	
+	/**
+	 * Get the format resource IDs and local date times are written in.
+	 * 
+	 * @return the format of the writer
+	 */
+	public BinaryFormat getFormat() {
+		return this.format;
+	}
+	
+	/**
+	 * Set the format resource IDs and local date times are written in. Like the dictionary, the 
+	 * format and the previously written ID are kept when the writer is cleared.
+	 * 
+	 * @param format - the format to write in
+	 * @throws NullPointerException if the format is null
+	 */
+	public void setFormat(BinaryFormat format) {
+		if (format != null) {
+			this.format = format;
+		} else {
+			throw new NullPointerException("The format of a writer cannot be null.");
+		}
+	}
+	
+	/**
+	 * Check if the resources written are framed as records, so they can be skipped by the 
+	 * length of their record and do not need to store the lengths of their parts.
+	 * 
+	 * @return true if the resources are framed
+	 */
+	public boolean isFramed() {
+		return this.framed;
+	}
+	
+	/**
+	 * Set if the resources written are framed as records. Like the format, this is kept when 
+	 * the writer is cleared.
+	 * 
+	 * @param framed - true if the resources are framed
+	 */
+	public void setFramed(boolean framed) {
+		this.framed = framed;
+	}
+	
+	/**
+	 * Get the number of bytes written. This is the current position of the underlying buffer.
+	 * 
+	 * @return the position of the writer
+	 */
+	public int position() {
+		return this.buffer.position();
+	}
+	
+	/**
+	 * Get the buffer currently written to. Growable writers replace their buffer when growing, 
+	 * so the returned buffer is only valid until the next write.
+	 * 
+	 * @return the underlying buffer
+	 */
+	public ByteBuffer getBuffer() {
+		return this.buffer;
+	}
+	
+	/**
+	 * Copy all written bytes into a new array.
+	 * 
+	 * @return the bytes written
+	 */
+	public byte[] toByteArray() {
+		byte[] written = new byte[this.buffer.position()];
+		ByteBuffer view = this.buffer.duplicate();
+		view.flip();
+		view.get(written);
+		return written;
+	}
+	
+	/**
+	 * Discard all written bytes, so the writer can be reused. Writers with a caller supplied 
+	 * buffer clear the complete buffer.
+	 */
+	public void clear() {
+		this.buffer.clear();
+	}
+	
+	/**
+	 * Write all bytes written so far to the specified channel and clear the writer afterwards, 
+	 * so it can be reused.
+	 * 
+	 * @param channel - the channel to write to
+	 * @throws IOException if writing to the channel failed
+	 * @throws NullPointerException if the channel is null
+	 */
+	public void drainTo(WritableByteChannel channel) throws IOException {
+		this.buffer.flip();
+		try {
+			while (this.buffer.hasRemaining()) {
+				channel.write(this.buffer);
+			}
+		} finally {
+			this.buffer.clear();
+		}
+	}
+	
+	/**
+	 * Get the number of bytes needed to write the specified resource reference.
+	 * 
+	 * @param reference - the resource reference to measure
+	 * @return the length of the binary representation of the resource reference
+	 */
+	public static int getBinaryLength(ResourceReference reference) {
+		if (reference != null) {
+			return BinaryConverter.INTEGER_BYTES + BinaryWriter.getEncodedLength(reference.getOrigin()) 
+					+ BinaryConverter.LONG_BYTES;
+		} else {
+			return BinaryConverter.INTEGER_BYTES;
+		}
+	}
+	
+	/**
+	 * Get the number of bytes needed to write the specified int as variable length integer.
+	 * 
+	 * @param i - the int to measure
+	 * @return the number of bytes between 1 and 5
+	 */
+	public static int getVarIntLength(int i) {
+		// every started group of seven significant bits needs one byte
+		return (Integer.SIZE - Integer.numberOfLeadingZeros(i | 1) + 6) / 7;
+	}
+	
+	/**
+	 * Get the number of bytes needed to write the specified long as variable length integer.
+	 * 
+	 * @param l - the long to measure
+	 * @return the number of bytes between 1 and 10
+	 */
+	public static int getVarLongLength(long l) {
+		return (Long.SIZE - Long.numberOfLeadingZeros(l | 1) + 6) / 7;
+	}
+	
+	/**
+	 * Map signed to unsigned values, so values close to zero have few significant bits: 
+	 * 0, -1, 1, -2, ... become 0, 1, 2, 3, ...
+	 * 
+	 * @param l - the signed value
+	 * @return the zigzag encoded value
+	 */
+	static long zigzag(long l) {
+		return (l << 1) ^ (l >> (Long.SIZE - 1));
+	}
+	
+	/**
+	 * Get the number of bytes needed to write the specified string without its length prefix.
+	 * 
+	 * @param s - the string to measure
+	 * @return the length of the UTF-8 representation of the string
+	 * @throws NullPointerException if the string is null
+	 */
+	public static int getEncodedLength(String s) {
+		int length = s.length();
+		int encodedLength = length;
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c >= 0x80) {
+				if (c < 0x800) {
+					encodedLength += 1;
+				} else if (Character.isSurrogate(c)) {
+					// valid pairs need four bytes, unpaired surrogates are replaced by a single byte
+					if (Character.isHighSurrogate(c) && i + 1 < length
+							&& Character.isLowSurrogate(s.charAt(i + 1))) {
+						encodedLength += 2;
+						i++;
+					}
+				} else {
+					encodedLength += 2;
+				}
+			}
+		}
+		return encodedLength;
+	}
+	
+	/**
+	 * Encode the specified string as UTF-8 into the buffer. Sufficient space must have been 
+	 * ensured beforehand. Unpaired surrogates are replaced in the same way as 
+	 * {@link String#getBytes(java.nio.charset.Charset)} does.
+	 * 
+	 * @param s - the string to encode
+	 */
+	private void putEncoded(String s) {
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				this.buffer.put((byte) c);
+			} else if (c < 0x800) {
+				this.buffer.put((byte) (0xC0 | (c >> 6)));
+				this.buffer.put((byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < length
+						&& Character.isLowSurrogate(s.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(c, s.charAt(++i));
+					this.buffer.put((byte) (0xF0 | (codePoint >> 18)));
+					this.buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+					this.buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+					this.buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+				} else {
+					this.buffer.put(BinaryWriter.UNMAPPABLE_CHARACTER);
+				}
+			} else {
+				this.buffer.put((byte) (0xE0 | (c >> 12)));
+				this.buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				this.buffer.put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+	}
+	
+	/**
+	 * Ensure the specified number of bytes can be written. Growable writers replace their 
+	 * buffer by a larger one if needed.
+	 * 
+	 * @param bytes - the number of bytes to write
+	 * @throws BufferOverflowException if the writer has a fixed buffer without sufficient space
+	 */
+	private void ensureCapacity(int bytes) {
+		if (this.buffer.remaining() < bytes) {
+			if (this.growable) {
+				int required = this.buffer.position() + bytes;
+				if (required < 0) {
+					throw new BufferOverflowException();
+				}
+				int newCapacity = Math.max(required, this.buffer.capacity() << 1);
+				if (newCapacity < 0) { // overflow
+					newCapacity = Integer.MAX_VALUE;
+				}
+				ByteBuffer grownBuffer = ByteBuffer.allocate(newCapacity);
+				this.buffer.flip();
+				grownBuffer.put(this.buffer);
+				this.buffer = grownBuffer;
+			} else {
+				throw new BufferOverflowException();
+			}
+		}
+	}
+
+}
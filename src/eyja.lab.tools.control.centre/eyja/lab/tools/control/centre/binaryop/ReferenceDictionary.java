@@ -0,0 +1,138 @@
+package eyja.lab.tools.control.centre.binaryop;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import eyja.lab.tools.control.centre.management.OriginPath;
+
+/**
+ * The ReferenceDictionary class assigns consecutive indices to the origin paths of resource 
+ * references. Writers and readers sharing a dictionary encode the origin of a reference as its 
+ * index instead of the complete path, so the path is only stored once in the dictionary itself.
+ * 
+ * @author Planters
+ *
+ */
+public final class ReferenceDictionary {
+	
+	private final ArrayList<OriginPath> paths = new ArrayList<OriginPath>();
+	private final HashMap<OriginPath, Integer> indices = new HashMap<OriginPath, Integer>();
+	private boolean used = false;
+	
+	/**
+	 * Get the number of origin paths contained by the dictionary.
+	 * 
+	 * @return the number of entries
+	 */
+	public int size() {
+		return this.paths.size();
+	}
+	
+	/**
+	 * Check if any resource reference has been written with the dictionary. References written 
+	 * with a dictionary can only be read with the dictionary, even if all of them are null and 
+	 * the dictionary does not contain any origin path.
+	 * 
+	 * @return true if the dictionary is needed for reading
+	 */
+	public boolean isUsed() {
+		return this.used || !this.paths.isEmpty();
+	}
+	
+	/**
+	 * Mark the dictionary as needed for reading.
+	 */
+	void markUsed() {
+		this.used = true;
+	}
+	
+	/**
+	 * Get the index of the specified origin path.
+	 * 
+	 * @param path - the origin path to look up
+	 * @return the index of the path or -1 if the path is not contained
+	 */
+	public int indexOf(OriginPath path) {
+		Integer index = this.indices.get(path);
+		return index != null ? index : -1;
+	}
+	
+	/**
+	 * Add the specified origin path to the dictionary if not already contained.
+	 * 
+	 * @param path - the origin path to add
+	 * @return the index of the path
+	 * @throws NullPointerException if the path is null
+	 */
+	public int add(OriginPath path) {
+		if (path != null) {
+			Integer index = this.indices.get(path);
+			if (index == null) {
+				index = this.paths.size();
+				this.paths.add(path);
+				this.indices.put(path, index);
+			}
+			return index;
+		} else {
+			throw new NullPointerException("A dictionary cannot contain null.");
+		}
+	}
+	
+	/**
+	 * Get the origin path with the specified index.
+	 * 
+	 * @param index - the index of the path
+	 * @return the origin path
+	 * @throws IllegalArgumentException if the dictionary does not contain the index
+	 */
+	public OriginPath get(int index) {
+		if (index >= 0 && index < this.paths.size()) {
+			return this.paths.get(index);
+		} else {
+			throw new IllegalArgumentException(String.format("The dictionary of %s origin paths does "
+					+ "not contain the index %s.", this.paths.size(), index));
+		}
+	}
+	
+	/**
+	 * Write all origin paths of the dictionary in the order of their indices.
+	 * 
+	 * @param writer - the writer to write to
+	 */
+	public void write(BinaryWriter writer) {
+		writer.writeVarInt(this.paths.size());
+		for (OriginPath path : this.paths) {
+			writer.writeString(path.getPath());
+		}
+	}
+	
+	/**
+	 * Read a dictionary written by {@link #write(BinaryWriter)}.
+	 * 
+	 * @param reader - the reader positioned at the start of the dictionary
+	 * @return the dictionary read
+	 * @throws java.nio.BufferUnderflowException if the dictionary is not completely remaining
+	 * @throws IllegalArgumentException if the data does not represent a valid dictionary
+	 */
+	public static ReferenceDictionary read(BinaryReader reader) {
+		int size = reader.readVarInt();
+		if (size < 0) {
+			throw new IllegalArgumentException(String.format("The dictionary size %s is invalid.", size));
+		}
+		ReferenceDictionary dictionary = new ReferenceDictionary();
+		for (int i = 0; i < size; i++) {
+			String path = reader.readString();
+			if (path == null || dictionary.add(OriginPath.of(path)) != i) {
+				throw new IllegalArgumentException(String.format("The dictionary entry %s (%s) is null or "
+						+ "duplicated.", i, path));
+			}
+		}
+		return dictionary;
+	}
+	
+	@Override
+	public String toString() {
+		return this.paths.toString();
+	}
+
+}
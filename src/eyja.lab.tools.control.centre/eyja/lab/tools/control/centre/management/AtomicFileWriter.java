@@ -0,0 +1,115 @@
+package eyja.lab.tools.control.centre.management;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The AtomicFileWriter class writes a file by writing a temporary file first, which only replaces 
+ * the target file after it has been written completely and forced to the storage device. 
+ * A crash while writing therefore never destroys the previous content of the target file. 
+ * If the writer is closed without being committed, the temporary file is discarded.
+ * 
+ * @author Planters
+ *
+ */
+final class AtomicFileWriter implements Closeable {
+	
+	private static final String TEMPORARY_EXTENSION = ".tmp";
+	private final File target;
+	private final File temporary;
+	private final FileChannel channel;
+	private boolean committed = false;
+	
+	/**
+	 * Create a new writer replacing the specified file on commit.
+	 * 
+	 * @param target - the file to replace
+	 * @throws IOException if the temporary file could not be created
+	 */
+	AtomicFileWriter(File target) throws IOException {
+		this.target = target;
+		this.temporary = new File(target.getPath() + AtomicFileWriter.TEMPORARY_EXTENSION);
+		// create the folder structure if needed
+		File parentFolder = target.getAbsoluteFile().getParentFile();
+		if (parentFolder != null && !parentFolder.exists()) {
+			parentFolder.mkdirs();
+		}
+		this.channel = FileChannel.open(this.temporary.toPath(), StandardOpenOption.WRITE, 
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+	
+	/**
+	 * Get the channel writing to the temporary file.
+	 * 
+	 * @return the channel to write to
+	 */
+	FileChannel getChannel() {
+		return this.channel;
+	}
+	
+	/**
+	 * Get a stream writing to the temporary file. Closing the stream only flushes it, so the 
+	 * writer can still be committed afterwards.
+	 * 
+	 * @return the stream to write to
+	 */
+	OutputStream getOutputStream() {
+		return new FilterOutputStream(Channels.newOutputStream(this.channel)) {
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				this.out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				this.flush();
+			}
+
+		};
+	}
+	
+	/**
+	 * Force the written data to the storage device and replace the target file with it.
+	 * 
+	 * @throws IOException if the data could not be forced or the target file could not be replaced
+	 */
+	void commit() throws IOException {
+		this.channel.force(true);
+		this.channel.close();
+		try {
+			Files.move(this.temporary.toPath(), this.target.toPath(), StandardCopyOption.REPLACE_EXISTING, 
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(this.temporary.toPath(), this.target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		this.committed = true;
+		// persist the rename, which is not supported on all platforms
+		File parentFolder = this.target.getAbsoluteFile().getParentFile();
+		if (parentFolder != null) {
+			try (FileChannel folderChannel = FileChannel.open(parentFolder.toPath(), StandardOpenOption.READ)) {
+				folderChannel.force(true);
+			} catch (IOException e) {
+				// Do nothing as the rename has been performed anyway.
+			}
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (!this.committed) {
+			this.channel.close();
+			Files.deleteIfExists(this.temporary.toPath());
+		}
+	}
+
+}
@@ -1,15 +1,27 @@
 package eyja.lab.tools.control.centre.management;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
 /**
- * The CachedResource class enables caching for resource references.
+ * The CachedResource class enables caching for resource references. The cached resource is 
+ * bound to the generation of the origin it has been retrieved from, so modifications of the 
+ * origin are detected without dereferencing the reference again. 
+ * Depending on its {@link ReferenceStrength}, the cached resource may be reclaimed under memory 
+ * pressure, in which case it is dereferenced again on the next access. 
+ * The cache is safe to share between threads. If multiple threads need to dereference the same 
+ * reference at once, only one of them accesses the handler while the others wait for its result.
  * 
  * @author Planters
  *
  */
 public class CachedReference extends ResourceReference {
 
-	private Resource cachedResource = null;
-	private boolean isCached = false;
+	private static volatile ReferenceStrength defaultStrength = ReferenceStrength.STRONG;
+	private volatile ReferenceStrength strength = CachedReference.defaultStrength;
+	private final AtomicReference<CacheEntry> cache = new AtomicReference<CacheEntry>(CacheEntry.EMPTY);
 	
 	/**
 	 * Create a new cached reference to a resource by specifying the file path it originates from and its
@@ -27,6 +39,23 @@ public class CachedReference extends ResourceReference {
 	public CachedReference(String origin, long id) {
 		super(origin, id);
 	}
+	
+	/**
+	 * Create a new cached reference to a resource by specifying the interned file path it 
+	 * originates from and its ID inside the specified origin. 
+	 * Thereby the resource referenced can be cached and must not be dereferenced from 
+	 * the according handler for every access. 
+	 * A physical representation of the reference is needed, so the 
+	 * origin may not be null.
+	 * 
+	 * @param origin - the interned file path of the origin that contains the resource
+	 * @param id - the ID of the resource
+	 * 
+	 * @throws NullPointerException if the origin is null
+	 */
+	CachedReference(OriginPath origin, long id) {
+		super(origin, id);
+	}
 
 	/**
 	 * Create a new cached reference to a resource by specifying its unique resource ID.
@@ -45,8 +74,9 @@ public class CachedReference extends ResourceReference {
 	}
 	
 	/**
-	 * Get the resource referenced by this reference. If the resource has not been cached, it 
-	 * will be dereferenced from the specified handler. Otherwise the cached resource is returned.
+	 * Get the resource referenced by this reference. If the resource has not been cached or the 
+	 * cache is stale, it will be dereferenced from the specified handler. Otherwise the cached 
+	 * resource is returned.
 	 * 
 	 * @param fallbackHandler - the handler to dereference the reference from if it has not 
 	 * already been cached
@@ -59,15 +89,18 @@ public class CachedReference extends ResourceReference {
 	 * handler while caching
 	 */
 	public Resource getResource(OriginHandler fallbackHandler) {
-		if(!this.isCached()) {
-			this.cache(fallbackHandler);			
+		CacheEntry entry = this.cache.get();
+		Resource resource = entry.getResource();
+		if (resource == null || entry.isStale()) {
+			resource = this.refresh(fallbackHandler, entry);
 		}
-		return this.getCachedResource();
+		return resource;
 	}
 	
 	/**
-	 * Get the resource referenced by this reference. If the resource has not been cached, it 
-	 * will be dereferenced from the specified handler. Otherwise the cached resource is returned.
+	 * Get the resource referenced by this reference. If the resource has not been cached or the 
+	 * cache is stale, it will be dereferenced from the specified handler. Otherwise the cached 
+	 * resource is returned.
 	 * 
 	 * @param <T> - the expected type
 	 * @param fallbackHandler - the handler to dereference the reference from if it has not 
@@ -84,24 +117,87 @@ public class CachedReference extends ResourceReference {
 	 * handler while caching
 	 */
 	public <T> T getResource(OriginHandler fallbackHandler, Class<T> expectedType) throws ReferenceException {
-		if(!this.isCached()) {
-			this.cache(fallbackHandler);			
+		if (expectedType != null) {
+			return this.cast(this.getResource(fallbackHandler), expectedType);
+		} else {
+			throw new NullPointerException("The expected type of a reference cannot be null.");
 		}
-		return this.getCachedResource(expectedType);
 	}
 	
 	/**
-	 * Returns if the resource referenced is cached and can be accessed.
+	 * Returns if the resource referenced is cached and can be accessed. A resource reclaimed by 
+	 * the garbage collector is not cached anymore.
 	 * 
 	 * @return true if the resource referenced is cached
 	 */
 	public boolean isCached() {
-		return this.isCached;
+		return this.cache.get().isCached();
+	}
+	
+	/**
+	 * Get the strength this reference holds on to its cached resource with.
+	 * 
+	 * @return the reference strength of this reference
+	 */
+	public ReferenceStrength getStrength() {
+		return this.strength;
+	}
+	
+	/**
+	 * Set the strength this reference holds on to its cached resource with. An already cached 
+	 * resource is kept with the new strength.
+	 * 
+	 * @param strength - the new reference strength
+	 * @throws NullPointerException if the strength is null
+	 */
+	public void setStrength(ReferenceStrength strength) {
+		if (strength != null) {
+			this.strength = strength;
+			this.cache.updateAndGet(entry -> entry.hold(strength));
+		} else {
+			throw new NullPointerException(String.format("The reference strength of %s cannot be null.", this));
+		}
+	}
+	
+	/**
+	 * Get the strength newly created references hold on to their cached resources with.
+	 * 
+	 * @return the default reference strength
+	 */
+	public static ReferenceStrength getDefaultStrength() {
+		return CachedReference.defaultStrength;
+	}
+	
+	/**
+	 * Set the strength newly created references hold on to their cached resources with. 
+	 * Existing references are not affected.
+	 * 
+	 * @param strength - the new default reference strength
+	 * @throws NullPointerException if the strength is null
+	 */
+	public static void setDefaultStrength(ReferenceStrength strength) {
+		if (strength != null) {
+			CachedReference.defaultStrength = strength;
+		} else {
+			throw new NullPointerException("The default reference strength cannot be null.");
+		}
+	}
+	
+	/**
+	 * Returns if the cached resource may be outdated. This is the case if the origin it has been 
+	 * retrieved from has been modified, read or removed from its handler since caching, if no 
+	 * resource has been found while caching or if the resource has been reclaimed.
+	 * 
+	 * @return true if the cached resource needs to be dereferenced again
+	 */
+	public boolean isStale() {
+		return this.cache.get().isStale();
 	}
 	
 	/**
 	 * Cache the referenced resource. This will even attempt to cache the resource if it has been 
-	 * previously cached. All preexisting caching data will be overwritten.
+	 * previously cached. All preexisting caching data will be overwritten. If another thread is 
+	 * already caching the resource, its result is used instead.
 	 * 
 	 * @param referenceHandler - the handler to use for caching
 	 * 
@@ -111,28 +207,120 @@ public class CachedReference extends ResourceReference {
 	 * handler
 	 */
 	public void cache(OriginHandler referenceHandler) {
+		this.refresh(referenceHandler, this.cache.get());
+	}
+	
+	/**
+	 * Cache the referenced resource and return it, so it cannot be reclaimed in between. 
+	 * Only a single thread dereferences the resource at a time. Threads arriving while the 
+	 * resource is dereferenced wait for and return the result of the dereferencing thread.
+	 * 
+	 * @param referenceHandler - the handler to use for caching
+	 * @param outdated - the cache entry found to be outdated by the caller
+	 * @return the resource cached
+	 * 
+	 * @throws NullPointerException if the origin handler 
+	 * for dereferencing is null
+	 * @throws IllegalArgumentException if the reference origin is not managed by the specified 
+	 * handler
+	 */
+	private Resource refresh(OriginHandler referenceHandler, CacheEntry outdated) {
 		if (referenceHandler != null) {
-			this.cachedResource = referenceHandler.dereference(this);
-			this.isCached = true;
+			CacheEntry current = this.cache.get();
+			while (true) {
+				if (current.resolution != null) {
+					return CachedReference.await(current.resolution);
+				} else if (current != outdated && !current.isStale()) {
+					// another thread has cached the resource in between
+					Resource resource = current.getResource();
+					if (resource != null) {
+						return resource;
+					}
+				}
+				CacheEntry pending = current.resolve();
+				if (this.cache.compareAndSet(current, pending)) {
+					return this.resolve(referenceHandler, pending, current);
+				}
+				current = this.cache.get();
+			}
 		} else {
 			throw new NullPointerException(String.format("Cannot cache reference %s "
 					+ "from a null handler.", this));
 		}
 	}
 	
+	/**
+	 * Dereference the resource from the specified handler and publish the result to all threads 
+	 * waiting for the specified pending cache entry.
+	 * 
+	 * @param referenceHandler - the handler to use for caching
+	 * @param pending - the cache entry marking the dereferencing in progress
+	 * @param previous - the cache entry to restore if the dereferencing fails
+	 * @return the resource cached
+	 */
+	private Resource resolve(OriginHandler referenceHandler, CacheEntry pending, CacheEntry previous) {
+		try {
+			Origin refOrigin = referenceHandler.resolveOrigin(this);
+			// the generation needs to be known before retrieving the resource
+			long generation = refOrigin.getGeneration();
+			Resource resource = refOrigin.retrieve(this.getID());
+			// the pending entry may have been copied with another strength in the meantime
+			this.cache.updateAndGet(entry -> entry.resolution == pending.resolution 
+					? new CacheEntry(resource, refOrigin, generation, this.strength) : entry);
+			pending.resolution.complete(resource);
+			return resource;
+		} catch (RuntimeException | Error e) {
+			this.cache.updateAndGet(entry -> entry.resolution == pending.resolution 
+					? previous.hold(this.strength) : entry);
+			pending.resolution.completeExceptionally(e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Wait for the specified dereferencing performed by another thread to finish.
+	 * 
+	 * @param resolution - the dereferencing to wait for
+	 * @return the resource dereferenced
+	 */
+	private static Resource await(CompletableFuture<Resource> resolution) {
+		try {
+			return resolution.join();
+		} catch (CompletionException e) {
+			// rethrow the original exception of the dereferencing thread
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+	
+	/**
+	 * Store the specified resource as the resource this reference is pointing to.
+	 * 
+	 * @param resource - the dereferenced resource
+	 * @param origin - the origin the resource has been retrieved from
+	 * @param generation - the generation of the origin before the resource has been retrieved
+	 */
+	void setCachedResource(Resource resource, Origin origin, long generation) {
+		this.cache.set(new CacheEntry(resource, origin, generation, this.strength));
+	}
+	
 	/**
 	 * Get the cached resource this reference is pointing to. This will return null 
-	 * if no caching has been performed yet.
+	 * if no caching has been performed yet or the cached resource has been reclaimed.
 	 * 
 	 * @return the currently cached resource.
 	 */
 	public Resource getCachedResource() {
-		return this.cachedResource;
+		return this.cache.get().getResource();
 	}
 	
 	/**
 	 * Get the cached resource this reference is pointing to. This will return null 
-	 * if no caching has been performed yet.
+	 * if no caching has been performed yet or the cached resource has been reclaimed.
 	 * @param <T> - the expected type
 	 * @param expectedType - the class of the expected type
 	 * 
@@ -143,22 +331,30 @@ public class CachedReference extends ResourceReference {
 	 */
 	public <T> T getCachedResource(Class<T> expectedType) throws ReferenceException {
 		if (expectedType != null) {
-			if (this.cachedResource != null) {
-				if (expectedType.isInstance(this.cachedResource)) {
-					return expectedType.cast(this.cachedResource);
-				} else {
-					throw new ReferenceException(String.format("The resource %s cached is of type %s, "
-							+ "but type %s is expected.", this.cachedResource, 
-							this.cachedResource.getClass(), expectedType));
-				}
-			} else {
-				return null;
-			}
+			return this.cast(this.getCachedResource(), expectedType);
 		} else {
 			throw new NullPointerException("The expected type of a reference cannot be null.");
 		}
 	}
 	
+	/**
+	 * Cast the specified cached resource to the expected type.
+	 * 
+	 * @param <T> - the expected type
+	 * @param resource - the cached resource, may be null
+	 * @param expectedType - the class of the expected type
+	 * @return the cast resource or null if the resource is null
+	 * @throws ReferenceException if the cached resource is not of the expected type
+	 */
+	private <T> T cast(Resource resource, Class<T> expectedType) throws ReferenceException {
+		if (resource == null || expectedType.isInstance(resource)) {
+			return expectedType.cast(resource);
+		} else {
+			throw new ReferenceException(String.format("The resource %s cached is of type %s, "
+					+ "but type %s is expected.", resource, resource.getClass(), expectedType));
+		}
+	}
+	
 	/**
 	 * Generates a cached version of the supplied resource reference. If the reference is already 
 	 * a cached on it will simply be returned again.
@@ -172,7 +368,7 @@ public class CachedReference extends ResourceReference {
 			if (reference instanceof CachedReference) {
 				return (CachedReference) reference;
 			} else {
-				return new CachedReference(reference.getOrigin(), reference.getID());
+				return new CachedReference(reference.getOriginPath(), reference.getID());
 			}
 		} else {
 			return null;
@@ -184,4 +380,114 @@ public class CachedReference extends ResourceReference {
 		return String.format("[%s:%s:%s]", this.getOrigin(), this.getID(), this.isCached());
 	}
 	
+	/**
+	 * The CacheEntry class represents an immutable state of the cache of a reference, so the 
+	 * cached resource, its origin and the generation of the origin are always published together. 
+	 * While a thread dereferences the resource, the entry additionally carries the pending result.
+	 * 
+	 * @author Planters
+	 *
+	 */
+	private static final class CacheEntry {
+		
+		/**
+		 * The entry of a reference nothing has been cached for.
+		 */
+		private static final CacheEntry EMPTY = new CacheEntry(null, null, 0, false, null);
+		// null if nothing has been cached yet
+		private final Supplier<Resource> resource;
+		private final Supplier<Origin> origin;
+		private final long generation;
+		private final boolean found;
+		// null if no thread is dereferencing the resource
+		private final CompletableFuture<Resource> resolution;
+		
+		/**
+		 * Create a new entry caching the specified resource.
+		 * 
+		 * @param resource - the dereferenced resource, may be null
+		 * @param origin - the origin the resource has been retrieved from
+		 * @param generation - the generation of the origin before the resource has been retrieved
+		 * @param strength - the strength to hold the resource and origin with
+		 */
+		private CacheEntry(Resource resource, Origin origin, long generation, ReferenceStrength strength) {
+			this(strength.hold(resource), strength.hold(origin), generation, resource != null, null);
+		}
+		
+		/**
+		 * Create a new entry from its components.
+		 * 
+		 * @param resource - the supplier of the cached resource or null if nothing has been cached
+		 * @param origin - the supplier of the origin
+		 * @param generation - the generation of the origin
+		 * @param found - true if a resource has been found while caching
+		 * @param resolution - the pending result of the dereferencing thread or null
+		 */
+		private CacheEntry(Supplier<Resource> resource, Supplier<Origin> origin, long generation, 
+				boolean found, CompletableFuture<Resource> resolution) {
+			this.resource = resource;
+			this.origin = origin;
+			this.generation = generation;
+			this.found = found;
+			this.resolution = resolution;
+		}
+		
+		/**
+		 * Get the cached resource.
+		 * 
+		 * @return the cached resource or null if nothing has been cached or it has been reclaimed
+		 */
+		private Resource getResource() {
+			return this.resource != null ? this.resource.get() : null;
+		}
+		
+		/**
+		 * Returns if a resource has been cached and not been reclaimed.
+		 * 
+		 * @return true if the entry can be accessed
+		 */
+		private boolean isCached() {
+			return this.resource != null && (!this.found || this.resource.get() != null);
+		}
+		
+		/**
+		 * Returns if the cached resource needs to be dereferenced again.
+		 * 
+		 * @return true if the entry is outdated
+		 */
+		private boolean isStale() {
+			if (this.getResource() != null) {
+				Origin cachedOrigin = this.origin.get();
+				return cachedOrigin == null || cachedOrigin.getGeneration() != this.generation;
+			}
+			return true;
+		}
+		
+		/**
+		 * Create a copy of this entry marking the resource as being dereferenced. The cached data 
+		 * stays accessible until the dereferencing has finished.
+		 * 
+		 * @return the pending entry
+		 */
+		private CacheEntry resolve() {
+			return new CacheEntry(this.resource, this.origin, this.generation, this.found, 
+					new CompletableFuture<Resource>());
+		}
+		
+		/**
+		 * Create a copy of this entry holding the cached data with the specified strength.
+		 * 
+		 * @param strength - the strength to hold the resource and origin with
+		 * @return the entry holding the data with the new strength
+		 */
+		private CacheEntry hold(ReferenceStrength strength) {
+			if (this.resource != null) {
+				return new CacheEntry(strength.hold(this.resource.get()), strength.hold(this.origin.get()), 
+						this.generation, this.found, this.resolution);
+			}
+			return this;
+		}
+		
+	}
+	
 }
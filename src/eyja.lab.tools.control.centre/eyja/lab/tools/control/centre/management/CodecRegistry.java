@@ -0,0 +1,156 @@
+package eyja.lab.tools.control.centre.management;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+
+/**
+ * The CodecRegistry class deserialises resources starting with a single byte type identifier 
+ * by dispatching to the {@link ResourceCodec} registered for the identifier. The codecs are 
+ * stored in a table indexed by the identifier, so finding the codec of a resource does not 
+ * depend on the number of registered types. The codec ID of the registry is written to the 
+ * header of origin files, so files written for another registry are rejected. 
+ * Streamed origin data is decoded through a window of bounded size, which only grows for 
+ * resources not fitting into it.
+ * 
+ * @author Planters
+ *
+ */
+public class CodecRegistry implements RandomAccessDeserialiser {
+	
+	private static final int TYPES = 1 << Byte.SIZE;
+	// the initial number of bytes of streamed origin data held in memory at once
+	private static final int WINDOW_BYTES = 1 << 16;
+	private final AtomicReferenceArray<ResourceCodec> codecs = new AtomicReferenceArray<ResourceCodec>(CodecRegistry.TYPES);
+	private final int codecID;
+	
+	/**
+	 * Create a new registry without any codecs.
+	 * 
+	 * @param codecID - the ID written to the header of origin files or 0 if the origin files 
+	 * should not be bound to this registry
+	 */
+	public CodecRegistry(int codecID) {
+		this.codecID = codecID;
+	}
+	
+	/**
+	 * Register the specified codec for resources with the specified type identifier. 
+	 * A codec already registered for the identifier is replaced.
+	 * 
+	 * @param type - the type identifier of the resources
+	 * @param codec - the codec deserialising the resources
+	 * @return the codec previously registered for the identifier or null if there was none
+	 * @throws NullPointerException if the codec is null
+	 */
+	public ResourceCodec register(byte type, ResourceCodec codec) {
+		if (codec != null) {
+			return this.codecs.getAndSet(Byte.toUnsignedInt(type), codec);
+		} else {
+			throw new NullPointerException(String.format("Cannot register null for the resource type %s.", type));
+		}
+	}
+	
+	/**
+	 * Get the codec registered for the specified type identifier.
+	 * 
+	 * @param type - the type identifier of the resources
+	 * @return the registered codec or null if there is none
+	 */
+	public ResourceCodec getCodec(byte type) {
+		return this.codecs.get(Byte.toUnsignedInt(type));
+	}
+	
+	/**
+	 * Read the type identifier of the next resource and get the codec registered for it.
+	 * 
+	 * @param reader - the reader positioned at the start of a resource
+	 * @return the codec of the resource
+	 * @throws IllegalArgumentException if no codec is registered for the type identifier
+	 */
+	private ResourceCodec readCodec(BinaryReader reader) {
+		byte type = reader.readByte();
+		ResourceCodec codec = this.getCodec(type);
+		if (codec != null) {
+			return codec;
+		} else {
+			throw new IllegalArgumentException(String.format("The resource type %s does not have a "
+					+ "registered codec.", type));
+		}
+	}
+	
+	@Override
+	public long scan(BinaryReader reader) {
+		return this.readCodec(reader).scan(reader);
+	}
+	
+	@Override
+	public Resource decode(BinaryReader reader, Origin origin) {
+		return this.readCodec(reader).decode(reader, origin);
+	}
+	
+	@Override
+	public int getCodecID() {
+		return this.codecID;
+	}
+	
+	@Override
+	public void deserialise(InputStream originData, Origin originToBuild) throws IOException {
+		if (originToBuild != null && originData != null) {
+			try (InputStream data = originData) {
+				originToBuild.clear(); // ensure the origin is empty before building it
+				ByteBuffer window = ByteBuffer.allocate(CodecRegistry.WINDOW_BYTES);
+				window.limit(0);
+				BinaryReader reader = new BinaryReader(window);
+				boolean ended = false;
+				while (!ended || window.hasRemaining()) {
+					int start = window.position();
+					try {
+						originToBuild.requestAdd(this.decode(reader, originToBuild));
+					} catch (BufferUnderflowException e) {
+						if (ended) {
+							throw e;
+						}
+						// the resource is decoded again once the window contains all of it
+						window.position(start);
+						if (start == 0 && window.limit() == window.capacity()) {
+							ByteBuffer grownWindow = ByteBuffer.allocate(window.capacity() * 2);
+							grownWindow.put(window).flip();
+							window = grownWindow;
+							reader = new BinaryReader(window);
+						}
+						ended = CodecRegistry.refill(data, window);
+					}
+				}
+			} catch (BufferUnderflowException | IllegalArgumentException e) {
+				throw new IOException(String.format("The data of origin %s is corrupted.", originToBuild), e);
+			}
+		} else {
+			throw new NullPointerException(String.format("Cannot deserialise with input"
+					+ " %s and target origin %s.", originData, originToBuild));
+		}
+	}
+	
+	/**
+	 * Move the unread bytes of the specified window to its front and fill the rest of the window 
+	 * from the specified stream.
+	 * 
+	 * @param data - the stream to read from
+	 * @param window - the window positioned at the first unread byte
+	 * @return true if the stream has ended
+	 * @throws IOException if the stream could not be read
+	 */
+	private static boolean refill(InputStream data, ByteBuffer window) throws IOException {
+		window.compact();
+		int requested = window.remaining();
+		int read = data.readNBytes(window.array(), window.arrayOffset() + window.position(), requested);
+		window.position(window.position() + read);
+		window.flip();
+		return read < requested;
+	}
+
+}
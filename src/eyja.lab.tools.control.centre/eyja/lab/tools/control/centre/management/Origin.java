@@ -1,17 +1,41 @@
 package eyja.lab.tools.control.centre.management;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Collection;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+import eyja.lab.tools.control.centre.binaryop.BinaryFormat;
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+import eyja.lab.tools.control.centre.binaryop.BinaryWriter;
+import eyja.lab.tools.control.centre.binaryop.ReferenceDictionary;
 
 /**
  * The Origin class represents an enclosed resource environment with its own resource IDs 
- * and functional purpose. An Origin can be serialised containing all its resource information.
- * 
+ * and functional purpose. An Origin can be serialised containing all its resource information. 
+ * A concurrent origin evicted by an {@link OriginResidencyManager} is read again transparently 
+ * the next time its resources are accessed, which throws an UncheckedIOException if the origin 
+ * cannot be read. Resources retrieved before the eviction are detached from the origin, so they 
+ * must be dereferenced again, and resources modified in place must be marked by 
+ * {@link #markModified()}, as only adding and removing resources is tracked.
+ *  
  * @author Planters
  *
  */
@@ -21,12 +45,46 @@ public final class Origin {
 	 * The default file extension for origins.
 	 */
 	public static final String ORIGIN_EXTENSION = ".ori";
+	/**
+	 * The file extension appended to origin files for their index files.
+	 */
+	public static final String INDEX_EXTENSION = ".idx";
+	/**
+	 * The file extension appended to origin files for their journal files.
+	 */
+	public static final String JOURNAL_EXTENSION = ".log";
+	/**
+	 * The number of bytes buffered before being written to the origin file.
+	 */
+	public static final int WRITE_BUFFER_BYTES = 1 << 20;
+	// the maximum number of resources decoded by a single task when decoding in parallel
+	private static final int PARALLEL_DECODING_CHUNK = 1 << 12;
+	// a single buffer cannot map larger files
+	private static final long MAPPING_LIMIT = Integer.MAX_VALUE;
 	
 	private final File path;
+	// null if the origin has no file
+	private final OriginPath originPath;
 	private final OriginDeserialiser deserialiser;
 	private final OriginSerialiser serialiser;
-	private final HashMap<Long, Resource> resourceMap = new HashMap<Long, Resource>();
-	private long lastId = Long.MIN_VALUE;
+	private final ResourceMap resourceMap = new ResourceMap();
+	private final AtomicLong lastId = new AtomicLong(Long.MIN_VALUE);
+	private final AtomicLong generation = new AtomicLong();
+	// null if the origin is not accessed concurrently
+	private final ReentrantReadWriteLock lock;
+	// mapped resources, which have not been deserialised yet
+	private MappedByteBuffer mappedData = null;
+	private OriginBlocks mappedBlocks = null;
+	private OriginIndex mappedIndex = null;
+	private BitSet pendingEntries = null;
+	private int pendingResources = 0;
+	private OriginJournal journal = null;
+	private volatile BinaryFormat format = BinaryFormat.STANDARD;
+	private volatile boolean parallelDecoding = false;
+	// the resources have been released and are read again on the next access
+	private volatile boolean evicted = false;
+	// the resources have been modified without being written or journaled
+	private volatile boolean modified = false;
 
 	/**
 	 * Create a new origin serialised to the specified file with the specified deserailising 
@@ -36,9 +94,7 @@ public final class Origin {
 	 * @param deserialiser - the deseraliser loading this origin from the specified file
 	 */
 	public Origin(File file, OriginDeserialiser deserialiser) {
-		this.path = file;
-		this.deserialiser = deserialiser;
-		this.serialiser = null;
+		this(file, deserialiser, null, false);
 	}
 	
 	/**
@@ -50,62 +106,380 @@ public final class Origin {
 	 * @param serialiser - the serialiser writing this origin to the specified file
 	 */
 	public Origin(File file, OriginDeserialiser deserialiser, OriginSerialiser serialiser) {
+		this(file, deserialiser, serialiser, false);
+	}
+	
+	/**
+	 * Create a new origin serialised to the specified file with the specified serialising and 
+	 * deserailising behaviour. A concurrent origin can be accessed and modified by multiple threads 
+	 * at once. Every operation takes effect atomically and iterations as well as serialisation 
+	 * see a consistent snapshot of the resources. Concurrent origins block modifications while 
+	 * being written or read.
+	 * 
+	 * @param file - the file this origin is serialised to
+	 * @param deserialiser - the deseraliser loading this origin from the specified file
+	 * @param serialiser - the serialiser writing this origin to the specified file
+	 * @param concurrent - true if the origin is accessed by multiple threads
+	 */
+	public Origin(File file, OriginDeserialiser deserialiser, OriginSerialiser serialiser, boolean concurrent) {
 		this.path = file;
+		this.originPath = file != null ? OriginPath.of(file.getPath()) : null;
 		this.deserialiser = deserialiser;
 		this.serialiser = serialiser;
+		this.lock = concurrent ? new ReentrantReadWriteLock() : null;
 	}
 	
 	/**
-	 * Serialise the origin and all its resources to a file.
+	 * Serialise the origin and all its resources to a file. The file is only replaced after the 
+	 * new content has been written completely, so a failure never destroys the previous content. 
+	 * If the default serialisation is used, the resources are written sorted by ID in blocks 
+	 * protected by checksums and an index file is written next to the origin file after the 
+	 * origin file has been written completely. Failing to write the index does not fail the 
+	 * write, as origins without index are scanned instead. If the deserialiser supports random 
+	 * access, the origin paths of resource references are stored once in a dictionary instead of 
+	 * once per reference and the resources are written in the format of the origin, each framed 
+	 * as a record starting with its length.
 	 * 
 	 * @throws IOException if the specified file could not be written to
 	 */
 	public void write() throws IOException {
-		File writeLocation = this.getFile();
-		if (writeLocation != null) {
-			// create the folder structure if needed
-			File parentFolder = writeLocation.getParentFile();
-			if (parentFolder != null && !parentFolder.exists()) {
-				parentFolder.mkdirs();
-			}
-			try (FileOutputStream originData = new FileOutputStream(writeLocation, false)) {
-				if (this.getSerialiser() != null) {
-					this.getSerialiser().serialise(originData, this);
-				} else {
-					// Default implementation to serialise all resources.
-					for (Resource r : this.getResources()) {
-						if (r != null) {
-							originData.write(r.serialise());
+		this.lockResidentWrite();
+		try {
+			File writeLocation = this.getFile();
+			if (writeLocation != null) {
+				// the mapped file is replaced, so all resources are needed now
+				this.materialiseAll();
+				// an outdated index must never be used for the new data
+				OriginIndex.delete(writeLocation);
+				BinaryWriter indexEntries = null;
+				try (AtomicFileWriter originFile = new AtomicFileWriter(writeLocation)) {
+					if (this.getSerialiser() != null) {
+						try (BufferedOutputStream bufferedData = new BufferedOutputStream(originFile.getOutputStream(), 
+								Origin.WRITE_BUFFER_BYTES)) {
+							this.getSerialiser().serialise(bufferedData, this);
+						}
+					} else {
+						// Default implementation to serialise all resources.
+						FileChannel channel = originFile.getChannel();
+						CRC32C checksum = new CRC32C();
+						BinaryWriter writer = new BinaryWriter(Origin.WRITE_BUFFER_BYTES);
+						// only origins read with random access can resolve the dictionary and the records
+						ReferenceDictionary dictionary = null;
+						BinaryWriter record = null;
+						int codecID = OriginHeader.UNKNOWN_CODEC;
+						if (this.getDeserialiser() instanceof RandomAccessDeserialiser) {
+							dictionary = new ReferenceDictionary();
+							record = new BinaryWriter();
+							record.setDictionary(dictionary);
+							record.setFormat(this.getFormat());
+							record.setFramed(true);
+							codecID = ((RandomAccessDeserialiser) this.getDeserialiser()).getCodecID();
+						}
+						indexEntries = new BinaryWriter(this.resourceMap.size() * OriginIndex.ENTRY_BYTES);
+						long blockStart = OriginHeader.write(channel, record != null ? record.getFormat() 
+								: BinaryFormat.STANDARD, record != null, codecID, this.resourceMap.size());
+						long previousID = BinaryWriter.INITIAL_ID;
+						for (long id : this.getSortedIDs()) {
+							Resource r = this.resourceMap.get(id);
+							int start = writer.position();
+							if (record != null) {
+								// compact IDs are decoded relative to the preceding resource, whatever it wrote
+								record.setPreviousID(previousID);
+								previousID = id;
+								// the length is only known after serialisation
+								r.serialise(record);
+								writer.writeVarInt(record.position());
+								start = writer.position();
+								ByteBuffer serialisation = record.getBuffer().duplicate();
+								serialisation.flip();
+								writer.writeBytes(serialisation);
+								record.clear();
+							} else {
+								r.serialise(writer);
+							}
+							OriginIndex.writeEntry(indexEntries, id, blockStart + OriginBlocks.BLOCK_HEADER_BYTES + start, 
+									writer.position() - start, r.getTypeIdentifier());
+							// blocks only end at resource boundaries
+							if (writer.position() >= Origin.WRITE_BUFFER_BYTES) {
+								blockStart += OriginBlocks.writeBlock(writer, channel, checksum);
+							}
 						}
+						if (writer.position() > 0) {
+							OriginBlocks.writeBlock(writer, channel, checksum);
+						}
+						if (dictionary != null) {
+							OriginBlocks.writeDictionary(dictionary, channel, checksum);
+						}
+					}
+					originFile.commit();
+				}
+				// the journal has been folded into the written file and must not be replayed on it
+				if (this.journal != null) {
+					this.journal.reset();
+				} else {
+					OriginJournal.delete(writeLocation);
+				}
+				this.modified = false;
+				if (indexEntries != null) {
+					try {
+						OriginIndex.write(writeLocation, indexEntries, this.resourceMap.size());
+					} catch (IOException e) {
+						// the index is only an optimisation, origins without index are scanned instead
+						OriginIndex.delete(writeLocation);
 					}
 				}
+			} else {
+				throw new IOException("No file for writing has been specified.");
 			}
-		} else {
-			throw new IOException("No file for writing has been specified.");
+		} finally {
+			this.unlockWrite();
 		}
 	}
 	
 	/**
-	 * Deserialise the origin and all its resources from a file.
+	 * Deserialise the origin and all its resources from a file. The checksums of the file are 
+	 * verified while it is deserialised. The records of a valid journal are applied afterwards. 
+	 * Files storing their references in a dictionary or their resources in the compact format 
+	 * are decoded block by block by the random access deserialiser instead of being streamed. 
+	 * While parallel decoding is enabled, all files written by the default serialisation are 
+	 * mapped and decoded in parallel instead, unless they are too large to be mapped.
 	 * 
-	 * @throws IOException if the file this origin represents does not exist
+	 * @throws IOException if neither the file this origin represents nor its journal exists, 
+	 * the file is corrupted, has been written for another codec than the one of the random 
+	 * access deserialiser or the journal cannot be replayed
 	 * @throws NullPointerException if the deserialiser of this origin is null
 	 */
 	public void read() throws IOException {
-		File readLocation = this.getFile();
-		// only allow files that exist
-		if (readLocation != null && readLocation.isFile()) {
+		this.lockWrite();
+		try {
+			File readLocation = this.getFile();
+			// only allow files that exist
+			if (readLocation != null && (readLocation.isFile() || OriginJournal.getJournalFile(readLocation).isFile())) {
+				OriginDeserialiser deserial = this.getDeserialiser();
+				if (deserial != null) {
+					OriginJournal activeJournal = this.journal;
+					this.journal = null; // reading must not be journaled
+					this.evicted = false;
+					try {
+						if (readLocation.isFile()) {
+							OriginHeader header = OriginHeader.read(readLocation);
+							if (deserial instanceof RandomAccessDeserialiser) {
+								Origin.verifyCodec(readLocation, header, (RandomAccessDeserialiser) deserial);
+							}
+							// codecs need to know if their resources rely on their records, which a stream does not state
+							if (deserial instanceof RandomAccessDeserialiser && header != null 
+									&& (header.requiresRandomAccess() || header.reliesOnRecords() 
+											|| this.isParallelDecoding())) {
+								this.clear();
+								if (this.isParallelDecoding() && readLocation.length() <= Origin.MAPPING_LIMIT) {
+									this.mapFile(readLocation, (RandomAccessDeserialiser) deserial);
+									this.materialiseAll();
+								} else {
+									this.decodeFile(readLocation, (RandomAccessDeserialiser) deserial);
+								}
+							} else {
+								try (InputStream readData = OriginBlocks.open(new FileInputStream(readLocation))) {
+									deserial.deserialise(readData, this);
+								}
+							}
+						} else {
+							this.clear();
+						}
+						this.replayJournal();
+						this.modified = false;
+					} finally {
+						this.journal = activeJournal;
+						this.invalidate(); // all resources may have been replaced
+					}
+				} else {
+					throw new NullPointerException("The origin needs a deserialiser in order to be read "
+							+ "from a file.");
+				}
+			} else {
+				throw new IOException(String.format("The file %s does not exist.", readLocation));
+			}
+		} finally {
+			this.unlockWrite();
+		}
+	}
+	
+	/**
+	 * Map the file of this origin into memory and only index the resources contained. 
+	 * If a valid index file exists, the origin file is not scanned at all and the checksum of 
+	 * a block is verified the first time a resource of the block is retrieved. 
+	 * A resource is deserialised the first time it is retrieved. All resources previously contained 
+	 * by this origin are removed. The records of a valid journal are applied afterwards. 
+	 * If the deserialiser of this origin does not support random access, the origin is read 
+	 * completely instead, as are files larger than 2 GiB, which cannot be mapped.
+	 * 
+	 * @throws IOException if neither the file this origin represents nor its journal exists, 
+	 * the file is corrupted or the journal cannot be replayed
+	 * @throws NullPointerException if the deserialiser of this origin is null
+	 */
+	public void map() throws IOException {
+		this.lockWrite();
+		try {
 			OriginDeserialiser deserial = this.getDeserialiser();
-			if (deserial != null) {
-				try (FileInputStream readData = new FileInputStream(readLocation)) {
-					deserial.deserialise(readData, this);
+			if (deserial instanceof RandomAccessDeserialiser) {
+				File readLocation = this.getFile();
+				if (readLocation != null && (readLocation.isFile() || OriginJournal.getJournalFile(readLocation).isFile())) {
+					OriginJournal activeJournal = this.journal;
+					this.journal = null; // reading must not be journaled
+					this.evicted = false;
+					try {
+						this.clear();
+						if (readLocation.isFile()) {
+							this.mapFile(readLocation, (RandomAccessDeserialiser) deserial);
+						}
+						this.replayJournal();
+						this.modified = false;
+					} finally {
+						this.journal = activeJournal;
+						this.invalidate(); // all resources may have been replaced
+					}
+				} else {
+					throw new IOException(String.format("The file %s does not exist.", readLocation));
 				}
 			} else {
-				throw new NullPointerException("The origin needs a deserialiser in order to be read "
-						+ "from a file.");
+				this.read();
+			}
+		} finally {
+			this.unlockWrite();
+		}
+	}
+	
+	/**
+	 * Enable or disable journaling. While journaling is enabled, every addition and removal of 
+	 * resources is appended to a journal file next to the origin file instead of rewriting the 
+	 * whole origin file. The journal is replayed when the origin is read and is folded into the 
+	 * origin file by {@link #write()} or {@link #compact()}. Modifications made before enabling 
+	 * journaling are only persisted by writing the origin. Journaling requires a deserialiser 
+	 * supporting random access.
+	 * 
+	 * @param journaling - true to enable journaling, false to disable it
+	 * @throws IOException if no file has been specified or the journal could not be opened or closed
+	 * @throws IllegalStateException if journaling is enabled for an origin without random access 
+	 * deserialiser
+	 */
+	public void setJournaling(boolean journaling) throws IOException {
+		this.lockWrite();
+		try {
+			if (journaling) {
+				if (this.journal == null) {
+					if (this.getFile() != null) {
+						if (this.getDeserialiser() instanceof RandomAccessDeserialiser) {
+							this.journal = new OriginJournal(this.getFile());
+						} else {
+							throw new IllegalStateException(String.format("The origin %s needs a random access "
+									+ "deserialiser in order to be journaled.", this));
+						}
+					} else {
+						throw new IOException("No file for journaling has been specified.");
+					}
+				}
+			} else if (this.journal != null) {
+				try {
+					this.journal.close();
+				} finally {
+					this.journal = null;
+				}
+			}
+		} finally {
+			this.unlockWrite();
+		}
+	}
+	
+	/**
+	 * Check if journaling is enabled for this origin.
+	 * 
+	 * @return true if modifications are journaled
+	 */
+	public boolean isJournaling() {
+		this.lockRead();
+		try {
+			return this.journal != null;
+		} finally {
+			this.unlockRead();
+		}
+	}
+	
+	/**
+	 * Set the format resources are written in by the default serialisation. The compact format 
+	 * writes resource IDs and local date times with fewer bytes and is stated by the header of 
+	 * the origin file, so files of both formats can be read regardless of this setting. 
+	 * The compact format requires a deserialiser supporting random access.
+	 * 
+	 * @param format - the format to write resources in
+	 * @throws NullPointerException if the format is null
+	 * @throws IllegalStateException if the compact format is set for an origin without random 
+	 * access deserialiser
+	 */
+	public void setFormat(BinaryFormat format) {
+		if (format != null) {
+			if (format == BinaryFormat.STANDARD || this.getDeserialiser() instanceof RandomAccessDeserialiser) {
+				this.format = format;
+			} else {
+				throw new IllegalStateException(String.format("The origin %s needs a random access "
+						+ "deserialiser in order to be written in format %s.", this, format));
 			}
 		} else {
-			throw new IOException(String.format("The file %s does not exist.", readLocation));
+			throw new NullPointerException(String.format("The format of origin %s cannot be null.", this));
+		}
+	}
+	
+	/**
+	 * Get the format resources are written in by the default serialisation.
+	 * 
+	 * @return the format of the resources
+	 */
+	public BinaryFormat getFormat() {
+		return this.format;
+	}
+	
+	/**
+	 * Enable or disable parallel decoding. While parallel decoding is enabled, origin files 
+	 * written by the default serialisation are always mapped when read and all mapped resources 
+	 * deserialised at once are split into chunks of consecutive index entries, which are decoded 
+	 * on the common {@link ForkJoinPool} and added to the resources of this origin afterwards. 
+	 * The random access deserialiser therefore needs to decode resources thread-safely. 
+	 * Resources deserialised one at a time are still decoded on the calling thread.
+	 * 
+	 * @param parallelDecoding - true if resources should be decoded in parallel
+	 * @throws IllegalStateException if parallel decoding is enabled for an origin without random 
+	 * access deserialiser
+	 */
+	public void setParallelDecoding(boolean parallelDecoding) {
+		if (!parallelDecoding || this.getDeserialiser() instanceof RandomAccessDeserialiser) {
+			this.parallelDecoding = parallelDecoding;
+		} else {
+			throw new IllegalStateException(String.format("The origin %s needs a random access "
+					+ "deserialiser in order to decode resources in parallel.", this));
+		}
+	}
+	
+	/**
+	 * Check if resources are decoded in parallel.
+	 * 
+	 * @return true if parallel decoding is enabled
+	 */
+	public boolean isParallelDecoding() {
+		return this.parallelDecoding;
+	}
+	
+	/**
+	 * Fold the journal into a newly written origin file. Nothing is written if the journal does 
+	 * not contain any records.
+	 * 
+	 * @throws IOException if the origin file could not be written
+	 */
+	public void compact() throws IOException {
+		this.lockWrite();
+		try {
+			if (this.getFile() != null && OriginJournal.hasRecords(this.getFile())) {
+				this.write();
+			}
+		} finally {
+			this.unlockWrite();
 		}
 	}
 	
@@ -118,6 +492,15 @@ public final class Origin {
 		return this.path;
 	}
 	
+	/**
+	 * Get the interned path of the file this origin is written to.
+	 * 
+	 * @return the path shared with all references to this origin or null if the origin has no file
+	 */
+	public OriginPath getOriginPath() {
+		return this.originPath;
+	}
+	
 	/**
 	 * Get the deserialiser used for rebuilding the origin from a file.
 	 * 
@@ -142,8 +525,30 @@ public final class Origin {
 	 * @return an array of all resources contained by this origin
 	 */
 	public Resource[] getResources() {
-		Collection<Resource> resources = this.resourceMap.values();
-		return resources.toArray(new Resource[resources.size()]);
+		this.lockMaterialised();
+		try {
+			return this.resourceMap.getResources();
+		} finally {
+			this.unlockRead();
+		}
+	}
+	
+	/**
+	 * Perform the specified action for each resource managed by this origin without copying the 
+	 * resources to an array. The origin must not be modified by the action. Concurrent origins block 
+	 * modifications until the iteration has finished.
+	 * 
+	 * @param action - the action to perform for each resource
+	 * @throws NullPointerException if the action is null
+	 */
+	public void forEach(Consumer<? super Resource> action) {
+		Objects.requireNonNull(action, "The action to perform cannot be null.");
+		this.lockMaterialised();
+		try {
+			this.resourceMap.forEach(action);
+		} finally {
+			this.unlockRead();
+		}
 	}
 	
 	/**
@@ -155,23 +560,33 @@ public final class Origin {
 	 * @param resource - the resource to add to the origin
 	 * @return the resource's ID after successful addition, null if the resource belongs to 
 	 * a different origin or is null
+	 * @throws UncheckedIOException if journaling is enabled and the addition could not be journaled
 	 */
 	public ResourceID requestAdd(Resource resource) {
 		if (resource != null) {
-			ResourceID id = resource.getID();
-			// The resource is completely new
-			if (id == null) {
-				id = new ResourceID(this, this.requestID());
-				resource.setID(id);
-				this.resourceMap.put(id.getID(), resource);
-				return id;
-			} else if (id.getOrigin() == this) {
-				// TODO: check if ID already existed
-				this.resourceMap.put(id.getID(), resource);
-				if (id.getID() >= this.lastId) {
-					this.lastId = id.getID() + 1l;
+			this.lockResidentWrite();
+			try {
+				ResourceID id = resource.getID();
+				// The resource is completely new
+				if (id == null) {
+					id = new ResourceID(this, this.requestID());
+					resource.setID(id);
+					this.resourceMap.put(id.getID(), resource);
+					this.record(OriginJournal.ADD, id.getID(), resource);
+					return id;
+				} else if (id.getOrigin() == this) {
+					// TODO: check if ID already existed
+					Resource replaced = this.resourceMap.put(id.getID(), resource);
+					if (replaced != null && replaced != resource) {
+						this.invalidate();
+					}
+					this.discardPending(id.getID());
+					this.reserveID(id.getID());
+					this.record(OriginJournal.ADD, id.getID(), resource);
+					return id;
 				}
-				return id;
+			} finally {
+				this.unlockWrite();
 			}
 		}
 		return null;
@@ -185,7 +600,92 @@ public final class Origin {
 	 * belongs to this origin
 	 */
 	public Resource retrieve(long id) {
-		return this.resourceMap.get(id);
+		Resource resource;
+		boolean pending;
+		this.lockResidentRead();
+		try {
+			resource = this.resourceMap.get(id);
+			pending = resource == null && this.pendingResources > 0;
+		} finally {
+			this.unlockRead();
+		}
+		if (pending) { // deserialising modifies the origin
+			this.lockResidentWrite();
+			try {
+				resource = this.resourceMap.get(id);
+				if (resource == null && this.pendingResources > 0) {
+					resource = this.materialise(id);
+				}
+			} finally {
+				this.unlockWrite();
+			}
+		}
+		return resource;
+	}
+	
+	/**
+	 * Get the resources with the specified IDs from this origin. Mapped resources, which have not 
+	 * been deserialised yet, are deserialised in the order of their position inside the origin 
+	 * file, so the file is read sequentially.
+	 * 
+	 * @param ids - the IDs of the resources to retrieve
+	 * @return the resources in the order of the specified IDs, containing null for every ID not 
+	 * belonging to a resource of this origin
+	 * @throws NullPointerException if the IDs are null
+	 */
+	public Resource[] retrieveAll(long[] ids) {
+		Resource[] resources = new Resource[ids.length];
+		int missing = 0;
+		this.lockResidentRead();
+		try {
+			for (int i = 0; i < ids.length; i++) {
+				resources[i] = this.resourceMap.get(ids[i]);
+				if (resources[i] == null) {
+					missing++;
+				}
+			}
+			if (missing == 0 || this.pendingResources == 0) {
+				return resources;
+			}
+		} finally {
+			this.unlockRead();
+		}
+		// deserialising modifies the origin
+		this.lockResidentWrite();
+		try {
+			if (this.pendingResources > 0) {
+				// pack the file position and the requested index into a single sortable value
+				long[] order = new long[missing];
+				int[] entries = new int[ids.length];
+				int pending = 0;
+				for (int i = 0; i < ids.length; i++) {
+					if (resources[i] == null) {
+						entries[i] = this.mappedIndex.find(ids[i]);
+						if (entries[i] >= 0 && this.pendingEntries.get(entries[i])) {
+							order[pending++] = (this.mappedIndex.getPosition(entries[i]) << Integer.SIZE) | i;
+						}
+					}
+				}
+				Arrays.sort(order, 0, pending);
+				for (int j = 0; j < pending; j++) {
+					int i = (int) order[j];
+					// the same ID may have been requested multiple times
+					resources[i] = this.resourceMap.get(ids[i]);
+					if (resources[i] == null) {
+						resources[i] = this.materialiseEntry(entries[i]);
+					}
+				}
+			}
+			// resources added in the meantime
+			for (int i = 0; i < ids.length; i++) {
+				if (resources[i] == null) {
+					resources[i] = this.resourceMap.get(ids[i]);
+				}
+			}
+			return resources;
+		} finally {
+			this.unlockWrite();
+		}
 	}
 	
 	/**
@@ -216,9 +716,24 @@ public final class Origin {
 	 * @param id - the implicit ID of the resource to remove
 	 * @return the resource removed or null if no resource with the specified ID 
 	 * belonged to this origin
+	 * @throws UncheckedIOException if journaling is enabled and the removal could not be journaled
 	 */
 	public Resource remove(long id) {
-		return this.resourceMap.remove(id);
+		this.lockResidentWrite();
+		try {
+			Resource removed = this.resourceMap.remove(id);
+			if (removed == null && this.pendingResources > 0) {
+				removed = this.materialise(id);
+				this.resourceMap.remove(id);
+			}
+			if (removed != null) {
+				this.invalidate();
+				this.record(OriginJournal.REMOVE, id, null);
+			}
+			return removed;
+		} finally {
+			this.unlockWrite();
+		}
 	}
 	
 	/**
@@ -229,11 +744,12 @@ public final class Origin {
 	 * belonged to this origin
 	 * 
 	 * @throws IllegalArgumentException if the ID belongs to a different origin
+	 * @throws UncheckedIOException if journaling is enabled and the removal could not be journaled
 	 */
 	public Resource remove(ResourceID id) {
 		if (id != null) {
 			if (id.getOrigin() == this) {
-				return this.resourceMap.remove(id.getID());
+				return this.remove(id.getID());
 			} else {
 				throw new IllegalArgumentException(String.format("The ID %s belongs to origin %s "
 						+ " and cannot be removed from origin %s.", id, id.getOrigin(), this));
@@ -245,18 +761,553 @@ public final class Origin {
 	
 	/**
 	 * Removes all resources from the origin.
+	 * 
+	 * @throws UncheckedIOException if journaling is enabled and the removal could not be journaled
 	 */
 	public void clear() {
-		this.resourceMap.clear();
+		this.lockWrite();
+		try {
+			this.resourceMap.clear();
+			this.releaseMapping();
+			this.invalidate();
+			this.evicted = false; // there is nothing to read again
+			this.record(OriginJournal.CLEAR, 0, null);
+		} finally {
+			this.unlockWrite();
+		}
 	}
 	
 	/**
-	 * Request an unique ID from the origin. This ID can be used to reference specific resources.
+	 * Request an unique ID from the origin. This ID can be used to reference specific resources. 
+	 * IDs are allocated without locking, even for concurrent origins.
 	 * 
 	 * @return a unique ID
 	 */
-	public Long requestID() {
-		return Long.valueOf(this.lastId++);
+	public long requestID() {
+		return this.lastId.getAndIncrement();
+	}
+	
+	/**
+	 * Get the generation of this origin. The generation changes whenever resources previously 
+	 * retrieved from this origin may have become outdated, i.e. when resources are removed or 
+	 * replaced or the origin is read, mapped or cleared. Adding resources with new IDs does not 
+	 * change the generation. Retrieving the generation never locks.
+	 * 
+	 * @return the current generation
+	 */
+	public long getGeneration() {
+		return this.generation.get();
+	}
+	
+	/**
+	 * Mark all resources previously retrieved from this origin as outdated.
+	 */
+	void invalidate() {
+		this.generation.incrementAndGet();
+	}
+	
+	/**
+	 * Check if the resources of this origin have been modified since the origin has been read or 
+	 * written. Modifications appended to the journal are not taken into account, as they are 
+	 * persisted already.
+	 * 
+	 * @return true if the origin needs to be written in order not to lose modifications
+	 */
+	public boolean isModified() {
+		return this.modified;
+	}
+	
+	/**
+	 * Mark this origin as modified, so it is written before being evicted. Resources modified 
+	 * in place have to be marked explicitly, as only adding and removing resources is tracked.
+	 */
+	public void markModified() {
+		this.modified = true;
+	}
+	
+	/**
+	 * Write this origin if it has been modified and release all its resources, so they can be 
+	 * garbage collected. The origin is read again the next time its resources are accessed. 
+	 * Only concurrent origins, which are not currently locked by another operation, are evicted, 
+	 * as the resources of other origins may be accessed without locking. Origins without file or 
+	 * deserialiser and origins which have neither been written nor journaled are never evicted.
+	 * 
+	 * @return true if the origin has been evicted, false if it cannot be read again or is in use
+	 * @throws IOException if the modified origin could not be written
+	 */
+	boolean evict() throws IOException {
+		if (this.lock == null || !this.lock.writeLock().tryLock()) {
+			return false;
+		}
+		try {
+			File evictionLocation = this.getFile();
+			if (!this.evicted && evictionLocation != null && this.getDeserialiser() != null) {
+				if (this.modified) {
+					this.write();
+				}
+				if (evictionLocation.isFile() || OriginJournal.getJournalFile(evictionLocation).isFile()) {
+					this.resourceMap.clear();
+					this.releaseMapping();
+					this.invalidate();
+					this.evicted = true;
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			this.unlockWrite();
+		}
+	}
+	
+	/**
+	 * Check if the resources of this origin have been released by {@link #evict()} and have 
+	 * not been read again yet.
+	 * 
+	 * @return true if the origin has been evicted
+	 */
+	boolean isEvicted() {
+		return this.evicted;
+	}
+	
+	
+	/**
+	 * Check if this origin can be accessed by multiple threads at once.
+	 * 
+	 * @return true if the origin is concurrent
+	 */
+	public boolean isConcurrent() {
+		return this.lock != null;
+	}
+	
+	/**
+	 * Map the specified origin file and index the resources contained. Files too large to be 
+	 * mapped are decoded completely instead.
+	 * 
+	 * @param readLocation - the origin file to map
+	 * @param deserial - the deserialiser used for scanning the origin file if no valid index exists
+	 * @throws IOException if the file is corrupted
+	 */
+	private void mapFile(File readLocation, RandomAccessDeserialiser deserial) throws IOException {
+		try (FileChannel channel = FileChannel.open(readLocation.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size <= Origin.MAPPING_LIMIT) {
+				MappedByteBuffer data = channel.map(MapMode.READ_ONLY, 0, size);
+				OriginBlocks blocks = OriginBlocks.read(data);
+				OriginHeader header = blocks.getHeader();
+				Origin.verifyCodec(readLocation, header, deserial);
+				OriginIndex index = OriginIndex.load(readLocation);
+				if (index == null) {
+					// scanning reads all data, so it needs to be verified beforehand
+					blocks.verifyAll();
+					try {
+						index = OriginIndex.scan(data, blocks, deserial);
+					} catch (BufferUnderflowException | IllegalArgumentException e) {
+						throw new IOException(String.format("The file %s is corrupted.", readLocation), e);
+					}
+				}
+				if (header != null && header.getResourceCount() != OriginHeader.UNKNOWN_RESOURCE_COUNT 
+						&& header.getResourceCount() != index.size()) {
+					throw new IOException(String.format("The file %s states %s resources, but contains %s.", 
+							readLocation, header.getResourceCount(), index.size()));
+				}
+				if (index.size() > 0) {
+					this.mappedData = data;
+					this.mappedBlocks = blocks;
+					this.mappedIndex = index;
+					this.pendingEntries = new BitSet(index.size());
+					this.pendingEntries.set(0, index.size());
+					this.pendingResources = index.size();
+					// entries are sorted by ID
+					this.reserveID(index.getID(index.size() - 1));
+				}
+			} else {
+				this.decodeFile(readLocation, deserial);
+			}
+		}
+	}
+	
+	/**
+	 * Decode all resources of the specified origin file block by block without mapping it, so 
+	 * besides the decoded resources only a single block is held in memory. Origin files without 
+	 * blocks are streamed to the deserialiser.
+	 * 
+	 * @param readLocation - the origin file to decode
+	 * @param deserial - the deserialiser used for decoding the resources
+	 * @throws IOException if the file is corrupted or has been written for another codec
+	 */
+	private void decodeFile(File readLocation, RandomAccessDeserialiser deserial) throws IOException {
+		OriginHeader header = OriginHeader.read(readLocation);
+		if (header != null) {
+			Origin.verifyCodec(readLocation, header, deserial);
+			try (FileChannel channel = FileChannel.open(readLocation.toPath(), StandardOpenOption.READ)) {
+				ReferenceDictionary dictionary = OriginBlocks.readDictionary(channel, header);
+				long limit = dictionary != null ? header.getDictionaryPosition() : channel.size();
+				ByteBuffer block = ByteBuffer.allocate(Origin.WRITE_BUFFER_BYTES);
+				long previousID = BinaryWriter.INITIAL_ID;
+				for (long position = header.getLength(); position < limit; position += OriginBlocks.BLOCK_HEADER_BYTES 
+						+ block.limit() + OriginBlocks.CHECKSUM_BYTES) {
+					block = OriginBlocks.readBlock(channel, position, limit, block);
+					BinaryReader reader = new BinaryReader(block, dictionary, header.getFormat(), header.reliesOnRecords());
+					while (reader.hasRemaining()) {
+						int end = -1;
+						if (header.isFramed()) {
+							if (header.hasTypedRecords()) {
+								reader.readByte(); // type identifier
+							}
+							int length = reader.readVarInt();
+							if (length < 0 || length > reader.remaining()) {
+								throw new IllegalArgumentException(String.format("The record length %s is invalid.", length));
+							}
+							end = reader.position() + length;
+						}
+						// compact IDs are relative to the preceding resource, even across blocks
+						reader.setPreviousID(previousID);
+						Resource resource = deserial.decode(reader, this);
+						if (end >= 0) {
+							if (reader.position() > end) {
+								throw new IllegalArgumentException(String.format("The resource %s exceeds its record.", 
+										resource));
+							}
+							reader.setPosition(end);
+						}
+						previousID = resource.getID().getID();
+						// like scanning, the last occurrence of an ID replaces the previous ones
+						this.resourceMap.put(previousID, resource);
+						this.reserveID(previousID);
+					}
+				}
+			} catch (BufferUnderflowException | IllegalArgumentException e) {
+				throw new IOException(String.format("The file %s is corrupted.", readLocation), e);
+			}
+			if (header.getResourceCount() != OriginHeader.UNKNOWN_RESOURCE_COUNT 
+					&& header.getResourceCount() != this.resourceMap.size()) {
+				throw new IOException(String.format("The file %s states %s resources, but contains %s.", 
+						readLocation, header.getResourceCount(), this.resourceMap.size()));
+			}
+		} else {
+			try (InputStream readData = OriginBlocks.open(new FileInputStream(readLocation))) {
+				deserial.deserialise(readData, this);
+			}
+		}
+	}
+	
+	/**
+	 * Ensure the specified origin file has been written for the codec of the specified 
+	 * deserialiser. Files and deserialisers not stating a codec are accepted.
+	 * 
+	 * @param readLocation - the origin file
+	 * @param header - the header of the origin file or null if it does not have one
+	 * @param deserial - the deserialiser used for reading the origin file
+	 * @throws IOException if the codecs do not match
+	 */
+	private static void verifyCodec(File readLocation, OriginHeader header, RandomAccessDeserialiser deserial) 
+			throws IOException {
+		if (header != null && header.getCodecID() != OriginHeader.UNKNOWN_CODEC 
+				&& deserial.getCodecID() != OriginHeader.UNKNOWN_CODEC 
+				&& header.getCodecID() != deserial.getCodecID()) {
+			throw new IOException(String.format("The file %s has been written for codec %s and cannot be "
+					+ "read with codec %s.", readLocation, header.getCodecID(), deserial.getCodecID()));
+		}
+	}
+	
+	/**
+	 * Apply the records of the journal of this origin if a valid journal exists.
+	 * 
+	 * @throws IOException if the journal could not be read or the deserialiser of this origin 
+	 * does not support random access
+	 */
+	private void replayJournal() throws IOException {
+		if (OriginJournal.getJournalFile(this.getFile()).isFile()) {
+			if (this.getDeserialiser() instanceof RandomAccessDeserialiser) {
+				OriginJournal.replay(this.getFile(), this, (RandomAccessDeserialiser) this.getDeserialiser());
+			} else {
+				throw new IOException(String.format("The journal of origin %s cannot be replayed without "
+						+ "a random access deserialiser.", this));
+			}
+		}
+	}
+	
+	/**
+	 * Append the specified modification to the journal if journaling is enabled.
+	 * 
+	 * @param operation - the operation to record
+	 * @param id - the ID of the affected resource
+	 * @param resource - the added resource or null if the operation does not add a resource
+	 * @throws UncheckedIOException if the journal could not be written
+	 */
+	private void record(byte operation, long id, Resource resource) {
+		if (this.journal != null) {
+			try {
+				this.journal.append(operation, id, resource);
+			} catch (IOException e) {
+				this.modified = true;
+				throw new UncheckedIOException(String.format("The modification of origin %s could not be "
+						+ "journaled.", this), e);
+			}
+		} else {
+			this.modified = true;
+		}
+	}
+	
+	/**
+	 * Get the IDs of all resources contained by this origin in ascending order.
+	 * 
+	 * @return the sorted resource IDs
+	 */
+	private long[] getSortedIDs() {
+		long[] ids = this.resourceMap.getIDs();
+		Arrays.sort(ids);
+		return ids;
+	}
+	
+	/**
+	 * Deserialise the mapped resource with the specified ID and add it to the resources of this 
+	 * origin.
+	 * 
+	 * @param id - the ID of the resource to deserialise
+	 * @return the deserialised resource or null if no mapped resource with the specified ID exists
+	 */
+	private Resource materialise(long id) {
+		int entry = this.mappedIndex.find(id);
+		if (entry >= 0 && this.pendingEntries.get(entry)) {
+			return this.materialiseEntry(entry);
+		} else {
+			return null;
+		}
+	}
+	
+	/**
+	 * Deserialise the specified pending entry and add it to the resources of this origin.
+	 * 
+	 * @param entry - the pending index entry to deserialise
+	 * @return the deserialised resource
+	 */
+	private Resource materialiseEntry(int entry) {
+		Resource resource = this.decode(entry);
+		this.resourceMap.put(this.mappedIndex.getID(entry), resource);
+		this.discardEntry(entry);
+		return resource;
+	}
+	
+	/**
+	 * Deserialise all mapped resources and add them to the resources of this origin.
+	 */
+	private void materialiseAll() {
+		if (this.pendingResources > 0) {
+			this.resourceMap.ensureCapacity(this.resourceMap.size() + this.pendingResources);
+			if (this.isParallelDecoding() && this.pendingResources > Origin.PARALLEL_DECODING_CHUNK) {
+				this.materialiseParallel();
+			} else {
+				for (int entry = this.pendingEntries.nextSetBit(0); entry >= 0; 
+						entry = this.pendingEntries.nextSetBit(entry + 1)) {
+					this.resourceMap.put(this.mappedIndex.getID(entry), this.decode(entry));
+				}
+			}
+			this.releaseMapping();
+		}
+	}
+	
+	/**
+	 * Deserialise all mapped resources on the common fork join pool and add them to the resources 
+	 * of this origin. All blocks are verified beforehand, so the decoding threads only read the 
+	 * mapping.
+	 * 
+	 * @throws UncheckedIOException if a block is corrupted
+	 */
+	private void materialiseParallel() {
+		try {
+			this.mappedBlocks.verifyAll();
+		} catch (IOException e) {
+			throw new UncheckedIOException(String.format("The file of origin %s is corrupted.", this), e);
+		}
+		int[] entries = this.pendingEntries.stream().toArray();
+		Resource[] decoded = new Resource[entries.length];
+		ForkJoinPool.commonPool().invoke(new DecodingTask(entries, decoded, 0, entries.length));
+		for (int i = 0; i < entries.length; i++) {
+			this.resourceMap.put(this.mappedIndex.getID(entries[i]), decoded[i]);
+		}
+	}
+	
+	/**
+	 * Verify and deserialise the specified mapped entry.
+	 * 
+	 * @param entry - the index entry of the resource
+	 * @return the deserialised resource
+	 * @throws UncheckedIOException if the block containing the resource is corrupted
+	 */
+	private Resource decode(int entry) {
+		int position = (int) this.mappedIndex.getPosition(entry);
+		try {
+			this.mappedBlocks.verify(position);
+		} catch (IOException e) {
+			throw new UncheckedIOException(String.format("The file of origin %s is corrupted.", this), e);
+		}
+		ByteBuffer data = this.mappedData.duplicate();
+		data.limit(position + this.mappedIndex.getLength(entry));
+		data.position(position);
+		BinaryReader reader = new BinaryReader(data, this.mappedBlocks.getDictionary(), this.mappedBlocks.getFormat(), 
+				this.mappedBlocks.reliesOnRecords());
+		// compact IDs are relative to the preceding resource, which is the preceding entry
+		if (entry > 0) {
+			reader.setPreviousID(this.mappedIndex.getID(entry - 1));
+		}
+		return ((RandomAccessDeserialiser) this.getDeserialiser()).decode(reader, this);
+	}
+	
+	/**
+	 * Stop tracking the mapped resource with the specified ID as it has been replaced.
+	 * 
+	 * @param id - the ID of the replaced resource
+	 */
+	private void discardPending(long id) {
+		if (this.pendingResources > 0) {
+			int entry = this.mappedIndex.find(id);
+			if (entry >= 0 && this.pendingEntries.get(entry)) {
+				this.discardEntry(entry);
+			}
+		}
+	}
+	
+	/**
+	 * Stop tracking the specified pending entry and release the mapping if no entries are pending 
+	 * anymore.
+	 * 
+	 * @param entry - the pending entry to discard
+	 */
+	private void discardEntry(int entry) {
+		this.pendingEntries.clear(entry);
+		this.pendingResources--;
+		if (this.pendingResources == 0) {
+			this.releaseMapping();
+		}
+	}
+	
+	/**
+	 * Release the mapped origin file and its index.
+	 */
+	private void releaseMapping() {
+		this.mappedData = null;
+		this.mappedBlocks = null;
+		this.mappedIndex = null;
+		this.pendingEntries = null;
+		this.pendingResources = 0;
+	}
+	
+	/**
+	 * Make sure that IDs up to the specified ID are never issued by {@link #requestID()}.
+	 * 
+	 * @param id - the ID in use
+	 */
+	private void reserveID(long id) {
+		this.lastId.updateAndGet(last -> id >= last ? id + 1l : last);
+	}
+	
+	/**
+	 * Get the resources of this origin with all mapped resources deserialised. 
+	 * Concurrent origins return a copy, so it can be used without locking.
+	 * 
+	 * @return the resources of this origin
+	 */
+	private ResourceMap snapshot() {
+		this.lockMaterialised();
+		try {
+			return this.lock != null ? this.resourceMap.copy() : this.resourceMap;
+		} finally {
+			this.unlockRead();
+		}
+	}
+	
+	/**
+	 * Acquire the read lock after all mapped resources have been deserialised.
+	 */
+	private void lockMaterialised() {
+		this.lockResidentRead();
+		if (this.pendingResources > 0) {
+			this.unlockRead();
+			this.lockResidentWrite();
+			try {
+				this.materialiseAll();
+				this.lockRead(); // downgrade, so no resources can be mapped in between
+			} finally {
+				this.unlockWrite();
+			}
+		}
+	}
+	
+	/**
+	 * Acquire the read lock after this origin has been read again if it has been evicted.
+	 * 
+	 * @throws UncheckedIOException if the evicted origin could not be read
+	 */
+	private void lockResidentRead() {
+		this.lockRead();
+		if (this.evicted) {
+			this.unlockRead();
+			this.lockResidentWrite();
+			this.lockRead(); // downgrade, so the origin cannot be evicted in between
+			this.unlockWrite();
+		}
+	}
+	
+	/**
+	 * Acquire the write lock after this origin has been read again if it has been evicted.
+	 * 
+	 * @throws UncheckedIOException if the evicted origin could not be read
+	 */
+	private void lockResidentWrite() {
+		this.lockWrite();
+		if (this.evicted) {
+			try {
+				this.read();
+			} catch (IOException e) {
+				// release the partially read resources, so reading is retried on the next access
+				this.resourceMap.clear();
+				this.releaseMapping();
+				this.evicted = true;
+				this.unlockWrite();
+				throw new UncheckedIOException(String.format("The evicted origin %s could not be read "
+						+ "again.", this), e);
+			} catch (RuntimeException | Error e) {
+				this.unlockWrite();
+				throw e;
+			}
+		}
+	}
+	
+	/**
+	 * Acquire the read lock of a concurrent origin.
+	 */
+	private void lockRead() {
+		if (this.lock != null) {
+			this.lock.readLock().lock();
+		}
+	}
+	
+	/**
+	 * Release the read lock of a concurrent origin.
+	 */
+	private void unlockRead() {
+		if (this.lock != null) {
+			this.lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Acquire the write lock of a concurrent origin.
+	 */
+	private void lockWrite() {
+		if (this.lock != null) {
+			this.lock.writeLock().lock();
+		}
+	}
+	
+	/**
+	 * Release the write lock of a concurrent origin.
+	 */
+	private void unlockWrite() {
+		if (this.lock != null) {
+			this.lock.writeLock().unlock();
+		}
 	}
 	
 	@Override
@@ -266,7 +1317,7 @@ public final class Origin {
 
 	@Override
 	public int hashCode() {
-		int result = Long.hashCode(this.lastId);
+		int result = Long.hashCode(this.lastId.get());
 		final int prime = 31;
 		result = prime * result + Objects.hashCode(this.path);
 		result = prime * result + Objects.hashCode(this.deserialiser);
@@ -280,13 +1331,58 @@ public final class Origin {
 			return true;
 		} else if (obj instanceof Origin) {
 			Origin comp = (Origin) obj;
-			return this.lastId == comp.lastId 
+			return this.lastId.get() == comp.lastId.get() 
 					&& Objects.equals(this.path, comp.path) 
 					&& Objects.equals(this.deserialiser, comp.deserialiser) 
 					&& Objects.equals(this.serialiser, comp.serialiser)
-					&& Objects.equals(this.resourceMap, comp.resourceMap);
+					&& Objects.equals(this.snapshot(), comp.snapshot());
 		}
 		return false;
 	}
 	
+	/**
+	 * The DecodingTask class decodes a range of pending index entries and splits the range in 
+	 * halves as long as it is larger than a single chunk.
+	 * 
+	 * @author Planters
+	 *
+	 */
+	private final class DecodingTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		private final int[] entries;
+		private final Resource[] decoded;
+		private final int from;
+		private final int to;
+		
+		/**
+		 * Create a new task decoding the specified range of entries.
+		 * 
+		 * @param entries - the pending index entries
+		 * @param decoded - the array receiving the resource of each entry at the same index
+		 * @param from - the first entry to decode, inclusive
+		 * @param to - the last entry to decode, exclusive
+		 */
+		private DecodingTask(int[] entries, Resource[] decoded, int from, int to) {
+			this.entries = entries;
+			this.decoded = decoded;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if (this.to - this.from > Origin.PARALLEL_DECODING_CHUNK) {
+				int middle = (this.from + this.to) >>> 1;
+				RecursiveAction.invokeAll(new DecodingTask(this.entries, this.decoded, this.from, middle), 
+						new DecodingTask(this.entries, this.decoded, middle, this.to));
+			} else {
+				for (int i = this.from; i < this.to; i++) {
+					this.decoded[i] = Origin.this.decode(this.entries[i]);
+				}
+			}
+		}
+		
+	}
+
 }
@@ -0,0 +1,615 @@
+package eyja.lab.tools.control.centre.management;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.zip.CRC32C;
+
+import eyja.lab.tools.control.centre.binaryop.BinaryConverter;
+import eyja.lab.tools.control.centre.binaryop.BinaryFormat;
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+import eyja.lab.tools.control.centre.binaryop.BinaryWriter;
+import eyja.lab.tools.control.centre.binaryop.ReferenceDictionary;
+
+/**
+ * The OriginBlocks class describes the blocks of an origin file. Origin files written by the 
+ * default serialisation start with a header followed by blocks, each consisting of the length 
+ * of its payload, the payload and a checksum of the payload. Blocks only end at resource 
+ * boundaries, so every resource is contained by exactly one block. If the resources reference 
+ * other origins, the referenced origin paths are stored once in a dictionary block following the 
+ * resource blocks, whose position is stored in the {@link OriginHeader}. The header also states 
+ * the {@link BinaryFormat} of the resources and if the resources are framed as records consisting 
+ * of the length and the resource itself, preceded by the type identifier in files of the fourth 
+ * version. Origin files of the first version do not have a dictionary and origin files without header are treated as a single block 
+ * without checksum.
+ * 
+ * @author Planters
+ *
+ */
+final class OriginBlocks {
+	
+	/**
+	 * The number of bytes preceding the payload of a block.
+	 */
+	static final int BLOCK_HEADER_BYTES = BinaryConverter.INTEGER_BYTES;
+	/**
+	 * The number of bytes following the payload of a block.
+	 */
+	static final int CHECKSUM_BYTES = BinaryConverter.INTEGER_BYTES;
+	private final ByteBuffer data;
+	private final int[] blockStarts;
+	private final int[] blockLengths;
+	private final BitSet verifiedBlocks;
+	private final ReferenceDictionary dictionary;
+	private final OriginHeader header;
+	
+	/**
+	 * Create a new block description of the specified data.
+	 * 
+	 * @param data - the complete origin data
+	 * @param blockStarts - the payload starts of the blocks in ascending order
+	 * @param blockLengths - the payload lengths of the blocks
+	 * @param verified - true if the blocks do not need to be verified
+	 * @param dictionary - the dictionary of the referenced origin paths or null if there is none
+	 * @param header - the header of the origin data or null if there is none
+	 */
+	private OriginBlocks(ByteBuffer data, int[] blockStarts, int[] blockLengths, boolean verified, 
+			ReferenceDictionary dictionary, OriginHeader header) {
+		this.data = data;
+		this.blockStarts = blockStarts;
+		this.blockLengths = blockLengths;
+		this.dictionary = dictionary;
+		this.header = header;
+		this.verifiedBlocks = new BitSet(blockStarts.length);
+		if (verified) {
+			this.verifiedBlocks.set(0, blockStarts.length);
+		}
+	}
+	
+	/**
+	 * Get the number of blocks.
+	 * 
+	 * @return the number of blocks
+	 */
+	int size() {
+		return this.blockStarts.length;
+	}
+	
+	/**
+	 * Get the position of the first payload byte of the specified block.
+	 * 
+	 * @param block - the block to query
+	 * @return the start of the payload
+	 */
+	int getStart(int block) {
+		return this.blockStarts[block];
+	}
+	
+	/**
+	 * Get the number of payload bytes of the specified block.
+	 * 
+	 * @param block - the block to query
+	 * @return the length of the payload
+	 */
+	int getLength(int block) {
+		return this.blockLengths[block];
+	}
+	
+	/**
+	 * Get the dictionary the resource references of the blocks have been written with.
+	 * 
+	 * @return the dictionary or null if the references contain their complete origin path
+	 */
+	ReferenceDictionary getDictionary() {
+		return this.dictionary;
+	}
+	
+	/**
+	 * Get the format the resources of the blocks have been written in.
+	 * 
+	 * @return the format of the resources
+	 */
+	BinaryFormat getFormat() {
+		return this.header != null ? this.header.getFormat() : BinaryFormat.STANDARD;
+	}
+	
+	/**
+	 * Check if the resources of the blocks are framed as records starting with the length of 
+	 * the resource.
+	 * 
+	 * @return true if the resources are framed
+	 */
+	boolean isFramed() {
+		return this.header != null && this.header.isFramed();
+	}
+	
+	/**
+	 * Check if the records of the blocks start with the type identifier of the resource before 
+	 * its length.
+	 * 
+	 * @return true if the records contain the type identifier
+	 */
+	boolean hasTypedRecords() {
+		return this.header != null && this.header.hasTypedRecords();
+	}
+	
+	/**
+	 * Check if the resources of the blocks have been written relying on their records, so they 
+	 * need to be read framed.
+	 * 
+	 * @return true if the resources can only be skipped by their records
+	 */
+	boolean reliesOnRecords() {
+		return this.header != null && this.header.reliesOnRecords();
+	}
+	
+	/**
+	 * Get the header of the origin data.
+	 * 
+	 * @return the header or null if the origin data does not have one
+	 */
+	OriginHeader getHeader() {
+		return this.header;
+	}
+	
+	/**
+	 * Verify the checksum of the block containing the specified position if not already done.
+	 * 
+	 * @param position - the position inside the origin data
+	 * @throws IOException if the position is not part of any payload or the checksum does not match
+	 */
+	void verify(int position) throws IOException {
+		int block = Arrays.binarySearch(this.blockStarts, position);
+		if (block < 0) {
+			block = -block - 2; // the block starting before the position
+		}
+		if (block >= 0 && position < this.blockStarts[block] + this.blockLengths[block]) {
+			this.verifyBlock(block);
+		} else {
+			throw new IOException(String.format("The position %s is not part of any block.", position));
+		}
+	}
+	
+	/**
+	 * Verify the checksums of all blocks not already verified.
+	 * 
+	 * @throws IOException if a checksum does not match
+	 */
+	void verifyAll() throws IOException {
+		for (int block = this.verifiedBlocks.nextClearBit(0); block < this.blockStarts.length;
+				block = this.verifiedBlocks.nextClearBit(block + 1)) {
+			this.verifyBlock(block);
+		}
+	}
+	
+	/**
+	 * Verify the checksum of the specified block if not already done.
+	 * 
+	 * @param block - the block to verify
+	 * @throws IOException if the checksum does not match
+	 */
+	private void verifyBlock(int block) throws IOException {
+		if (!this.verifiedBlocks.get(block)) {
+			OriginBlocks.verifyPayload(this.data, this.blockStarts[block], this.blockLengths[block]);
+			this.verifiedBlocks.set(block);
+		}
+	}
+	
+	/**
+	 * Verify the checksum following the specified payload.
+	 * 
+	 * @param data - the complete origin data
+	 * @param start - the position of the first payload byte
+	 * @param length - the number of payload bytes
+	 * @throws IOException if the checksum does not match
+	 */
+	private static void verifyPayload(ByteBuffer data, int start, int length) throws IOException {
+		ByteBuffer payload = data.duplicate();
+		payload.limit(start + length);
+		payload.position(start);
+		CRC32C checksum = new CRC32C();
+		checksum.update(payload);
+		if (data.getInt(start + length) != (int) checksum.getValue()) {
+			throw new IOException(String.format("The block starting at %s is corrupted.", start));
+		}
+	}
+	
+	/**
+	 * Get the payload length of the block starting at the specified position.
+	 * 
+	 * @param data - the complete origin data
+	 * @param position - the position of the block
+	 * @param limit - the position the block needs to end before
+	 * @return the number of payload bytes
+	 * @throws IOException if the block is not completely contained
+	 */
+	private static int readLength(ByteBuffer data, int position, int limit) throws IOException {
+		int length = limit - position >= OriginBlocks.BLOCK_HEADER_BYTES ? data.getInt(position) : -1;
+		if (length < 0 || (long) position + OriginBlocks.BLOCK_HEADER_BYTES + length
+				+ OriginBlocks.CHECKSUM_BYTES > limit) {
+			throw new IOException(String.format("The block starting at %s is incomplete.", position));
+		}
+		return length;
+	}
+	
+	/**
+	 * Read and verify the dictionary block starting at the specified position, which needs to be 
+	 * the last block of the data.
+	 * 
+	 * @param data - the complete origin data
+	 * @param position - the position of the dictionary block
+	 * @return the dictionary
+	 * @throws IOException if the dictionary block is incomplete or corrupted
+	 */
+	private static ReferenceDictionary readDictionary(ByteBuffer data, int position) throws IOException {
+		int limit = data.limit();
+		int length = OriginBlocks.readLength(data, position, limit);
+		int start = position + OriginBlocks.BLOCK_HEADER_BYTES;
+		OriginBlocks.verifyPayload(data, start, length);
+		if (start + length + OriginBlocks.CHECKSUM_BYTES != limit) {
+			throw new IOException(String.format("The dictionary block starting at %s is not the last "
+					+ "block.", position));
+		}
+		ByteBuffer payload = data.duplicate();
+		payload.limit(start + length);
+		payload.position(start);
+		try {
+			return ReferenceDictionary.read(new BinaryReader(payload));
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException(String.format("The dictionary block starting at %s is invalid.", position), e);
+		}
+	}
+	
+	/**
+	 * Read the block structure of the specified origin data. The checksums are not verified.
+	 * 
+	 * @param data - the complete origin data
+	 * @return the blocks of the origin data
+	 * @throws IOException if the block structure is corrupted or the version is not supported
+	 */
+	static OriginBlocks read(ByteBuffer data) throws IOException {
+		int limit = data.limit();
+		OriginHeader header = OriginHeader.read(data);
+		if (header != null) {
+			int position = header.getLength();
+			ReferenceDictionary dictionary = null;
+			long dictionaryPosition = header.getDictionaryPosition();
+			if (dictionaryPosition != 0) {
+				if (dictionaryPosition < position || dictionaryPosition >= limit) {
+					throw new IOException(String.format("The dictionary position %s is invalid.", 
+							dictionaryPosition));
+				}
+				// the resource blocks end where the dictionary starts
+				limit = (int) dictionaryPosition;
+				dictionary = OriginBlocks.readDictionary(data, limit);
+			}
+			int[] starts = new int[16];
+			int[] lengths = new int[16];
+			int size = 0;
+			while (position < limit) {
+				int length = OriginBlocks.readLength(data, position, limit);
+				if (size == starts.length) {
+					starts = Arrays.copyOf(starts, size * 2);
+					lengths = Arrays.copyOf(lengths, size * 2);
+				}
+				starts[size] = position + OriginBlocks.BLOCK_HEADER_BYTES;
+				lengths[size] = length;
+				size++;
+				position += OriginBlocks.BLOCK_HEADER_BYTES + length + OriginBlocks.CHECKSUM_BYTES;
+			}
+			return new OriginBlocks(data, Arrays.copyOf(starts, size), Arrays.copyOf(lengths, size), false, 
+					dictionary, header);
+		} else { // origin file without blocks
+			return new OriginBlocks(data, new int[] {0}, new int[] {limit}, true, null, null);
+		}
+	}
+	
+	/**
+	 * Read and verify the dictionary block of the origin file read by the specified channel 
+	 * without reading the resource blocks.
+	 * 
+	 * @param channel - the channel reading the origin file
+	 * @param header - the header of the origin file
+	 * @return the dictionary or null if the origin file does not have one
+	 * @throws IOException if the dictionary block could not be read or is invalid
+	 */
+	static ReferenceDictionary readDictionary(FileChannel channel, OriginHeader header) throws IOException {
+		long position = header.getDictionaryPosition();
+		if (position != 0) {
+			long size = channel.size();
+			if (position < header.getLength() || position >= size || size - position > Integer.MAX_VALUE) {
+				throw new IOException(String.format("The dictionary position %s is invalid.", position));
+			}
+			ByteBuffer data = ByteBuffer.allocate((int) (size - position));
+			OriginBlocks.readFully(channel, data, position);
+			data.flip();
+			return OriginBlocks.readDictionary(data, 0);
+		}
+		return null;
+	}
+	
+	/**
+	 * Read and verify the block starting at the specified position of the origin file read by 
+	 * the specified channel.
+	 * 
+	 * @param channel - the channel reading the origin file
+	 * @param position - the position of the block
+	 * @param limit - the position the block needs to end before
+	 * @param buffer - the buffer to read the block into, which is replaced if it is too small
+	 * @return the buffer containing the payload from position 0 to its limit
+	 * @throws IOException if the block is incomplete or corrupted
+	 */
+	static ByteBuffer readBlock(FileChannel channel, long position, long limit, ByteBuffer buffer)
+			throws IOException {
+		ByteBuffer frame = ByteBuffer.allocate(OriginBlocks.BLOCK_HEADER_BYTES);
+		int length = limit - position >= OriginBlocks.BLOCK_HEADER_BYTES
+				? OriginBlocks.readFully(channel, frame, position).getInt(0) : -1;
+		if (length < 0 || length > Integer.MAX_VALUE - OriginBlocks.CHECKSUM_BYTES || position
+				+ OriginBlocks.BLOCK_HEADER_BYTES + length + OriginBlocks.CHECKSUM_BYTES > limit) {
+			throw new IOException(String.format("The block starting at %s is incomplete.", position));
+		}
+		ByteBuffer block = buffer.capacity() >= length + OriginBlocks.CHECKSUM_BYTES ? buffer
+				: ByteBuffer.allocate(length + OriginBlocks.CHECKSUM_BYTES);
+		block.clear().limit(length + OriginBlocks.CHECKSUM_BYTES);
+		OriginBlocks.readFully(channel, block, position + OriginBlocks.BLOCK_HEADER_BYTES);
+		OriginBlocks.verifyPayload(block, 0, length);
+		block.limit(length).position(0);
+		return block;
+	}
+	
+	/**
+	 * Fill the remaining space of the specified buffer with the data starting at the specified 
+	 * position of the channel.
+	 * 
+	 * @param channel - the channel to read from
+	 * @param buffer - the buffer to fill
+	 * @param position - the position of the first byte to read
+	 * @return the filled buffer
+	 * @throws IOException if the channel ends before the buffer is filled
+	 */
+	private static ByteBuffer readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new EOFException(String.format("The origin data ends at %s.", position));
+			}
+			position += read;
+		}
+		return buffer;
+	}
+	
+	/**
+	 * Write the specified dictionary as last block of an origin file and store its position in 
+	 * the header. Nothing is written if no resource reference has been written with the dictionary.
+	 * 
+	 * @param dictionary - the dictionary the resource blocks have been written with
+	 * @param channel - the channel positioned at the end of the resource blocks
+	 * @param checksum - the checksum used for calculation
+	 * @return the number of bytes appended
+	 * @throws IOException if the dictionary could not be written
+	 */
+	static int writeDictionary(ReferenceDictionary dictionary, FileChannel channel, CRC32C checksum) 
+			throws IOException {
+		if (dictionary.isUsed()) {
+			long position = channel.position();
+			BinaryWriter payload = new BinaryWriter();
+			dictionary.write(payload);
+			int written = OriginBlocks.writeBlock(payload, channel, checksum);
+			OriginHeader.writeDictionaryPosition(channel, position);
+			return written;
+		}
+		return 0;
+	}
+	
+	/**
+	 * Write all bytes of the specified writer as a single block and clear the writer afterwards.
+	 * 
+	 * @param payload - the writer containing the payload of the block
+	 * @param channel - the channel to write to
+	 * @param checksum - the checksum used for calculation
+	 * @return the number of bytes written
+	 * @throws IOException if the block could not be written
+	 */
+	static int writeBlock(BinaryWriter payload, WritableByteChannel channel, CRC32C checksum)
+			throws IOException {
+		int length = payload.position();
+		ByteBuffer view = payload.getBuffer().duplicate();
+		view.flip();
+		checksum.reset();
+		checksum.update(view);
+		ByteBuffer frame = ByteBuffer.allocate(OriginBlocks.BLOCK_HEADER_BYTES);
+		frame.putInt(length).flip();
+		while (frame.hasRemaining()) {
+			channel.write(frame);
+		}
+		payload.drainTo(channel);
+		frame.clear();
+		frame.putInt((int) checksum.getValue()).flip();
+		while (frame.hasRemaining()) {
+			channel.write(frame);
+		}
+		return OriginBlocks.BLOCK_HEADER_BYTES + length + OriginBlocks.CHECKSUM_BYTES;
+	}
+	
+	/**
+	 * Create a stream only containing the verified payload of the specified origin data. 
+	 * Origin data without blocks is passed on unchanged and framed resources are passed on 
+	 * without their frames. Origin data with a dictionary cannot be 
+	 * streamed, as the dictionary follows the resources, and neither can compact resources, as a 
+	 * stream does not state its format. Resources relying on their records can only be streamed 
+	 * if they can be read without them.
+	 * 
+	 * @param originData - the origin data
+	 * @return the stream of the payload
+	 * @throws IOException if the origin data could not be read, the version is not supported or 
+	 * the origin data contains a dictionary or compact resources
+	 */
+	static InputStream open(InputStream originData) throws IOException {
+		BufferedInputStream bufferedData = new BufferedInputStream(originData);
+		bufferedData.mark(OriginHeader.HEADER_BYTES);
+		byte[] headerData = bufferedData.readNBytes(OriginHeader.HEADER_BYTES);
+		OriginHeader header = OriginHeader.read(ByteBuffer.wrap(headerData));
+		bufferedData.reset();
+		if (header != null) {
+			if (header.getDictionaryPosition() != 0) {
+				throw new IOException("The origin data stores its references in a dictionary and "
+						+ "can only be read with random access.");
+			} else if (header.getFormat() == BinaryFormat.COMPACT) {
+				throw new IOException("The origin data stores its resources in the compact format and "
+						+ "can only be read with random access.");
+			}
+			// the header is completely contained by the data read beforehand
+			bufferedData.readNBytes(headerData, 0, header.getLength());
+			return new BlockInputStream(bufferedData, header.isFramed(), header.hasTypedRecords());
+		} else {
+			return bufferedData;
+		}
+	}
+	
+	/**
+	 * Remove the frames of the records contained by the specified payload by moving the resources 
+	 * to the front of the payload.
+	 * 
+	 * @param payload - the verified payload of a block
+	 * @param length - the number of payload bytes
+	 * @param typed - true if the records start with the type identifier of the resource
+	 * @return the number of resource bytes at the front of the payload
+	 * @throws IOException if the payload does not consist of complete records
+	 */
+	private static int unframe(byte[] payload, int length, boolean typed) throws IOException {
+		BinaryReader records = new BinaryReader(ByteBuffer.wrap(payload, 0, length));
+		int unframedLength = 0;
+		try {
+			while (records.hasRemaining()) {
+				if (typed) {
+					records.readByte(); // type identifier
+				}
+				int recordLength = records.readVarInt();
+				if (recordLength < 0 || recordLength > records.remaining()) {
+					throw new IOException(String.format("The record length %s is invalid.", recordLength));
+				}
+				// the resources only move towards the front, so unread records are never overwritten
+				System.arraycopy(payload, records.position(), payload, unframedLength, recordLength);
+				unframedLength += recordLength;
+				records.skip(recordLength);
+			}
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException("The origin data contains an incomplete record.", e);
+		}
+		return unframedLength;
+	}
+	
+	/**
+	 * The BlockInputStream class reads the payload of consecutive blocks and verifies each block 
+	 * before passing it on. The frames of framed resources are removed from the payload.
+	 * 
+	 * @author Planters
+	 *
+	 */
+	private static final class BlockInputStream extends InputStream {
+
+		private final DataInputStream blockData;
+		private final boolean framed;
+		private final boolean typed;
+		private final CRC32C checksum = new CRC32C();
+		private byte[] block = new byte[0];
+		private int position = 0;
+		private int limit = 0;
+
+		/**
+		 * Create a new stream reading the blocks of the specified stream.
+		 * 
+		 * @param blockData - the stream positioned at the start of the first block
+		 * @param framed - true if the resources of the blocks are framed
+		 * @param typed - true if the records start with the type identifier of the resource
+		 */
+		private BlockInputStream(InputStream blockData, boolean framed, boolean typed) {
+			this.blockData = new DataInputStream(blockData);
+			this.framed = framed;
+			this.typed = typed;
+		}
+
+		/**
+		 * Read and verify the next block if the current one has been read completely.
+		 * 
+		 * @return false if the end of the stream has been reached
+		 * @throws IOException if the block is incomplete or corrupted
+		 */
+		private boolean fill() throws IOException {
+			while (this.position == this.limit) {
+				int first = this.blockData.read();
+				if (first < 0) {
+					return false;
+				}
+				try {
+					int length = (first << 24) | (this.blockData.readUnsignedByte() << 16)
+							| this.blockData.readUnsignedShort();
+					if (length < 0) {
+						throw new IOException(String.format("The block length %s is invalid.", length));
+					}
+					if (this.block.length < length) {
+						this.block = new byte[length];
+					}
+					this.blockData.readFully(this.block, 0, length);
+					this.checksum.reset();
+					this.checksum.update(this.block, 0, length);
+					if (this.blockData.readInt() != (int) this.checksum.getValue()) {
+						throw new IOException("The origin data contains a corrupted block.");
+					}
+					this.position = 0;
+					this.limit = this.framed ? OriginBlocks.unframe(this.block, length, this.typed) : length;
+				} catch (EOFException e) {
+					throw new IOException("The origin data ends with an incomplete block.", e);
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (this.fill()) {
+				return this.block[this.position++] & 0xFF;
+			} else {
+				return -1;
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			} else if (this.fill()) {
+				int read = Math.min(len, this.limit - this.position);
+				System.arraycopy(this.block, this.position, b, off, read);
+				this.position += read;
+				return read;
+			} else {
+				return -1;
+			}
+		}
+
+		@Override
+		public int available() throws IOException {
+			if (this.fill()) {
+				return this.limit - this.position;
+			} else {
+				return 0;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.blockData.close();
+		}
+	
+	}
+
+}
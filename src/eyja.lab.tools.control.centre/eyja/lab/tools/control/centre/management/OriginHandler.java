@@ -1,44 +1,153 @@
 package eyja.lab.tools.control.centre.management;
 
-import java.io.File;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * The OriginHandler class allows easy access to all resources of registered origins and allows 
- * dereferencing resource references.
- * 
+ * dereferencing resource references. Origins can be registered and removed while other threads 
+ * dereference resources, as lookups do not lock. Origins are looked up by their interned 
+ * {@link OriginPath}, so resolving a reference does not need to hash or compare the file path. 
+ * Origins registered lazily are only read when a resource of them is dereferenced for the 
+ * first time. If a residency manager is attached, every resolved origin is reported to it.
+ *   
  * @author Planters
  *
  */
 public final class OriginHandler {
 
-	private HashMap<String, Origin> originMap = new HashMap<String, Origin>();
+	private final ConcurrentHashMap<OriginPath, Origin> originMap = new ConcurrentHashMap<OriginPath, Origin>();
+	// origins registered lazily, which have not been loaded yet
+	private final ConcurrentHashMap<OriginPath, LazyOrigin> lazyOrigins = 
+			new ConcurrentHashMap<OriginPath, LazyOrigin>();
+	private volatile OriginResidencyManager residencyManager = null;
 	
 	/**
-	 * Get all origins managed by this handler.
+	 * Get all origins managed by this handler including lazily registered origins, which have 
+	 * not been loaded yet.
 	 * 
 	 * @return an array of all origins contained by this handler
 	 */
 	public Origin[] getOrigins() {
-		Collection<Origin> origins = this.originMap.values();
+		ArrayList<Origin> origins = new ArrayList<Origin>(this.originMap.values());
+		for (LazyOrigin lazyOrigin : this.lazyOrigins.values()) {
+			origins.add(lazyOrigin.origin);
+		}
 		return origins.toArray(new Origin[origins.size()]);
 	}
 	
+	/**
+	 * Get the origin registered for the specified file path. Lazily registered origins are 
+	 * returned without loading them.
+	 * 
+	 * @param path - the file path of the origin
+	 * @return the origin or null if no origin is registered for the path
+	 * @throws NullPointerException if the path is null
+	 */
+	public Origin getOrigin(String path) {
+		OriginPath originPath = OriginPath.of(path);
+		Origin origin = this.originMap.get(originPath);
+		if (origin == null) {
+			LazyOrigin lazyOrigin = this.lazyOrigins.get(originPath);
+			if (lazyOrigin != null) {
+				return lazyOrigin.origin;
+			}
+			// the lazy origin may have been loaded in the meantime
+			return this.originMap.get(originPath);
+		}
+		return origin;
+	}
+	
+	/**
+	 * Check if the origin registered for the specified file path has been loaded.
+	 * 
+	 * @param path - the file path of the origin
+	 * @return true if the origin has been added directly or loaded on a dereference and has not 
+	 * been evicted since, false if it has been registered lazily and not been loaded yet, has 
+	 * been evicted or no origin is registered for the path
+	 * @throws NullPointerException if the path is null
+	 */
+	public boolean isLoaded(String path) {
+		Origin origin = this.originMap.get(OriginPath.of(path));
+		return origin != null && !origin.isEvicted();
+	}
+	
+	/**
+	 * Check if the specified origin is registered with this handler and has been loaded.
+	 * 
+	 * @param origin - the origin to check
+	 * @return true if the origin is loaded and managed by this handler
+	 */
+	boolean isRegistered(Origin origin) {
+		return this.originMap.get(origin.getOriginPath()) == origin;
+	}
+	
+	/**
+	 * Attach the residency manager every resolved origin is reported to.
+	 * 
+	 * @param residencyManager - the residency manager or null to detach the current one
+	 */
+	void setResidencyManager(OriginResidencyManager residencyManager) {
+		this.residencyManager = residencyManager;
+	}
+	
 	/**
 	 * Request the specified origin to be added to the handler. This request will only be 
 	 * accepted if the origin specifies a valid file. If an origin pointing to the same file already 
-	 * exists, it will be overwritten.
+	 * exists, it will be overwritten and references cached from it become stale.
 	 * 
 	 * @param origin - the origin to add to the handler
 	 * @return true if the origin has successfully been added, false if the origin is invalid
 	 */
 	public boolean requestAdd(Origin origin) {
 		if (origin != null) {
-			File file = origin.getFile();
-			if (file != null && file.getPath() != null) {
-				this.originMap.put(file.getPath(), origin);
+			OriginPath path = origin.getOriginPath();
+			if (path != null) {
+				Origin replaced = this.originMap.put(path, origin);
+				LazyOrigin replacedLazy = this.lazyOrigins.remove(path);
+				if (replaced != null && replaced != origin) {
+					replaced.invalidate();
+				}
+				if (replacedLazy != null && replacedLazy.origin != origin) {
+					replacedLazy.origin.invalidate();
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Request the specified origin to be added to the handler without reading it. The origin is 
+	 * read the first time a resource reference to it is resolved by this handler. Only a single 
+	 * thread reads the origin, while all other threads resolving references to it wait for the 
+	 * origin to be loaded. This request will only be accepted if the origin specifies a valid 
+	 * file. If an origin pointing to the same file already exists, it will be overwritten and 
+	 * references cached from it become stale.
+	 * 
+	 * @param origin - the origin to add to the handler
+	 * @return true if the origin has successfully been added, false if the origin is invalid
+	 */
+	public boolean requestLazyAdd(Origin origin) {
+		if (origin != null) {
+			OriginPath path = origin.getOriginPath();
+			if (path != null) {
+				// register the lazy origin first, so the path can always be resolved
+				LazyOrigin replacedLazy = this.lazyOrigins.put(path, new LazyOrigin(origin));
+				Origin replaced = this.originMap.remove(path);
+				if (replaced != null && replaced != origin) {
+					replaced.invalidate();
+				}
+				if (replacedLazy != null && replacedLazy.origin != origin) {
+					replacedLazy.origin.invalidate();
+				}
 				return true;
 			}
 		}
@@ -54,16 +163,12 @@ public final class OriginHandler {
 	 * @throws NullPointerException if the specified resource reference is null
 	 * @throws IllegalArgumentException if the origin specified by the resource reference is not 
 	 * managed by this handler
+	 * @throws IllegalStateException if the lazily registered origin specified by the resource 
+	 * reference could not be loaded
 	 */
 	public Resource dereference(ResourceReference reference) {
 		if (reference != null) {
-			Origin refOrigin = this.originMap.get(reference.getOrigin());
-			if (refOrigin != null) {
-				return refOrigin.retrieve(reference.getID());
-			} else {
-				throw new IllegalArgumentException(String.format("The origin %s specified by resource "
-						+ "reference %s is not handled by %s.",  reference.getOrigin(), reference, this));
-			}
+			return this.resolveOrigin(reference).retrieve(reference.getID());
 		} else {
 			throw new NullPointerException("Null cannot be dereferenced.");
 		}
@@ -83,44 +188,306 @@ public final class OriginHandler {
 	 * @throws NullPointerException if the specified resource reference or type is null
 	 * @throws IllegalArgumentException if the origin specified by the resource reference is not 
 	 * managed by this handler
+	 * @throws IllegalStateException if the lazily registered origin specified by the resource 
+	 * reference could not be loaded
 	 * @throws ReferenceException if the referenced resource is not of the expected type
 	 */
 	public <T extends Resource> T dereference(ResourceReference reference, Class<T> expectedType) 
 	throws ReferenceException {
 		if (reference != null && expectedType != null) {
-			Origin refOrigin = this.originMap.get(reference.getOrigin());
-			if (refOrigin != null) {
-				Resource retrievedResource = refOrigin.retrieve(reference.getID());
-				if (expectedType.isInstance(retrievedResource)) {
-					return expectedType.cast(retrievedResource);
+			Resource retrievedResource = this.resolveOrigin(reference).retrieve(reference.getID());
+			if (expectedType.isInstance(retrievedResource)) {
+				return expectedType.cast(retrievedResource);
+			} else {
+				throw new ReferenceException(String.format("The resource %s dereferenced from %s "
+						+ "is of type %s while %s was expected.", retrievedResource, reference, 
+						retrievedResource.getClass(), expectedType));
+			}
+		} else {
+			throw new NullPointerException("Null cannot be dereferenced.");
+		}
+	}
+	
+	/**
+	 * Resolve all specified resource references at once. The references are grouped by origin, 
+	 * so every origin is only looked up once and retrieves all its referenced resources in a 
+	 * single pass.
+	 * 
+	 * @param references - the resource references to resolve
+	 * @return the resources referenced in the order of the references, containing null for every 
+	 * resource not contained in the origin specified by its reference
+	 * @throws NullPointerException if the references or any of them are null
+	 * @throws IllegalArgumentException if the origin specified by any resource reference is not 
+	 * managed by this handler
+	 * @throws IllegalStateException if the lazily registered origin specified by any resource 
+	 * reference could not be loaded
+	 */
+	public Resource[] dereferenceAll(Collection<? extends ResourceReference> references) {
+		if (references != null) {
+			return this.dereferenceAll(references.toArray(new ResourceReference[references.size()]));
+		} else {
+			throw new NullPointerException("Null cannot be dereferenced.");
+		}
+	}
+	
+	/**
+	 * Resolve all specified resource references at once. The references are grouped by origin, 
+	 * so every origin is only looked up once and retrieves all its referenced resources in a 
+	 * single pass.
+	 * 
+	 * @param references - the resource references to resolve
+	 * @return the resources referenced in the order of the references, containing null for every 
+	 * resource not contained in the origin specified by its reference
+	 * @throws NullPointerException if the references or any of them are null
+	 * @throws IllegalArgumentException if the origin specified by any resource reference is not 
+	 * managed by this handler
+	 * @throws IllegalStateException if the lazily registered origin specified by any resource 
+	 * reference could not be loaded
+	 */
+	public Resource[] dereferenceAll(ResourceReference[] references) {
+		if (references != null) {
+			int[] order = new int[references.length];
+			int[] groupStarts = new int[references.length + 1];
+			int groupCount = OriginHandler.groupByOrigin(references, order, groupStarts);
+			Resource[] resources = new Resource[references.length];
+			for (int group = 0; group < groupCount; group++) {
+				int start = groupStarts[group];
+				Origin refOrigin = this.resolveOrigin(references[order[start]]);
+				long[] ids = new long[groupStarts[group + 1] - start];
+				for (int j = 0; j < ids.length; j++) {
+					ids[j] = references[order[start + j]].getID();
+				}
+				Resource[] retrieved = refOrigin.retrieveAll(ids);
+				for (int j = 0; j < retrieved.length; j++) {
+					resources[order[start + j]] = retrieved[j];
+				}
+			}
+			return resources;
+		} else {
+			throw new NullPointerException("Null cannot be dereferenced.");
+		}
+	}
+	
+	/**
+	 * Resolve all specified resource references at once to resources of the expected type. 
+	 * This method will fail if any referenced resource is from a different type.
+	 * 
+	 * @param <T> - the type of resource the references are expected to point to
+	 * @param references - the resource references to resolve
+	 * @param expectedType - the class of the expected type
+	 * 
+	 * @return the resources referenced in the order of the references, containing null for every 
+	 * resource not contained in the origin specified by its reference
+	 * 
+	 * @throws NullPointerException if the references, any of them or the type is null
+	 * @throws IllegalArgumentException if the origin specified by any resource reference is not 
+	 * managed by this handler
+	 * @throws IllegalStateException if the lazily registered origin specified by any resource 
+	 * reference could not be loaded
+	 * @throws ReferenceException if any referenced resource is not of the expected type
+	 */
+	public <T extends Resource> T[] dereferenceAll(Collection<? extends ResourceReference> references, 
+			Class<T> expectedType) throws ReferenceException {
+		if (expectedType != null) {
+			Resource[] retrievedResources = this.dereferenceAll(references);
+			@SuppressWarnings("unchecked")
+			T[] resources = (T[]) Array.newInstance(expectedType, retrievedResources.length);
+			for (int i = 0; i < retrievedResources.length; i++) {
+				if (retrievedResources[i] == null || expectedType.isInstance(retrievedResources[i])) {
+					resources[i] = expectedType.cast(retrievedResources[i]);
 				} else {
-					throw new ReferenceException(String.format("The resource %s dereferenced from %s "
-							+ "is of type %s while %s was expected.", retrievedResource, reference, 
-							retrievedResource.getClass(), expectedType));
+					throw new ReferenceException(String.format("The resource %s dereferenced is of type %s "
+							+ "while %s was expected.", retrievedResources[i], 
+							retrievedResources[i].getClass(), expectedType));
 				}
-			} else {
-				throw new IllegalArgumentException(String.format("The origin %s specified by resource "
-						+ "reference %s is not handled by %s.",  reference.getOrigin(), reference, this));
 			}
+			return resources;
 		} else {
 			throw new NullPointerException("Null cannot be dereferenced.");
 		}
 	}
 	
 	/**
-	 * Remove the specified origin from this handler.
+	 * Cache all specified references, which have not been cached yet or are stale, at once. 
+	 * The references are resolved like by {@link #dereferenceAll(Collection)}, so every origin is 
+	 * only resolved once.
+	 * 
+	 * @param references - the cached references to fill
+	 * @throws NullPointerException if the references or any of them are null
+	 * @throws IllegalArgumentException if the origin specified by any resource reference is not 
+	 * managed by this handler
+	 * @throws IllegalStateException if the lazily registered origin specified by any resource 
+	 * reference could not be loaded
+	 */
+	public void cacheAll(Collection<? extends CachedReference> references) {
+		if (references != null) {
+			ArrayList<CachedReference> uncachedReferences = new ArrayList<CachedReference>(references.size());
+			for (CachedReference reference : references) {
+				if (reference == null) {
+					throw new NullPointerException("Null cannot be cached.");
+				} else if (!reference.isCached() || reference.isStale()) {
+					uncachedReferences.add(reference);
+				}
+			}
+			CachedReference[] uncached = uncachedReferences.toArray(new CachedReference[uncachedReferences.size()]);
+			int[] order = new int[uncached.length];
+			int[] groupStarts = new int[uncached.length + 1];
+			int groupCount = OriginHandler.groupByOrigin(uncached, order, groupStarts);
+			for (int group = 0; group < groupCount; group++) {
+				int start = groupStarts[group];
+				Origin refOrigin = this.resolveOrigin(uncached[order[start]]);
+				// the generation needs to be known before retrieving the resources
+				long generation = refOrigin.getGeneration();
+				long[] ids = new long[groupStarts[group + 1] - start];
+				for (int j = 0; j < ids.length; j++) {
+					ids[j] = uncached[order[start + j]].getID();
+				}
+				Resource[] retrieved = refOrigin.retrieveAll(ids);
+				for (int j = 0; j < retrieved.length; j++) {
+					uncached[order[start + j]].setCachedResource(retrieved[j], refOrigin, generation);
+				}
+			}
+		} else {
+			throw new NullPointerException("Null cannot be cached.");
+		}
+	}
+	
+	/**
+	 * Sort the specified references by origin using a counting sort over the distinct origins. 
+	 * The references of every origin form a group, whose indices are stored consecutively in the 
+	 * order starting at the start of the group.
+	 * 
+	 * @param references - the resource references to group
+	 * @param order - the array receiving the indices of the references sorted by origin, which 
+	 * needs to be as long as the references
+	 * @param groupStarts - the array receiving the start of every group in the order followed by 
+	 * the end of the last group, which needs to be one longer than the references
+	 * @return the number of groups
+	 * @throws NullPointerException if any of the references is null
+	 */
+	private static int groupByOrigin(ResourceReference[] references, int[] order, int[] groupStarts) {
+		HashMap<OriginPath, Integer> groupNumbers = new HashMap<OriginPath, Integer>();
+		int[] groups = new int[references.length];
+		for (int i = 0; i < references.length; i++) {
+			if (references[i] == null) {
+				throw new NullPointerException("Null cannot be dereferenced.");
+			}
+			Integer group = groupNumbers.get(references[i].getOriginPath());
+			if (group == null) {
+				group = groupNumbers.size();
+				groupNumbers.put(references[i].getOriginPath(), group);
+			}
+			groups[i] = group;
+			groupStarts[group + 1]++;
+		}
+		for (int group = 0; group < groupNumbers.size(); group++) {
+			groupStarts[group + 1] += groupStarts[group];
+		}
+		int[] nextPositions = Arrays.copyOf(groupStarts, groupNumbers.size());
+		for (int i = 0; i < references.length; i++) {
+			order[nextPositions[groups[i]]++] = i;
+		}
+		return groupNumbers.size();
+	}
+	
+	/**
+	 * Remove the origin registered for the file of the specified origin from this handler, 
+	 * regardless of whether it has been loaded. References cached from the removed origin 
+	 * become stale.
 	 * 
 	 * @param origin - the origin to remove
 	 */
 	public void remove(Origin origin) {
 		if (origin != null) {
-			File file = origin.getFile();
-			if (file != null && file.getPath() != null) {
-				this.originMap.remove(file.getPath());
+			OriginPath path = origin.getOriginPath();
+			if (path != null) {
+				Origin removed = this.originMap.remove(path);
+				LazyOrigin removedLazy = this.lazyOrigins.remove(path);
+				if (removed != null) {
+					removed.invalidate();
+				}
+				if (removedLazy != null) {
+					removedLazy.origin.invalidate();
+				}
 			}
 		}
 	}
 	
+	/**
+	 * Get the origin specified by the resource reference. A lazily registered origin is loaded 
+	 * before it is returned.
+	 * 
+	 * @param reference - the resource reference
+	 * @return the origin containing the referenced resource
+	 * @throws IllegalArgumentException if the origin specified by the resource reference is not 
+	 * managed by this handler
+	 * @throws IllegalStateException if the lazily registered origin specified by the resource 
+	 * reference could not be loaded
+	 */
+	Origin resolveOrigin(ResourceReference reference) {
+		Origin refOrigin = this.originMap.get(reference.getOriginPath());
+		if (refOrigin == null) {
+			refOrigin = this.load(reference.getOriginPath());
+		}
+		if (refOrigin != null) {
+			OriginResidencyManager manager = this.residencyManager;
+			if (manager != null) {
+				manager.access(refOrigin);
+			}
+			return refOrigin;
+		} else {
+			throw new IllegalArgumentException(String.format("The origin %s specified by resource "
+					+ "reference %s is not handled by %s.",  reference.getOrigin(), reference, this));
+		}
+	}
+	
+	/**
+	 * Load the origin lazily registered for the specified path and publish it as loaded origin. 
+	 * If another thread is already loading the origin, wait for it to finish. If loading fails, 
+	 * the origin stays registered lazily, so it is loaded again on the next dereference. The 
+	 * origin registered for the path is returned, which is not the loaded one if another origin 
+	 * has been registered in the meantime.
+	 * 
+	 * @param path - the path of the origin
+	 * @return the origin or null if no origin is registered for the path
+	 * @throws IllegalStateException if the origin could not be loaded
+	 */
+	private Origin load(OriginPath path) {
+		LazyOrigin lazyOrigin = this.lazyOrigins.get(path);
+		if (lazyOrigin != null) {
+			lazyOrigin.run(); // only the first thread reads the origin
+			try {
+				Origin loadedOrigin = lazyOrigin.get();
+				Origin[] published = new Origin[1];
+				// publish the origin before removing the lazy one, so the path can always be resolved
+				this.lazyOrigins.computeIfPresent(path, (p, registered) -> {
+					if (registered == lazyOrigin) {
+						Origin existing = this.originMap.putIfAbsent(p, loadedOrigin);
+						published[0] = existing != null ? existing : loadedOrigin;
+						return null;
+					}
+					return registered;
+				});
+				if (published[0] != null) {
+					return published[0];
+				} else { // the lazy origin has been replaced or removed in the meantime
+					return this.load(path);
+				}
+			} catch (ExecutionException e) {
+				// allow the next dereference to retry loading the origin
+				this.lazyOrigins.replace(path, lazyOrigin, new LazyOrigin(lazyOrigin.origin));
+				throw new IllegalStateException(String.format("The origin %s could not be loaded.", 
+						lazyOrigin.origin), e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(String.format("Waiting for origin %s to be loaded "
+						+ "has been interrupted.", lazyOrigin.origin), e);
+			}
+		}
+		// the origin may have been loaded by another thread in the meantime
+		return this.originMap.get(path);
+	}
+	
 	@Override
 	public String toString() {
 		return this.originMap.keySet().toString();
@@ -128,7 +495,7 @@ public final class OriginHandler {
 
 	@Override
 	public int hashCode() {
-		return originMap.hashCode();
+		return this.originMap.hashCode();
 	}
 
 	@Override
@@ -142,4 +509,30 @@ public final class OriginHandler {
 		return false;
 	}
 	
+	/**
+	 * The LazyOrigin class reads a lazily registered origin exactly once, no matter how many 
+	 * threads request it to be loaded.
+	 * 
+	 * @author Planters
+	 *
+	 */
+	private static final class LazyOrigin extends FutureTask<Origin> {
+		
+		private final Origin origin;
+		
+		/**
+		 * Create a loader for the specified origin.
+		 * 
+		 * @param origin - the origin to read when it is loaded
+		 */
+		private LazyOrigin(Origin origin) {
+			super(() -> {
+				origin.read();
+				return origin;
+			});
+			this.origin = origin;
+		}
+		
+	}
+	
 }
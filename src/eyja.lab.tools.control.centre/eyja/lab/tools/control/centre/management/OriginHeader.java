@@ -0,0 +1,311 @@
+package eyja.lab.tools.control.centre.management;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+import eyja.lab.tools.control.centre.binaryop.BinaryConverter;
+import eyja.lab.tools.control.centre.binaryop.BinaryFormat;
+import eyja.lab.tools.control.centre.binaryop.BinaryWriter;
+
+/**
+ * The OriginHeader class describes the header at the start of origin files written by the 
+ * default serialisation. The header identifies the data as origin file and states the version 
+ * of its layout, flags describing how the resources have been written, the codec the resources 
+ * have been written for, the number of resources and the position of the dictionary block. 
+ * Headers of earlier versions only contain the magic number, the version and, starting with the 
+ * second version, the position of the dictionary block. Starting with the fourth version, the 
+ * header has its current layout. Framed records of the fourth version start with the type 
+ * identifier of the resource before its length, and only framed resources of the fifth version 
+ * are written relying on their records, so they do not store the lengths of their parts.
+ * 
+ * @author Planters
+ *
+ */
+final class OriginHeader {
+	
+	/**
+	 * The number of bytes of the header of the current version.
+	 */
+	static final int HEADER_BYTES = BinaryConverter.INTEGER_BYTES * 5 + BinaryConverter.LONG_BYTES;
+	/**
+	 * The codec ID of origin files not stating the codec their resources have been written for.
+	 */
+	static final int UNKNOWN_CODEC = 0;
+	/**
+	 * The resource count of origin files not stating their number of resources.
+	 */
+	static final int UNKNOWN_RESOURCE_COUNT = -1;
+	private static final int MAGIC_NUMBER = 0x4C544F52; // LTOR
+	private static final int VERSION = 5;
+	private static final int LEGACY_VERSION = 1;
+	private static final int DICTIONARY_VERSION = 2;
+	private static final int COMPACT_DICTIONARY_VERSION = 3;
+	private static final int TYPED_RECORD_VERSION = 4;
+	private static final int LEGACY_HEADER_BYTES = BinaryConverter.INTEGER_BYTES * 2;
+	private static final int DICTIONARY_HEADER_BYTES = BinaryConverter.INTEGER_BYTES * 2 + BinaryConverter.LONG_BYTES;
+	private static final int FLAGS_OFFSET = BinaryConverter.INTEGER_BYTES * 2;
+	private static final int CODEC_OFFSET = BinaryConverter.INTEGER_BYTES * 3;
+	private static final int RESOURCE_COUNT_OFFSET = BinaryConverter.INTEGER_BYTES * 4;
+	// the field storing the position of the dictionary block or 0 if there is none
+	private static final int DICTIONARY_POSITION_OFFSET = BinaryConverter.INTEGER_BYTES * 5;
+	private static final int LEGACY_DICTIONARY_POSITION_OFFSET = BinaryConverter.INTEGER_BYTES * 2;
+	// the resources have been written in the compact format
+	private static final int FLAG_COMPACT = 1;
+	// every resource is preceded by its length as variable length int
+	private static final int FLAG_FRAMED = 1 << 1;
+	private static final int SUPPORTED_FLAGS = OriginHeader.FLAG_COMPACT | OriginHeader.FLAG_FRAMED;
+	private final int version;
+	private final int length;
+	private final int flags;
+	private final int codecID;
+	private final int resourceCount;
+	private final long dictionaryPosition;
+	
+	/**
+	 * Create a new header description.
+	 * 
+	 * @param version - the version of the origin file
+	 * @param length - the number of bytes of the header
+	 * @param flags - the flags of the origin file
+	 * @param codecID - the ID of the codec the resources have been written for
+	 * @param resourceCount - the number of resources
+	 * @param dictionaryPosition - the position of the dictionary block or 0 if there is none
+	 */
+	private OriginHeader(int version, int length, int flags, int codecID, int resourceCount, 
+			long dictionaryPosition) {
+		this.version = version;
+		this.length = length;
+		this.flags = flags;
+		this.codecID = codecID;
+		this.resourceCount = resourceCount;
+		this.dictionaryPosition = dictionaryPosition;
+	}
+	
+	/**
+	 * Get the version of the origin file.
+	 * 
+	 * @return the version stated by the header
+	 */
+	int getVersion() {
+		return this.version;
+	}
+	
+	/**
+	 * Get the number of bytes of the header, which is the position of the first block.
+	 * 
+	 * @return the length of the header
+	 */
+	int getLength() {
+		return this.length;
+	}
+	
+	/**
+	 * Get the format the resources have been written in.
+	 * 
+	 * @return the format of the resources
+	 */
+	BinaryFormat getFormat() {
+		return (this.flags & OriginHeader.FLAG_COMPACT) != 0 ? BinaryFormat.COMPACT : BinaryFormat.STANDARD;
+	}
+	
+	/**
+	 * Check if every resource is framed as a record starting with the length of the resource.
+	 * 
+	 * @return true if the resources are framed
+	 */
+	boolean isFramed() {
+		return (this.flags & OriginHeader.FLAG_FRAMED) != 0;
+	}
+	
+	/**
+	 * Check if the records start with the type identifier of the resource before its length, 
+	 * which is the case for framed resources of the fourth version.
+	 * 
+	 * @return true if the records contain the type identifier
+	 */
+	boolean hasTypedRecords() {
+		return this.isFramed() && this.version == OriginHeader.TYPED_RECORD_VERSION;
+	}
+	
+	/**
+	 * Check if the resources have been written relying on their records, so they do not store 
+	 * the lengths needed for skipping their parts. This is the case for framed resources starting 
+	 * with the fifth version.
+	 * 
+	 * @return true if the resources can only be skipped by their records
+	 */
+	boolean reliesOnRecords() {
+		return this.isFramed() && this.version >= OriginHeader.VERSION;
+	}
+	
+	/**
+	 * Get the ID of the codec the resources have been written for.
+	 * 
+	 * @return the codec ID or {@link #UNKNOWN_CODEC} if the codec is not stated
+	 */
+	int getCodecID() {
+		return this.codecID;
+	}
+	
+	/**
+	 * Get the number of resources contained by the origin file.
+	 * 
+	 * @return the resource count or {@link #UNKNOWN_RESOURCE_COUNT} if the count is not stated
+	 */
+	int getResourceCount() {
+		return this.resourceCount;
+	}
+	
+	/**
+	 * Get the position of the dictionary block.
+	 * 
+	 * @return the position of the dictionary block or 0 if there is none
+	 */
+	long getDictionaryPosition() {
+		return this.dictionaryPosition;
+	}
+	
+	/**
+	 * Check if the origin file can only be read with random access, as it stores its resource 
+	 * references with a dictionary or its resources in the compact format. Framed resources 
+	 * can be streamed, as the frames are removed from the stream.
+	 * 
+	 * @return true if the resources cannot be streamed
+	 */
+	boolean requiresRandomAccess() {
+		return this.dictionaryPosition != 0 || this.getFormat() == BinaryFormat.COMPACT;
+	}
+	
+	/**
+	 * Read the header at the start of the specified origin data.
+	 * 
+	 * @param data - the origin data, which is read from index 0 to its limit
+	 * @return the header or null if the origin data does not start with a header
+	 * @throws IOException if the header is incomplete, its version is not supported or its 
+	 * fields are invalid
+	 */
+	static OriginHeader read(ByteBuffer data) throws IOException {
+		int limit = data.limit();
+		if (limit >= OriginHeader.LEGACY_HEADER_BYTES && data.getInt(0) == OriginHeader.MAGIC_NUMBER) {
+			int version = data.getInt(BinaryConverter.INTEGER_BYTES);
+			switch (version) {
+
+			case OriginHeader.VERSION:
+			case OriginHeader.TYPED_RECORD_VERSION:
+				OriginHeader.requireLength(limit, OriginHeader.HEADER_BYTES);
+				int flags = data.getInt(OriginHeader.FLAGS_OFFSET);
+				int resourceCount = data.getInt(OriginHeader.RESOURCE_COUNT_OFFSET);
+				if ((flags & ~OriginHeader.SUPPORTED_FLAGS) != 0) {
+					throw new IOException(String.format("The origin file flags %s are not supported.", 
+							Integer.toBinaryString(flags)));
+				} else if (resourceCount < 0) {
+					throw new IOException(String.format("The resource count %s is invalid.", resourceCount));
+				}
+				return new OriginHeader(version, OriginHeader.HEADER_BYTES, flags, 
+						data.getInt(OriginHeader.CODEC_OFFSET), resourceCount, 
+						data.getLong(OriginHeader.DICTIONARY_POSITION_OFFSET));
+
+			case OriginHeader.DICTIONARY_VERSION:
+			case OriginHeader.COMPACT_DICTIONARY_VERSION:
+				OriginHeader.requireLength(limit, OriginHeader.DICTIONARY_HEADER_BYTES);
+				return new OriginHeader(version, OriginHeader.DICTIONARY_HEADER_BYTES, 
+						version == OriginHeader.COMPACT_DICTIONARY_VERSION ? OriginHeader.FLAG_COMPACT : 0, 
+						OriginHeader.UNKNOWN_CODEC, OriginHeader.UNKNOWN_RESOURCE_COUNT, 
+						data.getLong(OriginHeader.LEGACY_DICTIONARY_POSITION_OFFSET));
+
+			case OriginHeader.LEGACY_VERSION:
+				return new OriginHeader(version, OriginHeader.LEGACY_HEADER_BYTES, 0, 
+						OriginHeader.UNKNOWN_CODEC, OriginHeader.UNKNOWN_RESOURCE_COUNT, 0);
+
+			default:
+				throw new IOException(String.format("The origin file version %s is not supported.", version));
+
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Read the header at the start of the specified origin file without reading the rest of it.
+	 * 
+	 * @param file - the origin file
+	 * @return the header or null if the origin file does not start with a header
+	 * @throws IOException if the origin file could not be read or the header is invalid
+	 */
+	static OriginHeader read(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(OriginHeader.HEADER_BYTES);
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+				// read until the header is complete or the file ends
+			}
+			header.flip();
+			return OriginHeader.read(header);
+		}
+	}
+	
+	/**
+	 * Ensure the origin data is long enough to contain the complete header.
+	 * 
+	 * @param limit - the number of bytes of the origin data
+	 * @param length - the number of bytes of the header
+	 * @throws IOException if the origin data ends within its header
+	 */
+	private static void requireLength(int limit, int length) throws IOException {
+		if (limit < length) {
+			throw new IOException("The origin data ends within its header.");
+		}
+	}
+	
+	/**
+	 * Write the header of the current version. The header states that there is no dictionary 
+	 * until {@link #writeDictionaryPosition(FileChannel, long)} is called.
+	 * 
+	 * @param channel - the channel to write to
+	 * @param format - the format the resources are written in
+	 * @param framed - true if the resources are framed as records
+	 * @param codecID - the ID of the codec the resources are written for
+	 * @param resourceCount - the number of resources written
+	 * @return the number of bytes written
+	 * @throws IOException if the header could not be written
+	 */
+	static int write(WritableByteChannel channel, BinaryFormat format, boolean framed, int codecID, 
+			int resourceCount) throws IOException {
+		BinaryWriter header = new BinaryWriter(OriginHeader.HEADER_BYTES);
+		header.writeInt(OriginHeader.MAGIC_NUMBER);
+		header.writeInt(OriginHeader.VERSION);
+		header.writeInt((format == BinaryFormat.COMPACT ? OriginHeader.FLAG_COMPACT : 0) 
+				| (framed ? OriginHeader.FLAG_FRAMED : 0));
+		header.writeInt(codecID);
+		header.writeInt(resourceCount);
+		header.writeLong(0);
+		header.drainTo(channel);
+		return OriginHeader.HEADER_BYTES;
+	}
+	
+	/**
+	 * Store the position of the dictionary block in the header of the current version, which 
+	 * has already been written.
+	 * 
+	 * @param channel - the channel the header has been written to
+	 * @param position - the position of the dictionary block
+	 * @throws IOException if the position could not be written
+	 */
+	static void writeDictionaryPosition(FileChannel channel, long position) throws IOException {
+		ByteBuffer field = ByteBuffer.allocate(BinaryConverter.LONG_BYTES);
+		field.putLong(position).flip();
+		while (field.hasRemaining()) {
+			channel.write(field, OriginHeader.DICTIONARY_POSITION_OFFSET + field.position());
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("[version %s, flags %s, codec %s, %s resources, dictionary at %s]", 
+				this.version, this.flags, this.codecID, this.resourceCount, this.dictionaryPosition);
+	}
+
+}
@@ -0,0 +1,311 @@
+package eyja.lab.tools.control.centre.management;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import eyja.lab.tools.control.centre.binaryop.BinaryConverter;
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+import eyja.lab.tools.control.centre.binaryop.BinaryWriter;
+
+/**
+ * The OriginIndex class maps the IDs of the resources contained by an origin file to their 
+ * position inside the file. The entries are sorted by ID, so a single resource can be found 
+ * without reading the whole origin file. An index is stored as sidecar file next to the origin 
+ * file and is only valid as long as the origin file has not been changed.
+ * 
+ * @author Planters
+ *
+ */
+final class OriginIndex {
+	
+	/**
+	 * The number of bytes of a single index entry.
+	 */
+	static final int ENTRY_BYTES = BinaryConverter.LONG_BYTES * 2 + BinaryConverter.INTEGER_BYTES + Byte.BYTES;
+	private static final int MAGIC_NUMBER = 0x4C544958; // LTIX
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = BinaryConverter.INTEGER_BYTES * 3 + BinaryConverter.LONG_BYTES * 2;
+	private static final int ID_OFFSET = 0;
+	private static final int POSITION_OFFSET = BinaryConverter.LONG_BYTES;
+	private static final int LENGTH_OFFSET = BinaryConverter.LONG_BYTES * 2;
+	private static final int TYPE_OFFSET = BinaryConverter.LONG_BYTES * 2 + BinaryConverter.INTEGER_BYTES;
+	private final ByteBuffer entries;
+	private final int size;
+	
+	/**
+	 * Create a new index from the specified entries.
+	 * 
+	 * @param entries - the entries sorted by ID, starting at index 0 of the buffer
+	 * @param size - the number of entries
+	 */
+	private OriginIndex(ByteBuffer entries, int size) {
+		this.entries = entries;
+		this.size = size;
+	}
+	
+	/**
+	 * Get the number of entries of the index.
+	 * 
+	 * @return the number of indexed resources
+	 */
+	int size() {
+		return this.size;
+	}
+	
+	/**
+	 * Get the resource ID of the specified entry.
+	 * 
+	 * @param entry - the entry to query
+	 * @return the ID of the indexed resource
+	 */
+	long getID(int entry) {
+		return this.entries.getLong(entry * OriginIndex.ENTRY_BYTES + OriginIndex.ID_OFFSET);
+	}
+	
+	/**
+	 * Get the position of the specified entry inside the origin file.
+	 * 
+	 * @param entry - the entry to query
+	 * @return the position of the first byte of the indexed resource
+	 */
+	long getPosition(int entry) {
+		return this.entries.getLong(entry * OriginIndex.ENTRY_BYTES + OriginIndex.POSITION_OFFSET);
+	}
+	
+	/**
+	 * Get the number of bytes of the specified entry inside the origin file.
+	 * 
+	 * @param entry - the entry to query
+	 * @return the length of the indexed resource
+	 */
+	int getLength(int entry) {
+		return this.entries.getInt(entry * OriginIndex.ENTRY_BYTES + OriginIndex.LENGTH_OFFSET);
+	}
+	
+	/**
+	 * Get the type identifier of the specified entry. 
+	 * Entries of scanned origin files do not have a type and return 0.
+	 * 
+	 * @param entry - the entry to query
+	 * @return the type identifier of the indexed resource
+	 */
+	byte getType(int entry) {
+		return this.entries.get(entry * OriginIndex.ENTRY_BYTES + OriginIndex.TYPE_OFFSET);
+	}
+	
+	/**
+	 * Find the entry of the resource with the specified ID.
+	 * 
+	 * @param id - the ID of the resource to find
+	 * @return the entry of the resource or -1 if the resource is not indexed
+	 */
+	int find(long id) {
+		int low = 0;
+		int high = this.size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long middleID = this.getID(middle);
+			if (middleID < id) {
+				low = middle + 1;
+			} else if (middleID > id) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Get the sidecar file storing the index of the specified origin file.
+	 * 
+	 * @param dataFile - the origin file
+	 * @return the index file
+	 */
+	static File getIndexFile(File dataFile) {
+		return new File(dataFile.getPath() + Origin.INDEX_EXTENSION);
+	}
+	
+	/**
+	 * Append an entry to the specified writer. Entries must be appended sorted by ID.
+	 * 
+	 * @param writer - the writer collecting the entries
+	 * @param id - the ID of the resource
+	 * @param position - the position of the first byte of the resource inside the origin file
+	 * @param length - the number of bytes of the resource
+	 * @param type - the type identifier of the resource
+	 */
+	static void writeEntry(BinaryWriter writer, long id, long position, int length, byte type) {
+		writer.writeLong(id);
+		writer.writeLong(position);
+		writer.writeInt(length);
+		writer.writeByte(type);
+	}
+	
+	/**
+	 * Write the specified entries as index of the specified origin file. The origin file must 
+	 * have been written completely beforehand. The index file is replaced atomically, so it is 
+	 * either complete or not present at all.
+	 * 
+	 * @param dataFile - the origin file to index
+	 * @param entries - the writer containing the entries sorted by ID
+	 * @param size - the number of entries
+	 * @throws IOException if the index file could not be written
+	 */
+	static void write(File dataFile, BinaryWriter entries, int size) throws IOException {
+		BinaryWriter header = new BinaryWriter(OriginIndex.HEADER_BYTES);
+		header.writeInt(OriginIndex.MAGIC_NUMBER);
+		header.writeInt(OriginIndex.VERSION);
+		header.writeLong(dataFile.length());
+		header.writeLong(dataFile.lastModified());
+		header.writeInt(size);
+		try (AtomicFileWriter indexFile = new AtomicFileWriter(OriginIndex.getIndexFile(dataFile))) {
+			header.drainTo(indexFile.getChannel());
+			entries.drainTo(indexFile.getChannel());
+			indexFile.commit();
+		}
+	}
+	
+	/**
+	 * Delete the index of the specified origin file if existent.
+	 * 
+	 * @param dataFile - the origin file
+	 * @throws IOException if the existing index file could not be deleted
+	 */
+	static void delete(File dataFile) throws IOException {
+		Files.deleteIfExists(OriginIndex.getIndexFile(dataFile).toPath());
+	}
+	
+	/**
+	 * Load the index of the specified origin file. The index is validated against the size and 
+	 * modification time of the origin file.
+	 * 
+	 * @param dataFile - the origin file
+	 * @return the index or null if no valid index exists for the origin file
+	 * @throws IOException if the existing index file could not be read
+	 */
+	static OriginIndex load(File dataFile) throws IOException {
+		File indexFile = OriginIndex.getIndexFile(dataFile);
+		if (indexFile.isFile()) {
+			try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+				long length = channel.size();
+				if (length >= OriginIndex.HEADER_BYTES && length <= Integer.MAX_VALUE) {
+					MappedByteBuffer data = channel.map(MapMode.READ_ONLY, 0, length);
+					if (data.getInt() == OriginIndex.MAGIC_NUMBER && data.getInt() == OriginIndex.VERSION
+							&& data.getLong() == dataFile.length() && data.getLong() == dataFile.lastModified()) {
+						int size = data.getInt();
+						if (size >= 0 && (long) size * OriginIndex.ENTRY_BYTES == data.remaining()) {
+							return new OriginIndex(data.slice(), size);
+						}
+					}
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Build an index by scanning the blocks of the specified origin data with the specified 
+	 * deserialiser. If an ID occurs multiple times, the last occurrence is indexed. The entries 
+	 * are presized from the resource count stated by the header if there is one. Framed resources 
+	 * are indexed with their first byte as type, as serialisations start with the type identifier, 
+	 * unless their record states the type, and the next record is found by the length of the record, so the deserialiser only needs 
+	 * to read the ID of a framed resource.
+	 * 
+	 * @param data - the complete origin data
+	 * @param blocks - the blocks of the origin data
+	 * @param deserialiser - the deserialiser used for finding the resource boundaries
+	 * @return the index of the origin data
+	 * @throws java.nio.BufferUnderflowException if the last resource is not complete
+	 * @throws IllegalArgumentException if the data does not represent valid resources
+	 */
+	static OriginIndex scan(ByteBuffer data, OriginBlocks blocks, RandomAccessDeserialiser deserialiser) {
+		int expectedSize = blocks.getHeader() != null ? blocks.getHeader().getResourceCount() 
+				: OriginHeader.UNKNOWN_RESOURCE_COUNT;
+		// every resource consists of at least one byte, so larger counts cannot be valid
+		BinaryWriter entries = expectedSize > 0 && expectedSize <= data.limit() 
+				&& (long) expectedSize * OriginIndex.ENTRY_BYTES <= Integer.MAX_VALUE 
+				? new BinaryWriter(expectedSize * OriginIndex.ENTRY_BYTES) : new BinaryWriter();
+		int size = 0;
+		boolean sorted = true;
+		long previousID = BinaryWriter.INITIAL_ID;
+		for (int block = 0; block < blocks.size(); block++) {
+			ByteBuffer payload = data.duplicate();
+			payload.limit(blocks.getStart(block) + blocks.getLength(block));
+			payload.position(blocks.getStart(block));
+			BinaryReader reader = new BinaryReader(payload, blocks.getDictionary(), blocks.getFormat(), 
+					blocks.reliesOnRecords());
+			while (reader.hasRemaining()) {
+				// compact IDs are relative to the preceding resource, even across blocks
+				reader.setPreviousID(previousID);
+				byte type = 0;
+				int end = -1;
+				if (blocks.isFramed()) {
+					boolean typed = blocks.hasTypedRecords();
+					if (typed) {
+						type = reader.readByte();
+					}
+					int length = reader.readVarInt();
+					if (length < 0 || length > reader.remaining()) {
+						throw new IllegalArgumentException(String.format("The record length %s is invalid.", length));
+					}
+					if (!typed && length > 0) {
+						type = payload.get(reader.position());
+					}
+					end = reader.position() + length;
+				}
+				int position = reader.position();
+				long id = deserialiser.scan(reader);
+				if (end >= 0) {
+					if (reader.position() > end) {
+						throw new IllegalArgumentException(String.format("The resource %s exceeds its record.", id));
+					}
+					reader.setPosition(end);
+				}
+				sorted &= size == 0 || id > previousID;
+				previousID = id;
+				OriginIndex.writeEntry(entries, id, position, reader.position() - position, type);
+				size++;
+			}
+		}
+		OriginIndex index = new OriginIndex(ByteBuffer.wrap(entries.toByteArray()), size);
+		if (sorted) {
+			return index;
+		} else {
+			return index.sort();
+		}
+	}
+	
+	/**
+	 * Create a copy of the index with its entries sorted by ID and without duplicate IDs.
+	 * 
+	 * @return the sorted index
+	 */
+	private OriginIndex sort() {
+		Integer[] order = new Integer[this.size];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		// stable, so the last occurrence of an ID stays the last one
+		Arrays.sort(order, (a, b) -> Long.compare(this.getID(a), this.getID(b)));
+		BinaryWriter sortedEntries = new BinaryWriter(this.size * OriginIndex.ENTRY_BYTES);
+		int sortedSize = 0;
+		for (int i = 0; i < order.length; i++) {
+			int entry = order[i];
+			if (i + 1 == order.length || this.getID(order[i + 1]) != this.getID(entry)) {
+				OriginIndex.writeEntry(sortedEntries, this.getID(entry), this.getPosition(entry), 
+						this.getLength(entry), this.getType(entry));
+				sortedSize++;
+			}
+		}
+		return new OriginIndex(ByteBuffer.wrap(sortedEntries.toByteArray()), sortedSize);
+	}
+
+}
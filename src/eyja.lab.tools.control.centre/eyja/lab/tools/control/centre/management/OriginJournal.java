@@ -0,0 +1,263 @@
+package eyja.lab.tools.control.centre.management;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+import eyja.lab.tools.control.centre.binaryop.BinaryConverter;
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+import eyja.lab.tools.control.centre.binaryop.BinaryWriter;
+
+/**
+ * The OriginJournal class appends all modifications of an origin to a log file next to the 
+ * origin file, so single modifications can be persisted without rewriting the whole origin file. 
+ * The journal is bound to the state of the origin file it has been started for and is ignored 
+ * as soon as the origin file has been rewritten. Each record is protected by a checksum, so 
+ * incompletely written records are detected and discarded.
+ * 
+ * @author Planters
+ *
+ */
+final class OriginJournal {
+	
+	/**
+	 * The operation adding a resource.
+	 */
+	static final byte ADD = 1;
+	/**
+	 * The operation removing a resource.
+	 */
+	static final byte REMOVE = 2;
+	/**
+	 * The operation removing all resources.
+	 */
+	static final byte CLEAR = 3;
+	private static final int MAGIC_NUMBER = 0x4C544A4C; // LTJL
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = BinaryConverter.INTEGER_BYTES * 2 + BinaryConverter.LONG_BYTES * 2;
+	// operation, ID, payload length and checksum
+	private static final int RECORD_OVERHEAD = Byte.BYTES + BinaryConverter.LONG_BYTES
+			+ BinaryConverter.INTEGER_BYTES * 2;
+	private static final int LENGTH_POSITION = Byte.BYTES + BinaryConverter.LONG_BYTES;
+	private final File dataFile;
+	private final FileChannel channel;
+	private final BinaryWriter recordWriter = new BinaryWriter();
+	private final CRC32C checksum = new CRC32C();
+	
+	/**
+	 * Open the journal of the specified origin file for appending records. A journal not 
+	 * belonging to the current origin file is replaced and incompletely written records are 
+	 * discarded.
+	 * 
+	 * @param dataFile - the origin file
+	 * @throws IOException if the journal could not be opened
+	 */
+	OriginJournal(File dataFile) throws IOException {
+		this.dataFile = dataFile;
+		File parentFolder = dataFile.getAbsoluteFile().getParentFile();
+		if (parentFolder != null && !parentFolder.exists()) {
+			parentFolder.mkdirs();
+		}
+		this.channel = FileChannel.open(OriginJournal.getJournalFile(dataFile).toPath(), 
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		try {
+			long validLength = OriginJournal.replay(this.channel, dataFile, null, null);
+			if (validLength >= 0) {
+				this.channel.truncate(validLength);
+				this.channel.position(validLength);
+			} else {
+				this.reset();
+			}
+		} catch (IOException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Append a record to the journal.
+	 * 
+	 * @param operation - the operation to record
+	 * @param id - the ID of the affected resource
+	 * @param resource - the added resource or null if the operation does not add a resource
+	 * @throws IOException if the record could not be written
+	 */
+	void append(byte operation, long id, Resource resource) throws IOException {
+		this.recordWriter.clear();
+		this.recordWriter.writeByte(operation);
+		this.recordWriter.writeLong(id);
+		this.recordWriter.writeInt(0);
+		if (resource != null) {
+			resource.serialise(this.recordWriter);
+		}
+		this.recordWriter.writeInt(OriginJournal.LENGTH_POSITION, this.recordWriter.position()
+				- OriginJournal.LENGTH_POSITION - BinaryConverter.INTEGER_BYTES);
+		ByteBuffer record = this.recordWriter.getBuffer().duplicate();
+		record.flip();
+		this.checksum.reset();
+		this.checksum.update(record);
+		this.recordWriter.writeInt((int) this.checksum.getValue());
+		this.recordWriter.drainTo(this.channel);
+	}
+	
+	/**
+	 * Discard all records and bind the journal to the current state of the origin file. 
+	 * This needs to be called after the origin file has been rewritten.
+	 * 
+	 * @throws IOException if the journal could not be reset
+	 */
+	void reset() throws IOException {
+		this.channel.truncate(0);
+		this.channel.position(0);
+		BinaryWriter header = new BinaryWriter(OriginJournal.HEADER_BYTES);
+		header.writeInt(OriginJournal.MAGIC_NUMBER);
+		header.writeInt(OriginJournal.VERSION);
+		header.writeLong(this.dataFile.length());
+		header.writeLong(this.dataFile.lastModified());
+		header.drainTo(this.channel);
+	}
+	
+	/**
+	 * Close the journal.
+	 * 
+	 * @throws IOException if the journal could not be closed
+	 */
+	void close() throws IOException {
+		this.channel.close();
+	}
+	
+	/**
+	 * Get the log file storing the journal of the specified origin file.
+	 * 
+	 * @param dataFile - the origin file
+	 * @return the journal file
+	 */
+	static File getJournalFile(File dataFile) {
+		return new File(dataFile.getPath() + Origin.JOURNAL_EXTENSION);
+	}
+	
+	/**
+	 * Check if the journal of the specified origin file contains any records.
+	 * 
+	 * @param dataFile - the origin file
+	 * @return true if the journal file contains more than its header
+	 */
+	static boolean hasRecords(File dataFile) {
+		return OriginJournal.getJournalFile(dataFile).length() > OriginJournal.HEADER_BYTES;
+	}
+	
+	/**
+	 * Delete the journal of the specified origin file if existent.
+	 * 
+	 * @param dataFile - the origin file
+	 * @throws IOException if the existing journal file could not be deleted
+	 */
+	static void delete(File dataFile) throws IOException {
+		Files.deleteIfExists(OriginJournal.getJournalFile(dataFile).toPath());
+	}
+	
+	/**
+	 * Apply all records of the journal of the specified origin file to the specified origin. 
+	 * Journals not belonging to the current origin file are deleted.
+	 * 
+	 * @param dataFile - the origin file
+	 * @param origin - the origin to apply the records to
+	 * @param deserialiser - the deserialiser used for rebuilding added resources
+	 * @return true if a valid journal existed
+	 * @throws IOException if the journal could not be read
+	 */
+	static boolean replay(File dataFile, Origin origin, RandomAccessDeserialiser deserialiser)
+			throws IOException {
+		File journalFile = OriginJournal.getJournalFile(dataFile);
+		if (journalFile.isFile()) {
+			long validLength;
+			try (FileChannel journalChannel = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ)) {
+				validLength = OriginJournal.replay(journalChannel, dataFile, origin, deserialiser);
+			}
+			if (validLength < 0) {
+				OriginJournal.delete(dataFile);
+			}
+			return validLength >= 0;
+		}
+		return false;
+	}
+	
+	/**
+	 * Read all complete records of the specified journal and apply them to the specified origin 
+	 * if the origin is not null.
+	 * 
+	 * @param journalChannel - the channel to read the journal from
+	 * @param dataFile - the origin file the journal needs to belong to
+	 * @param origin - the origin to apply the records to, may be null
+	 * @param deserialiser - the deserialiser used for rebuilding added resources, may be null if 
+	 * the origin is null
+	 * @return the number of bytes of the journal belonging to complete records or -1 if the 
+	 * journal does not belong to the current origin file
+	 * @throws IOException if the journal could not be read
+	 */
+	private static long replay(FileChannel journalChannel, File dataFile, Origin origin, 
+			RandomAccessDeserialiser deserialiser) throws IOException {
+		long size = journalChannel.size();
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException(String.format("The journal of %s is too large (%s bytes) to be read.", 
+					dataFile, size));
+		}
+		ByteBuffer data = ByteBuffer.allocate((int) size);
+		while (data.hasRemaining() && journalChannel.read(data, data.position()) >= 0) {
+			// read until the buffer is full
+		}
+		data.flip();
+		BinaryReader reader = new BinaryReader(data);
+		if (reader.remaining() < OriginJournal.HEADER_BYTES || reader.readInt() != OriginJournal.MAGIC_NUMBER
+				|| reader.readInt() != OriginJournal.VERSION || reader.readLong() != dataFile.length()
+				|| reader.readLong() != dataFile.lastModified()) {
+			return -1;
+		}
+		CRC32C recordChecksum = new CRC32C();
+		int validLength = reader.position();
+		while (reader.remaining() >= OriginJournal.RECORD_OVERHEAD) {
+			byte operation = reader.readByte();
+			long id = reader.readLong();
+			int length = reader.readInt();
+			if (length < 0 || reader.remaining() < (long) length + BinaryConverter.INTEGER_BYTES) {
+				break; // incompletely written record
+			}
+			ByteBuffer record = data.duplicate();
+			record.limit(reader.position() + length);
+			record.position(validLength);
+			recordChecksum.reset();
+			recordChecksum.update(record);
+			int payloadStart = reader.position();
+			reader.skip(length);
+			if (reader.readInt() != (int) recordChecksum.getValue()) {
+				break; // incompletely written record
+			}
+			if (origin != null) {
+				switch (operation) {
+				case OriginJournal.ADD:
+					ByteBuffer payload = data.duplicate();
+					payload.limit(payloadStart + length);
+					payload.position(payloadStart);
+					origin.requestAdd(deserialiser.decode(new BinaryReader(payload), origin));
+					break;
+				case OriginJournal.REMOVE:
+					origin.remove(id);
+					break;
+				case OriginJournal.CLEAR:
+					origin.clear();
+					break;
+				default:
+					throw new IOException(String.format("The journal of %s contains the unknown "
+							+ "operation %s.", dataFile, operation));
+				}
+			}
+			validLength = reader.position();
+		}
+		return validLength;
+	}
+
+}
@@ -0,0 +1,170 @@
+package eyja.lab.tools.control.centre.management;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The OriginPath class represents the interned file path of an origin. There is at most one 
+ * instance per path at a time, so references to the same origin share a single path and can be 
+ * compared by identity. Paths not used anymore are removed from the intern table by the garbage 
+ * collector.
+ * 
+ * @author Planters
+ *
+ */
+public final class OriginPath {
+	
+	private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+	private static final ConcurrentHashMap<String, InternedPath> INTERNED_PATHS =
+			new ConcurrentHashMap<String, InternedPath>();
+	private static final ReferenceQueue<OriginPath> RECLAIMED_PATHS = new ReferenceQueue<OriginPath>();
+	private static final AtomicInteger NEXT_HANDLE = new AtomicInteger();
+	private final String path;
+	private final byte[] encodedPath;
+	private final int handle;
+	
+	/**
+	 * Create a new origin path. Only used for interning.
+	 * 
+	 * @param path - the file path of the origin
+	 */
+	private OriginPath(String path) {
+		this.path = path;
+		this.encodedPath = path.getBytes(OriginPath.DEFAULT_CHARSET);
+		this.handle = OriginPath.NEXT_HANDLE.getAndIncrement();
+	}
+	
+	/**
+	 * Get the interned instance of the specified origin path.
+	 * 
+	 * @param path - the file path of the origin
+	 * @return the origin path shared by all users of the file path
+	 * @throws NullPointerException if the path is null
+	 */
+	public static OriginPath of(String path) {
+		if (path != null) {
+			OriginPath.expungeReclaimedPaths();
+			InternedPath entry = OriginPath.INTERNED_PATHS.get(path);
+			OriginPath interned = entry != null ? entry.get() : null;
+			if (interned == null) {
+				OriginPath[] result = new OriginPath[1];
+				OriginPath.INTERNED_PATHS.compute(path, (key, existing) -> {
+					result[0] = existing != null ? existing.get() : null;
+					if (result[0] == null) {
+						result[0] = new OriginPath(key);
+						return new InternedPath(result[0]);
+					}
+					return existing;
+				});
+				interned = result[0];
+			}
+			return interned;
+		} else {
+			throw new NullPointerException("An origin without a physical representation cannot be "
+					+ "referenced.");
+		}
+	}
+	
+	/**
+	 * Get the interned instance of the origin path with the specified UTF-8 representation.
+	 * 
+	 * @param data - the array containing the UTF-8 representation of the path
+	 * @param offset - the index of the first byte of the path
+	 * @param length - the number of bytes of the path
+	 * @return the origin path shared by all users of the file path
+	 * @throws NullPointerException if the data is null
+	 * @throws IndexOutOfBoundsException if the range is not contained by the data
+	 */
+	public static OriginPath of(byte[] data, int offset, int length) {
+		return OriginPath.of(new String(data, offset, length, OriginPath.DEFAULT_CHARSET));
+	}
+	
+	/**
+	 * Remove the entries of all paths reclaimed by the garbage collector from the intern table.
+	 */
+	private static void expungeReclaimedPaths() {
+		InternedPath reclaimed;
+		while ((reclaimed = (InternedPath) OriginPath.RECLAIMED_PATHS.poll()) != null) {
+			OriginPath.INTERNED_PATHS.remove(reclaimed.path, reclaimed);
+		}
+	}
+	
+	/**
+	 * Get the file path of the origin.
+	 * 
+	 * @return the file path
+	 */
+	public String getPath() {
+		return this.path;
+	}
+	
+	/**
+	 * Check if the specified UTF-8 representation represents this origin path, so a path decoded 
+	 * before can be reused without decoding the representation again.
+	 * 
+	 * @param data - the array containing the UTF-8 representation of the path
+	 * @param offset - the index of the first byte of the path
+	 * @param length - the number of bytes of the path
+	 * @return true if the bytes represent this path
+	 * @throws NullPointerException if the data is null
+	 * @throws IndexOutOfBoundsException if the range is not contained by the data
+	 */
+	public boolean matches(byte[] data, int offset, int length) {
+		return Arrays.equals(this.encodedPath, 0, this.encodedPath.length, data, offset, offset + length);
+	}
+	
+	/**
+	 * Get the handle of the origin path. The handle is unique among all origin paths existing at 
+	 * the same time, but not persistent.
+	 * 
+	 * @return the numeric handle of the path
+	 */
+	public int getHandle() {
+		return this.handle;
+	}
+	
+	@Override
+	public int hashCode() {
+		return this.handle;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		// origin paths are interned
+		return this == obj;
+	}
+	
+	@Override
+	public String toString() {
+		return this.path;
+	}
+	
+	/**
+	 * The InternedPath class represents an entry of the intern table, which does not prevent its 
+	 * origin path from being reclaimed.
+	 * 
+	 * @author Planters
+	 *
+	 */
+	private static final class InternedPath extends WeakReference<OriginPath> {
+
+		private final String path;
+
+		/**
+		 * Create a new entry for the specified origin path.
+		 * 
+		 * @param originPath - the interned origin path
+		 */
+		private InternedPath(OriginPath originPath) {
+			super(originPath, OriginPath.RECLAIMED_PATHS);
+			this.path = originPath.path;
+		}
+	
+	}
+
+}
@@ -0,0 +1,251 @@
+package eyja.lab.tools.control.centre.management;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * The OriginResidencyManager class keeps the origins of an origin handler within a memory 
+ * budget. The approximate heap footprint of every origin is estimated when the origin is first 
+ * resolved by the handler. Whenever the footprint of all resident origins exceeds the budget, 
+ * the least recently dereferenced origins are evicted. Modified origins are written before 
+ * being evicted and evicted origins are read again transparently the next time a resource 
+ * of them is dereferenced. Dereferencing only records the time of the access and does not lock. 
+ * Only concurrent origins are managed, as the resources of other origins are accessed without 
+ * locking and could be released while in use. Resources retrieved from an evicted origin are 
+ * detached from it and must be dereferenced again. Resources modified in place must be marked 
+ * by {@link Origin#markModified()}, otherwise their modifications are lost on eviction.
+ * 
+ * @author Planters
+ *
+ */
+public final class OriginResidencyManager {
+	
+	private static final Comparator<Resident> LEAST_RECENTLY_USED = new Comparator<Resident>() {
+
+		@Override
+		public int compare(Resident r1, Resident r2) {
+			return Long.compare(r1.lastAccess, r2.lastAccess);
+		}
+		
+	};
+	private final OriginHandler handler;
+	private final ToLongFunction<Origin> footprint;
+	private final ConcurrentHashMap<OriginPath, Resident> residents = new ConcurrentHashMap<OriginPath, Resident>();
+	// guarded by this manager
+	private long budget;
+	private long residentFootprint = 0;
+	
+	/**
+	 * Create a residency manager for the specified handler, which estimates the footprint of an 
+	 * origin by {@link #estimateFootprint(Origin)}. The manager replaces any residency manager 
+	 * previously attached to the handler.
+	 * 
+	 * @param handler - the handler whose origins are managed
+	 * @param budget - the maximum footprint of all resident origins in bytes
+	 * @throws NullPointerException if the handler is null
+	 * @throws IllegalArgumentException if the budget is not positive
+	 */
+	public OriginResidencyManager(OriginHandler handler, long budget) {
+		this(handler, budget, OriginResidencyManager::estimateFootprint);
+	}
+	
+	/**
+	 * Create a residency manager for the specified handler, which estimates the footprint of an 
+	 * origin by the specified function. The manager replaces any residency manager previously 
+	 * attached to the handler.
+	 * 
+	 * @param handler - the handler whose origins are managed
+	 * @param budget - the maximum footprint of all resident origins
+	 * @param footprint - the function estimating the footprint of an origin in the unit of the budget
+	 * @throws NullPointerException if the handler or the footprint function is null
+	 * @throws IllegalArgumentException if the budget is not positive
+	 */
+	public OriginResidencyManager(OriginHandler handler, long budget, ToLongFunction<Origin> footprint) {
+		if (handler != null && footprint != null) {
+			if (budget > 0) {
+				this.handler = handler;
+				this.footprint = footprint;
+				this.budget = budget;
+				handler.setResidencyManager(this);
+			} else {
+				throw new IllegalArgumentException(String.format("The residency budget %s is not positive.", budget));
+			}
+		} else {
+			throw new NullPointerException(String.format("Residency cannot be managed for handler %s "
+					+ "with footprint function %s.", handler, footprint));
+		}
+	}
+	
+	/**
+	 * Get the maximum footprint of all resident origins.
+	 * 
+	 * @return the residency budget
+	 */
+	public synchronized long getBudget() {
+		return this.budget;
+	}
+	
+	/**
+	 * Set the maximum footprint of all resident origins. If the footprint of the resident 
+	 * origins exceeds the new budget, the least recently dereferenced origins are evicted.
+	 * 
+	 * @param budget - the new residency budget
+	 * @throws IllegalArgumentException if the budget is not positive
+	 */
+	public synchronized void setBudget(long budget) {
+		if (budget > 0) {
+			this.budget = budget;
+			this.evict(null);
+		} else {
+			throw new IllegalArgumentException(String.format("The residency budget %s is not positive.", budget));
+		}
+	}
+	
+	/**
+	 * Get the estimated footprint of all resident origins.
+	 * 
+	 * @return the footprint of the resident origins
+	 */
+	public synchronized long getResidentFootprint() {
+		return this.residentFootprint;
+	}
+	
+	/**
+	 * Check if the specified origin is tracked as resident by this manager.
+	 * 
+	 * @param origin - the origin to check
+	 * @return true if the origin is resident
+	 */
+	public boolean isResident(Origin origin) {
+		if (origin != null && origin.getOriginPath() != null) {
+			Resident resident = this.residents.get(origin.getOriginPath());
+			return resident != null && resident.origin == origin && !origin.isEvicted();
+		}
+		return false;
+	}
+	
+	/**
+	 * Stop managing the origins of the handler. All origins stay resident.
+	 */
+	public synchronized void detach() {
+		this.handler.setResidencyManager(null);
+		this.residents.clear();
+		this.residentFootprint = 0;
+	}
+	
+	/**
+	 * Estimate the footprint of the specified origin by the size of its origin file and its 
+	 * journal, which grows with the heap footprint of its resources.
+	 * 
+	 * @param origin - the origin to estimate the footprint of
+	 * @return the estimated footprint in bytes
+	 */
+	public static long estimateFootprint(Origin origin) {
+		File originFile = origin.getFile();
+		if (originFile != null) {
+			return originFile.length() + OriginJournal.getJournalFile(originFile).length();
+		}
+		return 0;
+	}
+	
+	/**
+	 * Record the access to the specified origin, which has been resolved by the handler. 
+	 * Concurrent origins accessed for the first time or after having been evicted become resident 
+	 * and may cause other origins to be evicted. Origins, which are not concurrent, are ignored.
+	 * 
+	 * @param origin - the origin accessed
+	 */
+	void access(Origin origin) {
+		if (origin.isConcurrent()) {
+			Resident resident = this.residents.get(origin.getOriginPath());
+			if (resident != null && resident.origin == origin && !origin.isEvicted()) {
+				resident.lastAccess = System.nanoTime();
+			} else {
+				this.admit(origin);
+			}
+		}
+	}
+	
+	/**
+	 * Track the specified origin as resident and evict other origins if the budget is exceeded.
+	 * 
+	 * @param origin - the origin to admit
+	 */
+	private synchronized void admit(Origin origin) {
+		Resident admitted = new Resident(origin, this.footprint.applyAsLong(origin));
+		Resident replaced = this.residents.put(origin.getOriginPath(), admitted);
+		if (replaced != null) {
+			this.residentFootprint -= replaced.footprint;
+		}
+		this.residentFootprint += admitted.footprint;
+		this.evict(origin);
+	}
+	
+	/**
+	 * Evict the least recently dereferenced origins until the footprint of the resident origins 
+	 * does not exceed the budget anymore. Origins which could not be written stay resident and 
+	 * are tried again on the next eviction.
+	 * 
+	 * @param accessed - the origin currently accessed, which is never evicted, or null
+	 */
+	private synchronized void evict(Origin accessed) {
+		if (this.residentFootprint > this.budget) {
+			ArrayList<Resident> candidates = new ArrayList<Resident>(this.residents.values());
+			candidates.sort(OriginResidencyManager.LEAST_RECENTLY_USED);
+			for (int i = 0; i < candidates.size() && this.residentFootprint > this.budget; i++) {
+				Resident candidate = candidates.get(i);
+				if (candidate.origin != accessed) {
+					boolean released;
+					if (this.handler.isRegistered(candidate.origin)) {
+						try {
+							released = candidate.origin.evict();
+						} catch (IOException e) {
+							// the modifications must not be lost, so the origin stays resident
+							released = false;
+						}
+					} else { // the origin has been removed from the handler
+						released = true;
+					}
+					if (released && this.residents.remove(candidate.origin.getOriginPath(), candidate)) {
+						this.residentFootprint -= candidate.footprint;
+					}
+				}
+			}
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("[%s resident origins of %s]", this.residents.size(), this.handler);
+	}
+	
+	/**
+	 * The Resident class tracks the footprint and the last access of a resident origin.
+	 * 
+	 * @author Planters
+	 *
+	 */
+	private static final class Resident {
+		
+		private final Origin origin;
+		private final long footprint;
+		private volatile long lastAccess = System.nanoTime();
+		
+		/**
+		 * Track the specified origin as resident.
+		 * 
+		 * @param origin - the resident origin
+		 * @param footprint - the estimated footprint of the origin
+		 */
+		private Resident(Origin origin, long footprint) {
+			this.origin = origin;
+			this.footprint = footprint;
+		}
+		
+	}
+
+}
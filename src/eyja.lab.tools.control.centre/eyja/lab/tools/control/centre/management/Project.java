@@ -1,17 +1,30 @@
 package eyja.lab.tools.control.centre.management;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Arrays;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 /**
  * The Project class represents a Lab Tools project with all its specific origins as an enclosed 
- * environment with its own settings.
- * 
+ * environment with its own settings. When a project is read, all its origins are either loaded 
+ * concurrently or registered to be loaded lazily. The origins are created by the origin 
+ * factories modules have registered for the codecs of the origins. The project file stores a 
+ * {@link ProjectManifest} describing the origins, so they do not need to be inspected before 
+ * being loaded.
+ *  
  * @author Planters
  *
  */
@@ -19,14 +32,28 @@ public class Project {
 	
 	private static final File PROJECT_FOLDER = new File("Projects");
 	private static final String PROJECT_EXTENSION = ".ltp";
+	// origins are partially read from disk, so loading benefits from more threads than cores
+	private static final int LOADING_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+	private static final Comparator<ProjectManifest.Entry> LARGEST_FIRST = new Comparator<ProjectManifest.Entry>() {
+		
+		@Override
+		public int compare(ProjectManifest.Entry e1, ProjectManifest.Entry e2) {
+			return Long.compare(e2.getFileSize(), e1.getFileSize());
+		}
+		
+	};
 	private final File projectFile; // the file containing all settings for this origin
 	private final File projectFolder; // the folder all project specific origins should be serialised to
 	private final OriginHandler projectOrigins = new OriginHandler();
+	private final ConcurrentHashMap<Integer, Function<File, Origin>> originFactories = 
+			new ConcurrentHashMap<Integer, Function<File, Origin>>();
+	// the manifest last read or written
+	private volatile ProjectManifest manifest = null;
 	
 	public Project(String name) throws IOException {
 		if (name != null && name.length() > 0) {
 			File potentialProjectFolder = new File(PROJECT_FOLDER, name);
-			if (!Arrays.stream(Project.PROJECT_FOLDER.listFiles()).anyMatch(potentialProjectFolder::equals)) {
+			if (!ProjectRegistry.getDefault().exists(name)) {
 				this.projectFolder = potentialProjectFolder;
 				this.projectFile = new File(potentialProjectFolder, name + Project.PROJECT_EXTENSION);
 			} else {
@@ -37,6 +64,40 @@ public class Project {
 		}
 	}
 	
+	/**
+	 * Create a project representing the specified existing project folder.
+	 * 
+	 * @param projectFolder - the folder of the project
+	 * @param name - the name of the project
+	 */
+	private Project(File projectFolder, String name) {
+		this.projectFolder = projectFolder;
+		this.projectFile = new File(projectFolder, name + Project.PROJECT_EXTENSION);
+	}
+	
+	/**
+	 * Open the existing project with the specified name. The origins of the project are not 
+	 * loaded until {@link #read()} is called.
+	 * 
+	 * @param name - the name of the project
+	 * @return the project
+	 * @throws IOException if the project does not exist
+	 * @throws IllegalArgumentException if the name is null or empty
+	 */
+	public static Project open(String name) throws IOException {
+		if (name != null && name.length() > 0) {
+			Project existingProject = new Project(new File(Project.PROJECT_FOLDER, name), name);
+			if (existingProject.getProjectFile().isFile()) {
+				return existingProject;
+			} else {
+				throw new IOException(String.format("The requested project %s does not exist.", 
+						existingProject.getProjectFolder()));
+			}
+		} else {
+			throw new IllegalArgumentException(String.format("The name of a project cannot be %s.", name));
+		}
+	}
+	
 	/**
 	 * Get the folder containing all project related information.
 	 * 
@@ -64,6 +125,26 @@ public class Project {
 		return this.projectOrigins;
 	}
 	
+	/**
+	 * Register the factory creating the origins of origin files written for the specified codec. 
+	 * The factory is used when the project is read and should only create the origin without 
+	 * reading it. Origin files not stating a codec are created by the factory registered for 
+	 * codec ID 0.
+	 * 
+	 * @param codecID - the ID of the codec the origin files have been written for
+	 * @param factory - the factory creating an origin for an origin file
+	 * @return the factory previously registered for the codec or null if there was none
+	 * @throws NullPointerException if the factory is null
+	 */
+	public Function<File, Origin> registerOriginFactory(int codecID, Function<File, Origin> factory) {
+		if (factory != null) {
+			return this.originFactories.put(codecID, factory);
+		} else {
+			throw new NullPointerException(String.format("Null cannot be registered as origin factory "
+					+ "for codec %s.", codecID));
+		}
+	}
+	
 	/**
 	 * Check if the specified origin is part of this project or an external resource.
 	 * 
@@ -79,31 +160,37 @@ public class Project {
 	}
 	
 	/**
-	 * Serialise the project to a file.
+	 * Get the manifest of this project, which has been read or written last.
+	 * 
+	 * @return the manifest or null if the project has neither been read nor written
+	 */
+	public ProjectManifest getManifest() {
+		return this.manifest;
+	}
+	
+	/**
+	 * Serialise the project to a file. The manifest of all origins of the project is written, 
+	 * with checksums only being computed for origin files which have changed since the manifest 
+	 * has been read or written last. The file is only replaced after the new content has been 
+	 * written completely.
 	 * 
-	 * @throws IOException if the specified file could not be written to
+	 * @throws IOException if the specified file could not be written to or an origin file 
+	 * could not be read
 	 */
 	public void write() throws IOException {
 		File writeLocation = this.getProjectFile();
 		if (writeLocation != null) {
-			// create the folder structure if needed
-			File parentFolder = writeLocation.getParentFile();
-			if (parentFolder != null && !parentFolder.exists()) {
-				parentFolder.mkdirs();
+			ProjectManifest writtenManifest = ProjectManifest.describe(this.getOriginHandler().getOrigins(), 
+					this.manifest);
+			try (AtomicFileWriter projectFile = new AtomicFileWriter(writeLocation); 
+					BufferedOutputStream projectData = new BufferedOutputStream(projectFile.getOutputStream())) {
+				writtenManifest.write(projectData);
+				projectData.flush();
+				projectFile.commit();
 			}
-			try (DataOutputStream projectData = new DataOutputStream(
-					new FileOutputStream(writeLocation, false))) {
-				Origin[] allOrigins = this.getOriginHandler().getOrigins();
-				projectData.writeInt(allOrigins.length);
-				for (Origin o : allOrigins) {
-					if (o != null && o.getFile() != null) { // check for valid origins
-						String originPath = o.getFile().getPath();
-						projectData.writeInt(originPath.length());
-						projectData.writeUTF(originPath);
-					} else { // mark origin as invalid
-						projectData.writeInt(-1);
-					}
-				}
+			this.manifest = writtenManifest;
+			if (Project.PROJECT_FOLDER.equals(this.projectFolder.getParentFile())) {
+				ProjectRegistry.getDefault().register(this.projectFolder.getName());
 			}
 		} else {
 			throw new IOException("No file for writing has been specified.");
@@ -111,23 +198,163 @@ public class Project {
 	}
 	
 	/**
-	 * Deserialise the origin and all its resources from a file.
+	 * Read the manifest of this project from its file without accessing any origin.
 	 * 
-	 * @throws IOException if the file this origin represents does not exist
-	 * @throws NullPointerException if the deserialiser of this origin is null
+	 * @return the manifest describing the origins of the project
+	 * @throws IOException if the project file does not exist or is corrupted
 	 */
-	public void read() throws IOException {
+	public ProjectManifest readManifest() throws IOException {
 		File readLocation = this.getProjectFile();
 		// only allow files that exist
 		if (readLocation != null && readLocation.isFile()) {
-			try (DataInputStream readData = new DataInputStream(new FileInputStream(readLocation))) {
-				int numOrigins = readData.readInt();
-				for (int i = 0; i < numOrigins; i++) {
-					
+			ProjectManifest readManifest = ProjectManifest.read(readLocation);
+			this.manifest = readManifest;
+			return readManifest;
+		} else {
+			throw new IOException(String.format("The file %s does not exist.", readLocation));
+		}
+	}
+	
+	/**
+	 * Deserialise the project from its file and load all its origins concurrently, starting 
+	 * with the largest origin files. Every origin is created by the origin factory registered 
+	 * for the codec stated by its manifest entry and only added to the origin handler of this 
+	 * project after it has been read completely. Origin files changed since the manifest has 
+	 * been written are inspected for their codec instead. Origins already registered with the 
+	 * origin handler, for example by a module, are read in place. If some origins cannot be 
+	 * loaded, all others are loaded nonetheless.
+	 * 
+	 * @return the time it took to load each origin in the order of the project file
+	 * @throws IOException if the project file does not exist or is corrupted or any origin 
+	 * could not be loaded
+	 */
+	public Map<File, Duration> read() throws IOException {
+		return this.loadOrigins(this.readManifest().getEntries());
+	}
+	
+	/**
+	 * Deserialise the project from its file and register all its origins lazily, so an origin 
+	 * is only read when a resource of it is dereferenced for the first time. Every origin is 
+	 * created by the origin factory registered for the codec stated by its manifest entry, so 
+	 * unchanged origin files are not accessed at all. Origins already registered with the origin 
+	 * handler of this project are kept.
+	 * 
+	 * @throws IOException if the project file does not exist or is corrupted or no origin 
+	 * factory is registered for the codec of any origin file
+	 */
+	public void readLazily() throws IOException {
+		IOException failure = null;
+		for (ProjectManifest.Entry entry : this.readManifest().getEntries()) {
+			if (this.projectOrigins.getOrigin(entry.getFile().getPath()) == null) {
+				try {
+					this.projectOrigins.requestLazyAdd(this.createOrigin(entry));
+				} catch (IOException e) {
+					if (failure == null) {
+						failure = new IOException(String.format("Not all origins of project %s could "
+								+ "be registered.", this.getProjectFile()));
+					}
+					failure.addSuppressed(e);
 				}
 			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+	
+	/**
+	 * Load the origins of the specified manifest entries on a bounded number of threads. 
+	 * The largest origin files are loaded first, as they determine the total loading time.
+	 * 
+	 * @param entries - the manifest entries of the origins to load
+	 * @return the time it took to load each origin in the order of the entries
+	 * @throws IOException if any origin could not be loaded or loading has been interrupted
+	 */
+	private Map<File, Duration> loadOrigins(List<ProjectManifest.Entry> entries) throws IOException {
+		LinkedHashMap<File, Duration> loadingTimes = new LinkedHashMap<File, Duration>();
+		if (!entries.isEmpty()) {
+			ArrayList<ProjectManifest.Entry> loadingOrder = new ArrayList<ProjectManifest.Entry>(entries);
+			loadingOrder.sort(Project.LARGEST_FIRST);
+			ExecutorService loader = Executors.newFixedThreadPool(Math.min(entries.size(), 
+					Project.LOADING_THREADS));
+			try {
+				LinkedHashMap<ProjectManifest.Entry, Future<Duration>> loads = 
+						new LinkedHashMap<ProjectManifest.Entry, Future<Duration>>();
+				for (ProjectManifest.Entry entry : loadingOrder) {
+					loads.put(entry, loader.submit(() -> this.loadOrigin(entry)));
+				}
+				IOException failure = null;
+				for (ProjectManifest.Entry entry : entries) {
+					try {
+						loadingTimes.put(entry.getFile(), loads.get(entry).get());
+					} catch (ExecutionException e) {
+						if (failure == null) {
+							failure = new IOException(String.format("Not all origins of project %s could "
+									+ "be loaded.", this.getProjectFile()));
+						}
+						failure.addSuppressed(e.getCause());
+					}
+				}
+				if (failure != null) {
+					throw failure;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(String.format("Loading the origins of project %s has "
+						+ "been interrupted.", this.getProjectFile()));
+			} finally {
+				// stops origins still being loaded if loading has been interrupted
+				loader.shutdownNow();
+			}
+		}
+		return loadingTimes;
+	}
+	
+	/**
+	 * Read the origin of the specified manifest entry and add it to the origin handler of this 
+	 * project.
+	 * 
+	 * @param entry - the manifest entry of the origin
+	 * @return the time it took to load the origin
+	 * @throws IOException if no origin factory is registered for the codec of the origin file 
+	 * or the origin could not be read
+	 */
+	private Duration loadOrigin(ProjectManifest.Entry entry) throws IOException {
+		long start = System.nanoTime();
+		Origin loadedOrigin = this.projectOrigins.getOrigin(entry.getFile().getPath());
+		if (loadedOrigin == null) {
+			loadedOrigin = this.createOrigin(entry);
+		}
+		loadedOrigin.read();
+		// publishes lazily registered origins as loaded as well
+		this.projectOrigins.requestAdd(loadedOrigin);
+		return Duration.ofNanos(System.nanoTime() - start);
+	}
+	
+	/**
+	 * Create the origin of the specified manifest entry by the origin factory registered for its 
+	 * codec without reading it. The codec of origin files changed since the entry has been 
+	 * written is read from the header of the origin file.
+	 * 
+	 * @param entry - the manifest entry of the origin
+	 * @return the origin
+	 * @throws IOException if the header of the origin file is invalid or no origin factory is 
+	 * registered for the codec of the origin file
+	 */
+	private Origin createOrigin(ProjectManifest.Entry entry) throws IOException {
+		File originFile = entry.getFile();
+		int codecID = entry.getCodecID();
+		// origins only consisting of a journal keep the codec of their entry
+		if (!entry.isUnchanged() && originFile.isFile()) {
+			OriginHeader header = OriginHeader.read(originFile);
+			codecID = header != null ? header.getCodecID() : OriginHeader.UNKNOWN_CODEC;
+		}
+		Function<File, Origin> factory = this.originFactories.get(codecID);
+		if (factory != null) {
+			return factory.apply(originFile);
 		} else {
-			throw new IOException(String.format("The file %s does not exist.", readLocation));
+			throw new IOException(String.format("No origin factory is registered for the codec %s "
+					+ "of origin file %s.", codecID, originFile));
 		}
 	}
 	
@@ -0,0 +1,355 @@
+package eyja.lab.tools.control.centre.management;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The ProjectManifest class describes the origins of a project as stored by the project file. 
+ * For every origin the manifest states its file, the codec it has been written for, its number 
+ * of resources, the size and the last modification time of its file and the checksum of its 
+ * file, so a project can be shown and its loading planned without accessing the origin files. 
+ * The manifest is protected by a trailing checksum. Project files of the legacy layout only 
+ * containing the paths of the origins are still read.
+ * 
+ * @author Planters
+ *
+ */
+public final class ProjectManifest {
+	
+	/**
+	 * The value of fields which are not stated by the manifest, as it has been read from a 
+	 * legacy project file or the origin file did not exist.
+	 */
+	public static final long UNKNOWN = -1;
+	private static final int MAGIC_NUMBER = 0x4C54504D; // LTPM
+	private static final int VERSION = 1;
+	private static final int CHECKSUM_BUFFER_BYTES = 1 << 16;
+	private static final Comparator<Origin> PATH_ORDER = new Comparator<Origin>() {
+		
+		@Override
+		public int compare(Origin o1, Origin o2) {
+			return o1.getFile().getPath().compareTo(o2.getFile().getPath());
+		}
+		
+	};
+	private final List<Entry> entries;
+	
+	/**
+	 * Create a manifest containing the specified entries.
+	 * 
+	 * @param entries - the entries of the origins, which must not be modified afterwards
+	 */
+	private ProjectManifest(Entry[] entries) {
+		this.entries = Collections.unmodifiableList(Arrays.asList(entries));
+	}
+	
+	/**
+	 * Get the entries of all origins of the project in the order of the project file.
+	 * 
+	 * @return an unmodifiable list of the origin entries
+	 */
+	public List<Entry> getEntries() {
+		return this.entries;
+	}
+	
+	/**
+	 * Describe the specified origins by their files on disk. The checksum of an origin file is 
+	 * only computed if the file has changed since it has been described by the previous manifest. 
+	 * Origins without file are skipped.
+	 * 
+	 * @param origins - the origins to describe
+	 * @param previous - the previous manifest of the project or null if there is none
+	 * @return the manifest describing the origins ordered by their path
+	 * @throws IOException if an origin file could not be read
+	 */
+	static ProjectManifest describe(Origin[] origins, ProjectManifest previous) throws IOException {
+		HashMap<File, Entry> previousEntries = new HashMap<File, Entry>();
+		if (previous != null) {
+			for (Entry e : previous.entries) {
+				previousEntries.put(e.file, e);
+			}
+		}
+		Origin[] validOrigins = Arrays.stream(origins).filter(o -> o != null && o.getFile() != null)
+				.sorted(ProjectManifest.PATH_ORDER).toArray(Origin[]::new);
+		// origins registered twice are only described once
+		LinkedHashMap<File, Entry> entries = new LinkedHashMap<File, Entry>();
+		for (Origin o : validOrigins) {
+			File originFile = o.getFile();
+			if (!entries.containsKey(originFile)) {
+				entries.put(originFile, ProjectManifest.describe(o, previousEntries.get(originFile)));
+			}
+		}
+		return new ProjectManifest(entries.values().toArray(new Entry[entries.size()]));
+	}
+	
+	/**
+	 * Describe the specified origin by its file on disk.
+	 * 
+	 * @param origin - the origin to describe
+	 * @param previous - the entry of the origin in the previous manifest or null if there is none
+	 * @return the entry of the origin
+	 * @throws IOException if the origin file could not be read
+	 */
+	private static Entry describe(Origin origin, Entry previous) throws IOException {
+		File originFile = origin.getFile();
+		int codecID = origin.getDeserialiser() instanceof RandomAccessDeserialiser 
+				? ((RandomAccessDeserialiser) origin.getDeserialiser()).getCodecID() : OriginHeader.UNKNOWN_CODEC;
+		if (originFile.isFile()) {
+			long fileSize = originFile.length();
+			long lastModified = originFile.lastModified();
+			if (previous != null && previous.fileSize == fileSize && previous.lastModified == lastModified) {
+				return new Entry(originFile, previous.codecID, previous.resourceCount, fileSize, lastModified, 
+						previous.checksum);
+			}
+			OriginHeader header = OriginHeader.read(originFile);
+			if (header != null) {
+				codecID = header.getCodecID();
+			}
+			return new Entry(originFile, codecID, header != null ? header.getResourceCount() : ProjectManifest.UNKNOWN, 
+					fileSize, lastModified, ProjectManifest.computeChecksum(originFile));
+		} else { // origins only consisting of a journal or not written yet
+			return new Entry(originFile, codecID, ProjectManifest.UNKNOWN, ProjectManifest.UNKNOWN, 
+					ProjectManifest.UNKNOWN, 0);
+		}
+	}
+	
+	/**
+	 * Compute the CRC32C checksum of the specified file.
+	 * 
+	 * @param file - the file to compute the checksum of
+	 * @return the checksum of the file content
+	 * @throws IOException if the file could not be read
+	 */
+	private static int computeChecksum(File file) throws IOException {
+		CRC32C checksum = new CRC32C();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(ProjectManifest.CHECKSUM_BUFFER_BYTES);
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				checksum.update(buffer);
+				buffer.clear();
+			}
+		}
+		return (int) checksum.getValue();
+	}
+	
+	/**
+	 * Read the manifest from the specified project file.
+	 * 
+	 * @param projectFile - the project file
+	 * @return the manifest stored by the project file
+	 * @throws IOException if the project file could not be read or is corrupted
+	 */
+	static ProjectManifest read(File projectFile) throws IOException {
+		try (InputStream projectData = new BufferedInputStream(new FileInputStream(projectFile))) {
+			CRC32C checksum = new CRC32C();
+			DataInputStream manifestData = new DataInputStream(new CheckedInputStream(projectData, checksum));
+			int first = manifestData.readInt();
+			if (first == ProjectManifest.MAGIC_NUMBER) {
+				int version = manifestData.readInt();
+				if (version != ProjectManifest.VERSION) {
+					throw new IOException(String.format("The project file version %s is not supported.", version));
+				}
+				Entry[] entries = new Entry[ProjectManifest.requireCount(manifestData.readInt(), projectFile)];
+				for (int i = 0; i < entries.length; i++) {
+					entries[i] = new Entry(new File(manifestData.readUTF()), manifestData.readInt(), 
+							manifestData.readLong(), manifestData.readLong(), manifestData.readLong(), 
+							manifestData.readInt());
+				}
+				int expectedChecksum = (int) checksum.getValue();
+				if (new DataInputStream(projectData).readInt() != expectedChecksum) {
+					throw new IOException(String.format("The project file %s is corrupted.", projectFile));
+				}
+				return new ProjectManifest(entries);
+			} else { // the legacy layout only stores the paths
+				int numOrigins = ProjectManifest.requireCount(first, projectFile);
+				LinkedHashMap<File, Entry> entries = new LinkedHashMap<File, Entry>();
+				for (int i = 0; i < numOrigins; i++) {
+					if (manifestData.readInt() >= 0) { // invalid origins are marked by a negative length
+						File originFile = new File(manifestData.readUTF());
+						entries.put(originFile, new Entry(originFile, OriginHeader.UNKNOWN_CODEC, ProjectManifest.UNKNOWN, 
+								ProjectManifest.UNKNOWN, ProjectManifest.UNKNOWN, 0));
+					}
+				}
+				return new ProjectManifest(entries.values().toArray(new Entry[entries.size()]));
+			}
+		} catch (EOFException e) {
+			throw new IOException(String.format("The project file %s is incomplete.", projectFile), e);
+		}
+	}
+	
+	/**
+	 * Ensure the specified number of origins is valid.
+	 * 
+	 * @param numOrigins - the number of origins read
+	 * @param projectFile - the project file
+	 * @return the number of origins
+	 * @throws IOException if the number is negative
+	 */
+	private static int requireCount(int numOrigins, File projectFile) throws IOException {
+		if (numOrigins < 0) {
+			throw new IOException(String.format("The number of origins %s of project file %s "
+					+ "is invalid.", numOrigins, projectFile));
+		}
+		return numOrigins;
+	}
+	
+	/**
+	 * Write the manifest followed by its checksum.
+	 * 
+	 * @param projectData - the stream to write to
+	 * @throws IOException if the manifest could not be written
+	 */
+	void write(OutputStream projectData) throws IOException {
+		CRC32C checksum = new CRC32C();
+		DataOutputStream manifestData = new DataOutputStream(new CheckedOutputStream(projectData, checksum));
+		manifestData.writeInt(ProjectManifest.MAGIC_NUMBER);
+		manifestData.writeInt(ProjectManifest.VERSION);
+		manifestData.writeInt(this.entries.size());
+		for (Entry e : this.entries) {
+			manifestData.writeUTF(e.file.getPath());
+			manifestData.writeInt(e.codecID);
+			manifestData.writeLong(e.resourceCount);
+			manifestData.writeLong(e.fileSize);
+			manifestData.writeLong(e.lastModified);
+			manifestData.writeInt(e.checksum);
+		}
+		manifestData.flush();
+		new DataOutputStream(projectData).writeInt((int) checksum.getValue());
+	}
+	
+	@Override
+	public String toString() {
+		return this.entries.toString();
+	}
+	
+	/**
+	 * The Entry class describes a single origin of a project manifest.
+	 * 
+	 * @author Planters
+	 *
+	 */
+	public static final class Entry {
+		
+		private final File file;
+		private final int codecID;
+		private final long resourceCount;
+		private final long fileSize;
+		private final long lastModified;
+		private final int checksum;
+		
+		/**
+		 * Create a new description of an origin.
+		 * 
+		 * @param file - the origin file
+		 * @param codecID - the ID of the codec the origin has been written for
+		 * @param resourceCount - the number of resources of the origin
+		 * @param fileSize - the size of the origin file
+		 * @param lastModified - the time the origin file has been modified last
+		 * @param checksum - the CRC32C checksum of the origin file
+		 */
+		private Entry(File file, int codecID, long resourceCount, long fileSize, long lastModified, int checksum) {
+			this.file = file;
+			this.codecID = codecID;
+			this.resourceCount = resourceCount;
+			this.fileSize = fileSize;
+			this.lastModified = lastModified;
+			this.checksum = checksum;
+		}
+		
+		/**
+		 * Get the file of the origin.
+		 * 
+		 * @return the origin file
+		 */
+		public File getFile() {
+			return this.file;
+		}
+		
+		/**
+		 * Get the ID of the codec the origin has been written for.
+		 * 
+		 * @return the codec ID or 0 if the codec is not known
+		 */
+		public int getCodecID() {
+			return this.codecID;
+		}
+		
+		/**
+		 * Get the number of resources of the origin file.
+		 * 
+		 * @return the resource count or {@link ProjectManifest#UNKNOWN} if it is not known
+		 */
+		public long getResourceCount() {
+			return this.resourceCount;
+		}
+		
+		/**
+		 * Get the size of the origin file.
+		 * 
+		 * @return the size in bytes or {@link ProjectManifest#UNKNOWN} if it is not known
+		 */
+		public long getFileSize() {
+			return this.fileSize;
+		}
+		
+		/**
+		 * Get the time the origin file has been modified last.
+		 * 
+		 * @return the time in milliseconds since the epoch or {@link ProjectManifest#UNKNOWN} if 
+		 * it is not known
+		 */
+		public long getLastModified() {
+			return this.lastModified;
+		}
+		
+		/**
+		 * Get the CRC32C checksum of the origin file.
+		 * 
+		 * @return the checksum or 0 if it is not known
+		 */
+		public int getChecksum() {
+			return this.checksum;
+		}
+		
+		/**
+		 * Check if the origin file still has the size and modification time stated by this 
+		 * entry, so it does not need to be inspected again.
+		 * 
+		 * @return true if the origin file has not changed since it has been described
+		 */
+		public boolean isUnchanged() {
+			return this.fileSize != ProjectManifest.UNKNOWN && this.file.length() == this.fileSize 
+					&& this.file.lastModified() == this.lastModified;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("[%s, codec %s, %s resources, %s bytes, modified %s, checksum %s]", this.file, 
+					this.codecID, this.resourceCount, this.fileSize, this.lastModified, 
+					Integer.toHexString(this.checksum));
+		}
+		
+	}
+
+}
@@ -0,0 +1,251 @@
+package eyja.lab.tools.control.centre.management;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The ProjectRegistry class keeps a sorted index of the names of all projects in a projects 
+ * folder. The folder is only listed completely once. Afterwards the index is kept up to date 
+ * by watching the folder for projects being created or deleted and is only listed again if 
+ * the watch service has lost events. Checking if a single project exists never lists the 
+ * folder. A missing projects folder is treated as containing no projects.
+ * 
+ * @author Planters
+ *
+ */
+public final class ProjectRegistry implements Closeable {
+	
+	private final File projectsFolder;
+	private final ConcurrentSkipListSet<String> projectNames = new ConcurrentSkipListSet<String>();
+	// the index needs to be built by listing the projects folder
+	private volatile boolean stale = true;
+	// guarded by this registry
+	private WatchService watcher = null;
+	private boolean closed = false;
+	
+	/**
+	 * Create a registry of the projects contained by the specified folder. The folder is not 
+	 * accessed until the registry is used.
+	 * 
+	 * @param projectsFolder - the folder containing all projects
+	 * @throws NullPointerException if the folder is null
+	 */
+	public ProjectRegistry(File projectsFolder) {
+		if (projectsFolder != null) {
+			this.projectsFolder = projectsFolder;
+		} else {
+			throw new NullPointerException("The projects folder of a registry cannot be null.");
+		}
+	}
+	
+	/**
+	 * Get the registry of the folder containing all projects, which is shared by all projects.
+	 * 
+	 * @return the default project registry
+	 */
+	public static ProjectRegistry getDefault() {
+		return DefaultRegistry.INSTANCE;
+	}
+	
+	/**
+	 * Get the folder containing the registered projects.
+	 * 
+	 * @return the projects folder
+	 */
+	public File getProjectsFolder() {
+		return this.projectsFolder;
+	}
+	
+	/**
+	 * Check if a project with the specified name exists. Only the folder of the project is 
+	 * checked and the index is updated with the result.
+	 * 
+	 * @param name - the name of the project
+	 * @return true if the project exists
+	 * @throws NullPointerException if the name is null
+	 */
+	public boolean exists(String name) {
+		if (name != null) {
+			if (new File(this.projectsFolder, name).exists()) {
+				this.projectNames.add(name);
+				return true;
+			} else {
+				this.projectNames.remove(name);
+				return false;
+			}
+		} else {
+			throw new NullPointerException("The name of a project cannot be null.");
+		}
+	}
+	
+	/**
+	 * Check if a project with the specified name is contained by the index without accessing 
+	 * the projects folder.
+	 * 
+	 * @param name - the name of the project
+	 * @return true if the project is indexed
+	 * @throws NullPointerException if the name is null
+	 */
+	public boolean contains(String name) {
+		if (name != null) {
+			this.refresh();
+			return this.projectNames.contains(name);
+		} else {
+			throw new NullPointerException("The name of a project cannot be null.");
+		}
+	}
+	
+	/**
+	 * Get the names of all projects in ascending order.
+	 * 
+	 * @return an unmodifiable view of the indexed project names
+	 */
+	public SortedSet<String> getProjectNames() {
+		this.refresh();
+		return Collections.unmodifiableSortedSet(this.projectNames);
+	}
+	
+	/**
+	 * Add the project with the specified name to the index after its folder has been created.
+	 * 
+	 * @param name - the name of the project
+	 */
+	void register(String name) {
+		this.projectNames.add(name);
+	}
+	
+	/**
+	 * Stop watching the projects folder. The index is listed again every time it is used 
+	 * afterwards.
+	 * 
+	 * @throws IOException if the watch service could not be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		this.closed = true;
+		this.stale = true;
+		if (this.watcher != null) {
+			try {
+				this.watcher.close();
+			} finally {
+				this.watcher = null;
+			}
+		}
+	}
+	
+	/**
+	 * List the projects folder if the index is stale and start watching the folder for changes.
+	 */
+	private void refresh() {
+		if (this.stale) {
+			synchronized (this) {
+				if (this.stale) {
+					// changes arriving while listing are applied twice, which does not change the index
+					this.stale = !this.watch();
+					File[] projects = this.projectsFolder.listFiles();
+					HashSet<String> listedNames = new HashSet<String>();
+					if (projects != null) {
+						Arrays.stream(projects).map(File::getName).forEach(listedNames::add);
+					}
+					this.projectNames.retainAll(listedNames);
+					this.projectNames.addAll(listedNames);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Start watching the projects folder if it exists and is not watched yet.
+	 * 
+	 * @return true if the folder is watched
+	 */
+	private synchronized boolean watch() {
+		if (this.watcher == null && !this.closed && this.projectsFolder.isDirectory()) {
+			try {
+				WatchService folderWatcher = this.projectsFolder.toPath().getFileSystem().newWatchService();
+				try {
+					this.projectsFolder.toPath().register(folderWatcher, StandardWatchEventKinds.ENTRY_CREATE, 
+							StandardWatchEventKinds.ENTRY_DELETE);
+				} catch (IOException | RuntimeException e) {
+					folderWatcher.close();
+					throw e;
+				}
+				this.watcher = folderWatcher;
+				Thread watchThread = new Thread(() -> this.processEvents(folderWatcher), 
+						String.format("Project registry of %s", this.projectsFolder));
+				watchThread.setDaemon(true);
+				watchThread.start();
+			} catch (IOException | UnsupportedOperationException e) {
+				// the folder is listed again on every use instead
+				return false;
+			}
+		}
+		return this.watcher != null;
+	}
+	
+	/**
+	 * Apply the changes of the projects folder to the index until the specified watch service 
+	 * is closed or the folder cannot be watched anymore.
+	 * 
+	 * @param folderWatcher - the watch service watching the projects folder
+	 */
+	private void processEvents(WatchService folderWatcher) {
+		try {
+			boolean valid = true;
+			while (valid) {
+				WatchKey key = folderWatcher.take();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+						this.projectNames.add(((Path) event.context()).toString());
+					} else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+						this.projectNames.remove(((Path) event.context()).toString());
+					} else { // events have been lost
+						this.stale = true;
+					}
+				}
+				valid = key.reset();
+			}
+			// the projects folder has been deleted
+			synchronized (this) {
+				if (this.watcher == folderWatcher) {
+					this.watcher = null;
+				}
+				this.stale = true;
+			}
+			folderWatcher.close();
+		} catch (InterruptedException | ClosedWatchServiceException | IOException e) {
+			// the registry has been closed
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("[Project registry of %s]", this.projectsFolder);
+	}
+	
+	/**
+	 * The DefaultRegistry class holds the default registry, so it is only created when it is 
+	 * used for the first time.
+	 * 
+	 * @author Planters
+	 *
+	 */
+	private static final class DefaultRegistry {
+		
+		private static final ProjectRegistry INSTANCE = new ProjectRegistry(Project.getProjectsFolder());
+		
+	}
+
+}
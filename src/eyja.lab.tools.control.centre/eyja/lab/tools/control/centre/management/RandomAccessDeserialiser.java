@@ -0,0 +1,50 @@
+package eyja.lab.tools.control.centre.management;
+
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+
+/**
+ * The RandomAccessDeserialiser interface represents the functionality to deserialise single 
+ * resources from the binary data of an origin without reading the whole origin. 
+ * This allows origins to index their data first and build resources only when needed.
+ * 
+ * @author Planters
+ *
+ */
+public interface RandomAccessDeserialiser extends OriginDeserialiser {
+	
+	/**
+	 * Read the ID of the resource starting at the current position of the reader and advance 
+	 * the reader to the start of the next resource. Resources framed as records are skipped by 
+	 * the length of their record, so the reader only needs to be advanced past the ID.
+	 * 
+	 * @param reader - the reader positioned at the start of a resource
+	 * @return the ID of the resource skipped
+	 * @throws java.nio.BufferUnderflowException if the resource is not completely remaining
+	 * @throws IllegalArgumentException if the data does not represent a valid resource
+	 */
+	public long scan(BinaryReader reader);
+	
+	/**
+	 * Deserialise the resource starting at the current position of the reader into a resource 
+	 * with an ID belonging to the specified origin. The resource is not added to the origin.
+	 * 
+	 * @param reader - the reader positioned at the start of a resource
+	 * @param origin - the origin the resource belongs to
+	 * @return the deserialised resource
+	 * @throws java.nio.BufferUnderflowException if the resource is not completely remaining
+	 * @throws IllegalArgumentException if the data does not represent a valid resource
+	 */
+	public Resource decode(BinaryReader reader, Origin origin);
+	
+	/**
+	 * Get the ID of the codec written to the header of origin files, so files written for 
+	 * another codec are rejected before being decoded. The ID 0 does not identify any codec and 
+	 * accepts files written for any codec.
+	 * 
+	 * @return the codec ID of the deserialiser
+	 */
+	public default int getCodecID() {
+		return 0;
+	}
+
+}
@@ -0,0 +1,60 @@
+package eyja.lab.tools.control.centre.management;
+
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.function.Supplier;
+
+/**
+ * The ReferenceStrength enum represents how strongly a cached reference holds on to the resource 
+ * it has cached. Resources cached softly or weakly can be reclaimed by the garbage collector and 
+ * are dereferenced again on the next access.
+ * 
+ * @author Planters
+ *
+ */
+public enum ReferenceStrength {
+	
+	/**
+	 * The cached resource is kept until the cache is refreshed.
+	 */
+	STRONG {
+		
+		@Override
+		<T> Supplier<T> hold(T referent) {
+			return () -> referent;
+		}
+		
+	}, 
+	/**
+	 * The cached resource is kept until memory runs low.
+	 */
+	SOFT {
+		
+		@Override
+		<T> Supplier<T> hold(T referent) {
+			return new SoftReference<T>(referent)::get;
+		}
+		
+	}, 
+	/**
+	 * The cached resource is kept as long as it is strongly reachable from elsewhere.
+	 */
+	WEAK {
+		
+		@Override
+		<T> Supplier<T> hold(T referent) {
+			return new WeakReference<T>(referent)::get;
+		}
+		
+	};
+	
+	/**
+	 * Hold on to the specified object with this strength.
+	 * 
+	 * @param <T> - the type of the object
+	 * @param referent - the object to hold on to
+	 * @return the supplier of the object, which supplies null after the object has been reclaimed
+	 */
+	abstract <T> Supplier<T> hold(T referent);
+	
+}
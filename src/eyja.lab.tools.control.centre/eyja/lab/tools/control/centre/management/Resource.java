@@ -1,5 +1,7 @@
 package eyja.lab.tools.control.centre.management;
 
+import eyja.lab.tools.control.centre.binaryop.BinaryWriter;
+
 /**
  * The abstract Resource class defines serialisation and ID mapping of resources.
  * 
@@ -17,6 +19,30 @@ public abstract class Resource {
 	 */
 	public abstract byte[] serialise();
 	
+	/**
+	 * Serialise the resource into the specified writer. The written bytes must be identical to 
+	 * the ones returned by {@link #serialise()}. The default implementation just writes the array 
+	 * returned by {@link #serialise()}, so resources should override this method to avoid the 
+	 * intermediate array.
+	 * 
+	 * @param writer - the writer to serialise the resource into
+	 * @throws NullPointerException if the writer is null
+	 */
+	public void serialise(BinaryWriter writer) {
+		writer.writeBytes(this.serialise());
+	}
+	
+	/**
+	 * Get the identifier of the type of this resource. The identifier is stored in the index 
+	 * of the origin file, so resources can be distinguished without deserialising them. 
+	 * The default implementation returns 0.
+	 * 
+	 * @return the type identifier of this resource
+	 */
+	public byte getTypeIdentifier() {
+		return 0;
+	}
+	
 	/**
 	 * 
 	 */
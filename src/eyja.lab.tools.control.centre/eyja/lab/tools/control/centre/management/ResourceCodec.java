@@ -0,0 +1,39 @@
+package eyja.lab.tools.control.centre.management;
+
+import eyja.lab.tools.control.centre.binaryop.BinaryReader;
+
+/**
+ * The ResourceCodec interface represents the functionality to scan and decode the binary data of 
+ * a single resource type. Codecs are registered with a {@link CodecRegistry} under the type 
+ * identifier written in front of each resource, so the registry reads the identifier and 
+ * passes the rest of the resource to the codec.
+ * 
+ * @author Planters
+ *
+ */
+public interface ResourceCodec {
+	
+	/**
+	 * Read the ID of the resource starting at the current position of the reader and advance 
+	 * the reader to the start of the next resource.
+	 * 
+	 * @param reader - the reader positioned directly after the type identifier of a resource
+	 * @return the ID of the resource skipped
+	 * @throws java.nio.BufferUnderflowException if the resource is not completely remaining
+	 * @throws IllegalArgumentException if the data does not represent a valid resource
+	 */
+	public long scan(BinaryReader reader);
+	
+	/**
+	 * Deserialise the resource starting at the current position of the reader into a resource 
+	 * with an ID belonging to the specified origin. The resource is not added to the origin.
+	 * 
+	 * @param reader - the reader positioned directly after the type identifier of a resource
+	 * @param origin - the origin the resource belongs to
+	 * @return the deserialised resource
+	 * @throws java.nio.BufferUnderflowException if the resource is not completely remaining
+	 * @throws IllegalArgumentException if the data does not represent a valid resource
+	 */
+	public Resource decode(BinaryReader reader, Origin origin);
+
+}
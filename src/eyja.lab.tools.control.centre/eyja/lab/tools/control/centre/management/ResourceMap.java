@@ -0,0 +1,289 @@
+package eyja.lab.tools.control.centre.management;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * The ResourceMap class maps primitive resource IDs to resources without boxing the IDs. 
+ * The entries are stored in parallel arrays using open addressing with linear probing, 
+ * where an empty slot is marked by a null resource. Removed entries are closed by shifting 
+ * the following entries back, so no deleted markers degrade the lookup over time.
+ * 
+ * @author Planters
+ *
+ */
+final class ResourceMap {
+	
+	private static final int MINIMUM_CAPACITY = 16;
+	// Fibonacci hashing spreads consecutive IDs evenly over the table
+	private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+	private long[] ids;
+	private Resource[] resources;
+	private int size = 0;
+	private int shift;
+	
+	/**
+	 * Create a new empty resource map.
+	 */
+	ResourceMap() {
+		this.allocate(ResourceMap.MINIMUM_CAPACITY);
+	}
+	
+	/**
+	 * Get the number of resources contained by the map.
+	 * 
+	 * @return the number of entries
+	 */
+	int size() {
+		return this.size;
+	}
+	
+	/**
+	 * Get the resource with the specified ID.
+	 * 
+	 * @param id - the ID of the resource
+	 * @return the resource or null if no resource with the specified ID is contained
+	 */
+	Resource get(long id) {
+		int mask = this.ids.length - 1;
+		for (int slot = this.slot(id); this.resources[slot] != null; slot = (slot + 1) & mask) {
+			if (this.ids[slot] == id) {
+				return this.resources[slot];
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Associate the specified resource with the specified ID.
+	 * 
+	 * @param id - the ID of the resource
+	 * @param resource - the resource to add
+	 * @return the resource previously associated with the ID or null if there was none
+	 * @throws NullPointerException if the resource is null
+	 */
+	Resource put(long id, Resource resource) {
+		Objects.requireNonNull(resource, "A resource map cannot contain null.");
+		int mask = this.ids.length - 1;
+		int slot = this.slot(id);
+		for (; this.resources[slot] != null; slot = (slot + 1) & mask) {
+			if (this.ids[slot] == id) {
+				Resource previous = this.resources[slot];
+				this.resources[slot] = resource;
+				return previous;
+			}
+		}
+		this.ids[slot] = id;
+		this.resources[slot] = resource;
+		this.size++;
+		// keep the load factor at or below 1/2
+		if (this.size * 2 > this.ids.length) {
+			this.rehash(this.ids.length * 2);
+		}
+		return null;
+	}
+	
+	/**
+	 * Remove the resource with the specified ID.
+	 * 
+	 * @param id - the ID of the resource to remove
+	 * @return the removed resource or null if no resource with the specified ID was contained
+	 */
+	Resource remove(long id) {
+		int mask = this.ids.length - 1;
+		for (int slot = this.slot(id); this.resources[slot] != null; slot = (slot + 1) & mask) {
+			if (this.ids[slot] == id) {
+				Resource removed = this.resources[slot];
+				this.closeGap(slot);
+				this.size--;
+				return removed;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Enlarge the table, so the specified number of resources can be contained without rehashing.
+	 * 
+	 * @param expectedSize - the number of resources expected to be contained
+	 */
+	void ensureCapacity(int expectedSize) {
+		// keep the load factor at or below 1/2 without exceeding the maximum array size
+		if (expectedSize > 0 && expectedSize <= 1 << 29 && expectedSize * 2 > this.ids.length) {
+			this.rehash(Integer.highestOneBit(expectedSize * 2 - 1) << 1);
+		}
+	}
+	
+	/**
+	 * Remove all resources and release the memory occupied by the table.
+	 */
+	void clear() {
+		this.size = 0;
+		this.allocate(ResourceMap.MINIMUM_CAPACITY);
+	}
+	
+	/**
+	 * Create an independent copy of the map.
+	 * 
+	 * @return a map containing the same entries
+	 */
+	ResourceMap copy() {
+		ResourceMap copied = new ResourceMap();
+		copied.ids = this.ids.clone();
+		copied.resources = this.resources.clone();
+		copied.size = this.size;
+		copied.shift = this.shift;
+		return copied;
+	}
+	
+	/**
+	 * Get all IDs contained by the map in no particular order.
+	 * 
+	 * @return the contained IDs
+	 */
+	long[] getIDs() {
+		long[] allIDs = new long[this.size];
+		int i = 0;
+		for (int slot = 0; slot < this.resources.length; slot++) {
+			if (this.resources[slot] != null) {
+				allIDs[i++] = this.ids[slot];
+			}
+		}
+		return allIDs;
+	}
+	
+	/**
+	 * Get all resources contained by the map in no particular order.
+	 * 
+	 * @return the contained resources
+	 */
+	Resource[] getResources() {
+		Resource[] allResources = new Resource[this.size];
+		int i = 0;
+		for (Resource resource : this.resources) {
+			if (resource != null) {
+				allResources[i++] = resource;
+			}
+		}
+		return allResources;
+	}
+	
+	/**
+	 * Perform the specified action for each resource contained by the map in no particular order. 
+	 * The map must not be modified by the action.
+	 * 
+	 * @param action - the action to perform
+	 */
+	void forEach(Consumer<? super Resource> action) {
+		for (Resource resource : this.resources) {
+			if (resource != null) {
+				action.accept(resource);
+			}
+		}
+	}
+	
+	/**
+	 * Get the preferred slot of the specified ID.
+	 * 
+	 * @param id - the ID to hash
+	 * @return the first slot to probe
+	 */
+	private int slot(long id) {
+		return (int) ((id * ResourceMap.HASH_MULTIPLIER) >>> this.shift);
+	}
+	
+	/**
+	 * Empty the specified slot and move entries of the same probe sequence into the gap, so 
+	 * they are still reachable afterwards.
+	 * 
+	 * @param gap - the slot to empty
+	 */
+	private void closeGap(int gap) {
+		int mask = this.ids.length - 1;
+		int slot = gap;
+		while (true) {
+			slot = (slot + 1) & mask;
+			if (this.resources[slot] == null) {
+				break;
+			}
+			// the entry may only move if its preferred slot does not lie between the gap and its slot
+			int preferred = this.slot(this.ids[slot]);
+			if (((slot - preferred) & mask) >= ((slot - gap) & mask)) {
+				this.ids[gap] = this.ids[slot];
+				this.resources[gap] = this.resources[slot];
+				gap = slot;
+			}
+		}
+		this.resources[gap] = null;
+	}
+	
+	/**
+	 * Move all entries to a new table of the specified capacity.
+	 * 
+	 * @param capacity - the new capacity, which needs to be a power of two
+	 */
+	private void rehash(int capacity) {
+		long[] oldIDs = this.ids;
+		Resource[] oldResources = this.resources;
+		this.allocate(capacity);
+		int mask = capacity - 1;
+		for (int i = 0; i < oldResources.length; i++) {
+			if (oldResources[i] != null) {
+				int slot = this.slot(oldIDs[i]);
+				while (this.resources[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				this.ids[slot] = oldIDs[i];
+				this.resources[slot] = oldResources[i];
+			}
+		}
+	}
+	
+	/**
+	 * Replace the table by an empty table of the specified capacity.
+	 * 
+	 * @param capacity - the capacity, which needs to be a power of two
+	 */
+	private void allocate(int capacity) {
+		this.ids = new long[capacity];
+		this.resources = new Resource[capacity];
+		this.shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+	}
+	
+	@Override
+	public int hashCode() {
+		int result = 0;
+		for (int slot = 0; slot < this.resources.length; slot++) {
+			if (this.resources[slot] != null) {
+				result += Long.hashCode(this.ids[slot]) ^ this.resources[slot].hashCode();
+			}
+		}
+		return result;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (obj instanceof ResourceMap) {
+			ResourceMap comp = (ResourceMap) obj;
+			if (this.size != comp.size) {
+				return false;
+			}
+			for (int slot = 0; slot < this.resources.length; slot++) {
+				if (this.resources[slot] != null && !this.resources[slot].equals(comp.get(this.ids[slot]))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+	
+	@Override
+	public String toString() {
+		return Arrays.toString(this.getResources());
+	}
+
+}
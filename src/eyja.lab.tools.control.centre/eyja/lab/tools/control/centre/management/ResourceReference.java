@@ -1,17 +1,16 @@
 package eyja.lab.tools.control.centre.management;
 
-import java.io.File;
-
 /**
  * The ResourceReference class references a resource based on the file path of the 
- * origin it originates from and its unique origin specific ID.
+ * origin it originates from and its unique origin specific ID. The file path is interned, so 
+ * references to the same origin share a single {@link OriginPath}.
  * 
  * @author Planters
  *
  */
 public class ResourceReference {
 
-	private final String origin;
+	private final OriginPath origin;
 	private final long id;
 	
 	/**
@@ -25,6 +24,20 @@ public class ResourceReference {
 	 * @throws NullPointerException if the origin is null
 	 */
 	public ResourceReference(String origin, long id) {
+		this(OriginPath.of(origin), id);
+	}
+	
+	/**
+	 * Create a new reference to a resource by specifying the interned file path it originates from 
+	 * and its ID inside the specified origin. A physical representation of the reference is needed, 
+	 * so the origin may not be null.
+	 * 
+	 * @param origin - the interned file path of the origin that contains the resource
+	 * @param id - the ID of the resource
+	 * 
+	 * @throws NullPointerException if the origin is null
+	 */
+	ResourceReference(OriginPath origin, long id) {
 		if (origin != null) {
 			this.id = id;
 			this.origin = origin;
@@ -34,6 +47,21 @@ public class ResourceReference {
 		}
 	}
 	
+	/**
+	 * Create a new reference to a resource by specifying the interned file path it originates from 
+	 * and its ID inside the specified origin. In contrast to the constructor taking the file path 
+	 * as string, the path is not looked up in the intern table again.
+	 * 
+	 * @param origin - the interned file path of the origin that contains the resource
+	 * @param id - the ID of the resource
+	 * @return the reference to the resource
+	 * 
+	 * @throws NullPointerException if the origin is null
+	 */
+	public static ResourceReference of(OriginPath origin, long id) {
+		return new ResourceReference(origin, id);
+	}
+	
 	/**
 	 * Create a new reference to a resource by specifying its unique resource ID.
 	 * A physical representation of the reference is needed, so the 
@@ -48,16 +76,10 @@ public class ResourceReference {
 		if (id != null) {
 			Origin idOrigin = id.getOrigin();
 			if (idOrigin != null) {
-				File f = idOrigin.getFile();
-				if (f != null) {
-					String originPath = f.getPath();
-					if (originPath != null) {
-						this.id = id.getID();
-						this.origin = originPath;
-					} else {
-						throw new NullPointerException("An origin without a physical representation cannot be "
-								+ "referenced.");
-					}
+				OriginPath originPath = idOrigin.getOriginPath();
+				if (originPath != null) {
+					this.id = id.getID();
+					this.origin = originPath;
 				} else {
 					throw new NullPointerException(String.format("A valid origin is needed to create a valid "
 							+ "reference, but the origin %s specified by the resource ID %s is not.", 
@@ -96,6 +118,15 @@ public class ResourceReference {
 	 * @return the file path of the origin
 	 */
 	public String getOrigin() {
+		return this.origin.getPath();
+	}
+	
+	/**
+	 * Get the interned file path of the origin containing the resource.
+	 * 
+	 * @return the interned file path of the origin
+	 */
+	public OriginPath getOriginPath() {
 		return this.origin;
 	}
 	
@@ -124,7 +155,7 @@ public class ResourceReference {
 			return true;
 		} else if (obj instanceof ResourceReference) {
 			ResourceReference comp = (ResourceReference) obj;
-			return this.id == comp.id && this.origin.equals(comp.origin);
+			return this.id == comp.id && this.origin == comp.origin;
 		}
 		return false;
 	}